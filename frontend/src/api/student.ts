@@ -6,6 +6,8 @@ import type {
   ExamResponse,
   JoinClassRequest,
   ProctorMessage,
+  ResultPendingStatus,
+  StartQueueStatus,
   StudentAiExplainRequest,
   StudentResultResponse,
   SubmitExamRequest,
@@ -22,9 +24,19 @@ export async function getExam(id: number): Promise<ExamResponse> {
   return res.data
 }
 
-export async function startExam(id: number): Promise<AttemptStartResponse> {
-  const res = await http.post<AttemptStartResponse>(`/api/student/exams/${id}/start`)
-  return res.data
+export async function startExam(
+  id: number,
+  onQueued?: (status: StartQueueStatus) => void,
+): Promise<AttemptStartResponse> {
+  for (;;) {
+    const res = await http.post<AttemptStartResponse | StartQueueStatus>(`/api/student/exams/${id}/start`)
+    if (res.status !== 202) {
+      return res.data as AttemptStartResponse
+    }
+    const queued = res.data as StartQueueStatus
+    onQueued?.(queued)
+    await new Promise((resolve) => setTimeout(resolve, queued.retryAfterMillis))
+  }
 }
 
 export async function submitExam(id: number, data: SubmitExamRequest): Promise<SubmitResponse> {
@@ -32,6 +44,14 @@ export async function submitExam(id: number, data: SubmitExamRequest): Promise<S
   return res.data
 }
 
+export async function saveAnswers(
+  id: number,
+  attemptId: number,
+  answers: { questionId: number; answer: string }[],
+): Promise<void> {
+  await http.put(`/api/student/exams/${id}/attempts/${attemptId}/answers`, { answers })
+}
+
 export async function sendHeartbeat(id: number, payload: { attemptId: number }): Promise<void> {
   await http.post(`/api/student/exams/${id}/heartbeat`, {
     attemptId: payload.attemptId,
@@ -62,9 +82,18 @@ export async function pollProctorMessages(
   return res.data
 }
 
-export async function myResult(id: number): Promise<StudentResultResponse> {
-  const res = await http.get<StudentResultResponse>(`/api/student/exams/${id}/result`)
-  return res.data
+export async function myResult(
+  id: number,
+  onPending?: (status: ResultPendingStatus) => void,
+): Promise<StudentResultResponse> {
+  for (;;) {
+    const res = await http.get<StudentResultResponse | ResultPendingStatus>(`/api/student/exams/${id}/result`)
+    if (res.status !== 202) {
+      return res.data as StudentResultResponse
+    }
+    onPending?.(res.data as ResultPendingStatus)
+    await new Promise((resolve) => setTimeout(resolve, 1000))
+  }
 }
 
 export async function explainResultQuestion(id: number, data: StudentAiExplainRequest): Promise<AiAnalysisResponse> {
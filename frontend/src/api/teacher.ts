@@ -7,6 +7,7 @@ import type {
   Classroom,
   ClassMember,
   ExamAnalyticsResponse,
+  ExamMonitorDelta,
   ExamMonitorResponse,
   ExamResponse,
   PagedResult,
@@ -201,6 +202,49 @@ export async function getExamMonitor(id: number): Promise<ExamMonitorResponse> {
   return res.data
 }
 
+export async function streamExamMonitor(
+  id: number,
+  handlers: { onSnapshot: (m: ExamMonitorResponse) => void; onDelta: (d: ExamMonitorDelta) => void },
+  signal?: AbortSignal,
+): Promise<void> {
+  const token = localStorage.getItem('auth.token')
+  const headers: Record<string, string> = { Accept: 'text/event-stream' }
+  if (token) {
+    headers.Authorization = `Bearer ${token}`
+  }
+
+  const res = await fetch(`/api/teacher/exams/${id}/monitor/stream`, { headers, signal })
+  if (!res.ok) {
+    throw new Error(`${res.status}`)
+  }
+
+  const reader = res.body?.getReader()
+  if (!reader) {
+    return
+  }
+  const decoder = new TextDecoder('utf-8')
+  let buffer = ''
+  while (true) {
+    const { value, done } = await reader.read()
+    if (done) break
+    buffer += decoder.decode(value, { stream: true })
+    let end = buffer.indexOf('\n\n')
+    while (end >= 0) {
+      const block = buffer.slice(0, end)
+      buffer = buffer.slice(end + 2)
+      let name = ''
+      const data: string[] = []
+      for (const line of block.split('\n')) {
+        if (line.startsWith('event:')) name = line.slice(6).trim()
+        else if (line.startsWith('data:')) data.push(line.slice(5))
+      }
+      if (name === 'snapshot') handlers.onSnapshot(JSON.parse(data.join('\n')))
+      else if (name === 'delta') handlers.onDelta(JSON.parse(data.join('\n')))
+      end = buffer.indexOf('\n\n')
+    }
+  }
+}
+
 export async function remindExamStudent(id: number, data: { username: string; message: string }): Promise<void> {
   await http.post(`/api/teacher/exams/${id}/proctor/remind`, data)
 }
@@ -83,6 +83,8 @@ export type ExamResponse = {
   hasResult?: boolean
   submittedCount?: number
   unsubmittedCount?: number
+  startedCount?: number
+  inProgressCount?: number
 }
 
 export type CreateExamRequest = {
@@ -110,11 +112,25 @@ export type AttemptStartResponse = {
   startedAt: string
   endAt: string
   questions: QuestionSnapshot[]
+  answers?: Array<{ questionId: number; answer: string }>
   studentName?: string
   studentNo?: string
   className?: string
 }
 
+export type StartQueueStatus = {
+  status: 'QUEUED'
+  position: number
+  queueDepth: number
+  etaMillis: number
+  retryAfterMillis: number
+}
+
+export type ResultPendingStatus = {
+  status: 'PENDING'
+  attemptId: number
+}
+
 export type SubmitExamRequest = {
   attemptId: number
   answers: Array<{ questionId: number; answer: string }>
@@ -265,6 +281,36 @@ export type ExamAnalyticsResponse = {
   passRate: number
   passLineRatio: number
   questionStats: ExamAnalyticsQuestionStat[]
+  percentiles?: Record<'p10' | 'p25' | 'p50' | 'p75' | 'p90', number>
+  stdDevTotalScore?: number
+  ratioDistribution?: ScoreDistribution
+  questionTypeDistributions?: GroupDistribution[]
+}
+
+export type DistributionBin = {
+  label: string
+  fromPercent: number
+  toPercent: number
+  count: number
+}
+
+export type ScoreDistribution = {
+  count: number
+  mean: number
+  stdDev: number
+  percentiles: Record<'p10' | 'p25' | 'p50' | 'p75' | 'p90', number>
+  bins: DistributionBin[]
+}
+
+export type GroupDistribution = {
+  questionType: string
+  distribution: ScoreDistribution
+}
+
+export type ScoreReportResponse = {
+  examIds: number[]
+  distribution: ScoreDistribution
+  questionTypeDistributions: GroupDistribution[]
 }
 
 export type ProctorEventBrief = {
@@ -290,9 +336,24 @@ export type ExamMonitorResponse = {
   submittedUsers: string[]
   events: ProctorEventBrief[]
   latestHeartbeats: HeartbeatBrief[]
+  tabStats: TabStatsBrief[]
   studentInfos: Record<string, { fullName: string; studentNo: string }>
 }
 
+export type TabStatsBrief = {
+  attemptId: number
+  username: string
+  tabSwitchCount: number
+  tabAwaySeconds: number
+}
+
+export type ExamMonitorDelta = {
+  attempts: { attemptId: number; username: string; status: string }[]
+  events: (Omit<ProctorEventBrief, 'id'> & { id: number | null })[]
+  presence: HeartbeatBrief[]
+  tabStats: TabStatsBrief[]
+}
+
 export type ProctorMessage = {
   id: number
   type: string
@@ -0,0 +1,294 @@
+package com.examsystem.attempt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Write-behind buffer for autosaved answers. Deltas are coalesced per attempt and question in memory and written
+ * to exam_attempt_answers as batched upserts every second, or as soon as {@link #MAX_PENDING_ANSWERS} answers are
+ * buffered. Submit, auto-submit and shutdown flush synchronously so nothing buffered is lost. Flushes always
+ * run in their own transaction, so callers flush before opening theirs: a caller inside a transaction would hold
+ * one pooled connection while waiting for a second, and must not hold the attempt rows locked either.
+ * <p>
+ * Writes of an attempt's answers happen under one of {@link #STRIPES} locks picked by attempt id, so answers of one
+ * attempt are written in order while a flush of one attempt only waits for writes that share its stripe, and
+ * returns right away when nothing of it is buffered or being written.
+ */
+@Service
+public class AnswerAutosaveService {
+    static final int MAX_PENDING_ANSWERS = 5000;
+    private static final int BATCH_SIZE = 500;
+    private static final int STRIPES = 16;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ConcurrentHashMap<Long, PendingAnswers> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    // one whole-buffer flush at a time; single attempts only take their stripe
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    public AnswerAutosaveService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // flushed answers commit on their own even when the caller's transaction (a submit) rolls back
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public int save(long attemptId, List<AnswerRecord> answers) {
+        int added = 0;
+        int size;
+        while (true) {
+            PendingAnswers buffer = pending.computeIfAbsent(attemptId, id -> new PendingAnswers());
+            synchronized (buffer) {
+                if (buffer.drained) {
+                    continue;
+                }
+                for (AnswerRecord a : answers) {
+                    if (buffer.answers.put(a.getQuestionId(), a.getAnswer()) == null) {
+                        added++;
+                    }
+                }
+                size = buffer.answers.size();
+                break;
+            }
+        }
+        if (pendingCount.addAndGet(added) >= MAX_PENDING_ANSWERS && flushLock.tryLock()) {
+            try {
+                flushAllLocked();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+        return size;
+    }
+
+    @Scheduled(fixedDelay = 1000)
+    public void scheduledFlush() {
+        flushAll();
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        flushLock.lock();
+        try {
+            flushAllLocked();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes any buffered answers of one attempt and waits for an in-flight background flush to finish, so a
+     * following read of exam_attempt_answers sees everything the student saved.
+     */
+    public void flush(long attemptId) {
+        ReentrantLock stripe = stripeOf(attemptId);
+        // a drained buffer is only written while its stripe is held
+        if (!pending.containsKey(attemptId) && !stripe.isLocked()) {
+            return;
+        }
+        stripe.lock();
+        try {
+            PendingAnswers buffer = pending.get(attemptId);
+            if (buffer == null) {
+                return;
+            }
+            List<PendingRow> rows = new ArrayList<>();
+            drain(attemptId, buffer, rows);
+            write(rows);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Writes the buffered answers of several attempts, one batch per stripe.
+     */
+    public void flush(List<Long> attemptIds) {
+        flushStripes(attemptIds);
+    }
+
+    public void discard(long attemptId) {
+        PendingAnswers buffer = pending.remove(attemptId);
+        if (buffer != null) {
+            synchronized (buffer) {
+                pendingCount.addAndGet(-buffer.answers.size());
+                buffer.answers.clear();
+                buffer.drained = true;
+            }
+        }
+    }
+
+    private void flushAllLocked() {
+        flushStripes(new ArrayList<>(pending.keySet()));
+    }
+
+    /**
+     * Drains and writes the attempts stripe by stripe; a stripe that fails is requeued and the others still go
+     * through before the first failure is rethrown.
+     */
+    private void flushStripes(Collection<Long> attemptIds) {
+        Map<Integer, List<Long>> byStripe = new TreeMap<>();
+        for (long attemptId : attemptIds) {
+            byStripe.computeIfAbsent(stripeIndex(attemptId), i -> new ArrayList<>()).add(attemptId);
+        }
+        RuntimeException failure = null;
+        for (Map.Entry<Integer, List<Long>> e : byStripe.entrySet()) {
+            ReentrantLock stripe = stripes[e.getKey()];
+            stripe.lock();
+            try {
+                List<PendingRow> rows = new ArrayList<>();
+                for (long attemptId : e.getValue()) {
+                    PendingAnswers buffer = pending.get(attemptId);
+                    if (buffer != null) {
+                        drain(attemptId, buffer, rows);
+                    }
+                }
+                write(rows);
+            } catch (RuntimeException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            } finally {
+                stripe.unlock();
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private ReentrantLock stripeOf(long attemptId) {
+        return stripes[stripeIndex(attemptId)];
+    }
+
+    private static int stripeIndex(long attemptId) {
+        return (int) Math.floorMod(attemptId * 0x9E3779B97F4A7C15L >>> 32, (long) STRIPES);
+    }
+
+    private void drain(long attemptId, PendingAnswers buffer, List<PendingRow> into) {
+        synchronized (buffer) {
+            for (Map.Entry<Long, String> a : buffer.answers.entrySet()) {
+                into.add(new PendingRow(attemptId, a.getKey(), a.getValue()));
+            }
+            pendingCount.addAndGet(-buffer.answers.size());
+            buffer.answers.clear();
+            buffer.drained = true;
+            pending.remove(attemptId, buffer);
+        }
+    }
+
+    private void requeue(List<PendingRow> rows) {
+        for (PendingRow row : rows) {
+            while (true) {
+                PendingAnswers buffer = pending.computeIfAbsent(row.attemptId, id -> new PendingAnswers());
+                synchronized (buffer) {
+                    if (buffer.drained) {
+                        continue;
+                    }
+                    if (buffer.answers.putIfAbsent(row.questionId, row.answer) == null) {
+                        pendingCount.incrementAndGet();
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private void write(List<PendingRow> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            List<PendingRow> batch = rows.subList(from, Math.min(from + BATCH_SIZE, rows.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status -> upsert(batch));
+            } catch (RuntimeException e) {
+                requeue(rows.subList(from, rows.size()));
+                throw e;
+            }
+        }
+    }
+
+    private void upsert(List<PendingRow> batch) {
+        List<Object> attemptIds = batch.stream().map(r -> (Object) r.attemptId).distinct().collect(Collectors.toList());
+        String placeholders = attemptIds.stream().map(x -> "?").collect(Collectors.joining(","));
+        List<Object> args = new ArrayList<>(attemptIds);
+        args.add(AttemptStatus.IN_PROGRESS.name());
+        // Locks the attempt rows so a concurrent submit cannot interleave with this write.
+        Set<Long> open = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM exam_attempts WHERE id IN (" + placeholders + ") AND status = ? FOR UPDATE",
+                Long.class,
+                args.toArray()
+        ));
+        List<PendingRow> rows = batch.stream().filter(r -> open.contains(r.attemptId)).collect(Collectors.toList());
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        int[] updated = jdbcTemplate.batchUpdate(
+                "UPDATE exam_attempt_answers SET answer = ? WHERE attempt_id = ? AND question_id = ?",
+                rows,
+                rows.size(),
+                (ps, row) -> {
+                    ps.setString(1, row.answer);
+                    ps.setLong(2, row.attemptId);
+                    ps.setLong(3, row.questionId);
+                }
+        )[0];
+        List<PendingRow> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(rows.get(i));
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO exam_attempt_answers(attempt_id, question_id, answer) VALUES (?, ?, ?)",
+                missing,
+                missing.size(),
+                (ps, row) -> {
+                    ps.setLong(1, row.attemptId);
+                    ps.setLong(2, row.questionId);
+                    ps.setString(3, row.answer);
+                }
+        );
+    }
+
+    private static class PendingAnswers {
+        private final Map<Long, String> answers = new LinkedHashMap<>();
+        private boolean drained;
+    }
+
+    private static class PendingRow {
+        private final long attemptId;
+        private final long questionId;
+        private final String answer;
+
+        private PendingRow(long attemptId, long questionId, String answer) {
+            this.attemptId = attemptId;
+            this.questionId = questionId;
+            this.answer = answer;
+        }
+    }
+}
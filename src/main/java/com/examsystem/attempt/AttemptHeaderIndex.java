@@ -0,0 +1,248 @@
+package com.examsystem.attempt;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * In-memory index of attempt headers (exam, owner, status, start time) keyed by primitive attempt id, so the
+ * ownership checks of heartbeat, proctor events and message polling are a map lookup instead of loading the
+ * attempt with its questions and answers. Striped open-addressing tables keep it compact; it is cleared when full.
+ */
+@Component
+public class AttemptHeaderIndex {
+    static final int MAX_ENTRIES = 200_000;
+    private static final int STRIPES = 32;
+
+    private final Table[] tables = new Table[STRIPES];
+
+    public AttemptHeaderIndex() {
+        for (int i = 0; i < STRIPES; i++) {
+            tables[i] = new Table();
+        }
+    }
+
+    public Optional<AttemptHeader> get(long attemptId, LongFunction<Optional<AttemptHeader>> loader) {
+        Table table = tableOf(attemptId);
+        AttemptHeader header;
+        synchronized (table) {
+            header = table.get(attemptId);
+        }
+        if (header != null) {
+            return Optional.of(header);
+        }
+        Optional<AttemptHeader> loaded = loader.apply(attemptId);
+        loaded.ifPresent(this::store);
+        return loaded;
+    }
+
+    /**
+     * Records a new or changed header once the surrounding transaction, if any, has committed.
+     */
+    public void put(AttemptHeader header) {
+        afterCommit(() -> store(header));
+    }
+
+    public void updateStatus(long attemptId, AttemptStatus status) {
+        afterCommit(() -> applyStatus(attemptId, status));
+    }
+
+    public void evictExam(long examId) {
+        evictIf(header -> header.getExamId() == examId);
+    }
+
+    public void evictStudent(String username) {
+        evictIf(header -> header.getStudentUsername().equals(username));
+    }
+
+    private void evictIf(Predicate<AttemptHeader> filter) {
+        afterCommit(() -> {
+            for (Table table : tables) {
+                synchronized (table) {
+                    table.removeIf(filter);
+                }
+            }
+        });
+    }
+
+    private void store(AttemptHeader header) {
+        Table table = tableOf(header.getAttemptId());
+        synchronized (table) {
+            if (table.size >= MAX_ENTRIES / STRIPES) {
+                table.clear();
+            }
+            table.put(header.getAttemptId(), header);
+        }
+    }
+
+    private void applyStatus(long attemptId, AttemptStatus status) {
+        Table table = tableOf(attemptId);
+        synchronized (table) {
+            AttemptHeader header = table.get(attemptId);
+            if (header != null) {
+                table.put(attemptId, header.withStatus(status));
+            }
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+            return;
+        }
+        action.run();
+    }
+
+    private Table tableOf(long attemptId) {
+        return tables[(int) (mix(attemptId) >>> 59) & (STRIPES - 1)];
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * Linear probing long → header table with backward-shift deletion.
+     */
+    private static class Table {
+        private long[] keys = new long[16];
+        private AttemptHeader[] values = new AttemptHeader[16];
+        private int size;
+
+        private AttemptHeader get(long key) {
+            int mask = keys.length - 1;
+            for (int i = (int) mix(key) & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        private void put(long key, AttemptHeader value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = (int) mix(key) & mask;
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+
+        private void removeIf(Predicate<AttemptHeader> filter) {
+            int i = 0;
+            while (i < keys.length) {
+                if (values[i] != null && filter.test(values[i])) {
+                    removeAt(i);
+                } else {
+                    i++;
+                }
+            }
+        }
+
+        private void removeAt(int slot) {
+            int mask = keys.length - 1;
+            int gap = slot;
+            int i = (slot + 1) & mask;
+            while (values[i] != null) {
+                int home = (int) mix(keys[i]) & mask;
+                // move the entry into the gap unless its home slot lies cyclically between the gap and i
+                if (((i - home) & mask) >= ((i - gap) & mask)) {
+                    keys[gap] = keys[i];
+                    values[gap] = values[i];
+                    gap = i;
+                }
+                i = (i + 1) & mask;
+            }
+            values[gap] = null;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            AttemptHeader[] oldValues = values;
+            keys = new long[capacity];
+            values = new AttemptHeader[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private void clear() {
+            keys = new long[16];
+            values = new AttemptHeader[16];
+            size = 0;
+        }
+    }
+
+    public static class AttemptHeader {
+        private final long attemptId;
+        private final long examId;
+        private final String studentUsername;
+        private final AttemptStatus status;
+        private final Instant startedAt;
+
+        public AttemptHeader(long attemptId, long examId, String studentUsername, AttemptStatus status, Instant startedAt) {
+            this.attemptId = attemptId;
+            this.examId = examId;
+            this.studentUsername = studentUsername;
+            this.status = status;
+            this.startedAt = startedAt;
+        }
+
+        static AttemptHeader of(ExamAttempt attempt) {
+            return new AttemptHeader(
+                    attempt.getId(),
+                    attempt.getExamId(),
+                    attempt.getStudentUsername(),
+                    attempt.getStatus(),
+                    attempt.getStartedAt()
+            );
+        }
+
+        AttemptHeader withStatus(AttemptStatus newStatus) {
+            return new AttemptHeader(attemptId, examId, studentUsername, newStatus, startedAt);
+        }
+
+        public long getAttemptId() {
+            return attemptId;
+        }
+
+        public long getExamId() {
+            return examId;
+        }
+
+        public String getStudentUsername() {
+            return studentUsername;
+        }
+
+        public AttemptStatus getStatus() {
+            return status;
+        }
+
+        public Instant getStartedAt() {
+            return startedAt;
+        }
+    }
+}
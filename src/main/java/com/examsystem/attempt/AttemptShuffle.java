@@ -0,0 +1,136 @@
+package com.examsystem.attempt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Question and option order of one attempt, derived from a single seed instead of a stored permuted copy. The
+ * two low bits of the seed say whether questions and options are shuffled. Answers are stored and graded in the
+ * canonical option order; only what the student sees and sends is in shuffled order.
+ */
+public final class AttemptShuffle {
+    private static final long QUESTIONS = 1L;
+    private static final long OPTIONS = 2L;
+
+    private final long seed;
+
+    private AttemptShuffle(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * A fresh seed for a new attempt, or null when neither questions nor options are shuffled.
+     */
+    public static Long newSeed(boolean shuffleQuestions, boolean shuffleOptions) {
+        if (!shuffleQuestions && !shuffleOptions) {
+            return null;
+        }
+        long flags = (shuffleQuestions ? QUESTIONS : 0L) | (shuffleOptions ? OPTIONS : 0L);
+        return (ThreadLocalRandom.current().nextLong() & ~3L) | flags;
+    }
+
+    public static AttemptShuffle of(long seed) {
+        return new AttemptShuffle(seed);
+    }
+
+    /**
+     * The questions in the order and with the options this attempt shows them.
+     */
+    public List<QuestionSnapshot> present(List<QuestionSnapshot> canonical) {
+        int[] order = (seed & QUESTIONS) != 0 ? permutation(canonical.size(), seed) : identity(canonical.size());
+        List<QuestionSnapshot> shown = new ArrayList<>(canonical.size());
+        for (int index : order) {
+            QuestionSnapshot q = canonical.get(index);
+            int[] options = optionOrder(q);
+            if (options == null) {
+                shown.add(q);
+                continue;
+            }
+            List<String> shuffled = new ArrayList<>(options.length);
+            for (int option : options) {
+                shuffled.add(q.getOptions().get(option));
+            }
+            shown.add(new QuestionSnapshot(q.getId(), q.getType(), q.getStem(), shuffled, q.getScore()));
+        }
+        return shown;
+    }
+
+    /**
+     * Maps an answer given against the shown option letters back to the canonical letters. Tokens that are not an
+     * option letter are kept as they are.
+     */
+    public String toCanonical(QuestionSnapshot question, String answer) {
+        int[] options = optionOrder(question);
+        if (options == null) {
+            return answer;
+        }
+        return mapLetters(answer, options);
+    }
+
+    /**
+     * The inverse of {@link #toCanonical}: maps a stored answer to the option letters this attempt shows.
+     */
+    public String toPresented(QuestionSnapshot question, String answer) {
+        int[] options = optionOrder(question);
+        if (options == null) {
+            return answer;
+        }
+        int[] shownAt = new int[options.length];
+        for (int shown = 0; shown < options.length; shown++) {
+            shownAt[options[shown]] = shown;
+        }
+        return mapLetters(answer, shownAt);
+    }
+
+    private static String mapLetters(String answer, int[] letters) {
+        if (answer == null || answer.isEmpty()) {
+            return answer;
+        }
+        StringBuilder out = new StringBuilder(answer.length());
+        for (int i = 0; i < answer.length(); i++) {
+            char c = answer.charAt(i);
+            int from = c >= 'A' && c <= 'Z' ? c - 'A' : c >= 'a' && c <= 'z' ? c - 'a' : -1;
+            boolean standalone = (i == 0 || !Character.isLetterOrDigit(answer.charAt(i - 1)))
+                    && (i + 1 == answer.length() || !Character.isLetterOrDigit(answer.charAt(i + 1)));
+            if (from >= 0 && from < letters.length && standalone) {
+                out.append((char) ('A' + letters[from]));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    private int[] optionOrder(QuestionSnapshot q) {
+        if ((seed & OPTIONS) == 0 || q.getOptions() == null || q.getOptions().size() < 2) {
+            return null;
+        }
+        if (!"SINGLE_CHOICE".equals(q.getType()) && !"MULTIPLE_CHOICE".equals(q.getType())) {
+            return null;
+        }
+        // per question, so the option order does not depend on where the question is shown
+        return permutation(q.getOptions().size(), seed ^ (q.getId() * 0x9E3779B97F4A7C15L));
+    }
+
+    private static int[] permutation(int size, long seed) {
+        int[] order = identity(size);
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return order;
+    }
+
+    private static int[] identity(int size) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        return order;
+    }
+}
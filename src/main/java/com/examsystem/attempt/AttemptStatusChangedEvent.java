@@ -0,0 +1,23 @@
+package com.examsystem.attempt;
+
+/**
+ * Published by {@link InMemoryExamAttemptRepository} whenever an attempt is started, submitted, auto-submitted or
+ * reopened, inside the transaction that made the change.
+ */
+public class AttemptStatusChangedEvent {
+    private final long attemptId;
+    private final AttemptStatus status;
+
+    public AttemptStatusChangedEvent(long attemptId, AttemptStatus status) {
+        this.attemptId = attemptId;
+        this.status = status;
+    }
+
+    public long getAttemptId() {
+        return attemptId;
+    }
+
+    public AttemptStatus getStatus() {
+        return status;
+    }
+}
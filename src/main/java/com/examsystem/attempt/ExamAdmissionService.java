@@ -0,0 +1,415 @@
+package com.examsystem.attempt;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Per-exam admission control in front of {@link ExamAttemptService#start}. At most {@link #MAX_CONCURRENT_STARTS}
+ * starts of one exam run at a time; everyone else is put in a FIFO queue and answered right away with a queue
+ * position and ETA to poll with, so no worker thread is held while waiting. A queued student is admitted by the
+ * first poll that finds a free slot within their position.
+ * <p>
+ * Gates are looked up and changed inside the map's compute functions and removed as soon as nothing is in flight
+ * or queued. The admitted/queued/wait counters live in a separate map that outlives the gates, so the metrics still
+ * describe a rush after it is over; they are dropped once an exam has seen no admissions for {@link #COUNTERS_TTL}.
+ */
+@Service
+public class ExamAdmissionService {
+    static final int MAX_CONCURRENT_STARTS = 8;
+    static final Duration TICKET_TTL = Duration.ofSeconds(15);
+    static final Duration COUNTERS_TTL = Duration.ofHours(6);
+    private static final Duration PRUNE_INTERVAL = Duration.ofSeconds(1);
+    private static final long INITIAL_SERVICE_MILLIS = 50;
+
+    private final ConcurrentHashMap<Long, ExamGate> gates = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, ExamCounters> counters = new ConcurrentHashMap<>();
+
+    public Admission<ExamAttempt> admit(long examId, String username, Supplier<ExamAttempt> start) {
+        QueueStatus[] queued = new QueueStatus[1];
+        ExamCounters examCounters = counters.computeIfAbsent(examId, id -> new ExamCounters());
+        gates.compute(examId, (id, gate) -> {
+            ExamGate g = gate == null ? new ExamGate(examCounters) : gate;
+            queued[0] = g.acquire(username, Instant.now());
+            return g;
+        });
+        if (queued[0] != null) {
+            return Admission.queued(queued[0]);
+        }
+        long begin = System.nanoTime();
+        try {
+            return Admission.admitted(start.get());
+        } finally {
+            long serviceMillis = (System.nanoTime() - begin) / 1_000_000L;
+            gates.computeIfPresent(examId, (id, gate) -> {
+                gate.release(serviceMillis);
+                return gate.isIdle() ? null : gate;
+            });
+        }
+    }
+
+    public QueueStatus status(long examId, String username) {
+        QueueStatus[] status = {QueueStatus.notQueued()};
+        gates.computeIfPresent(examId, (id, gate) -> {
+            status[0] = gate.status(username, Instant.now());
+            return gate.isIdle() ? null : gate;
+        });
+        return status[0];
+    }
+
+    /**
+     * Drops gates whose queued students all stopped polling, and counters of exams that have been quiet for a while.
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdle() {
+        Instant now = Instant.now();
+        for (Long examId : gates.keySet()) {
+            gates.computeIfPresent(examId, (id, gate) -> {
+                gate.pruneExpired(now);
+                return gate.isIdle() ? null : gate;
+            });
+        }
+        Instant cutoff = now.minus(COUNTERS_TTL);
+        counters.entrySet().removeIf(e -> !gates.containsKey(e.getKey()) && e.getValue().lastActiveBefore(cutoff));
+    }
+
+    public AdmissionStats stats(long examId) {
+        ExamGate gate = gates.get(examId);
+        int queueDepth = 0;
+        int inFlight = 0;
+        if (gate != null) {
+            synchronized (gate) {
+                gate.pruneExpired(Instant.now());
+                queueDepth = gate.waiting.size();
+                inFlight = gate.inFlight;
+            }
+        }
+        ExamCounters examCounters = counters.get(examId);
+        if (examCounters == null) {
+            return new AdmissionStats(examId, queueDepth, inFlight, 0, 0, 0, 0, MAX_CONCURRENT_STARTS);
+        }
+        return examCounters.stats(examId, queueDepth, inFlight);
+    }
+
+    private static class ExamGate {
+        private final ExamCounters counters;
+        private final HashMap<String, Ticket> waiting = new HashMap<>();
+        private final QueueOrder order = new QueueOrder();
+        private int nextSeq;
+        private int inFlight;
+        private Instant nextPruneAt = Instant.MIN;
+
+        private ExamGate(ExamCounters counters) {
+            this.counters = counters;
+        }
+
+        /**
+         * Admits the student, or queues them and returns their place without waiting.
+         */
+        private synchronized QueueStatus acquire(String username, Instant now) {
+            if (!now.isBefore(nextPruneAt)) {
+                pruneExpired(now);
+            }
+            Ticket ticket = waiting.get(username);
+            if (ticket == null) {
+                if (waiting.isEmpty() && inFlight < MAX_CONCURRENT_STARTS) {
+                    inFlight++;
+                    counters.admitted(0, now);
+                    return null;
+                }
+                ticket = new Ticket(++nextSeq, now);
+                waiting.put(username, ticket);
+                order.add(ticket.seq, 1);
+            }
+            ticket.lastSeenAt = now;
+            if (order.rank(ticket.seq) <= MAX_CONCURRENT_STARTS - inFlight) {
+                dequeue(username, ticket);
+                inFlight++;
+                counters.admitted(Duration.between(ticket.enqueuedAt, now).toMillis(), now);
+                return null;
+            }
+            counters.queued();
+            return statusOf(ticket);
+        }
+
+        private synchronized void release(long serviceMillis) {
+            inFlight--;
+            counters.served(serviceMillis);
+        }
+
+        private synchronized boolean isIdle() {
+            return inFlight == 0 && waiting.isEmpty();
+        }
+
+        private synchronized QueueStatus status(String username, Instant now) {
+            if (!now.isBefore(nextPruneAt)) {
+                pruneExpired(now);
+            }
+            Ticket ticket = waiting.get(username);
+            if (ticket == null) {
+                return QueueStatus.notQueued();
+            }
+            ticket.lastSeenAt = now;
+            return statusOf(ticket);
+        }
+
+        private QueueStatus statusOf(Ticket ticket) {
+            int position = order.rank(ticket.seq);
+            long rounds = (position + MAX_CONCURRENT_STARTS - 1) / MAX_CONCURRENT_STARTS;
+            long etaMillis = Math.round(rounds * counters.avgServiceMillis());
+            return QueueStatus.queued(position, waiting.size(), etaMillis);
+        }
+
+        private void dequeue(String username, Ticket ticket) {
+            waiting.remove(username);
+            order.add(ticket.seq, -1);
+        }
+
+        /**
+         * Scans the whole queue, so polls only call it once per {@link #PRUNE_INTERVAL}.
+         */
+        private synchronized void pruneExpired(Instant now) {
+            nextPruneAt = now.plus(PRUNE_INTERVAL);
+            Instant cutoff = now.minus(TICKET_TTL);
+            Iterator<Ticket> it = waiting.values().iterator();
+            while (it.hasNext()) {
+                Ticket ticket = it.next();
+                if (ticket.lastSeenAt.isBefore(cutoff)) {
+                    it.remove();
+                    order.add(ticket.seq, -1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fenwick tree over ticket sequence numbers: a ticket's queue position is the number of live tickets at or
+     * before its sequence number, found in O(log n) without walking the queue.
+     */
+    private static class QueueOrder {
+        private int[] tree = new int[65];
+
+        private void add(int seq, int delta) {
+            while (seq >= tree.length) {
+                grow();
+            }
+            for (int i = seq; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        private int rank(int seq) {
+            int sum = 0;
+            for (int i = Math.min(seq, tree.length - 1); i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+
+        /**
+         * Doubles the capacity. The new top node covers every old slot and the others cover only new, empty slots,
+         * so nothing has to be recomputed.
+         */
+        private void grow() {
+            int size = tree.length - 1;
+            int[] grown = Arrays.copyOf(tree, size * 2 + 1);
+            grown[size * 2] = tree[size];
+            tree = grown;
+        }
+    }
+
+    private static class ExamCounters {
+        private long admittedTotal;
+        private long queuedResponses;
+        private long totalWaitMillis;
+        private long maxWaitMillis;
+        private double avgServiceMillis = INITIAL_SERVICE_MILLIS;
+        private Instant lastActiveAt = Instant.now();
+
+        private synchronized void admitted(long waitedMillis, Instant now) {
+            admittedTotal++;
+            totalWaitMillis += waitedMillis;
+            maxWaitMillis = Math.max(maxWaitMillis, waitedMillis);
+            lastActiveAt = now;
+        }
+
+        private synchronized void queued() {
+            queuedResponses++;
+        }
+
+        private synchronized void served(long serviceMillis) {
+            avgServiceMillis = avgServiceMillis * 0.8d + serviceMillis * 0.2d;
+        }
+
+        private synchronized double avgServiceMillis() {
+            return avgServiceMillis;
+        }
+
+        private synchronized boolean lastActiveBefore(Instant cutoff) {
+            return lastActiveAt.isBefore(cutoff);
+        }
+
+        private synchronized AdmissionStats stats(long examId, int queueDepth, int inFlight) {
+            long avgWait = admittedTotal == 0 ? 0 : totalWaitMillis / admittedTotal;
+            return new AdmissionStats(
+                    examId,
+                    queueDepth,
+                    inFlight,
+                    admittedTotal,
+                    queuedResponses,
+                    avgWait,
+                    maxWaitMillis,
+                    MAX_CONCURRENT_STARTS
+            );
+        }
+    }
+
+    private static class Ticket {
+        private final int seq;
+        private final Instant enqueuedAt;
+        private Instant lastSeenAt;
+
+        private Ticket(int seq, Instant enqueuedAt) {
+            this.seq = seq;
+            this.enqueuedAt = enqueuedAt;
+            this.lastSeenAt = enqueuedAt;
+        }
+    }
+
+    public static class Admission<T> {
+        private final T value;
+        private final QueueStatus queueStatus;
+
+        private Admission(T value, QueueStatus queueStatus) {
+            this.value = value;
+            this.queueStatus = queueStatus;
+        }
+
+        static <T> Admission<T> admitted(T value) {
+            return new Admission<>(value, null);
+        }
+
+        static <T> Admission<T> queued(QueueStatus queueStatus) {
+            return new Admission<>(null, queueStatus);
+        }
+
+        public boolean isAdmitted() {
+            return queueStatus == null;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public QueueStatus getQueueStatus() {
+            return queueStatus;
+        }
+    }
+
+    public static class QueueStatus {
+        private final boolean queued;
+        private final int position;
+        private final int queueDepth;
+        private final long etaMillis;
+
+        private QueueStatus(boolean queued, int position, int queueDepth, long etaMillis) {
+            this.queued = queued;
+            this.position = position;
+            this.queueDepth = queueDepth;
+            this.etaMillis = etaMillis;
+        }
+
+        static QueueStatus queued(int position, int queueDepth, long etaMillis) {
+            return new QueueStatus(true, position, queueDepth, etaMillis);
+        }
+
+        static QueueStatus notQueued() {
+            return new QueueStatus(false, 0, 0, 0);
+        }
+
+        public boolean isQueued() {
+            return queued;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public long getEtaMillis() {
+            return etaMillis;
+        }
+    }
+
+    public static class AdmissionStats {
+        private final long examId;
+        private final int queueDepth;
+        private final int inFlight;
+        private final long admittedTotal;
+        private final long queuedResponses;
+        private final long avgWaitMillis;
+        private final long maxWaitMillis;
+        private final int concurrencyLimit;
+
+        public AdmissionStats(
+                long examId,
+                int queueDepth,
+                int inFlight,
+                long admittedTotal,
+                long queuedResponses,
+                long avgWaitMillis,
+                long maxWaitMillis,
+                int concurrencyLimit
+        ) {
+            this.examId = examId;
+            this.queueDepth = queueDepth;
+            this.inFlight = inFlight;
+            this.admittedTotal = admittedTotal;
+            this.queuedResponses = queuedResponses;
+            this.avgWaitMillis = avgWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+            this.concurrencyLimit = concurrencyLimit;
+        }
+
+        public long getExamId() {
+            return examId;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public long getAdmittedTotal() {
+            return admittedTotal;
+        }
+
+        public long getQueuedResponses() {
+            return queuedResponses;
+        }
+
+        public long getAvgWaitMillis() {
+            return avgWaitMillis;
+        }
+
+        public long getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        public int getConcurrencyLimit() {
+            return concurrencyLimit;
+        }
+    }
+}
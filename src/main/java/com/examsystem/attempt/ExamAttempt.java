@@ -15,6 +15,7 @@ public class ExamAttempt {
     private final Instant submittedAt;
     private final Instant createdAt;
     private final Instant updatedAt;
+    private final Long shuffleSeed;
 
     public ExamAttempt(
             long id,
@@ -27,7 +28,8 @@ public class ExamAttempt {
             Instant startedAt,
             Instant submittedAt,
             Instant createdAt,
-            Instant updatedAt
+            Instant updatedAt,
+            Long shuffleSeed
     ) {
         this.id = id;
         this.examId = examId;
@@ -40,6 +42,7 @@ public class ExamAttempt {
         this.submittedAt = submittedAt;
         this.createdAt = createdAt;
         this.updatedAt = updatedAt;
+        this.shuffleSeed = shuffleSeed;
     }
 
     public long getId() {
@@ -85,5 +88,11 @@ public class ExamAttempt {
     public Instant getUpdatedAt() {
         return updatedAt;
     }
-}
 
+    /**
+     * Seed of the attempt's question and option order, or null when the attempt is not shuffled.
+     */
+    public Long getShuffleSeed() {
+        return shuffleSeed;
+    }
+}
@@ -1,22 +1,26 @@
 package com.examsystem.attempt;
 
+import com.examsystem.exam.AttemptDeadlineService;
 import com.examsystem.exam.ExamArrangement;
+import com.examsystem.exam.ExamMaintenanceService;
 import com.examsystem.exam.ExamService;
+import com.examsystem.exam.ExamSettings;
 import com.examsystem.exam.ExamStatus;
 import com.examsystem.paper.Paper;
-import com.examsystem.paper.PaperItem;
 import com.examsystem.paper.PaperService;
-import com.examsystem.question.Question;
-import com.examsystem.question.QuestionService;
-import com.examsystem.result.ExamResultService;
+import com.examsystem.result.GradingQueueService;
 import java.time.Instant;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 @Service
@@ -24,21 +28,33 @@ public class ExamAttemptService {
     private final InMemoryExamAttemptRepository repository;
     private final ExamService examService;
     private final PaperService paperService;
-    private final QuestionService questionService;
-    private final ExamResultService resultService;
+    private final PaperSnapshotService paperSnapshotService;
+    private final GradingQueueService gradingQueue;
+    private final AnswerAutosaveService autosaveService;
+    private final ExamMaintenanceService maintenanceService;
+    private final AttemptDeadlineService deadlineService;
+    private final TransactionTemplate transactionTemplate;
 
     public ExamAttemptService(
             InMemoryExamAttemptRepository repository,
             ExamService examService,
             PaperService paperService,
-            QuestionService questionService,
-            ExamResultService resultService
+            PaperSnapshotService paperSnapshotService,
+            GradingQueueService gradingQueue,
+            AnswerAutosaveService autosaveService,
+            ExamMaintenanceService maintenanceService,
+            AttemptDeadlineService deadlineService,
+            PlatformTransactionManager transactionManager
     ) {
         this.repository = repository;
         this.examService = examService;
         this.paperService = paperService;
-        this.questionService = questionService;
-        this.resultService = resultService;
+        this.paperSnapshotService = paperSnapshotService;
+        this.gradingQueue = gradingQueue;
+        this.autosaveService = autosaveService;
+        this.maintenanceService = maintenanceService;
+        this.deadlineService = deadlineService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     public List<ExamAttempt> listByStudent(String username) {
@@ -49,6 +65,14 @@ public class ExamAttemptService {
         return repository.findById(id);
     }
 
+    public Optional<AttemptHeaderIndex.AttemptHeader> findHeader(long id) {
+        return repository.findHeader(id);
+    }
+
+    public Optional<AttemptHeaderIndex.AttemptHeader> findLatestClosedHeader(long examId, String studentUsername) {
+        return repository.findLatestClosedHeader(examId, studentUsername);
+    }
+
     public ExamAttempt start(long examId, String studentUsername) {
         ExamArrangement exam = examService.findById(examId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "exam not found"));
@@ -57,41 +81,117 @@ public class ExamAttemptService {
         if (status != ExamStatus.IN_PROGRESS) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "exam not in progress");
         }
+        maintenanceService.track(exam);
 
         Optional<ExamAttempt> existing = repository.findActiveAttempt(examId, studentUsername);
         if (existing.isPresent()) {
+            deadlineService.track(existing.get(), exam);
             return existing.get();
         }
 
         Paper paper = paperService.findById(exam.getPaperId())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.CONFLICT, "paper not found"));
 
-        List<QuestionSnapshot> questions = paper.getItems().stream()
-                .sorted(java.util.Comparator.comparingInt(PaperItem::getOrderIndex))
-                .map(item -> {
-                    Question q = questionService.findById(item.getQuestionId())
-                            .orElseThrow(() -> new ResponseStatusException(
-                                    HttpStatus.CONFLICT,
-                                    "question not found: " + item.getQuestionId()
-                            ));
-                    return new QuestionSnapshot(
-                            q.getId(),
-                            q.getType().name(),
-                            q.getStem(),
-                            q.getOptions(),
-                            q.getScore()
-                    );
-                })
+        PaperVersion paperVersion = paperSnapshotService.snapshotOf(paper);
+        ExamSettings settings = examService.getSettingsOrDefault(exam.getId());
+        Long shuffleSeed = AttemptShuffle.newSeed(settings.isShuffleQuestions(), settings.isShuffleOptions());
+
+        ExamAttempt created = repository.create(exam.getId(), paper.getId(), paperVersion, studentUsername, shuffleSeed);
+        deadlineService.track(created, exam);
+        return created;
+    }
+
+    /**
+     * The attempt's questions in the order and option order the student sees.
+     */
+    public List<QuestionSnapshot> presentedQuestions(ExamAttempt attempt) {
+        if (attempt.getShuffleSeed() == null) {
+            return attempt.getQuestions();
+        }
+        return AttemptShuffle.of(attempt.getShuffleSeed()).present(attempt.getQuestions());
+    }
+
+    /**
+     * The answers saved so far, including buffered autosaves, in the option letters the student sees; lets a
+     * resumed attempt pick up where it was left on another device.
+     */
+    public List<AnswerRecord> presentedAnswers(ExamAttempt attempt) {
+        autosaveService.flush(attempt.getId());
+        List<AnswerRecord> saved = repository.listAnswers(attempt.getId());
+        if (attempt.getShuffleSeed() == null) {
+            return saved;
+        }
+        AttemptShuffle shuffle = AttemptShuffle.of(attempt.getShuffleSeed());
+        Map<Long, QuestionSnapshot> questionById = attempt.getQuestions().stream()
+                .collect(Collectors.toMap(QuestionSnapshot::getId, q -> q, (a, b) -> a));
+        return saved.stream()
+                .filter(a -> questionById.containsKey(a.getQuestionId()))
+                .map(a -> new AnswerRecord(a.getQuestionId(), shuffle.toPresented(questionById.get(a.getQuestionId()), a.getAnswer())))
                 .collect(Collectors.toList());
+    }
+
+    public int saveAnswers(ExamArrangement exam, long attemptId, String studentUsername, List<AnswerRecord> answers) {
+        ExamAttempt attempt = requireOpenAttempt(exam, attemptId, studentUsername);
+        validateAnswers(attempt, answers);
+        return autosaveService.save(attemptId, toCanonical(attempt, answers));
+    }
 
-        return repository.create(exam.getId(), paper.getId(), studentUsername, questions);
+    /**
+     * Validates against the cached paper version and writes status and answers in one transaction; grading happens
+     * on the grading queue after commit. The returned attempt is built in memory instead of being re-read.
+     * Buffered autosaves are flushed first, before the submit's transaction opens: a submit that is then rejected
+     * does not take them down with its rollback, the attempt read sees them, and no connection is held while the
+     * flush waits for its own.
+     */
+    public ExamAttempt submit(ExamArrangement exam, long attemptId, String studentUsername, List<AnswerRecord> answers) {
+        validateAnswerIds(answers);
+        autosaveService.flush(attemptId);
+        return transactionTemplate.execute(status -> submitFlushed(exam, attemptId, studentUsername, answers));
     }
 
-    public ExamAttempt submit(long examId, long attemptId, String studentUsername, List<AnswerRecord> answers) {
+    private ExamAttempt submitFlushed(ExamArrangement exam, long attemptId, String studentUsername, List<AnswerRecord> answers) {
+        ExamAttempt attempt = requireOpenAttempt(exam, attemptId, studentUsername);
+        validateAnswers(attempt, answers);
+
+        Map<Long, String> merged = new LinkedHashMap<>();
+        for (AnswerRecord saved : attempt.getAnswers()) {
+            merged.put(saved.getQuestionId(), saved.getAnswer());
+        }
+        // questions left out of the request keep their saved answer; an empty answer sent for one clears it
+        for (AnswerRecord answer : toCanonical(attempt, answers)) {
+            merged.put(answer.getQuestionId(), answer.getAnswer());
+        }
+        List<AnswerRecord> finalAnswers = merged.entrySet().stream()
+                .map(e -> new AnswerRecord(e.getKey(), e.getValue()))
+                .collect(Collectors.toList());
+
+        Instant now = Instant.now();
+        if (!repository.markSubmitted(attemptId, now, finalAnswers, !attempt.getAnswers().isEmpty())) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "attempt already submitted");
+        }
+        gradingQueue.enqueue(attemptId);
+        deadlineService.cancel(attemptId);
+        return new ExamAttempt(
+                attempt.getId(),
+                attempt.getExamId(),
+                attempt.getPaperId(),
+                attempt.getStudentUsername(),
+                AttemptStatus.SUBMITTED,
+                attempt.getQuestions(),
+                finalAnswers,
+                attempt.getStartedAt(),
+                now,
+                attempt.getCreatedAt(),
+                now,
+                attempt.getShuffleSeed()
+        );
+    }
+
+    private ExamAttempt requireOpenAttempt(ExamArrangement exam, long attemptId, String studentUsername) {
         ExamAttempt attempt = repository.findById(attemptId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "attempt not found"));
 
-        if (attempt.getExamId() != examId) {
+        if (attempt.getExamId() != exam.getId()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "attempt does not belong to exam");
         }
         if (!attempt.getStudentUsername().equals(studentUsername)) {
@@ -101,13 +201,38 @@ public class ExamAttemptService {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "attempt already submitted");
         }
 
-        ExamArrangement exam = examService.findById(examId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "exam not found"));
         ExamStatus status = examService.statusOf(exam, Instant.now());
         if (status != ExamStatus.IN_PROGRESS) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "exam not in progress");
         }
+        return attempt;
+    }
 
+    private List<AnswerRecord> toCanonical(ExamAttempt attempt, List<AnswerRecord> answers) {
+        if (attempt.getShuffleSeed() == null) {
+            return answers;
+        }
+        AttemptShuffle shuffle = AttemptShuffle.of(attempt.getShuffleSeed());
+        Map<Long, QuestionSnapshot> questionById = attempt.getQuestions().stream()
+                .collect(Collectors.toMap(QuestionSnapshot::getId, q -> q, (a, b) -> a));
+        return answers.stream()
+                .map(a -> new AnswerRecord(a.getQuestionId(), shuffle.toCanonical(questionById.get(a.getQuestionId()), a.getAnswer())))
+                .collect(Collectors.toList());
+    }
+
+    private void validateAnswerIds(List<AnswerRecord> answers) {
+        Set<Long> seen = new HashSet<>();
+        for (AnswerRecord answer : answers) {
+            if (answer.getQuestionId() <= 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid questionId in answers");
+            }
+            if (!seen.add(answer.getQuestionId())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "duplicate questionId in answers");
+            }
+        }
+    }
+
+    private void validateAnswers(ExamAttempt attempt, List<AnswerRecord> answers) {
         Set<Long> allowedQuestionIds = attempt.getQuestions().stream().map(QuestionSnapshot::getId).collect(Collectors.toSet());
         Set<Long> seen = new HashSet<>();
         for (AnswerRecord answer : answers) {
@@ -121,10 +246,5 @@ public class ExamAttemptService {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "duplicate questionId in answers");
             }
         }
-
-        ExamAttempt submitted = repository.submit(attemptId, answers)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "attempt not found"));
-        resultService.ensureResultCreated(examId, submitted);
-        return submitted;
     }
 }
@@ -1,11 +1,17 @@
 package com.examsystem.attempt;
 
+import com.examsystem.exam.ExamSummaryRepository;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
@@ -16,115 +22,154 @@ import org.springframework.transaction.annotation.Transactional;
 @Repository
 public class InMemoryExamAttemptRepository {
     private static final TypeReference<List<String>> STRING_LIST = new TypeReference<List<String>>() {};
+    private static final String ATTEMPT_COLUMNS =
+            "id, exam_id, paper_id, paper_version_id, shuffle_seed, student_username, status, started_at, submitted_at, created_at, updated_at";
+    private static final String HEADER_COLUMNS = "id, exam_id, student_username, status, started_at";
 
     private final JdbcTemplate jdbcTemplate;
     private final ObjectMapper objectMapper;
+    private final QuestionSnapshotRepository questionSnapshotRepository;
+    private final AttemptHeaderIndex headerIndex;
+    private final ApplicationEventPublisher events;
+    private final ExamSummaryRepository summaries;
 
-    public InMemoryExamAttemptRepository(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+    public InMemoryExamAttemptRepository(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            QuestionSnapshotRepository questionSnapshotRepository,
+            AttemptHeaderIndex headerIndex,
+            ApplicationEventPublisher events,
+            ExamSummaryRepository summaries
+    ) {
         this.jdbcTemplate = jdbcTemplate;
         this.objectMapper = objectMapper;
+        this.questionSnapshotRepository = questionSnapshotRepository;
+        this.headerIndex = headerIndex;
+        this.events = events;
+        this.summaries = summaries;
     }
 
     @Transactional
-    public ExamAttempt create(long examId, long paperId, String studentUsername, List<QuestionSnapshot> questions) {
+    public ExamAttempt create(long examId, long paperId, PaperVersion paperVersion, String studentUsername, Long shuffleSeed) {
         Instant now = Instant.now();
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbcTemplate.update(connection -> {
             java.sql.PreparedStatement ps = connection.prepareStatement(
-                    "INSERT INTO exam_attempts(exam_id, paper_id, student_username, status, started_at, submitted_at, created_at, updated_at) "
-                            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                    "INSERT INTO exam_attempts(exam_id, paper_id, paper_version_id, shuffle_seed, student_username, status, started_at, submitted_at, created_at, updated_at) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
                     java.sql.Statement.RETURN_GENERATED_KEYS
             );
             ps.setLong(1, examId);
             ps.setLong(2, paperId);
-            ps.setString(3, studentUsername);
-            ps.setString(4, AttemptStatus.IN_PROGRESS.name());
-            ps.setTimestamp(5, java.sql.Timestamp.from(now));
-            ps.setTimestamp(6, null);
+            ps.setLong(3, paperVersion.getId());
+            if (shuffleSeed == null) {
+                ps.setNull(4, java.sql.Types.BIGINT);
+            } else {
+                ps.setLong(4, shuffleSeed);
+            }
+            ps.setString(5, studentUsername);
+            ps.setString(6, AttemptStatus.IN_PROGRESS.name());
             ps.setTimestamp(7, java.sql.Timestamp.from(now));
-            ps.setTimestamp(8, java.sql.Timestamp.from(now));
+            ps.setTimestamp(8, null);
+            ps.setTimestamp(9, java.sql.Timestamp.from(now));
+            ps.setTimestamp(10, java.sql.Timestamp.from(now));
             return ps;
         }, keyHolder);
         long id = keyHolder.getKey().longValue();
+        summaries.attemptStarted(examId);
 
-        List<QuestionSnapshot> safeQuestions = questions == null ? List.of() : questions;
-        if (!safeQuestions.isEmpty()) {
-            List<QuestionSnapshotWithOrder> rows = new ArrayList<>();
-            for (int i = 0; i < safeQuestions.size(); i++) {
-                rows.add(new QuestionSnapshotWithOrder(safeQuestions.get(i), i + 1));
-            }
-            jdbcTemplate.batchUpdate(
-                    "INSERT INTO exam_attempt_questions(attempt_id, question_id, question_type, stem, options_json, score, order_index) "
-                            + "VALUES (?, ?, ?, ?, ?, ?, ?)",
-                    rows,
-                    rows.size(),
-                    (ps, row) -> {
-                        QuestionSnapshot q = row.snapshot;
-                        ps.setLong(1, id);
-                        ps.setLong(2, q.getId());
-                        ps.setString(3, q.getType());
-                        ps.setString(4, q.getStem());
-                        ps.setString(5, writeOptionsJson(q.getOptions()));
-                        ps.setInt(6, q.getScore());
-                        ps.setInt(7, row.orderIndex);
-                    }
-            );
-        }
-
+        List<QuestionSnapshot> questions = paperVersion.getQuestions();
         ExamAttempt attempt = new ExamAttempt(
                 id,
                 examId,
                 paperId,
                 studentUsername,
                 AttemptStatus.IN_PROGRESS,
-                new ArrayList<>(safeQuestions),
+                new ArrayList<>(questions),
                 List.of(),
                 now,
                 null,
                 now,
-                now
+                now,
+                shuffleSeed
         );
+        headerIndex.put(AttemptHeaderIndex.AttemptHeader.of(attempt));
+        events.publishEvent(new AttemptStatusChangedEvent(id, AttemptStatus.IN_PROGRESS));
         return attempt;
     }
 
+    /**
+     * Exam, owner and status of an attempt without its questions and answers, served from the header index.
+     */
+    public Optional<AttemptHeaderIndex.AttemptHeader> findHeader(long id) {
+        return headerIndex.get(id, this::loadHeader);
+    }
+
+    private Optional<AttemptHeaderIndex.AttemptHeader> loadHeader(long id) {
+        try {
+            return Optional.ofNullable(jdbcTemplate.queryForObject(
+                    "SELECT " + HEADER_COLUMNS + " FROM exam_attempts WHERE id = ?",
+                    (rs, rowNum) -> mapHeader(rs),
+                    id
+            ));
+        } catch (EmptyResultDataAccessException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Headers of every attempt of an exam, read straight from the table; they are not put into the header index, so
+     * a status changed meanwhile is not overwritten there.
+     */
+    public List<AttemptHeaderIndex.AttemptHeader> listHeadersByExamId(long examId) {
+        return jdbcTemplate.query(
+                "SELECT " + HEADER_COLUMNS + " FROM exam_attempts WHERE exam_id = ?",
+                (rs, rowNum) -> mapHeader(rs),
+                examId
+        );
+    }
+
+    /**
+     * Header of the student's latest attempt at the exam that is no longer in progress.
+     */
+    public Optional<AttemptHeaderIndex.AttemptHeader> findLatestClosedHeader(long examId, String studentUsername) {
+        List<AttemptHeaderIndex.AttemptHeader> rows = jdbcTemplate.query(
+                "SELECT " + HEADER_COLUMNS + " FROM exam_attempts WHERE exam_id = ? AND student_username = ? "
+                        + "AND status <> ? ORDER BY id DESC LIMIT 1",
+                (rs, rowNum) -> mapHeader(rs),
+                examId,
+                studentUsername,
+                AttemptStatus.IN_PROGRESS.name()
+        );
+        return rows.stream().findFirst();
+    }
+
+    private static AttemptHeaderIndex.AttemptHeader mapHeader(java.sql.ResultSet rs) throws java.sql.SQLException {
+        return new AttemptHeaderIndex.AttemptHeader(
+                rs.getLong("id"),
+                rs.getLong("exam_id"),
+                rs.getString("student_username"),
+                AttemptStatus.valueOf(rs.getString("status")),
+                rs.getTimestamp("started_at").toInstant()
+        );
+    }
+
     public Optional<ExamAttempt> findById(long id) {
         try {
             AttemptRow attempt = jdbcTemplate.queryForObject(
-                    "SELECT id, exam_id, paper_id, student_username, status, started_at, submitted_at, created_at, updated_at FROM exam_attempts WHERE id = ?",
-                    (rs, rowNum) -> new AttemptRow(
-                            rs.getLong("id"),
-                            rs.getLong("exam_id"),
-                            rs.getLong("paper_id"),
-                            rs.getString("student_username"),
-                            AttemptStatus.valueOf(rs.getString("status")),
-                            rs.getTimestamp("started_at").toInstant(),
-                            rs.getTimestamp("submitted_at") == null ? null : rs.getTimestamp("submitted_at").toInstant(),
-                            rs.getTimestamp("created_at").toInstant(),
-                            rs.getTimestamp("updated_at").toInstant()
-                    ),
+                    "SELECT " + ATTEMPT_COLUMNS + " FROM exam_attempts WHERE id = ?",
+                    (rs, rowNum) -> mapAttemptRow(rs),
                     id
             );
             if (attempt == null) {
                 return Optional.empty();
             }
 
-            List<QuestionSnapshot> questions = jdbcTemplate.query(
-                    "SELECT question_id, question_type, stem, options_json, score FROM exam_attempt_questions WHERE attempt_id = ? ORDER BY order_index ASC",
-                    (rs, rowNum) -> new QuestionSnapshot(
-                            rs.getLong("question_id"),
-                            rs.getString("question_type"),
-                            rs.getString("stem"),
-                            readOptionsJson(rs.getString("options_json")),
-                            rs.getInt("score")
-                    ),
-                    id
-            );
+            List<QuestionSnapshot> questions = attempt.paperVersionId != null
+                    ? questionSnapshotRepository.loadPaperVersion(attempt.paperVersionId)
+                    : loadLegacyQuestions(id);
 
-            List<AnswerRecord> answers = jdbcTemplate.query(
-                    "SELECT question_id, answer FROM exam_attempt_answers WHERE attempt_id = ? ORDER BY question_id ASC",
-                    (rs, rowNum) -> new AnswerRecord(rs.getLong("question_id"), rs.getString("answer")),
-                    id
-            );
+            List<AnswerRecord> answers = listAnswers(id);
 
             return Optional.of(new ExamAttempt(
                     attempt.id,
@@ -137,13 +182,95 @@ public class InMemoryExamAttemptRepository {
                     attempt.startedAt,
                     attempt.submittedAt,
                     attempt.createdAt,
-                    attempt.updatedAt
+                    attempt.updatedAt,
+                    attempt.shuffleSeed
             ));
         } catch (EmptyResultDataAccessException e) {
             return Optional.empty();
         }
     }
 
+    /**
+     * Loads submitted attempts with questions and answers for grading: one query for the attempt rows and one for
+     * all of their answers, questions come from the paper version cache.
+     */
+    public List<ExamAttempt> listForGrading(List<Long> attemptIds) {
+        if (attemptIds.isEmpty()) {
+            return List.of();
+        }
+        String placeholders = attemptIds.stream().map(x -> "?").collect(Collectors.joining(","));
+        List<AttemptRow> rows = jdbcTemplate.query(
+                "SELECT " + ATTEMPT_COLUMNS + " FROM exam_attempts WHERE id IN (" + placeholders + ") AND status <> ?",
+                (rs, rowNum) -> mapAttemptRow(rs),
+                Stream.concat(attemptIds.stream(), Stream.of(AttemptStatus.IN_PROGRESS.name())).toArray()
+        );
+        Map<Long, List<AnswerRecord>> answersByAttempt = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT attempt_id, question_id, answer FROM exam_attempt_answers WHERE attempt_id IN (" + placeholders + ")",
+                rs -> {
+                    answersByAttempt.computeIfAbsent(rs.getLong("attempt_id"), k -> new ArrayList<>())
+                            .add(new AnswerRecord(rs.getLong("question_id"), rs.getString("answer")));
+                },
+                attemptIds.toArray()
+        );
+        List<ExamAttempt> attempts = new ArrayList<>(rows.size());
+        for (AttemptRow r : rows) {
+            List<QuestionSnapshot> questions = r.paperVersionId != null
+                    ? questionSnapshotRepository.loadPaperVersion(r.paperVersionId)
+                    : loadLegacyQuestions(r.id);
+            attempts.add(new ExamAttempt(
+                    r.id,
+                    r.examId,
+                    r.paperId,
+                    r.studentUsername,
+                    r.status,
+                    questions,
+                    answersByAttempt.getOrDefault(r.id, List.of()),
+                    r.startedAt,
+                    r.submittedAt,
+                    r.createdAt,
+                    r.updatedAt,
+                    r.shuffleSeed
+            ));
+        }
+        return attempts;
+    }
+
+    /**
+     * Ids of submitted attempts that have no result yet, oldest first. This is the durable form of the grading queue.
+     */
+    public List<Long> listUngradedIds(int limit) {
+        return jdbcTemplate.queryForList(
+                "SELECT a.id FROM exam_attempts a LEFT JOIN exam_results r ON r.attempt_id = a.id "
+                        + "WHERE a.status <> ? AND r.id IS NULL ORDER BY a.submitted_at ASC, a.id ASC LIMIT ?",
+                Long.class,
+                AttemptStatus.IN_PROGRESS.name(),
+                limit
+        );
+    }
+
+    public List<AnswerRecord> listAnswers(long attemptId) {
+        return jdbcTemplate.query(
+                "SELECT question_id, answer FROM exam_attempt_answers WHERE attempt_id = ? ORDER BY question_id ASC",
+                (rs, rowNum) -> new AnswerRecord(rs.getLong("question_id"), rs.getString("answer")),
+                attemptId
+        );
+    }
+
+    private List<QuestionSnapshot> loadLegacyQuestions(long attemptId) {
+        return jdbcTemplate.query(
+                "SELECT question_id, question_type, stem, options_json, score FROM exam_attempt_questions WHERE attempt_id = ? ORDER BY order_index ASC",
+                (rs, rowNum) -> new QuestionSnapshot(
+                        rs.getLong("question_id"),
+                        rs.getString("question_type"),
+                        rs.getString("stem"),
+                        readOptionsJson(rs.getString("options_json")),
+                        rs.getInt("score")
+                ),
+                attemptId
+        );
+    }
+
     public Optional<ExamAttempt> findActiveAttempt(long examId, String studentUsername) {
         try {
             Long id = jdbcTemplate.queryForObject(
@@ -162,27 +289,32 @@ public class InMemoryExamAttemptRepository {
         }
     }
 
-    @Transactional
-    public Optional<ExamAttempt> submit(long attemptId, List<AnswerRecord> answers) {
-        Instant now = Instant.now();
+    /**
+     * Marks an in-progress attempt submitted and stores its final answers without reloading it. Returns false if
+     * the attempt was no longer in progress. Runs in the caller's transaction.
+     */
+    public boolean markSubmitted(long attemptId, Instant submittedAt, List<AnswerRecord> answers, boolean replaceExisting) {
         int updated = jdbcTemplate.update(
-                "UPDATE exam_attempts SET status = ?, submitted_at = ?, updated_at = ? WHERE id = ?",
+                "UPDATE exam_attempts SET status = ?, submitted_at = ?, updated_at = ? WHERE id = ? AND status = ?",
                 AttemptStatus.SUBMITTED.name(),
-                java.sql.Timestamp.from(now),
-                java.sql.Timestamp.from(now),
-                attemptId
+                java.sql.Timestamp.from(submittedAt),
+                java.sql.Timestamp.from(submittedAt),
+                attemptId,
+                AttemptStatus.IN_PROGRESS.name()
         );
         if (updated == 0) {
-            return Optional.empty();
+            return false;
         }
-
-        jdbcTemplate.update("DELETE FROM exam_attempt_answers WHERE attempt_id = ?", attemptId);
-        List<AnswerRecord> safeAnswers = answers == null ? List.of() : answers;
-        if (!safeAnswers.isEmpty()) {
+        summaries.attemptSubmitted(attemptId);
+        statusChanged(attemptId, AttemptStatus.SUBMITTED);
+        if (replaceExisting) {
+            jdbcTemplate.update("DELETE FROM exam_attempt_answers WHERE attempt_id = ?", attemptId);
+        }
+        if (!answers.isEmpty()) {
             jdbcTemplate.batchUpdate(
                     "INSERT INTO exam_attempt_answers(attempt_id, question_id, answer) VALUES (?, ?, ?)",
-                    safeAnswers,
-                    safeAnswers.size(),
+                    answers,
+                    answers.size(),
                     (ps, a) -> {
                         ps.setLong(1, attemptId);
                         ps.setLong(2, a.getQuestionId());
@@ -190,7 +322,7 @@ public class InMemoryExamAttemptRepository {
                     }
             );
         }
-        return findById(attemptId);
+        return true;
     }
 
     @Transactional
@@ -207,6 +339,8 @@ public class InMemoryExamAttemptRepository {
         if (updated == 0) {
             return Optional.empty();
         }
+        summaries.attemptSubmitted(attemptId);
+        statusChanged(attemptId, AttemptStatus.SUBMITTED);
         jdbcTemplate.update("DELETE FROM exam_attempt_answers WHERE attempt_id = ?", attemptId);
         List<AnswerRecord> safeAnswers = answers == null ? List.of() : answers;
         if (!safeAnswers.isEmpty()) {
@@ -238,6 +372,8 @@ public class InMemoryExamAttemptRepository {
         if (updated == 0) {
             return Optional.empty();
         }
+        summaries.attemptSubmitted(attemptId);
+        statusChanged(attemptId, AttemptStatus.AUTO_SUBMITTED);
         return findById(attemptId).filter(a -> a.getStatus() == AttemptStatus.AUTO_SUBMITTED);
     }
 
@@ -255,24 +391,15 @@ public class InMemoryExamAttemptRepository {
         if (updated == 0) {
             return Optional.empty();
         }
+        summaries.attemptReopened(attemptId);
+        statusChanged(attemptId, AttemptStatus.IN_PROGRESS);
         return findById(attemptId).filter(a -> a.getStatus() == AttemptStatus.IN_PROGRESS);
     }
 
     public List<ExamAttempt> listByExamId(long examId) {
         List<AttemptRow> rows = jdbcTemplate.query(
-                "SELECT id, exam_id, paper_id, student_username, status, started_at, submitted_at, created_at, updated_at "
-                        + "FROM exam_attempts WHERE exam_id = ? ORDER BY id DESC",
-                (rs, rowNum) -> new AttemptRow(
-                        rs.getLong("id"),
-                        rs.getLong("exam_id"),
-                        rs.getLong("paper_id"),
-                        rs.getString("student_username"),
-                        AttemptStatus.valueOf(rs.getString("status")),
-                        rs.getTimestamp("started_at").toInstant(),
-                        rs.getTimestamp("submitted_at") == null ? null : rs.getTimestamp("submitted_at").toInstant(),
-                        rs.getTimestamp("created_at").toInstant(),
-                        rs.getTimestamp("updated_at").toInstant()
-                ),
+                "SELECT " + ATTEMPT_COLUMNS + " FROM exam_attempts WHERE exam_id = ? ORDER BY id DESC",
+                (rs, rowNum) -> mapAttemptRow(rs),
                 examId
         );
         return rows.stream().map(r -> new ExamAttempt(
@@ -286,25 +413,15 @@ public class InMemoryExamAttemptRepository {
                 r.startedAt,
                 r.submittedAt,
                 r.createdAt,
-                r.updatedAt
+                r.updatedAt,
+                r.shuffleSeed
         )).collect(java.util.stream.Collectors.toList());
     }
 
     public List<ExamAttempt> listByStudent(String username) {
         List<AttemptRow> rows = jdbcTemplate.query(
-                "SELECT id, exam_id, paper_id, student_username, status, started_at, submitted_at, created_at, updated_at "
-                        + "FROM exam_attempts WHERE student_username = ? ORDER BY id DESC",
-                (rs, rowNum) -> new AttemptRow(
-                        rs.getLong("id"),
-                        rs.getLong("exam_id"),
-                        rs.getLong("paper_id"),
-                        rs.getString("student_username"),
-                        AttemptStatus.valueOf(rs.getString("status")),
-                        rs.getTimestamp("started_at").toInstant(),
-                        rs.getTimestamp("submitted_at") == null ? null : rs.getTimestamp("submitted_at").toInstant(),
-                        rs.getTimestamp("created_at").toInstant(),
-                        rs.getTimestamp("updated_at").toInstant()
-                ),
+                "SELECT " + ATTEMPT_COLUMNS + " FROM exam_attempts WHERE student_username = ? ORDER BY id DESC",
+                (rs, rowNum) -> mapAttemptRow(rs),
                 username
         );
         return rows.stream().map(r -> new ExamAttempt(
@@ -318,49 +435,146 @@ public class InMemoryExamAttemptRepository {
                 r.startedAt,
                 r.submittedAt,
                 r.createdAt,
-                r.updatedAt
+                r.updatedAt,
+                r.shuffleSeed
         )).collect(java.util.stream.Collectors.toList());
     }
 
-    public List<ExamAttempt> listInProgressAttempts() {
-        List<AttemptRow> rows = jdbcTemplate.query(
-                "SELECT id, exam_id, paper_id, student_username, status, started_at, submitted_at, created_at, updated_at "
-                        + "FROM exam_attempts WHERE status = ? ORDER BY id DESC",
-                (rs, rowNum) -> new AttemptRow(
+    /**
+     * End time of every exam that still has an attempt in progress, keyed by exam id.
+     */
+    public Map<Long, Instant> listOpenAttemptDeadlines() {
+        Map<Long, Instant> deadlines = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT e.id, e.end_at FROM exams e WHERE EXISTS "
+                        + "(SELECT 1 FROM exam_attempts a WHERE a.exam_id = e.id AND a.status = ?)",
+                rs -> {
+                    deadlines.put(rs.getLong("id"), rs.getTimestamp("end_at").toInstant());
+                },
+                AttemptStatus.IN_PROGRESS.name()
+        );
+        return deadlines;
+    }
+
+    public List<Long> listInProgressIdsByExamId(long examId) {
+        return jdbcTemplate.queryForList(
+                "SELECT id FROM exam_attempts WHERE exam_id = ? AND status = ? ORDER BY id ASC",
+                Long.class,
+                examId,
+                AttemptStatus.IN_PROGRESS.name()
+        );
+    }
+
+    /**
+     * Auto-submits every attempt of an exam that is still in progress with one UPDATE and returns their ids.
+     */
+    @Transactional
+    public List<Long> autoSubmitInProgressByExamId(long examId, Instant submittedAt) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM exam_attempts WHERE exam_id = ? AND status = ? ORDER BY id ASC FOR UPDATE",
+                Long.class,
+                examId,
+                AttemptStatus.IN_PROGRESS.name()
+        );
+        if (ids.isEmpty()) {
+            return ids;
+        }
+        jdbcTemplate.update(
+                "UPDATE exam_attempts SET status = ?, submitted_at = ?, updated_at = ? WHERE exam_id = ? AND status = ?",
+                AttemptStatus.AUTO_SUBMITTED.name(),
+                java.sql.Timestamp.from(submittedAt),
+                java.sql.Timestamp.from(submittedAt),
+                examId,
+                AttemptStatus.IN_PROGRESS.name()
+        );
+        summaries.attemptsSubmitted(examId, ids.size());
+        for (long id : ids) {
+            statusChanged(id, AttemptStatus.AUTO_SUBMITTED);
+        }
+        return ids;
+    }
+
+    /**
+     * Start and exam end times of in-progress attempts, of one exam or of all exams when {@code examId} is null.
+     */
+    public List<OpenAttempt> listOpenAttempts(Long examId) {
+        String sql = "SELECT a.id, a.exam_id, a.started_at, a.updated_at, e.end_at FROM exam_attempts a "
+                + "JOIN exams e ON e.id = a.exam_id WHERE a.status = ?";
+        Object[] args = examId == null
+                ? new Object[] { AttemptStatus.IN_PROGRESS.name() }
+                : new Object[] { AttemptStatus.IN_PROGRESS.name(), examId };
+        return jdbcTemplate.query(
+                examId == null ? sql : sql + " AND a.exam_id = ?",
+                (rs, rowNum) -> new OpenAttempt(
                         rs.getLong("id"),
                         rs.getLong("exam_id"),
-                        rs.getLong("paper_id"),
-                        rs.getString("student_username"),
-                        AttemptStatus.valueOf(rs.getString("status")),
                         rs.getTimestamp("started_at").toInstant(),
-                        rs.getTimestamp("submitted_at") == null ? null : rs.getTimestamp("submitted_at").toInstant(),
-                        rs.getTimestamp("created_at").toInstant(),
-                        rs.getTimestamp("updated_at").toInstant()
+                        rs.getTimestamp("updated_at").toInstant(),
+                        rs.getTimestamp("end_at").toInstant()
                 ),
-                AttemptStatus.IN_PROGRESS.name()
+                args
         );
-        return rows.stream().map(r -> new ExamAttempt(
-                r.id,
-                r.examId,
-                r.paperId,
-                r.studentUsername,
-                r.status,
-                List.of(),
-                List.of(),
-                r.startedAt,
-                r.submittedAt,
-                r.createdAt,
-                r.updatedAt
-        )).collect(java.util.stream.Collectors.toList());
     }
 
-    private String writeOptionsJson(List<String> options) {
-        try {
-            List<String> safe = options == null ? List.of() : options;
-            return objectMapper.writeValueAsString(safe);
-        } catch (Exception e) {
-            throw new IllegalStateException("failed to serialize options", e);
+    /**
+     * Auto-submits the given attempts that are still in progress with one UPDATE and returns the ids it closed.
+     */
+    @Transactional
+    public List<Long> autoSubmitInProgressByIds(List<Long> attemptIds, Instant submittedAt) {
+        if (attemptIds.isEmpty()) {
+            return List.of();
         }
+        String placeholders = attemptIds.stream().map(x -> "?").collect(Collectors.joining(","));
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM exam_attempts WHERE id IN (" + placeholders + ") AND status = ? ORDER BY id ASC FOR UPDATE",
+                Long.class,
+                Stream.concat(attemptIds.stream(), Stream.of(AttemptStatus.IN_PROGRESS.name())).toArray()
+        );
+        if (ids.isEmpty()) {
+            return ids;
+        }
+        String locked = ids.stream().map(x -> "?").collect(Collectors.joining(","));
+        jdbcTemplate.update(
+                "UPDATE exam_attempts SET status = ?, submitted_at = ?, updated_at = ? WHERE id IN (" + locked + ")",
+                Stream.concat(
+                        Stream.of(
+                                AttemptStatus.AUTO_SUBMITTED.name(),
+                                java.sql.Timestamp.from(submittedAt),
+                                java.sql.Timestamp.from(submittedAt)
+                        ),
+                        ids.stream()
+                ).toArray()
+        );
+        summaries.attemptsSubmitted(ids);
+        for (long id : ids) {
+            statusChanged(id, AttemptStatus.AUTO_SUBMITTED);
+        }
+        return ids;
+    }
+
+    private void statusChanged(long attemptId, AttemptStatus status) {
+        headerIndex.updateStatus(attemptId, status);
+        events.publishEvent(new AttemptStatusChangedEvent(attemptId, status));
+    }
+
+    private static AttemptRow mapAttemptRow(java.sql.ResultSet rs) throws java.sql.SQLException {
+        long versionId = rs.getLong("paper_version_id");
+        Long paperVersionId = rs.wasNull() ? null : versionId;
+        long seed = rs.getLong("shuffle_seed");
+        Long shuffleSeed = rs.wasNull() ? null : seed;
+        return new AttemptRow(
+                rs.getLong("id"),
+                rs.getLong("exam_id"),
+                rs.getLong("paper_id"),
+                paperVersionId,
+                shuffleSeed,
+                rs.getString("student_username"),
+                AttemptStatus.valueOf(rs.getString("status")),
+                rs.getTimestamp("started_at").toInstant(),
+                rs.getTimestamp("submitted_at") == null ? null : rs.getTimestamp("submitted_at").toInstant(),
+                rs.getTimestamp("created_at").toInstant(),
+                rs.getTimestamp("updated_at").toInstant()
+        );
     }
 
     private List<String> readOptionsJson(String optionsJson) {
@@ -374,10 +588,48 @@ public class InMemoryExamAttemptRepository {
         }
     }
 
+    public static class OpenAttempt {
+        private final long attemptId;
+        private final long examId;
+        private final Instant startedAt;
+        private final Instant updatedAt;
+        private final Instant examEndAt;
+
+        public OpenAttempt(long attemptId, long examId, Instant startedAt, Instant updatedAt, Instant examEndAt) {
+            this.attemptId = attemptId;
+            this.examId = examId;
+            this.startedAt = startedAt;
+            this.updatedAt = updatedAt;
+            this.examEndAt = examEndAt;
+        }
+
+        public long getAttemptId() {
+            return attemptId;
+        }
+
+        public long getExamId() {
+            return examId;
+        }
+
+        public Instant getStartedAt() {
+            return startedAt;
+        }
+
+        public Instant getUpdatedAt() {
+            return updatedAt;
+        }
+
+        public Instant getExamEndAt() {
+            return examEndAt;
+        }
+    }
+
     private static class AttemptRow {
         private final long id;
         private final long examId;
         private final long paperId;
+        private final Long paperVersionId;
+        private final Long shuffleSeed;
         private final String studentUsername;
         private final AttemptStatus status;
         private final Instant startedAt;
@@ -389,6 +641,8 @@ public class InMemoryExamAttemptRepository {
                 long id,
                 long examId,
                 long paperId,
+                Long paperVersionId,
+                Long shuffleSeed,
                 String studentUsername,
                 AttemptStatus status,
                 Instant startedAt,
@@ -399,6 +653,8 @@ public class InMemoryExamAttemptRepository {
             this.id = id;
             this.examId = examId;
             this.paperId = paperId;
+            this.paperVersionId = paperVersionId;
+            this.shuffleSeed = shuffleSeed;
             this.studentUsername = studentUsername;
             this.status = status;
             this.startedAt = startedAt;
@@ -407,14 +663,4 @@ public class InMemoryExamAttemptRepository {
             this.updatedAt = updatedAt;
         }
     }
-
-    private static class QuestionSnapshotWithOrder {
-        private final QuestionSnapshot snapshot;
-        private final int orderIndex;
-
-        private QuestionSnapshotWithOrder(QuestionSnapshot snapshot, int orderIndex) {
-            this.snapshot = snapshot;
-            this.orderIndex = orderIndex;
-        }
-    }
 }
@@ -0,0 +1,95 @@
+package com.examsystem.attempt;
+
+import com.examsystem.paper.Paper;
+import com.examsystem.paper.PaperItem;
+import com.examsystem.question.Question;
+import com.examsystem.question.QuestionService;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+@Service
+public class PaperSnapshotService {
+    private final QuestionService questionService;
+    private final QuestionSnapshotRepository questionSnapshotRepository;
+    private final ConcurrentHashMap<Long, PaperSnapshot> cache = new ConcurrentHashMap<>();
+
+    public PaperSnapshotService(QuestionService questionService, QuestionSnapshotRepository questionSnapshotRepository) {
+        this.questionService = questionService;
+        this.questionSnapshotRepository = questionSnapshotRepository;
+    }
+
+    /**
+     * Returns the immutable question list of a paper, shared by every attempt started on the same paper version.
+     * A paper version is (paper updated_at, question content version); a miss loads all questions in one query
+     * and resolves them to a content-addressed paper version that attempts reference by id.
+     */
+    public PaperVersion snapshotOf(Paper paper) {
+        long questionVersion = questionService.contentVersion();
+        PaperSnapshot cached = cache.get(paper.getId());
+        if (cached != null && cached.matches(paper.getUpdatedAt(), questionVersion)) {
+            return cached.version;
+        }
+        return cache.compute(paper.getId(), (id, existing) -> {
+            if (existing != null && existing.matches(paper.getUpdatedAt(), questionVersion)) {
+                return existing;
+            }
+            PaperVersion version = questionSnapshotRepository.resolvePaperVersion(loadQuestions(paper));
+            return new PaperSnapshot(paper.getUpdatedAt(), questionVersion, version);
+        }).version;
+    }
+
+    public void evict(long paperId) {
+        cache.remove(paperId);
+    }
+
+    private List<QuestionSnapshot> loadQuestions(Paper paper) {
+        List<PaperItem> items = paper.getItems().stream()
+                .sorted(Comparator.comparingInt(PaperItem::getOrderIndex))
+                .collect(Collectors.toList());
+        List<Long> questionIds = items.stream().map(PaperItem::getQuestionId).collect(Collectors.toList());
+        Map<Long, Question> questionById = questionService.listByIds(questionIds).stream()
+                .collect(Collectors.toMap(Question::getId, Function.identity()));
+
+        List<QuestionSnapshot> questions = new ArrayList<>(items.size());
+        for (PaperItem item : items) {
+            Question q = questionById.get(item.getQuestionId());
+            if (q == null) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "question not found: " + item.getQuestionId());
+            }
+            questions.add(new QuestionSnapshot(
+                    q.getId(),
+                    q.getType().name(),
+                    q.getStem(),
+                    q.getOptions() == null ? List.of() : List.copyOf(q.getOptions()),
+                    q.getScore()
+            ));
+        }
+        return List.copyOf(questions);
+    }
+
+    private static class PaperSnapshot {
+        private final Instant paperUpdatedAt;
+        private final long questionVersion;
+        private final PaperVersion version;
+
+        private PaperSnapshot(Instant paperUpdatedAt, long questionVersion, PaperVersion version) {
+            this.paperUpdatedAt = paperUpdatedAt;
+            this.questionVersion = questionVersion;
+            this.version = version;
+        }
+
+        private boolean matches(Instant updatedAt, long version) {
+            return Objects.equals(paperUpdatedAt, updatedAt) && questionVersion == version;
+        }
+    }
+}
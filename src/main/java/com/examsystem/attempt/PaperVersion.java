@@ -0,0 +1,21 @@
+package com.examsystem.attempt;
+
+import java.util.List;
+
+public class PaperVersion {
+    private final long id;
+    private final List<QuestionSnapshot> questions;
+
+    public PaperVersion(long id, List<QuestionSnapshot> questions) {
+        this.id = id;
+        this.questions = questions;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public List<QuestionSnapshot> getQuestions() {
+        return questions;
+    }
+}
@@ -0,0 +1,248 @@
+package com.examsystem.attempt;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Content-addressed store for question snapshots. Identical question content is stored once in
+ * question_snapshots and an ordered list of snapshots is stored once as a paper version, so an attempt only
+ * needs to reference a paper_version_id.
+ */
+@Repository
+public class QuestionSnapshotRepository {
+    private static final TypeReference<List<String>> STRING_LIST = new TypeReference<List<String>>() {};
+    private static final int MAX_CACHED_VERSIONS = 256;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ConcurrentHashMap<Long, List<QuestionSnapshot>> versionCache = new ConcurrentHashMap<>();
+
+    public QuestionSnapshotRepository(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public PaperVersion resolvePaperVersion(List<QuestionSnapshot> questions) {
+        List<String> hashes = new ArrayList<>(questions.size());
+        for (QuestionSnapshot q : questions) {
+            hashes.add(hashOf(q));
+        }
+        String versionHash = sha256(String.join("\n", hashes));
+
+        Optional<Long> existing = findPaperVersionId(versionHash);
+        if (existing.isPresent()) {
+            cacheVersion(existing.get(), questions);
+            return new PaperVersion(existing.get(), questions);
+        }
+
+        Map<String, Long> snapshotIds = ensureSnapshots(questions, hashes);
+        long versionId = insertPaperVersion(versionHash, hashes, snapshotIds);
+        cacheVersion(versionId, questions);
+        return new PaperVersion(versionId, questions);
+    }
+
+    public List<QuestionSnapshot> loadPaperVersion(long paperVersionId) {
+        List<QuestionSnapshot> cached = versionCache.get(paperVersionId);
+        if (cached != null) {
+            return cached;
+        }
+        List<QuestionSnapshot> questions = List.copyOf(jdbcTemplate.query(
+                "SELECT s.question_id, s.question_type, s.stem, s.options_json, s.score "
+                        + "FROM paper_version_items i JOIN question_snapshots s ON s.id = i.snapshot_id "
+                        + "WHERE i.paper_version_id = ? ORDER BY i.order_index ASC",
+                (rs, rowNum) -> new QuestionSnapshot(
+                        rs.getLong("question_id"),
+                        rs.getString("question_type"),
+                        rs.getString("stem"),
+                        readOptionsJson(rs.getString("options_json")),
+                        rs.getInt("score")
+                ),
+                paperVersionId
+        ));
+        cacheVersion(paperVersionId, questions);
+        return questions;
+    }
+
+    private Optional<Long> findPaperVersionId(String contentHash) {
+        try {
+            return Optional.ofNullable(jdbcTemplate.queryForObject(
+                    "SELECT id FROM paper_versions WHERE content_hash = ?",
+                    Long.class,
+                    contentHash
+            ));
+        } catch (EmptyResultDataAccessException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Map<String, Long> ensureSnapshots(List<QuestionSnapshot> questions, List<String> hashes) {
+        Map<String, Long> ids = findSnapshotIds(hashes);
+        Instant now = Instant.now();
+        boolean inserted = false;
+        for (int i = 0; i < questions.size(); i++) {
+            String hash = hashes.get(i);
+            if (ids.containsKey(hash)) {
+                continue;
+            }
+            QuestionSnapshot q = questions.get(i);
+            try {
+                jdbcTemplate.update(
+                        "INSERT INTO question_snapshots(content_hash, question_id, question_type, stem, options_json, score, created_at) "
+                                + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                        hash,
+                        q.getId(),
+                        q.getType(),
+                        q.getStem(),
+                        writeOptionsJson(q.getOptions()),
+                        q.getScore(),
+                        java.sql.Timestamp.from(now)
+                );
+            } catch (DuplicateKeyException ignored) {
+                // stored concurrently by another request or node
+            }
+            inserted = true;
+        }
+        return inserted ? findSnapshotIds(hashes) : ids;
+    }
+
+    private Map<String, Long> findSnapshotIds(List<String> hashes) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(hashes));
+        if (distinct.isEmpty()) {
+            return new HashMap<>();
+        }
+        String placeholders = distinct.stream().map(x -> "?").collect(Collectors.joining(","));
+        Map<String, Long> ids = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT id, content_hash FROM question_snapshots WHERE content_hash IN (" + placeholders + ")",
+                rs -> {
+                    ids.put(rs.getString("content_hash"), rs.getLong("id"));
+                },
+                distinct.toArray()
+        );
+        return ids;
+    }
+
+    private long insertPaperVersion(String versionHash, List<String> hashes, Map<String, Long> snapshotIds) {
+        try {
+            Long id = transactionTemplate.execute(status -> {
+                KeyHolder keyHolder = new GeneratedKeyHolder();
+                jdbcTemplate.update(connection -> {
+                    java.sql.PreparedStatement ps = connection.prepareStatement(
+                            "INSERT INTO paper_versions(content_hash, question_count, created_at) VALUES (?, ?, ?)",
+                            java.sql.Statement.RETURN_GENERATED_KEYS
+                    );
+                    ps.setString(1, versionHash);
+                    ps.setInt(2, hashes.size());
+                    ps.setTimestamp(3, java.sql.Timestamp.from(Instant.now()));
+                    return ps;
+                }, keyHolder);
+                long versionId = keyHolder.getKey().longValue();
+
+                List<Long> orderedSnapshotIds = new ArrayList<>(hashes.size());
+                for (String hash : hashes) {
+                    Long snapshotId = snapshotIds.get(hash);
+                    if (snapshotId == null) {
+                        throw new IllegalStateException("question snapshot missing for hash " + hash);
+                    }
+                    orderedSnapshotIds.add(snapshotId);
+                }
+                jdbcTemplate.batchUpdate(
+                        "INSERT INTO paper_version_items(paper_version_id, order_index, snapshot_id) VALUES (?, ?, ?)",
+                        new org.springframework.jdbc.core.BatchPreparedStatementSetter() {
+                            @Override
+                            public void setValues(java.sql.PreparedStatement ps, int i) throws java.sql.SQLException {
+                                ps.setLong(1, versionId);
+                                ps.setInt(2, i + 1);
+                                ps.setLong(3, orderedSnapshotIds.get(i));
+                            }
+
+                            @Override
+                            public int getBatchSize() {
+                                return orderedSnapshotIds.size();
+                            }
+                        }
+                );
+                return versionId;
+            });
+            return id;
+        } catch (DuplicateKeyException e) {
+            return findPaperVersionId(versionHash).orElseThrow(() -> e);
+        }
+    }
+
+    private void cacheVersion(long versionId, List<QuestionSnapshot> questions) {
+        if (versionCache.size() >= MAX_CACHED_VERSIONS) {
+            versionCache.clear();
+        }
+        versionCache.put(versionId, questions);
+    }
+
+    private String hashOf(QuestionSnapshot q) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(q.getId()).append('\u0000')
+                .append(q.getType()).append('\u0000')
+                .append(q.getStem()).append('\u0000')
+                .append(writeOptionsJson(q.getOptions())).append('\u0000')
+                .append(q.getScore());
+        return sha256(sb.toString());
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private String writeOptionsJson(List<String> options) {
+        try {
+            List<String> safe = options == null ? List.of() : options;
+            return objectMapper.writeValueAsString(safe);
+        } catch (Exception e) {
+            throw new IllegalStateException("failed to serialize options", e);
+        }
+    }
+
+    private List<String> readOptionsJson(String optionsJson) {
+        if (optionsJson == null || optionsJson.isBlank()) {
+            return List.of();
+        }
+        try {
+            return List.copyOf(objectMapper.readValue(optionsJson, STRING_LIST));
+        } catch (Exception e) {
+            throw new IllegalStateException("failed to deserialize options", e);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.examsystem.cluster;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class ClusterLeaseRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public ClusterLeaseRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Takes or renews a lease. Succeeds if the lease is free, expired or already held by {@code holder}.
+     */
+    public boolean tryAcquire(String name, String holder, Instant now, Instant expiresAt) {
+        int updated = jdbcTemplate.update(
+                "UPDATE cluster_leases SET holder = ?, expires_at = ?, updated_at = ? WHERE name = ? AND (holder = ? OR expires_at < ?)",
+                holder,
+                java.sql.Timestamp.from(expiresAt),
+                java.sql.Timestamp.from(now),
+                name,
+                holder,
+                java.sql.Timestamp.from(now)
+        );
+        if (updated > 0) {
+            return true;
+        }
+        try {
+            jdbcTemplate.update(
+                    "INSERT INTO cluster_leases(name, holder, expires_at, updated_at) VALUES (?, ?, ?, ?)",
+                    name,
+                    holder,
+                    java.sql.Timestamp.from(expiresAt),
+                    java.sql.Timestamp.from(now)
+            );
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    public void release(String name, String holder) {
+        jdbcTemplate.update("DELETE FROM cluster_leases WHERE name = ? AND holder = ?", name, holder);
+    }
+
+    public Optional<Lease> findLease(String name) {
+        try {
+            return Optional.ofNullable(jdbcTemplate.queryForObject(
+                    "SELECT name, holder, expires_at FROM cluster_leases WHERE name = ?",
+                    (rs, rowNum) -> new Lease(
+                            rs.getString("name"),
+                            rs.getString("holder"),
+                            rs.getTimestamp("expires_at").toInstant()
+                    ),
+                    name
+            ));
+        } catch (EmptyResultDataAccessException e) {
+            return Optional.empty();
+        }
+    }
+
+    public void heartbeat(String nodeId, Instant startedAt, Instant now) {
+        int updated = jdbcTemplate.update(
+                "UPDATE cluster_nodes SET heartbeat_at = ? WHERE node_id = ?",
+                java.sql.Timestamp.from(now),
+                nodeId
+        );
+        if (updated > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(
+                    "INSERT INTO cluster_nodes(node_id, started_at, heartbeat_at) VALUES (?, ?, ?)",
+                    nodeId,
+                    java.sql.Timestamp.from(startedAt),
+                    java.sql.Timestamp.from(now)
+            );
+        } catch (DuplicateKeyException ignored) {
+        }
+    }
+
+    public List<Node> listNodesAliveAfter(Instant aliveAfter) {
+        return jdbcTemplate.query(
+                "SELECT node_id, started_at, heartbeat_at FROM cluster_nodes WHERE heartbeat_at > ? ORDER BY node_id ASC",
+                (rs, rowNum) -> new Node(
+                        rs.getString("node_id"),
+                        rs.getTimestamp("started_at").toInstant(),
+                        rs.getTimestamp("heartbeat_at").toInstant()
+                ),
+                java.sql.Timestamp.from(aliveAfter)
+        );
+    }
+
+    public void removeNode(String nodeId) {
+        jdbcTemplate.update("DELETE FROM cluster_nodes WHERE node_id = ?", nodeId);
+    }
+
+    public int removeNodesSilentSince(Instant before) {
+        return jdbcTemplate.update("DELETE FROM cluster_nodes WHERE heartbeat_at < ?", java.sql.Timestamp.from(before));
+    }
+
+    public static class Lease {
+        private final String name;
+        private final String holder;
+        private final Instant expiresAt;
+
+        public Lease(String name, String holder, Instant expiresAt) {
+            this.name = name;
+            this.holder = holder;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getHolder() {
+            return holder;
+        }
+
+        public Instant getExpiresAt() {
+            return expiresAt;
+        }
+    }
+
+    public static class Node {
+        private final String nodeId;
+        private final Instant startedAt;
+        private final Instant heartbeatAt;
+
+        public Node(String nodeId, Instant startedAt, Instant heartbeatAt) {
+            this.nodeId = nodeId;
+            this.startedAt = startedAt;
+            this.heartbeatAt = heartbeatAt;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public Instant getStartedAt() {
+            return startedAt;
+        }
+
+        public Instant getHeartbeatAt() {
+            return heartbeatAt;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.examsystem.cluster;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+/**
+ * Decides which node runs the DB-driven maintenance (exam deadlines, the grading sweep, regrade resumption). Every
+ * node renews a row in cluster_nodes on each heartbeat and tries to take or renew the maintenance lease in
+ * cluster_leases; the holder is the leader. Without sharding the leader owns every exam. With
+ * {@code exam.cluster.sharding=true} exams are spread over the live nodes by a hash of the exam id, and the leader
+ * only keeps the cluster-wide sweeps. Leases are timed with the nodes' clocks, so they must be roughly in sync.
+ * <p>
+ * The heartbeat runs on a thread of its own rather than the shared scheduler, and view changes are handed to their
+ * listeners on another one, so neither a slow scheduled task nor a listener rebuilding deadlines can hold up the
+ * renewal until the lease expires.
+ */
+@Service
+public class ClusterService {
+    static final String MAINTENANCE_LEASE = "maintenance";
+
+    private final ClusterLeaseRepository repository;
+    private final ApplicationEventPublisher events;
+    private final boolean sharding;
+    private final Duration leaseTtl;
+    private final String nodeId;
+    private final long heartbeatMillis;
+    private final Instant startedAt = Instant.now();
+    private final ScheduledThreadPoolExecutor heartbeats = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "cluster-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService notifier = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "cluster-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile View view = new View(false, Instant.EPOCH, List.of(), -1);
+
+    public ClusterService(
+            ClusterLeaseRepository repository,
+            ApplicationEventPublisher events,
+            @Value("${exam.cluster.sharding:false}") boolean sharding,
+            @Value("${exam.cluster.lease-ttl:15s}") Duration leaseTtl,
+            @Value("${exam.cluster.node-id:}") String nodeId,
+            @Value("${exam.cluster.heartbeat-millis:5000}") long heartbeatMillis
+    ) {
+        this.repository = repository;
+        this.events = events;
+        this.sharding = sharding;
+        this.leaseTtl = leaseTtl;
+        this.nodeId = nodeId == null || nodeId.isBlank()
+                ? System.getenv().getOrDefault("HOSTNAME", "node") + "-" + UUID.randomUUID().toString().substring(0, 8)
+                : nodeId;
+        this.heartbeatMillis = Math.max(1, heartbeatMillis);
+    }
+
+    /**
+     * Joins before the application-ready listeners run, so they already see this node's ownership.
+     */
+    @PostConstruct
+    public void join() {
+        renew(events::publishEvent);
+        heartbeats.scheduleWithFixedDelay(() -> {
+            try {
+                heartbeat();
+            } catch (RuntimeException e) {
+                // the database may be briefly unreachable; the next beat retries before the lease runs out
+            }
+        }, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void leave() {
+        heartbeats.shutdownNow();
+        notifier.shutdownNow();
+        repository.release(MAINTENANCE_LEASE, nodeId);
+        repository.removeNode(nodeId);
+    }
+
+    public void heartbeat() {
+        renew(event -> notifier.execute(() -> events.publishEvent(event)));
+    }
+
+    private synchronized void renew(Consumer<ClusterViewChangedEvent> publish) {
+        Instant now = Instant.now();
+        Instant expiresAt = now.plus(leaseTtl);
+        repository.heartbeat(nodeId, startedAt, now);
+        boolean leader = repository.tryAcquire(MAINTENANCE_LEASE, nodeId, now, expiresAt);
+        if (leader) {
+            repository.removeNodesSilentSince(now.minus(leaseTtl.multipliedBy(20)));
+        }
+        List<String> live = repository.listNodesAliveAfter(now.minus(leaseTtl)).stream()
+                .map(ClusterLeaseRepository.Node::getNodeId)
+                .collect(Collectors.toList());
+        View previous = view;
+        View next = new View(leader, leader ? expiresAt : Instant.EPOCH, live, live.indexOf(nodeId));
+        view = next;
+        if (previous.leader != next.leader || !previous.nodes.equals(next.nodes)) {
+            publish.accept(new ClusterViewChangedEvent(
+                    next.leader,
+                    next.leader && !previous.leader,
+                    next.shardIndex,
+                    next.nodes.size()
+            ));
+        }
+    }
+
+    /**
+     * Whether this node holds an unexpired maintenance lease.
+     */
+    public boolean isLeader() {
+        View v = view;
+        return v.leader && Instant.now().isBefore(v.leaseExpiresAt);
+    }
+
+    /**
+     * Whether more than one node is alive, i.e. attempts may have been started on another node.
+     */
+    public boolean isClustered() {
+        return view.nodes.size() > 1;
+    }
+
+    /**
+     * Whether this node runs the deadlines of the given exam.
+     */
+    public boolean owns(long examId) {
+        if (!sharding) {
+            return isLeader();
+        }
+        View v = view;
+        return v.shardIndex >= 0 && shardOf(examId, v.nodes.size()) == v.shardIndex;
+    }
+
+    public Optional<String> ownerOf(long examId) {
+        View v = view;
+        if (!sharding) {
+            return repository.findLease(MAINTENANCE_LEASE)
+                    .filter(lease -> lease.getExpiresAt().isAfter(Instant.now()))
+                    .map(ClusterLeaseRepository.Lease::getHolder);
+        }
+        if (v.nodes.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(v.nodes.get(shardOf(examId, v.nodes.size())));
+    }
+
+    public ClusterStatus status() {
+        Instant now = Instant.now();
+        View v = view;
+        Optional<ClusterLeaseRepository.Lease> lease = repository.findLease(MAINTENANCE_LEASE);
+        List<NodeStatus> nodes = new ArrayList<>();
+        for (ClusterLeaseRepository.Node node : repository.listNodesAliveAfter(now.minus(leaseTtl))) {
+            nodes.add(new NodeStatus(
+                    node.getNodeId(),
+                    node.getStartedAt().toString(),
+                    node.getHeartbeatAt().toString(),
+                    sharding ? v.nodes.indexOf(node.getNodeId()) : -1,
+                    node.getNodeId().equals(nodeId)
+            ));
+        }
+        return new ClusterStatus(
+                nodeId,
+                isLeader(),
+                sharding,
+                lease.map(ClusterLeaseRepository.Lease::getHolder).orElse(null),
+                lease.map(l -> l.getExpiresAt().toString()).orElse(null),
+                leaseTtl.toString(),
+                sharding ? v.shardIndex : -1,
+                sharding ? v.nodes.size() : 0,
+                nodes
+        );
+    }
+
+    static int shardOf(long examId, int shardCount) {
+        long h = examId * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h ^ (h >>> 32), (long) shardCount);
+    }
+
+    private static class View {
+        private final boolean leader;
+        private final Instant leaseExpiresAt;
+        private final List<String> nodes;
+        private final int shardIndex;
+
+        private View(boolean leader, Instant leaseExpiresAt, List<String> nodes, int shardIndex) {
+            this.leader = leader;
+            this.leaseExpiresAt = leaseExpiresAt;
+            this.nodes = nodes;
+            this.shardIndex = shardIndex;
+        }
+    }
+
+    public static class ClusterStatus {
+        private final String nodeId;
+        private final boolean leader;
+        private final boolean sharding;
+        private final String leaseHolder;
+        private final String leaseExpiresAt;
+        private final String leaseTtl;
+        private final int shardIndex;
+        private final int shardCount;
+        private final List<NodeStatus> nodes;
+
+        public ClusterStatus(
+                String nodeId,
+                boolean leader,
+                boolean sharding,
+                String leaseHolder,
+                String leaseExpiresAt,
+                String leaseTtl,
+                int shardIndex,
+                int shardCount,
+                List<NodeStatus> nodes
+        ) {
+            this.nodeId = nodeId;
+            this.leader = leader;
+            this.sharding = sharding;
+            this.leaseHolder = leaseHolder;
+            this.leaseExpiresAt = leaseExpiresAt;
+            this.leaseTtl = leaseTtl;
+            this.shardIndex = shardIndex;
+            this.shardCount = shardCount;
+            this.nodes = nodes;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public boolean isLeader() {
+            return leader;
+        }
+
+        public boolean isSharding() {
+            return sharding;
+        }
+
+        public String getLeaseHolder() {
+            return leaseHolder;
+        }
+
+        public String getLeaseExpiresAt() {
+            return leaseExpiresAt;
+        }
+
+        public String getLeaseTtl() {
+            return leaseTtl;
+        }
+
+        public int getShardIndex() {
+            return shardIndex;
+        }
+
+        public int getShardCount() {
+            return shardCount;
+        }
+
+        public List<NodeStatus> getNodes() {
+            return nodes;
+        }
+    }
+
+    public static class NodeStatus {
+        private final String nodeId;
+        private final String startedAt;
+        private final String heartbeatAt;
+        private final int shardIndex;
+        private final boolean self;
+
+        public NodeStatus(String nodeId, String startedAt, String heartbeatAt, int shardIndex, boolean self) {
+            this.nodeId = nodeId;
+            this.startedAt = startedAt;
+            this.heartbeatAt = heartbeatAt;
+            this.shardIndex = shardIndex;
+            this.self = self;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public String getStartedAt() {
+            return startedAt;
+        }
+
+        public String getHeartbeatAt() {
+            return heartbeatAt;
+        }
+
+        public int getShardIndex() {
+            return shardIndex;
+        }
+
+        public boolean isSelf() {
+            return self;
+        }
+    }
+}
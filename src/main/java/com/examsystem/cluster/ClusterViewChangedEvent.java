@@ -0,0 +1,35 @@
+package com.examsystem.cluster;
+
+/**
+ * Published when this node gains or loses the maintenance lease or the set of live nodes changes, i.e. whenever
+ * the exams this node owns may have changed.
+ */
+public class ClusterViewChangedEvent {
+    private final boolean leader;
+    private final boolean leaderGained;
+    private final int shardIndex;
+    private final int shardCount;
+
+    public ClusterViewChangedEvent(boolean leader, boolean leaderGained, int shardIndex, int shardCount) {
+        this.leader = leader;
+        this.leaderGained = leaderGained;
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+    }
+
+    public boolean isLeader() {
+        return leader;
+    }
+
+    public boolean isLeaderGained() {
+        return leaderGained;
+    }
+
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+}
@@ -0,0 +1,72 @@
+package com.examsystem.controller;
+
+import com.examsystem.cluster.ClusterService;
+import com.examsystem.exam.ExamWarmupService;
+import com.examsystem.proctor.ProctorEventIngestor;
+import com.examsystem.result.GradingQueueService;
+import java.time.Instant;
+import java.util.Map;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+    private final ExamWarmupService warmupService;
+    private final GradingQueueService gradingQueue;
+    private final ClusterService clusterService;
+    private final ProctorEventIngestor proctorEvents;
+
+    public AdminController(
+            ExamWarmupService warmupService,
+            GradingQueueService gradingQueue,
+            ClusterService clusterService,
+            ProctorEventIngestor proctorEvents
+    ) {
+        this.warmupService = warmupService;
+        this.gradingQueue = gradingQueue;
+        this.clusterService = clusterService;
+        this.proctorEvents = proctorEvents;
+    }
+
+    @GetMapping("/warmup")
+    public Map<String, Object> warmup() {
+        return Map.of(
+                "leadTime", warmupService.getLeadTime().toString(),
+                "exams", warmupService.listWarm()
+        );
+    }
+
+    @PostMapping("/warmup/run")
+    public Map<String, Object> runWarmup() {
+        warmupService.runOnce(Instant.now());
+        return warmup();
+    }
+
+    @GetMapping("/grading")
+    public GradingQueueService.GradingStats grading() {
+        return gradingQueue.stats();
+    }
+
+    @GetMapping("/proctor-events")
+    public ProctorEventIngestor.IngestStats proctorEvents() {
+        return proctorEvents.stats();
+    }
+
+    @GetMapping("/cluster")
+    public ClusterService.ClusterStatus cluster() {
+        return clusterService.status();
+    }
+
+    @GetMapping("/cluster/owner/{examId}")
+    public Map<String, Object> clusterOwner(@PathVariable("examId") long examId) {
+        Map<String, Object> body = new java.util.LinkedHashMap<>();
+        body.put("examId", examId);
+        body.put("owner", clusterService.ownerOf(examId).orElse(null));
+        body.put("ownedHere", clusterService.owns(examId));
+        return body;
+    }
+}
@@ -1,19 +1,23 @@
 package com.examsystem.controller;
 
 import com.examsystem.attempt.AnswerRecord;
+import com.examsystem.attempt.AttemptHeaderIndex;
+import com.examsystem.attempt.ExamAdmissionService;
 import com.examsystem.attempt.ExamAttempt;
 import com.examsystem.attempt.ExamAttemptService;
 import com.examsystem.attempt.QuestionSnapshot;
 import com.examsystem.course.ClassRepository;
 import com.examsystem.course.Classroom;
+import com.examsystem.exam.AttemptDeadlineService;
 import com.examsystem.exam.ExamArrangement;
 import com.examsystem.exam.ExamService;
 import com.examsystem.exam.ExamSettings;
 import com.examsystem.proctor.ExamProctorService;
-import com.examsystem.proctor.ProctorEvent;
 import com.examsystem.result.ExamResult;
+import com.examsystem.result.ExamResultHeader;
 import com.examsystem.result.ExamResultItem;
 import com.examsystem.result.ExamResultService;
+import com.examsystem.result.ResultReviewCache;
 import com.examsystem.user.UserProfile;
 import com.examsystem.user.UserProfileRepository;
 import java.time.Instant;
@@ -29,6 +33,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -44,6 +49,9 @@ public class StudentExamController {
     private final ClassRepository classRepository;
     private final ExamProctorService proctorService;
     private final UserProfileRepository userProfileRepository;
+    private final ExamAdmissionService admissionService;
+    private final AttemptDeadlineService deadlineService;
+    private final ResultReviewCache reviewCache;
 
     public StudentExamController(
             ExamService examService,
@@ -51,7 +59,10 @@ public class StudentExamController {
             ExamResultService resultService,
             ClassRepository classRepository,
             ExamProctorService proctorService,
-            UserProfileRepository userProfileRepository
+            UserProfileRepository userProfileRepository,
+            ExamAdmissionService admissionService,
+            AttemptDeadlineService deadlineService,
+            ResultReviewCache reviewCache
     ) {
         this.examService = examService;
         this.attemptService = attemptService;
@@ -59,6 +70,9 @@ public class StudentExamController {
         this.classRepository = classRepository;
         this.proctorService = proctorService;
         this.userProfileRepository = userProfileRepository;
+        this.admissionService = admissionService;
+        this.deadlineService = deadlineService;
+        this.reviewCache = reviewCache;
     }
 
     @GetMapping
@@ -106,19 +120,15 @@ public class StudentExamController {
         if (exam == null || !canAccessExam(username, exam)) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "not_found"));
         }
-        ExamResult result = resultService.listByExamId(examId).stream()
-                .filter(r -> r.getStudentUsername().equals(username))
-                .findFirst()
-                .orElse(null);
+        ExamResultHeader result = resultService.findHeaderByExamAndStudent(examId, username).orElse(null);
 
         if (result == null) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "not_found"));
-        }
-
-        ExamAttempt attempt = attemptService.findById(result.getAttemptId()).orElse(null);
-        if (attempt == null) {
-            // Should not happen if data integrity is maintained
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "attempt_not_found"));
+            // Submitted attempts are graded asynchronously; report that until the result is written.
+            return attemptService.findLatestClosedHeader(examId, username)
+                    .<ResponseEntity<?>>map(a -> ResponseEntity.status(HttpStatus.ACCEPTED)
+                            .header("Retry-After", "1")
+                            .body(Map.of("status", "PENDING", "attemptId", a.getAttemptId())))
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "not_found")));
         }
 
         ExamSettings settings = examService.getSettingsOrDefault(examId);
@@ -137,13 +147,6 @@ public class StudentExamController {
              }
         }
 
-        StudentResultResponse response = StudentResultResponse.from(result, attempt);
-        
-        // Filter based on settings
-        if (!settings.isShowScore()) {
-            response.hideScore();
-        }
-
         String showAnswersStrategy = settings.getShowAnswersStrategy();
         boolean showAnswers = false;
         if ("AFTER_SUBMISSION".equals(showAnswersStrategy)) {
@@ -153,9 +156,29 @@ public class StudentExamController {
                 showAnswers = true;
             }
         }
-        
-        if (!showAnswers) {
-            response.hideAnswers();
+
+        boolean showScore = settings.isShowScore();
+        boolean withAnswers = showAnswers;
+        String view = "review" + (showScore ? "+score" : "") + (withAnswers ? "+answers" : "");
+        StudentResultResponse response = reviewCache.get(result, view, () -> {
+            ExamResult full = resultService.findByExamAndAttempt(examId, result.getAttemptId()).orElse(null);
+            ExamAttempt attempt = attemptService.findById(result.getAttemptId()).orElse(null);
+            if (full == null || attempt == null) {
+                return null;
+            }
+            StudentResultResponse rendered = StudentResultResponse.from(full, attempt);
+            // Filter based on settings
+            if (!showScore) {
+                rendered.hideScore();
+            }
+            if (!withAnswers) {
+                rendered.hideAnswers();
+            }
+            return rendered;
+        });
+        if (response == null) {
+            // Should not happen if data integrity is maintained
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "attempt_not_found"));
         }
 
         return ResponseEntity.ok(response);
@@ -191,10 +214,7 @@ public class StudentExamController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", "questionId_required"));
         }
 
-        ExamResult result = resultService.listByExamId(examId).stream()
-                .filter(r -> r.getStudentUsername().equals(username))
-                .findFirst()
-                .orElse(null);
+        ExamResult result = resultService.findByExamAndStudent(examId, username).orElse(null);
         if (result == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "not_found"));
         }
@@ -263,10 +283,7 @@ public class StudentExamController {
             });
         }
 
-        ExamResult result = resultService.listByExamId(examId).stream()
-                .filter(r -> r.getStudentUsername().equals(username))
-                .findFirst()
-                .orElse(null);
+        ExamResult result = resultService.findByExamAndStudent(examId, username).orElse(null);
         if (result == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.TEXT_PLAIN).body(outputStream -> {
                 outputStream.write("not_found".getBytes(java.nio.charset.StandardCharsets.UTF_8));
@@ -322,13 +339,43 @@ public class StudentExamController {
     }
 
     @PostMapping("/{id}/start")
-    public AttemptStartResponse start(@PathVariable("id") long examId) {
+    public ResponseEntity<?> start(@PathVariable("id") long examId) {
         String username = currentUsername();
         ExamArrangement exam = examService.findById(examId)
                 .filter(e -> canAccessExam(username, e))
                 .orElseThrow(() -> new org.springframework.web.server.ResponseStatusException(HttpStatus.NOT_FOUND, "not_found"));
-        ExamAttempt attempt = attemptService.start(examId, username);
-        return buildAttemptStartResponse(attempt, exam);
+        ExamAdmissionService.Admission<ExamAttempt> admission =
+                admissionService.admit(examId, username, () -> attemptService.start(examId, username));
+        if (!admission.isAdmitted()) {
+            return queuedResponse(admission.getQueueStatus());
+        }
+        return ResponseEntity.ok(buildAttemptStartResponse(admission.getValue(), exam));
+    }
+
+    @GetMapping("/{id}/start/queue")
+    public ResponseEntity<?> startQueue(@PathVariable("id") long examId) {
+        String username = currentUsername();
+        examService.findById(examId)
+                .filter(e -> canAccessExam(username, e))
+                .orElseThrow(() -> new org.springframework.web.server.ResponseStatusException(HttpStatus.NOT_FOUND, "not_found"));
+        ExamAdmissionService.QueueStatus status = admissionService.status(examId, username);
+        if (!status.isQueued()) {
+            return ResponseEntity.ok(Map.of("status", "NOT_QUEUED"));
+        }
+        return queuedResponse(status);
+    }
+
+    private ResponseEntity<?> queuedResponse(ExamAdmissionService.QueueStatus status) {
+        long retryAfterMillis = Math.max(500L, Math.min(status.getEtaMillis(), 5000L));
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header("Retry-After", String.valueOf((retryAfterMillis + 999L) / 1000L))
+                .body(Map.of(
+                        "status", "QUEUED",
+                        "position", status.getPosition(),
+                        "queueDepth", status.getQueueDepth(),
+                        "etaMillis", status.getEtaMillis(),
+                        "retryAfterMillis", retryAfterMillis
+                ));
     }
 
     @PostMapping("/{id}/submit")
@@ -346,34 +393,46 @@ public class StudentExamController {
         List<AnswerRecord> answers = request.getAnswers() == null ? List.of() : request.getAnswers().stream()
                 .map(a -> new AnswerRecord(a.getQuestionId(), a.getAnswer()))
                 .collect(Collectors.toList());
-        ExamAttempt submitted = attemptService.submit(examId, request.getAttemptId(), currentUsername(), answers);
+        ExamAttempt submitted = attemptService.submit(exam, request.getAttemptId(), currentUsername(), answers);
         return SubmitResponse.from(submitted);
     }
 
+    @PutMapping("/{id}/attempts/{attemptId}/answers")
+    public ResponseEntity<?> saveAnswers(
+            @PathVariable("id") long examId,
+            @PathVariable("attemptId") long attemptId,
+            @RequestBody SaveAnswersRequest request
+    ) {
+        ExamArrangement exam = examService.findById(examId).orElse(null);
+        if (exam == null || !canAccessExam(currentUsername(), exam)) {
+            throw new org.springframework.web.server.ResponseStatusException(HttpStatus.NOT_FOUND, "not_found");
+        }
+        if (request == null || request.getAnswers() == null) {
+            throw new org.springframework.web.server.ResponseStatusException(HttpStatus.BAD_REQUEST, "answers is required");
+        }
+        List<AnswerRecord> answers = request.getAnswers().stream()
+                .map(a -> new AnswerRecord(a.getQuestionId(), a.getAnswer()))
+                .collect(Collectors.toList());
+        int buffered = attemptService.saveAnswers(exam, attemptId, currentUsername(), answers);
+        return ResponseEntity.ok(Map.of("status", "ok", "buffered", buffered));
+    }
+
     @PostMapping("/{id}/heartbeat")
     public ResponseEntity<?> heartbeat(@PathVariable("id") long examId, @RequestBody HeartbeatRequest request) {
         String username = currentUsername();
-        ExamAttempt attempt = attemptService.findById(request.getAttemptId())
-                .orElseThrow(() -> new org.springframework.web.server.ResponseStatusException(HttpStatus.NOT_FOUND, "attempt_not_found"));
-        if (attempt.getExamId() != examId || !attempt.getStudentUsername().equals(username)) {
-            throw new org.springframework.web.server.ResponseStatusException(HttpStatus.FORBIDDEN, "attempt_mismatch");
-        }
+        AttemptHeaderIndex.AttemptHeader attempt = requireOwnAttempt(examId, request.getAttemptId(), username);
         Instant ts = request.getTs() != null ? request.getTs() : Instant.now();
-        proctorService.recordHeartbeat(attempt.getId(), username, ts, Instant.now());
+        proctorService.recordHeartbeat(examId, attempt.getAttemptId(), username, ts, Instant.now());
         return ResponseEntity.ok(Map.of("status", "ok"));
     }
 
     @PostMapping("/{id}/events")
     public ResponseEntity<?> events(@PathVariable("id") long examId, @RequestBody ProctorEventRequest request) {
         String username = currentUsername();
-        ExamAttempt attempt = attemptService.findById(request.getAttemptId())
-                .orElseThrow(() -> new org.springframework.web.server.ResponseStatusException(HttpStatus.NOT_FOUND, "attempt_not_found"));
-        if (attempt.getExamId() != examId || !attempt.getStudentUsername().equals(username)) {
-            throw new org.springframework.web.server.ResponseStatusException(HttpStatus.FORBIDDEN, "attempt_mismatch");
-        }
-        proctorService.recordEvent(
+        AttemptHeaderIndex.AttemptHeader attempt = requireOwnAttempt(examId, request.getAttemptId(), username);
+        proctorService.publishEvent(
                 examId,
-                attempt.getId(),
+                attempt.getAttemptId(),
                 username,
                 request.getType(),
                 request.getPayloadJson(),
@@ -389,19 +448,19 @@ public class StudentExamController {
             @RequestParam(value = "afterEventId", required = false) Long afterEventId
     ) {
         String username = currentUsername();
-        ExamAttempt attempt = attemptService.findById(attemptId)
+        requireOwnAttempt(examId, attemptId, username);
+        return proctorService.listTeacherMessages(examId, attemptId, username, afterEventId).stream()
+                .map(e -> new ProctorMessageResponse(e.getId(), e.getType(), e.getPayloadJson(), e.getCreatedAt().toString()))
+                .collect(Collectors.toList());
+    }
+
+    private AttemptHeaderIndex.AttemptHeader requireOwnAttempt(long examId, long attemptId, String username) {
+        AttemptHeaderIndex.AttemptHeader attempt = attemptService.findHeader(attemptId)
                 .orElseThrow(() -> new org.springframework.web.server.ResponseStatusException(HttpStatus.NOT_FOUND, "attempt_not_found"));
         if (attempt.getExamId() != examId || !attempt.getStudentUsername().equals(username)) {
             throw new org.springframework.web.server.ResponseStatusException(HttpStatus.FORBIDDEN, "attempt_mismatch");
         }
-        List<ProctorEvent> events = proctorService.listRecentEvents(examId, 100);
-        return events.stream()
-                .filter(e -> e.getAttemptId() == attemptId)
-                .filter(e -> "TEACHER_REMIND".equals(e.getType()) || "TEACHER_FORCE_SUBMIT".equals(e.getType()))
-                .filter(e -> afterEventId == null || e.getId() > afterEventId)
-                .sorted(java.util.Comparator.comparingLong(ProctorEvent::getId))
-                .map(e -> new ProctorMessageResponse(e.getId(), e.getType(), e.getPayloadJson(), e.getCreatedAt().toString()))
-                .collect(Collectors.toList());
+        return attempt;
     }
 
     private String currentUsername() {
@@ -643,17 +702,7 @@ public class StudentExamController {
     }
 
     private AttemptStartResponse buildAttemptStartResponse(ExamAttempt attempt, ExamArrangement exam) {
-        Instant effectiveEndAt = exam.getEndAt();
-        try {
-            ExamSettings settings = examService.getSettingsOrDefault(exam.getId());
-            if (settings != null && settings.getDurationMinutes() != null && settings.getDurationMinutes() > 0) {
-                Instant byDuration = attempt.getStartedAt().plusSeconds(settings.getDurationMinutes() * 60L);
-                if (byDuration.isBefore(effectiveEndAt)) {
-                    effectiveEndAt = byDuration;
-                }
-            }
-        } catch (Exception ignored) {
-        }
+        Instant effectiveEndAt = deadlineService.effectiveEndAt(exam, attempt.getStartedAt());
 
         String className = "";
         if (exam.getClassId() != null) {
@@ -681,7 +730,8 @@ public class StudentExamController {
                 attempt.getStatus().name(),
                 attempt.getStartedAt().toString(),
                 effectiveEndAt.toString(),
-                attempt.getQuestions(),
+                attemptService.presentedQuestions(attempt),
+                attemptService.presentedAnswers(attempt),
                 studentName,
                 studentNo,
                 className
@@ -890,6 +940,18 @@ public class StudentExamController {
         }
     }
 
+    public static class SaveAnswersRequest {
+        private List<AnswerRequest> answers;
+
+        public List<AnswerRequest> getAnswers() {
+            return answers;
+        }
+
+        public void setAnswers(List<AnswerRequest> answers) {
+            this.answers = answers;
+        }
+    }
+
     public static class HeartbeatRequest {
         private long attemptId;
         private Instant ts;
@@ -970,6 +1032,7 @@ public class StudentExamController {
         private final String startedAt;
         private final String endAt;
         private final List<QuestionSnapshot> questions;
+        private final List<AnswerRecord> answers;
         private final String studentName;
         private final String studentNo;
         private final String className;
@@ -982,6 +1045,7 @@ public class StudentExamController {
                 String startedAt,
                 String endAt,
                 List<QuestionSnapshot> questions,
+                List<AnswerRecord> answers,
                 String studentName,
                 String studentNo,
                 String className
@@ -993,6 +1057,7 @@ public class StudentExamController {
             this.startedAt = startedAt;
             this.endAt = endAt;
             this.questions = questions;
+            this.answers = answers;
             this.studentName = studentName;
             this.studentNo = studentNo;
             this.className = className;
@@ -1026,6 +1091,10 @@ public class StudentExamController {
             return questions;
         }
 
+        public List<AnswerRecord> getAnswers() {
+            return answers;
+        }
+
         public String getStudentName() {
             return studentName;
         }
@@ -1116,7 +1185,7 @@ public class StudentExamController {
             );
         }
 
-        public static StudentResultResponse fromScoreOnly(ExamResult result) {
+        public static StudentResultResponse fromScoreOnly(ExamResultHeader result) {
             return new StudentResultResponse(
                     result.getId(),
                     result.getExamId(),
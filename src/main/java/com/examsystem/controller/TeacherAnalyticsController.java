@@ -0,0 +1,143 @@
+package com.examsystem.controller;
+
+import com.examsystem.course.ClassRepository;
+import com.examsystem.course.Classroom;
+import com.examsystem.result.ResultWarehouse;
+import com.examsystem.result.WarehouseGroup;
+import com.examsystem.result.WarehouseQuery;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+@RequestMapping("/api/teacher/analytics")
+public class TeacherAnalyticsController {
+    private static final int DEFAULT_LIMIT = 1000;
+    private static final int MAX_LIMIT = 10000;
+
+    private final ClassRepository classRepository;
+    private final ResultWarehouse resultWarehouse;
+
+    public TeacherAnalyticsController(ClassRepository classRepository, ResultWarehouse resultWarehouse) {
+        this.classRepository = classRepository;
+        this.resultWarehouse = resultWarehouse;
+    }
+
+    /**
+     * Item counts and score sums over the results of the teacher's classes, filtered and grouped by class, exam,
+     * question, question type, knowledge point or difficulty. Groups come largest first.
+     */
+    @PostMapping("/query")
+    public List<WarehouseGroup> query(@RequestBody AnalyticsQueryRequest request) {
+        String username = currentUsername();
+        Set<Long> owned = classRepository.listByOwner(username).stream()
+                .map(Classroom::getId)
+                .collect(Collectors.toSet());
+        Set<Long> classIds = owned;
+        if (request.getClassIds() != null) {
+            if (request.getClassIds().contains(null) || !owned.containsAll(request.getClassIds())) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "not_class_owner");
+            }
+            classIds = Set.copyOf(request.getClassIds());
+        }
+        List<WarehouseQuery.Dimension> groupBy = request.getGroupBy() == null ? List.of() : request.getGroupBy();
+        if (groupBy.size() > WarehouseQuery.MAX_GROUP_BY || groupBy.contains(null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid_group_by");
+        }
+        int limit = request.getLimit() == null ? DEFAULT_LIMIT : Math.max(1, Math.min(MAX_LIMIT, request.getLimit()));
+
+        return resultWarehouse.query(new WarehouseQuery(
+                classIds,
+                toSet(request.getExamIds()),
+                toSet(request.getQuestionTypes()),
+                toSet(request.getKnowledgePoints()),
+                toSet(request.getDifficulties()),
+                groupBy.stream().distinct().collect(Collectors.toList()),
+                limit
+        ));
+    }
+
+    private static <T> Set<T> toSet(List<T> values) {
+        return values == null ? null : new HashSet<>(values);
+    }
+
+    private String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return String.valueOf(authentication.getPrincipal());
+    }
+
+    public static class AnalyticsQueryRequest {
+        private List<Long> classIds;
+        private List<Long> examIds;
+        private List<String> questionTypes;
+        private List<String> knowledgePoints;
+        private List<String> difficulties;
+        private List<WarehouseQuery.Dimension> groupBy;
+        private Integer limit;
+
+        public List<Long> getClassIds() {
+            return classIds;
+        }
+
+        public void setClassIds(List<Long> classIds) {
+            this.classIds = classIds;
+        }
+
+        public List<Long> getExamIds() {
+            return examIds;
+        }
+
+        public void setExamIds(List<Long> examIds) {
+            this.examIds = examIds;
+        }
+
+        public List<String> getQuestionTypes() {
+            return questionTypes;
+        }
+
+        public void setQuestionTypes(List<String> questionTypes) {
+            this.questionTypes = questionTypes;
+        }
+
+        public List<String> getKnowledgePoints() {
+            return knowledgePoints;
+        }
+
+        public void setKnowledgePoints(List<String> knowledgePoints) {
+            this.knowledgePoints = knowledgePoints;
+        }
+
+        public List<String> getDifficulties() {
+            return difficulties;
+        }
+
+        public void setDifficulties(List<String> difficulties) {
+            this.difficulties = difficulties;
+        }
+
+        public List<WarehouseQuery.Dimension> getGroupBy() {
+            return groupBy;
+        }
+
+        public void setGroupBy(List<WarehouseQuery.Dimension> groupBy) {
+            this.groupBy = groupBy;
+        }
+
+        public Integer getLimit() {
+            return limit;
+        }
+
+        public void setLimit(Integer limit) {
+            this.limit = limit;
+        }
+    }
+}
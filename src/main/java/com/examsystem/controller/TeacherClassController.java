@@ -1,8 +1,10 @@
 package com.examsystem.controller;
 
+import com.examsystem.attempt.AttemptHeaderIndex;
 import com.examsystem.course.ClassMember;
 import com.examsystem.course.ClassService;
 import com.examsystem.course.Classroom;
+import com.examsystem.proctor.ExamProctorService;
 import com.examsystem.security.AuthTokenService;
 import com.examsystem.security.Role;
 import com.examsystem.user.UserProfile;
@@ -40,19 +42,25 @@ public class TeacherClassController {
     private final PasswordEncoder passwordEncoder;
     private final UserProfileRepository userProfileRepository;
     private final AuthTokenService authTokenService;
+    private final AttemptHeaderIndex attemptHeaderIndex;
+    private final ExamProctorService proctorService;
 
     public TeacherClassController(
             ClassService classService,
             JdbcTemplate jdbcTemplate,
             PasswordEncoder passwordEncoder,
             UserProfileRepository userProfileRepository,
-            AuthTokenService authTokenService
+            AuthTokenService authTokenService,
+            AttemptHeaderIndex attemptHeaderIndex,
+            ExamProctorService proctorService
     ) {
         this.classService = classService;
         this.jdbcTemplate = jdbcTemplate;
         this.passwordEncoder = passwordEncoder;
         this.userProfileRepository = userProfileRepository;
         this.authTokenService = authTokenService;
+        this.attemptHeaderIndex = attemptHeaderIndex;
+        this.proctorService = proctorService;
     }
 
     @PostMapping
@@ -280,7 +288,11 @@ public class TeacherClassController {
         jdbcTemplate.update("UPDATE classes SET owner_username = ? WHERE owner_username = ?", newUsername, oldUsername);
         jdbcTemplate.update("UPDATE proctor_events SET username = ? WHERE username = ?", newUsername, oldUsername);
         jdbcTemplate.update("UPDATE attempt_heartbeats SET username = ? WHERE username = ?", newUsername, oldUsername);
+        jdbcTemplate.update("UPDATE attempt_presence SET username = ? WHERE username = ?", newUsername, oldUsername);
+        jdbcTemplate.update("UPDATE attempt_tab_stats SET username = ? WHERE username = ?", newUsername, oldUsername);
+        proctorService.evictStudent(oldUsername);
         jdbcTemplate.update("UPDATE exam_attempts SET student_username = ? WHERE student_username = ?", newUsername, oldUsername);
+        attemptHeaderIndex.evictStudent(oldUsername);
         jdbcTemplate.update("UPDATE exam_results SET student_username = ? WHERE student_username = ?", newUsername, oldUsername);
 
         jdbcTemplate.update("DELETE FROM users WHERE username = ?", oldUsername);
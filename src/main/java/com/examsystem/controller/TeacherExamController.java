@@ -1,31 +1,50 @@
 package com.examsystem.controller;
 
+import com.examsystem.exam.AttemptDeadlineService;
 import com.examsystem.exam.ExamArrangement;
 import com.examsystem.exam.ExamDraft;
+import com.examsystem.exam.ExamMaintenanceService;
 import com.examsystem.exam.ExamService;
 import com.examsystem.exam.ExamSettings;
 import com.examsystem.exam.ExamStatus;
+import com.examsystem.exam.ExamSummary;
 import com.examsystem.course.ClassMember;
 import com.examsystem.course.ClassRepository;
 import com.examsystem.course.ClassService;
 import com.examsystem.course.Classroom;
+import com.examsystem.attempt.AnswerAutosaveService;
+import com.examsystem.attempt.AttemptHeaderIndex;
 import com.examsystem.attempt.AttemptStatus;
+import com.examsystem.attempt.ExamAdmissionService;
 import com.examsystem.attempt.ExamAttempt;
 import com.examsystem.attempt.InMemoryExamAttemptRepository;
+import com.examsystem.proctor.AttemptPresence;
+import com.examsystem.proctor.AttemptTimeline;
+import com.examsystem.proctor.ExamMonitorHub;
 import com.examsystem.proctor.ExamProctorService;
-import com.examsystem.proctor.HeartbeatRecord;
+import com.examsystem.proctor.ProctorCompactionService;
 import com.examsystem.proctor.ProctorEvent;
+import com.examsystem.result.ExamAnalytics;
+import com.examsystem.result.ExamAnalyticsAggregator;
 import com.examsystem.result.ExamResult;
 import com.examsystem.result.ExamResultItem;
 import com.examsystem.result.ExamResultService;
+import com.examsystem.result.GradingQueueService;
+import com.examsystem.result.RegradeJob;
+import com.examsystem.result.RegradeService;
+import com.examsystem.result.ResultReviewCache;
+import com.examsystem.result.ScoreSketch;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
@@ -42,8 +61,10 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/teacher/exams")
@@ -54,6 +75,17 @@ public class TeacherExamController {
     private final ClassRepository classRepository;
     private final ExamProctorService proctorService;
     private final ClassService classService;
+    private final ExamAdmissionService admissionService;
+    private final AnswerAutosaveService autosaveService;
+    private final GradingQueueService gradingQueue;
+    private final RegradeService regradeService;
+    private final AttemptHeaderIndex attemptHeaderIndex;
+    private final ExamMaintenanceService maintenanceService;
+    private final AttemptDeadlineService deadlineService;
+    private final ExamMonitorHub monitorHub;
+    private final ProctorCompactionService compactionService;
+    private final ResultReviewCache reviewCache;
+    private final ExamAnalyticsAggregator analyticsAggregator;
 
     public TeacherExamController(
             ExamService examService,
@@ -61,7 +93,18 @@ public class TeacherExamController {
             InMemoryExamAttemptRepository attemptRepository,
             ClassRepository classRepository,
             ExamProctorService proctorService,
-            ClassService classService
+            ClassService classService,
+            ExamAdmissionService admissionService,
+            AnswerAutosaveService autosaveService,
+            GradingQueueService gradingQueue,
+            RegradeService regradeService,
+            AttemptHeaderIndex attemptHeaderIndex,
+            ExamMaintenanceService maintenanceService,
+            AttemptDeadlineService deadlineService,
+            ExamMonitorHub monitorHub,
+            ProctorCompactionService compactionService,
+            ResultReviewCache reviewCache,
+            ExamAnalyticsAggregator analyticsAggregator
     ) {
         this.examService = examService;
         this.resultService = resultService;
@@ -69,6 +112,17 @@ public class TeacherExamController {
         this.classRepository = classRepository;
         this.proctorService = proctorService;
         this.classService = classService;
+        this.admissionService = admissionService;
+        this.autosaveService = autosaveService;
+        this.gradingQueue = gradingQueue;
+        this.regradeService = regradeService;
+        this.attemptHeaderIndex = attemptHeaderIndex;
+        this.maintenanceService = maintenanceService;
+        this.deadlineService = deadlineService;
+        this.monitorHub = monitorHub;
+        this.compactionService = compactionService;
+        this.reviewCache = reviewCache;
+        this.analyticsAggregator = analyticsAggregator;
     }
 
     @PostMapping
@@ -81,8 +135,8 @@ public class TeacherExamController {
                 .filter(c -> c.getOwnerUsername().equals(username))
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.FORBIDDEN, "not_class_owner"));
         ExamArrangement created = examService.create(request.toDraft());
-        int totalMembers = classRepository.listMembers(classroom.getId()).size();
-        return ResponseEntity.status(HttpStatus.CREATED).body(ExamResponse.from(created, examService, classroom.getName(), 0, totalMembers, request.getSettings()));
+        ExamSummary summary = examService.summary(created.getId());
+        return ResponseEntity.status(HttpStatus.CREATED).body(ExamResponse.from(created, examService, classroom.getName(), summary, request.getSettings()));
     }
 
     @org.springframework.web.bind.annotation.PutMapping("/{id}")
@@ -98,18 +152,20 @@ public class TeacherExamController {
         
         examService.update(id, request.toDraft());
         ExamArrangement updated = examService.findById(id).orElseThrow();
-        int totalMembers = classRepository.listMembers(classroom.getId()).size();
-        int submitted = resultService.listByExamId(id).size();
-        int unsubmitted = totalMembers - submitted;
-        if (unsubmitted < 0) unsubmitted = 0;
+        maintenanceService.track(updated);
+        deadlineService.retrackExam(id);
+        ExamSummary summary = examService.summary(id);
 
-        return ResponseEntity.ok(ExamResponse.from(updated, examService, classroom.getName(), submitted, unsubmitted, request.getSettings()));
+        return ResponseEntity.ok(ExamResponse.from(updated, examService, classroom.getName(), summary, request.getSettings()));
     }
 
     @org.springframework.web.bind.annotation.DeleteMapping("/{id}")
     public ResponseEntity<?> delete(@PathVariable("id") long id) {
         requireOwnedExamOrOrphanDeletable(id);
         examService.delete(id);
+        attemptHeaderIndex.evictExam(id);
+        proctorService.evictExam(id);
+        reviewCache.evictExam(id);
         return ResponseEntity.ok(Map.of("status", "ok"));
     }
 
@@ -120,19 +176,15 @@ public class TeacherExamController {
                 .filter(e -> isOwnerOfExam(username, e))
                 .<ResponseEntity<?>>map(e -> {
                     String className = "";
-                    int submitted = 0;
-                    int unsubmitted = 0;
+                    ExamSummary summary = ExamSummary.empty(e.getId());
                     if (e.getClassId() != null) {
                         Classroom c = classRepository.findById(e.getClassId()).orElse(null);
                         if (c != null) {
                             className = c.getName();
-                            int totalMembers = classRepository.listMembers(c.getId()).size();
-                            submitted = resultService.listByExamId(e.getId()).size();
-                            unsubmitted = totalMembers - submitted;
-                            if (unsubmitted < 0) unsubmitted = 0;
+                            summary = examService.summary(e.getId());
                         }
                     }
-                    return ResponseEntity.ok(ExamResponse.from(e, examService, className, submitted, unsubmitted, examService.getSettingsOrDefault(e.getId())));
+                    return ResponseEntity.ok(ExamResponse.from(e, examService, className, summary, examService.getSettingsOrDefault(e.getId())));
                 })
                 .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "not_found")));
     }
@@ -146,15 +198,16 @@ public class TeacherExamController {
                 .map(Classroom::getId)
                 .collect(Collectors.toList());
 
-        return examService.listByClassIds(classIds).stream()
+        List<ExamArrangement> exams = examService.listByClassIds(classIds);
+        Map<Long, ExamSummary> summaries = examService.summaries(
+                exams.stream().map(ExamArrangement::getId).collect(Collectors.toList())
+        );
+        return exams.stream()
                 .map(e -> {
                     Classroom c = classMap.get(e.getClassId());
                     String className = c != null ? c.getName() : "";
-                    int totalMembers = c != null ? classRepository.listMembers(c.getId()).size() : 0;
-                    int submitted = resultService.listByExamId(e.getId()).size();
-                    int unsubmitted = totalMembers - submitted;
-                    if (unsubmitted < 0) unsubmitted = 0;
-                    return ExamResponse.from(e, examService, className, submitted, unsubmitted, examService.getSettingsOrDefault(e.getId()));
+                    ExamSummary summary = summaries.getOrDefault(e.getId(), ExamSummary.empty(e.getId()));
+                    return ExamResponse.from(e, examService, className, summary, examService.getSettingsOrDefault(e.getId()));
                 })
                 .collect(Collectors.toList());
     }
@@ -178,72 +231,80 @@ public class TeacherExamController {
     @GetMapping("/{id}/analytics")
     public ExamAnalyticsResponse analytics(@PathVariable("id") long examId) {
         requireOwnedExam(examId);
-        List<ExamResult> results = resultService.listByExamId(examId);
+        ExamAnalytics analytics = analyticsAggregator.snapshot(examId);
+        ScoreSketch totalScores = analytics.totalScores();
         double passLineRatio = 0.6d;
 
-        if (results.isEmpty()) {
-            return new ExamAnalyticsResponse(
-                    0,
-                    0,
-                    0,
-                    0,
-                    0.0d,
-                    0.0d,
-                    passLineRatio,
-                    List.of()
-            );
-        }
-
-        int participants = results.size();
-        int maxTotal = results.stream().mapToInt(ExamResult::getTotalScore).max().orElse(0);
-        int minTotal = results.stream().mapToInt(ExamResult::getTotalScore).min().orElse(0);
-        int sumTotal = results.stream().mapToInt(ExamResult::getTotalScore).sum();
-        double avgTotal = ((double) sumTotal) / participants;
-        int maxScore = results.stream().mapToInt(ExamResult::getMaxScore).max().orElse(0);
-        long passed = results.stream()
-                .filter(r -> r.getMaxScore() > 0)
-                .filter(r -> ((double) r.getTotalScore()) / r.getMaxScore() >= passLineRatio)
-                .count();
-        double passRate = ((double) passed) / participants;
-
-        ConcurrentHashMap<Long, QuestionStatAgg> agg = new ConcurrentHashMap<>();
-        for (ExamResult result : results) {
-            for (ExamResultItem item : result.getItems()) {
-                agg.compute(item.getQuestionId(), (k, existing) -> {
-                    QuestionStatAgg next = existing == null ? new QuestionStatAgg(item.getQuestionId(), item.getQuestionType(), item.getMaxScore()) : existing;
-                    next.totalCount++;
-                    if (item.isCorrect()) {
-                        next.correctCount++;
-                    }
-                    return next;
-                });
-            }
-        }
-
-        List<QuestionStat> questionStats = agg.values().stream()
-                .sorted(Comparator.comparingLong(a -> a.questionId))
-                .map(a -> new QuestionStat(
-                        a.questionId,
-                        a.questionType,
-                        a.maxScore,
-                        a.correctCount,
-                        a.totalCount,
-                        a.totalCount == 0 ? 0.0d : ((double) a.correctCount) / a.totalCount
+        List<QuestionStat> questionStats = analytics.getQuestions().stream()
+                .map(q -> new QuestionStat(
+                        q.getQuestionId(),
+                        q.getQuestionType(),
+                        q.getMaxScore(),
+                        q.getCorrectCount(),
+                        q.getTotalCount(),
+                        q.getTotalCount() == 0 ? 0.0d : ((double) q.getCorrectCount()) / q.getTotalCount()
                 ))
                 .collect(Collectors.toList());
 
         return new ExamAnalyticsResponse(
-                participants,
-                maxScore,
-                maxTotal,
-                minTotal,
-                avgTotal,
-                passRate,
+                analytics.participants(),
+                analytics.maxScore(),
+                analytics.maxTotal(),
+                analytics.minTotal(),
+                analytics.avgTotal(),
+                analytics.passRate(passLineRatio),
                 passLineRatio,
-                questionStats
+                questionStats,
+                percentiles(totalScores, 1.0d),
+                totalScores.stdDev(),
+                ScoreDistribution.of(analytics.scoreRatios()),
+                GroupDistribution.of(analytics.groupRatios())
         );
     }
 
+    /**
+     * Score distribution of several exams together, either those listed in {@code examIds} or every exam of
+     * {@code classId}. Scores are compared as percentages of each paper's maximum, since papers differ in total.
+     */
+    @GetMapping("/distribution")
+    public ScoreReportResponse distribution(
+            @RequestParam(value = "examIds", required = false) List<Long> examIds,
+            @RequestParam(value = "classId", required = false) Long classId
+    ) {
+        List<Long> ids;
+        if (classId != null) {
+            String username = currentUsername();
+            classRepository.findById(classId)
+                    .filter(c -> c.getOwnerUsername().equals(username))
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "not_found"));
+            ids = examService.listByClassIds(List.of(classId)).stream()
+                    .map(ExamArrangement::getId)
+                    .collect(Collectors.toList());
+        } else if (examIds != null && !examIds.isEmpty()) {
+            ids = examIds.stream().distinct().collect(Collectors.toList());
+            ids.forEach(this::requireOwnedExam);
+        } else {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "examIds or classId is required");
+        }
+
+        ScoreSketch ratios = new ScoreSketch();
+        Map<String, ScoreSketch> groups = new TreeMap<>();
+        for (long id : ids) {
+            ExamAnalytics analytics = analyticsAggregator.snapshot(id);
+            ratios.merge(analytics.scoreRatios());
+            analytics.groupRatios().forEach((type, sketch) -> groups.merge(type, sketch, ScoreSketch::merge));
+        }
+        return new ScoreReportResponse(ids, ScoreDistribution.of(ratios), GroupDistribution.of(groups));
+    }
+
+    private static Map<String, Double> percentiles(ScoreSketch sketch, double scale) {
+        Map<String, Double> out = new LinkedHashMap<>();
+        for (int p : new int[]{10, 25, 50, 75, 90}) {
+            out.put("p" + p, sketch.quantile(p / 100.0d) * scale);
+        }
+        return out;
+    }
+
     @GetMapping(path = "/{id}/analytics/ai", produces = MediaType.APPLICATION_JSON_VALUE)
     public AiAnalysisResponse aiAnalytics(@PathVariable("id") long examId) {
         requireOwnedExam(examId);
@@ -447,6 +508,14 @@ public class TeacherExamController {
             }
         });
 
+        Map<String, long[]> tabTotals = new java.util.HashMap<>();
+        m.getTabStats().forEach(t -> {
+            long[] total = tabTotals.computeIfAbsent(t.getUsername(), u -> new long[2]);
+            total[0] += t.getTabSwitchCount();
+            total[1] += t.getTabAwaySeconds();
+            usernames.add(t.getUsername());
+        });
+
         List<String> sortedUsernames = usernames.stream()
                 .sorted((a, b) -> {
                     String sa = studentInfos.get(a) == null ? "" : String.valueOf(studentInfos.get(a).getStudentNo() == null ? "" : studentInfos.get(a).getStudentNo());
@@ -478,10 +547,10 @@ public class TeacherExamController {
                         status = "作答中";
                     }
 
-                    TabStats tabStats = computeTabStats(m.getEvents(), u);
+                    long[] tab = tabTotals.getOrDefault(u, new long[2]);
                     boolean isMarked = markedSet.contains(u);
 
-                    return new ExportRow(u, fullName, studentNo, isMarked, status, tabStats.tabSwitchCount, tabStats.tabAwaySeconds);
+                    return new ExportRow(u, fullName, studentNo, isMarked, status, (int) tab[0], tab[1]);
                 })
                 .filter(r -> {
                     if ("IN_PROGRESS".equals(statusFilter) && !"作答中".equals(r.status)) {
@@ -534,44 +603,6 @@ public class TeacherExamController {
         }
     }
 
-    private static TabStats computeTabStats(List<ExamMonitorResponse.ProctorEventBrief> events, String username) {
-        if (username == null || username.isBlank()) {
-            return new TabStats(0, 0);
-        }
-        List<ExamMonitorResponse.ProctorEventBrief> userEvents = events.stream()
-                .filter(e -> username.equals(e.getUsername()))
-                .sorted(Comparator.comparing(ExamMonitorResponse.ProctorEventBrief::getCreatedAt))
-                .collect(Collectors.toList());
-
-        int tabSwitchCount = 0;
-        Long awayStart = null;
-        long awayMs = 0;
-
-        for (ExamMonitorResponse.ProctorEventBrief e : userEvents) {
-            long ts;
-            try {
-                ts = Instant.parse(e.getCreatedAt()).toEpochMilli();
-            } catch (Exception ex) {
-                continue;
-            }
-            if ("WINDOW_BLUR".equals(e.getType()) || "VISIBILITY_HIDDEN".equals(e.getType())) {
-                if (awayStart == null) {
-                    awayStart = ts;
-                }
-            } else if ("WINDOW_FOCUS".equals(e.getType()) || "VISIBILITY_VISIBLE".equals(e.getType())) {
-                if (awayStart != null) {
-                    if (ts > awayStart) {
-                        awayMs += ts - awayStart;
-                    }
-                    tabSwitchCount += 1;
-                    awayStart = null;
-                }
-            }
-        }
-
-        return new TabStats(tabSwitchCount, Math.round(awayMs / 1000.0d));
-    }
-
     private static String formatDurationCn(long seconds) {
         if (seconds <= 0) {
             return "0 秒";
@@ -624,16 +655,6 @@ public class TeacherExamController {
         }
     }
 
-    private static class TabStats {
-        private final int tabSwitchCount;
-        private final long tabAwaySeconds;
-
-        private TabStats(int tabSwitchCount, long tabAwaySeconds) {
-            this.tabSwitchCount = tabSwitchCount;
-            this.tabAwaySeconds = tabAwaySeconds;
-        }
-    }
-
     private static class ExportRow {
         private final String username;
         private final String fullName;
@@ -662,24 +683,78 @@ public class TeacherExamController {
         }
     }
 
+    @GetMapping("/{id}/admission")
+    public ExamAdmissionService.AdmissionStats admission(@PathVariable("id") long examId) {
+        requireOwnedExam(examId);
+        return admissionService.stats(examId);
+    }
+
+    @PostMapping("/{id}/regrade")
+    public RegradeJob regrade(@PathVariable("id") long examId, @RequestBody(required = false) RegradeRequest request) {
+        requireOwnedExam(examId);
+        Long questionId = request == null ? null : request.getQuestionId();
+        return regradeService.start(examId, questionId, currentUsername());
+    }
+
+    @GetMapping("/{id}/regrade")
+    public List<RegradeJob> regradeJobs(@PathVariable("id") long examId) {
+        requireOwnedExam(examId);
+        return regradeService.listByExamId(examId);
+    }
+
+    @GetMapping("/{id}/regrade/{jobId}")
+    public RegradeJob regradeJob(@PathVariable("id") long examId, @PathVariable("jobId") long jobId) {
+        requireOwnedExam(examId);
+        return regradeService.findById(jobId)
+                .filter(j -> j.getExamId() == examId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "not_found"));
+    }
+
+    @PostMapping("/{id}/regrade/{jobId}/resume")
+    public RegradeJob resumeRegrade(@PathVariable("id") long examId, @PathVariable("jobId") long jobId) {
+        regradeJob(examId, jobId);
+        return regradeService.resume(jobId);
+    }
+
     @GetMapping("/{id}/monitor")
     public ExamMonitorResponse monitor(@PathVariable("id") long examId) {
         requireOwnedExam(examId);
-        List<ExamAttempt> attempts = attemptRepository.listByExamId(examId);
-        int startedCount = attempts.size();
-        int inProgressCount = (int) attempts.stream().filter(a -> a.getStatus() == AttemptStatus.IN_PROGRESS).count();
-        int submittedCount = (int) attempts.stream()
-                .filter(a -> a.getStatus() == AttemptStatus.SUBMITTED || a.getStatus() == AttemptStatus.AUTO_SUBMITTED)
-                .count();
-        Set<String> inProgressUsers = attempts.stream()
-                .filter(a -> a.getStatus() == AttemptStatus.IN_PROGRESS)
-                .map(ExamAttempt::getStudentUsername)
-                .collect(Collectors.toSet());
-        Set<String> submittedUsers = attempts.stream()
-                .filter(a -> a.getStatus() == AttemptStatus.SUBMITTED || a.getStatus() == AttemptStatus.AUTO_SUBMITTED)
-                .map(ExamAttempt::getStudentUsername)
-                .collect(Collectors.toSet());
-        int resultsCount = resultService.listByExamId(examId).size();
+        return buildMonitor(examId);
+    }
+
+    /**
+     * Streams the monitor: a snapshot, then coalesced deltas and a fresh snapshot every resync interval.
+     */
+    @GetMapping(path = "/{id}/monitor/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter monitorStream(@PathVariable("id") long examId) {
+        requireOwnedExam(examId);
+        return monitorHub.subscribe(examId, () -> buildMonitor(examId));
+    }
+
+    @GetMapping("/{id}/attempts/{attemptId}/timeline")
+    public AttemptTimeline attemptTimeline(@PathVariable("id") long examId, @PathVariable("attemptId") long attemptId) {
+        requireOwnedExam(examId);
+        boolean inExam = attemptRepository.findHeader(attemptId)
+                .map(h -> h.getExamId() == examId)
+                .orElse(false);
+        if (!inExam) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "not_found");
+        }
+        return compactionService.timeline(examId, attemptId);
+    }
+
+    private ExamMonitorResponse buildMonitor(long examId) {
+        // counts come from the summary query and the user lists from attempt headers, so a resync stays cheap
+        ExamSummary summary = examService.summary(examId);
+        Set<String> inProgressUsers = new HashSet<>();
+        Set<String> submittedUsers = new HashSet<>();
+        for (AttemptHeaderIndex.AttemptHeader header : attemptRepository.listHeadersByExamId(examId)) {
+            if (header.getStatus() == AttemptStatus.IN_PROGRESS) {
+                inProgressUsers.add(header.getStudentUsername());
+            } else if (header.getStatus() == AttemptStatus.SUBMITTED || header.getStatus() == AttemptStatus.AUTO_SUBMITTED) {
+                submittedUsers.add(header.getStudentUsername());
+            }
+        }
 
         ExamArrangement exam = examService.findById(examId).orElseThrow();
         List<ClassMember> classMembers = classService.listMembers(exam.getClassId());
@@ -691,7 +766,7 @@ public class TeacherExamController {
                 ));
 
         List<ProctorEvent> events = proctorService.listRecentEvents(examId, 50);
-        List<HeartbeatRecord> heartbeats = proctorService.listLatestHeartbeats(examId);
+        List<AttemptPresence> heartbeats = proctorService.listLatestHeartbeats(examId);
 
         List<ExamMonitorResponse.ProctorEventBrief> eventDtos = events.stream()
                 .map(e -> new ExamMonitorResponse.ProctorEventBrief(
@@ -707,19 +782,24 @@ public class TeacherExamController {
                 .map(h -> new ExamMonitorResponse.HeartbeatBrief(
                         h.getAttemptId(),
                         h.getUsername(),
-                        h.getTs().toString()
+                        h.getLastTs().toString()
                 ))
                 .collect(Collectors.toList());
 
+        List<ExamMonitorHub.TabStatsBrief> tabStatDtos = proctorService.listTabStats(examId).stream()
+                .map(ExamMonitorHub.TabStatsBrief::of)
+                .collect(Collectors.toList());
+
         return new ExamMonitorResponse(
-                startedCount,
-                inProgressCount,
-                submittedCount,
-                resultsCount,
+                summary.getStarted(),
+                summary.getInProgress(),
+                summary.getSubmitted(),
+                summary.getGraded(),
                 inProgressUsers.stream().sorted().collect(Collectors.toList()),
                 submittedUsers.stream().sorted().collect(Collectors.toList()),
                 eventDtos,
                 heartbeatDtos,
+                tabStatDtos,
                 studentInfos
         );
     }
@@ -745,7 +825,7 @@ public class TeacherExamController {
                 examId,
                 targetAttempt.getId(),
                 targetUsername,
-                "TEACHER_REMIND",
+                ExamProctorService.TEACHER_REMIND,
                 message,
                 Instant.now()
         );
@@ -765,14 +845,15 @@ public class TeacherExamController {
                 .filter(a -> a.getStatus() == AttemptStatus.IN_PROGRESS)
                 .max(Comparator.comparingLong(ExamAttempt::getId))
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "no_in_progress_attempt"));
+        autosaveService.flush(targetAttempt.getId());
         return attemptRepository.autoSubmitIfInProgress(targetAttempt.getId())
                 .map(submitted -> {
-                    resultService.ensureResultCreated(examId, submitted);
+                    gradingQueue.enqueue(submitted.getId());
                     proctorService.recordEvent(
                             examId,
                             submitted.getId(),
                             targetUsername,
-                            "TEACHER_FORCE_SUBMIT",
+                            ExamProctorService.TEACHER_FORCE_SUBMIT,
                             "",
                             Instant.now()
                     );
@@ -853,6 +934,18 @@ public class TeacherExamController {
                 .orElse(false);
     }
 
+    public static class RegradeRequest {
+        private Long questionId;
+
+        public Long getQuestionId() {
+            return questionId;
+        }
+
+        public void setQuestionId(Long questionId) {
+            this.questionId = questionId;
+        }
+    }
+
     public static class ProctorCommandRequest {
         private String username;
         private String message;
@@ -948,6 +1041,8 @@ public class TeacherExamController {
         private final String updatedAt;
         private final int submittedCount;
         private final int unsubmittedCount;
+        private final int startedCount;
+        private final int inProgressCount;
         private final ExamSettings settings;
 
         public ExamResponse(
@@ -963,6 +1058,8 @@ public class TeacherExamController {
                 String updatedAt,
                 int submittedCount,
                 int unsubmittedCount,
+                int startedCount,
+                int inProgressCount,
                 ExamSettings settings
         ) {
             this.id = id;
@@ -977,14 +1074,16 @@ public class TeacherExamController {
             this.updatedAt = updatedAt;
             this.submittedCount = submittedCount;
             this.unsubmittedCount = unsubmittedCount;
+            this.startedCount = startedCount;
+            this.inProgressCount = inProgressCount;
             this.settings = settings;
         }
 
         public static ExamResponse from(ExamArrangement exam, ExamService examService) {
-             return from(exam, examService, "", 0, 0, null);
+             return from(exam, examService, "", ExamSummary.empty(exam.getId()), null);
         }
 
-        public static ExamResponse from(ExamArrangement exam, ExamService examService, String className, int submittedCount, int unsubmittedCount, ExamSettings settings) {
+        public static ExamResponse from(ExamArrangement exam, ExamService examService, String className, ExamSummary summary, ExamSettings settings) {
             String status = examService.statusOf(exam, Instant.now()).name();
             return new ExamResponse(
                     exam.getId(),
@@ -997,8 +1096,10 @@ public class TeacherExamController {
                     status,
                     exam.getCreatedAt().toString(),
                     exam.getUpdatedAt().toString(),
-                    submittedCount,
-                    unsubmittedCount,
+                    summary.getGraded(),
+                    summary.getUngraded(),
+                    summary.getStarted(),
+                    summary.getInProgress(),
                     settings
             );
         }
@@ -1015,6 +1116,8 @@ public class TeacherExamController {
         public String getUpdatedAt() { return updatedAt; }
         public int getSubmittedCount() { return submittedCount; }
         public int getUnsubmittedCount() { return unsubmittedCount; }
+        public int getStartedCount() { return startedCount; }
+        public int getInProgressCount() { return inProgressCount; }
         public ExamSettings getSettings() { return settings; }
     }
 
@@ -1111,6 +1214,10 @@ public class TeacherExamController {
         private final double passRate;
         private final double passLineRatio;
         private final List<QuestionStat> questionStats;
+        private final Map<String, Double> percentiles;
+        private final double stdDevTotalScore;
+        private final ScoreDistribution ratioDistribution;
+        private final List<GroupDistribution> questionTypeDistributions;
 
         public ExamAnalyticsResponse(
                 int participants,
@@ -1120,7 +1227,11 @@ public class TeacherExamController {
                 double avgTotalScore,
                 double passRate,
                 double passLineRatio,
-                List<QuestionStat> questionStats
+                List<QuestionStat> questionStats,
+                Map<String, Double> percentiles,
+                double stdDevTotalScore,
+                ScoreDistribution ratioDistribution,
+                List<GroupDistribution> questionTypeDistributions
         ) {
             this.participants = participants;
             this.maxScore = maxScore;
@@ -1130,6 +1241,10 @@ public class TeacherExamController {
             this.passRate = passRate;
             this.passLineRatio = passLineRatio;
             this.questionStats = questionStats;
+            this.percentiles = percentiles;
+            this.stdDevTotalScore = stdDevTotalScore;
+            this.ratioDistribution = ratioDistribution;
+            this.questionTypeDistributions = questionTypeDistributions;
         }
 
         public int getParticipants() {
@@ -1163,6 +1278,165 @@ public class TeacherExamController {
         public List<QuestionStat> getQuestionStats() {
             return questionStats;
         }
+
+        /**
+         * Total-score percentiles in points, keyed p10, p25, p50, p75 and p90.
+         */
+        public Map<String, Double> getPercentiles() {
+            return percentiles;
+        }
+
+        public double getStdDevTotalScore() {
+            return stdDevTotalScore;
+        }
+
+        public ScoreDistribution getRatioDistribution() {
+            return ratioDistribution;
+        }
+
+        public List<GroupDistribution> getQuestionTypeDistributions() {
+            return questionTypeDistributions;
+        }
+    }
+
+    /**
+     * Scores as percentages of the paper's maximum: percentiles and counts per grade band.
+     */
+    public static class ScoreDistribution {
+        private static final int[] BAND_EDGES = {0, 600, 700, 800, 900, ScoreSketch.PERMILLE + 1};
+        private static final String[] BAND_LABELS = {"<60%", "60-69%", "70-79%", "80-89%", "90-100%"};
+
+        private final long count;
+        private final double mean;
+        private final double stdDev;
+        private final Map<String, Double> percentiles;
+        private final List<DistributionBin> bins;
+
+        public ScoreDistribution(long count, double mean, double stdDev, Map<String, Double> percentiles, List<DistributionBin> bins) {
+            this.count = count;
+            this.mean = mean;
+            this.stdDev = stdDev;
+            this.percentiles = percentiles;
+            this.bins = bins;
+        }
+
+        public static ScoreDistribution of(ScoreSketch ratios) {
+            double toPercent = 100.0d / ScoreSketch.PERMILLE;
+            List<DistributionBin> bins = new ArrayList<>();
+            for (int i = 0; i < BAND_LABELS.length; i++) {
+                bins.add(new DistributionBin(
+                        BAND_LABELS[i],
+                        BAND_EDGES[i] * toPercent,
+                        Math.min(BAND_EDGES[i + 1], ScoreSketch.PERMILLE) * toPercent,
+                        ratios.countBetween(BAND_EDGES[i], BAND_EDGES[i + 1])
+                ));
+            }
+            return new ScoreDistribution(
+                    ratios.count(),
+                    ratios.mean() * toPercent,
+                    ratios.stdDev() * toPercent,
+                    percentiles(ratios, toPercent),
+                    bins
+            );
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getStdDev() {
+            return stdDev;
+        }
+
+        public Map<String, Double> getPercentiles() {
+            return percentiles;
+        }
+
+        public List<DistributionBin> getBins() {
+            return bins;
+        }
+    }
+
+    public static class DistributionBin {
+        private final String label;
+        private final double fromPercent;
+        private final double toPercent;
+        private final long count;
+
+        public DistributionBin(String label, double fromPercent, double toPercent, long count) {
+            this.label = label;
+            this.fromPercent = fromPercent;
+            this.toPercent = toPercent;
+            this.count = count;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public double getFromPercent() {
+            return fromPercent;
+        }
+
+        public double getToPercent() {
+            return toPercent;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+    public static class GroupDistribution {
+        private final String questionType;
+        private final ScoreDistribution distribution;
+
+        public GroupDistribution(String questionType, ScoreDistribution distribution) {
+            this.questionType = questionType;
+            this.distribution = distribution;
+        }
+
+        public static List<GroupDistribution> of(Map<String, ScoreSketch> ratiosByType) {
+            return ratiosByType.entrySet().stream()
+                    .map(e -> new GroupDistribution(e.getKey(), ScoreDistribution.of(e.getValue())))
+                    .collect(Collectors.toList());
+        }
+
+        public String getQuestionType() {
+            return questionType;
+        }
+
+        public ScoreDistribution getDistribution() {
+            return distribution;
+        }
+    }
+
+    public static class ScoreReportResponse {
+        private final List<Long> examIds;
+        private final ScoreDistribution distribution;
+        private final List<GroupDistribution> questionTypeDistributions;
+
+        public ScoreReportResponse(List<Long> examIds, ScoreDistribution distribution, List<GroupDistribution> questionTypeDistributions) {
+            this.examIds = examIds;
+            this.distribution = distribution;
+            this.questionTypeDistributions = questionTypeDistributions;
+        }
+
+        public List<Long> getExamIds() {
+            return examIds;
+        }
+
+        public ScoreDistribution getDistribution() {
+            return distribution;
+        }
+
+        public List<GroupDistribution> getQuestionTypeDistributions() {
+            return questionTypeDistributions;
+        }
     }
 
     public static class AiAnalysisResponse {
@@ -1178,28 +1452,8 @@ public class TeacherExamController {
     }
 
     private String buildAiPrompt(ExamArrangement exam, ExamAnalyticsResponse analytics, List<ExamResult> results) {
-        List<Integer> scores = results.stream()
-                .map(ExamResult::getTotalScore)
-                .sorted()
-                .collect(Collectors.toList());
-        int n = scores.size();
-        double avg = analytics.getAvgTotalScore();
-        double variance = scores.stream()
-                .mapToDouble(s -> {
-                    double d = s - avg;
-                    return d * d;
-                })
-                .sum() / (n == 0 ? 1 : n);
-        double stddev = Math.sqrt(variance);
-
-        double median;
-        if (n == 0) {
-            median = 0;
-        } else if (n % 2 == 1) {
-            median = scores.get(n / 2);
-        } else {
-            median = (scores.get(n / 2 - 1) + scores.get(n / 2)) / 2.0;
-        }
+        double stddev = analytics.getStdDevTotalScore();
+        double median = analytics.getPercentiles().getOrDefault("p50", 0.0d);
 
         Map<Long, String> questionStemById = attemptRepository.listByExamId(exam.getId()).stream()
                 .flatMap(a -> a.getQuestions().stream())
@@ -1389,20 +1643,6 @@ public class TeacherExamController {
         }
     }
 
-    private static class QuestionStatAgg {
-        private final long questionId;
-        private final String questionType;
-        private final int maxScore;
-        private int correctCount;
-        private int totalCount;
-
-        private QuestionStatAgg(long questionId, String questionType, int maxScore) {
-            this.questionId = questionId;
-            this.questionType = questionType;
-            this.maxScore = maxScore;
-        }
-    }
-
     public static class QuestionStat {
         private final long questionId;
         private final String questionType;
@@ -1461,6 +1701,7 @@ public class TeacherExamController {
         private final List<String> submittedUsers;
         private final List<ProctorEventBrief> events;
         private final List<HeartbeatBrief> latestHeartbeats;
+        private final List<ExamMonitorHub.TabStatsBrief> tabStats;
         private final Map<String, StudentMonitorInfo> studentInfos;
 
         public ExamMonitorResponse(
@@ -1472,6 +1713,7 @@ public class TeacherExamController {
                 List<String> submittedUsers,
                 List<ProctorEventBrief> events,
                 List<HeartbeatBrief> latestHeartbeats,
+                List<ExamMonitorHub.TabStatsBrief> tabStats,
                 Map<String, StudentMonitorInfo> studentInfos
         ) {
             this.startedCount = startedCount;
@@ -1482,6 +1724,7 @@ public class TeacherExamController {
             this.submittedUsers = submittedUsers;
             this.events = events;
             this.latestHeartbeats = latestHeartbeats;
+            this.tabStats = tabStats;
             this.studentInfos = studentInfos;
         }
 
@@ -1517,6 +1760,13 @@ public class TeacherExamController {
             return latestHeartbeats;
         }
 
+        /**
+         * Tab switches per attempt over the whole exam, not just the recent events listed above.
+         */
+        public List<ExamMonitorHub.TabStatsBrief> getTabStats() {
+            return tabStats;
+        }
+
         public Map<String, StudentMonitorInfo> getStudentInfos() {
             return studentInfos;
         }
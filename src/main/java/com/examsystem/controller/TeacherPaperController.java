@@ -1,5 +1,6 @@
 package com.examsystem.controller;
 
+import com.examsystem.attempt.PaperSnapshotService;
 import com.examsystem.paper.Paper;
 import com.examsystem.paper.PaperDraft;
 import com.examsystem.paper.PaperItem;
@@ -41,11 +42,18 @@ import org.springframework.web.server.ResponseStatusException;
 public class TeacherPaperController {
     private final PaperService paperService;
     private final QuestionService questionService;
+    private final PaperSnapshotService paperSnapshotService;
     private final JdbcTemplate jdbcTemplate;
 
-    public TeacherPaperController(PaperService paperService, QuestionService questionService, JdbcTemplate jdbcTemplate) {
+    public TeacherPaperController(
+            PaperService paperService,
+            QuestionService questionService,
+            PaperSnapshotService paperSnapshotService,
+            JdbcTemplate jdbcTemplate
+    ) {
         this.paperService = paperService;
         this.questionService = questionService;
+        this.paperSnapshotService = paperSnapshotService;
         this.jdbcTemplate = jdbcTemplate;
     }
 
@@ -82,6 +90,7 @@ public class TeacherPaperController {
             @RequestBody CreateOrUpdatePaperRequest request
     ) {
         Optional<Paper> updated = paperService.update(id, request.toDraft());
+        paperSnapshotService.evict(id);
         return updated.<ResponseEntity<?>>map(p -> ResponseEntity.ok(PaperResponse.from(p, computePaperDifficulty(p.getId()))))
                 .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "not_found")));
     }
@@ -90,6 +99,7 @@ public class TeacherPaperController {
     public ResponseEntity<?> delete(@PathVariable("id") long id) {
         try {
             boolean deleted = paperService.delete(id);
+            paperSnapshotService.evict(id);
             if (!deleted) {
                 return ResponseEntity.ok(Map.of("status", "ok"));
             }
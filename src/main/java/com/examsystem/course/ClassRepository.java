@@ -1,33 +1,59 @@
 package com.examsystem.course;
 
+import com.examsystem.exam.ExamSummaryRepository;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public class ClassRepository {
     private final JdbcTemplate jdbcTemplate;
+    private final ExamSummaryRepository summaries;
+    private final ConcurrentHashMap<Long, Set<String>> warmRosters = new ConcurrentHashMap<>();
 
-    public ClassRepository(JdbcTemplate jdbcTemplate) {
+    public ClassRepository(JdbcTemplate jdbcTemplate, ExamSummaryRepository summaries) {
         this.jdbcTemplate = jdbcTemplate;
+        this.summaries = summaries;
     }
 
+    public int warmRoster(long classId) {
+        Set<String> roster = Set.copyOf(jdbcTemplate.queryForList(
+                "SELECT username FROM class_members WHERE class_id = ?",
+                String.class,
+                classId
+        ));
+        warmRosters.put(classId, roster);
+        return roster.size();
+    }
+
+    public void evictRoster(long classId) {
+        warmRosters.remove(classId);
+    }
+
+    @Transactional
     public void deleteUsers(List<String> usernames) {
         if (usernames == null || usernames.isEmpty()) {
             return;
         }
         for (String username : usernames) {
             jdbcTemplate.update("DELETE FROM attempt_heartbeats WHERE username = ?", username);
+            jdbcTemplate.update("DELETE FROM attempt_presence WHERE username = ?", username);
+            jdbcTemplate.update("DELETE FROM attempt_tab_stats WHERE username = ?", username);
             jdbcTemplate.update("DELETE FROM proctor_events WHERE username = ?", username);
             jdbcTemplate.update("DELETE FROM question_bank_members WHERE username = ?", username);
+            summaries.memberRemovedEverywhere(username);
             jdbcTemplate.update("DELETE FROM class_members WHERE username = ?", username);
             jdbcTemplate.update("DELETE FROM users WHERE username = ?", username);
         }
+        warmRosters.clear();
     }
 
     public Classroom create(String name, String ownerUsername, String inviteCode) {
@@ -107,12 +133,14 @@ public class ClassRepository {
         );
     }
 
+    @Transactional
     public void addMember(long classId, String username) {
         Instant now = Instant.now();
         jdbcTemplate.update(
                 "INSERT INTO class_members(class_id, username, joined_at) VALUES (?, ?, ?)",
                 classId, username, java.sql.Timestamp.from(now)
         );
+        summaries.rosterChanged(classId, 1);
     }
 
     public boolean userExists(String username) {
@@ -125,6 +153,10 @@ public class ClassRepository {
     }
 
     public boolean isMember(long classId, String username) {
+        Set<String> roster = warmRosters.get(classId);
+        if (roster != null && roster.contains(username)) {
+            return true;
+        }
         Integer count = jdbcTemplate.queryForObject(
                 "SELECT COUNT(1) FROM class_members WHERE class_id = ? AND username = ?",
                 Integer.class,
@@ -165,15 +197,23 @@ public class ClassRepository {
         );
     }
 
+    @Transactional
     public void removeMember(long classId, String username) {
-        jdbcTemplate.update(
+        int removed = jdbcTemplate.update(
                 "DELETE FROM class_members WHERE class_id = ? AND username = ?",
                 classId, username
         );
+        if (removed > 0) {
+            summaries.rosterChanged(classId, -removed);
+        }
+        warmRosters.remove(classId);
     }
 
+    @Transactional
     public void delete(long classId) {
+        summaries.classDeleted(classId);
         jdbcTemplate.update("DELETE FROM classes WHERE id = ?", classId);
+        warmRosters.remove(classId);
     }
 
     public List<String> getMembersOnlyInClass(long classId) {
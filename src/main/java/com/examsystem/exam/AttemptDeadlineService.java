@@ -0,0 +1,200 @@
+package com.examsystem.exam;
+
+import com.examsystem.attempt.AnswerAutosaveService;
+import com.examsystem.attempt.ExamAttempt;
+import com.examsystem.attempt.InMemoryExamAttemptRepository;
+import com.examsystem.cluster.ClusterService;
+import com.examsystem.cluster.ClusterViewChangedEvent;
+import com.examsystem.result.GradingQueueService;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Enforces {@link ExamSettings#getDurationMinutes()}: every in-progress attempt whose time runs out before the
+ * exam ends has one entry on a timing wheel at startedAt + duration, and is auto-submitted when the wheel reaches
+ * it. Attempts that run until the exam's endAt are left to {@link ExamMaintenanceService}. One thread turns the
+ * wheel every {@value #TICK_MILLIS} ms while it holds entries and sleeps while it is empty.
+ */
+@Service
+public class AttemptDeadlineService {
+    static final long TICK_MILLIS = 100;
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(5);
+
+    private final ExamService examService;
+    private final InMemoryExamAttemptRepository attemptRepository;
+    private final GradingQueueService gradingQueue;
+    private final AnswerAutosaveService autosaveService;
+    private final ClusterService clusterService;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition scheduled = lock.newCondition();
+    private final TimingWheel wheel = new TimingWheel(System.currentTimeMillis() / TICK_MILLIS);
+    private final Thread ticker = new Thread(this::turn, "attempt-deadlines");
+
+    public AttemptDeadlineService(
+            ExamService examService,
+            InMemoryExamAttemptRepository attemptRepository,
+            GradingQueueService gradingQueue,
+            AnswerAutosaveService autosaveService,
+            ClusterService clusterService
+    ) {
+        this.examService = examService;
+        this.attemptRepository = attemptRepository;
+        this.gradingQueue = gradingQueue;
+        this.autosaveService = autosaveService;
+        this.clusterService = clusterService;
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        ticker.interrupt();
+    }
+
+    /**
+     * Rebuilds the wheel from the in-progress attempts of owned exams, after a restart or when ownership moved;
+     * deadlines that passed in the meantime fire on the first tick.
+     */
+    @EventListener({ApplicationReadyEvent.class, ClusterViewChangedEvent.class})
+    public void rebuild() {
+        Map<Long, ExamSettings> settingsByExam = new HashMap<>();
+        for (InMemoryExamAttemptRepository.OpenAttempt open : attemptRepository.listOpenAttempts(null)) {
+            if (!clusterService.owns(open.getExamId())) {
+                continue;
+            }
+            ExamSettings settings = settingsByExam.computeIfAbsent(open.getExamId(), examService::getSettingsOrDefault);
+            deadlineOf(settings, open.getStartedAt(), open.getUpdatedAt(), open.getExamEndAt())
+                    .ifPresent(deadline -> schedule(open.getAttemptId(), deadline));
+        }
+    }
+
+    /**
+     * When the attempt's time is up: startedAt plus the exam's duration, capped at the exam's endAt.
+     */
+    public Instant effectiveEndAt(ExamArrangement exam, Instant startedAt) {
+        ExamSettings settings = examService.getSettingsOrDefault(exam.getId());
+        return deadlineOf(settings, startedAt, startedAt, exam.getEndAt()).orElse(exam.getEndAt());
+    }
+
+    public void track(ExamAttempt attempt, ExamArrangement exam) {
+        ExamSettings settings = examService.getSettingsOrDefault(exam.getId());
+        deadlineOf(settings, attempt.getStartedAt(), attempt.getUpdatedAt(), exam.getEndAt())
+                .ifPresent(deadline -> schedule(attempt.getId(), deadline));
+    }
+
+    /**
+     * Recomputes the deadlines of an exam's open attempts after its end time or duration changed.
+     */
+    public void retrackExam(long examId) {
+        ExamSettings settings = examService.getSettingsOrDefault(examId);
+        for (InMemoryExamAttemptRepository.OpenAttempt open : attemptRepository.listOpenAttempts(examId)) {
+            Optional<Instant> deadline = deadlineOf(settings, open.getStartedAt(), open.getUpdatedAt(), open.getExamEndAt());
+            if (deadline.isPresent()) {
+                schedule(open.getAttemptId(), deadline.get());
+            } else {
+                cancel(open.getAttemptId());
+            }
+        }
+    }
+
+    public void cancel(long attemptId) {
+        lock.lock();
+        try {
+            wheel.cancel(attemptId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return wheel.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Optional<Instant> deadlineOf(ExamSettings settings, Instant startedAt, Instant updatedAt, Instant examEndAt) {
+        Integer minutes = settings.getDurationMinutes();
+        if (minutes == null || minutes <= 0) {
+            return Optional.empty();
+        }
+        Instant deadline = startedAt.plusSeconds(minutes * 60L);
+        if (!deadline.isBefore(examEndAt)) {
+            return Optional.empty();
+        }
+        if (updatedAt.isAfter(deadline)) {
+            // reopened by a teacher after its time ran out: runs until the exam ends
+            return Optional.empty();
+        }
+        return Optional.of(deadline);
+    }
+
+    private void schedule(long attemptId, Instant deadline) {
+        long deadlineTick = (deadline.toEpochMilli() + TICK_MILLIS - 1) / TICK_MILLIS;
+        lock.lock();
+        try {
+            if (wheel.size() == 0) {
+                wheel.advanceTo(System.currentTimeMillis() / TICK_MILLIS, id -> { });
+            }
+            wheel.schedule(attemptId, deadlineTick);
+            scheduled.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void turn() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<Long> due = new ArrayList<>();
+                lock.lock();
+                try {
+                    while (wheel.size() == 0) {
+                        scheduled.await();
+                    }
+                    wheel.advanceTo(System.currentTimeMillis() / TICK_MILLIS, due::add);
+                } finally {
+                    lock.unlock();
+                }
+                if (!due.isEmpty()) {
+                    close(due);
+                }
+                Thread.sleep(TICK_MILLIS - System.currentTimeMillis() % TICK_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void close(List<Long> attemptIds) {
+        try {
+            autosaveService.flush(attemptIds);
+            for (long attemptId : attemptRepository.autoSubmitInProgressByIds(attemptIds, Instant.now())) {
+                gradingQueue.enqueue(attemptId);
+            }
+        } catch (RuntimeException e) {
+            Instant retry = Instant.now().plus(RETRY_DELAY);
+            for (long attemptId : attemptIds) {
+                schedule(attemptId, retry);
+            }
+        }
+    }
+}
@@ -1,45 +1,190 @@
 package com.examsystem.exam;
 
-import com.examsystem.attempt.ExamAttempt;
+import com.examsystem.attempt.AnswerAutosaveService;
 import com.examsystem.attempt.InMemoryExamAttemptRepository;
-import com.examsystem.result.ExamResultService;
+import com.examsystem.cluster.ClusterService;
+import com.examsystem.cluster.ClusterViewChangedEvent;
+import com.examsystem.result.GradingQueueService;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+/**
+ * Auto-submits attempts when their exam ends. Each exam with attempts is tracked once, as a timer at its end time
+ * on a single scheduler thread, so nothing runs between deadlines. When a timer fires, all of the exam's
+ * in-progress attempts are closed with one UPDATE and handed to the grading queue. Only the node that owns the exam
+ * (see {@link ClusterService#owns(long)}) closes it.
+ * <p>
+ * While other nodes are alive, attempts of an owned exam may be started elsewhere, so the owner arms every open
+ * exam it owns, read from the exams table rather than from the attempts, every few seconds. It also closes
+ * {@link #CLUSTER_FLUSH_GRACE} after the end time: saves are refused from the end time on, and the grace lets
+ * the other nodes' autosave flushes write what they buffered before that.
+ */
 @Service
 public class ExamMaintenanceService {
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(5);
+    static final Duration CLUSTER_FLUSH_GRACE = Duration.ofSeconds(5);
+
     private final ExamService examService;
     private final InMemoryExamAttemptRepository attemptRepository;
-    private final ExamResultService resultService;
+    private final GradingQueueService gradingQueue;
+    private final AnswerAutosaveService autosaveService;
+    private final ClusterService clusterService;
+    private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "exam-deadlines");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ConcurrentHashMap<Long, Deadline> deadlines = new ConcurrentHashMap<>();
 
     public ExamMaintenanceService(
             ExamService examService,
             InMemoryExamAttemptRepository attemptRepository,
-            ExamResultService resultService
+            GradingQueueService gradingQueue,
+            AnswerAutosaveService autosaveService,
+            ClusterService clusterService
     ) {
         this.examService = examService;
         this.attemptRepository = attemptRepository;
-        this.resultService = resultService;
+        this.gradingQueue = gradingQueue;
+        this.autosaveService = autosaveService;
+        this.clusterService = clusterService;
+        this.timer.setRemoveOnCancelPolicy(true);
     }
 
-    @Scheduled(fixedDelay = 60000)
-    public void scheduledTick() {
-        runOnce(Instant.now());
+    /**
+     * Arms the deadlines of owned exams that have attempts in progress, after a restart and when ownership moved.
+     * Exams that already ended are closed right away.
+     */
+    @EventListener({ApplicationReadyEvent.class, ClusterViewChangedEvent.class})
+    public void trackOpenExams() {
+        for (Map.Entry<Long, Instant> e : attemptRepository.listOpenAttemptDeadlines().entrySet()) {
+            if (clusterService.owns(e.getKey())) {
+                track(e.getKey(), e.getValue());
+            }
+        }
     }
 
+    @Scheduled(fixedDelay = 5000)
+    public void reconcile() {
+        if (!clusterService.isClustered()) {
+            return;
+        }
+        Instant now = Instant.now();
+        for (ExamArrangement exam : examService.listOpenBetween(now, now)) {
+            if (clusterService.owns(exam.getId())) {
+                track(exam);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Makes sure the exam is closed at its current end time. Cheap when the exam is already tracked with that time.
+     */
+    public void track(ExamArrangement exam) {
+        track(exam.getId(), exam.getEndAt());
+    }
+
+    /**
+     * Closes every exam that has ended by {@code now} and still has attempts in progress.
+     */
     public void runOnce(Instant now) {
-        List<ExamAttempt> inProgressAttempts = attemptRepository.listInProgressAttempts();
-        for (ExamAttempt attempt : inProgressAttempts) {
-            examService.findById(attempt.getExamId()).ifPresent(exam -> {
-                if (examService.statusOf(exam, now) != ExamStatus.ENDED) {
-                    return;
-                }
-                attemptRepository.autoSubmitIfInProgress(attempt.getId()).ifPresent(submitted -> {
-                    resultService.ensureResultCreated(exam.getId(), submitted);
-                });
-            });
+        for (Map.Entry<Long, Instant> e : attemptRepository.listOpenAttemptDeadlines().entrySet()) {
+            if (!e.getValue().isAfter(now)) {
+                closeExam(e.getKey());
+            }
+        }
+    }
+
+    private void track(long examId, Instant endAt) {
+        Deadline current = deadlines.get(examId);
+        if (current != null && current.endAt.equals(endAt)) {
+            return;
+        }
+        Deadline next = new Deadline(endAt);
+        Deadline previous = deadlines.put(examId, next);
+        if (previous != null) {
+            previous.cancel();
+        }
+        next.future = schedule(examId, next, Duration.between(Instant.now(), endAt));
+    }
+
+    private ScheduledFuture<?> schedule(long examId, Deadline deadline, Duration delay) {
+        return timer.schedule(() -> fire(examId, deadline), Math.max(0L, delay.toMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private void fire(long examId, Deadline deadline) {
+        if (deadlines.get(examId) != deadline) {
+            return;
+        }
+        if (!clusterService.owns(examId)) {
+            deadlines.remove(examId, deadline);
+            return;
+        }
+        ExamArrangement exam = examService.findById(examId).orElse(null);
+        if (exam == null) {
+            deadlines.remove(examId, deadline);
+            return;
+        }
+        Instant now = Instant.now();
+        if (exam.getEndAt().isAfter(now)) {
+            // extended since this timer was set
+            deadlines.remove(examId, deadline);
+            track(exam);
+            return;
+        }
+        Instant closeAt = clusterService.isClustered() ? exam.getEndAt().plus(CLUSTER_FLUSH_GRACE) : exam.getEndAt();
+        if (closeAt.isAfter(now)) {
+            deadline.future = schedule(examId, deadline, Duration.between(now, closeAt));
+            return;
+        }
+        try {
+            closeExam(examId);
+            deadlines.remove(examId, deadline);
+        } catch (RuntimeException e) {
+            deadline.future = schedule(examId, deadline, RETRY_DELAY);
+        }
+    }
+
+    private void closeExam(long examId) {
+        List<Long> open = attemptRepository.listInProgressIdsByExamId(examId);
+        if (open.isEmpty()) {
+            return;
+        }
+        autosaveService.flush(open);
+        for (long attemptId : attemptRepository.autoSubmitInProgressByExamId(examId, Instant.now())) {
+            gradingQueue.enqueue(attemptId);
+        }
+    }
+
+    private static class Deadline {
+        private final Instant endAt;
+        private volatile ScheduledFuture<?> future;
+
+        private Deadline(Instant endAt) {
+            this.endAt = endAt;
+        }
+
+        private void cancel() {
+            ScheduledFuture<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
         }
     }
 }
@@ -1,11 +1,17 @@
 package com.examsystem.exam;
 
+import com.examsystem.cluster.ClusterService;
+import com.examsystem.cluster.ClusterViewChangedEvent;
 import com.examsystem.course.ClassRepository;
 import com.examsystem.paper.Paper;
 import com.examsystem.paper.PaperService;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
@@ -15,11 +21,22 @@ public class ExamService {
     private final InMemoryExamRepository repository;
     private final PaperService paperService;
     private final ClassRepository classRepository;
+    private final ExamSummaryRepository summaryRepository;
+    private final ClusterService clusterService;
+    private final ConcurrentHashMap<Long, WarmExam> warmExams = new ConcurrentHashMap<>();
 
-    public ExamService(InMemoryExamRepository repository, PaperService paperService, ClassRepository classRepository) {
+    public ExamService(
+            InMemoryExamRepository repository,
+            PaperService paperService,
+            ClassRepository classRepository,
+            ExamSummaryRepository summaryRepository,
+            ClusterService clusterService
+    ) {
         this.repository = repository;
         this.paperService = paperService;
         this.classRepository = classRepository;
+        this.summaryRepository = summaryRepository;
+        this.clusterService = clusterService;
     }
 
     public ExamArrangement create(ExamDraft draft) {
@@ -33,6 +50,7 @@ public class ExamService {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "exam not found");
         }
         repository.update(id, draft);
+        warmExams.remove(id);
     }
 
     public void delete(long id) {
@@ -40,12 +58,65 @@ public class ExamService {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "exam not found");
         }
         repository.delete(id);
+        warmExams.remove(id);
     }
 
     public Optional<ExamArrangement> findById(long id) {
+        WarmExam warm = pinned(id);
+        if (warm != null) {
+            return Optional.of(warm.exam);
+        }
         return repository.findById(id);
     }
 
+    /**
+     * Pins the arrangement and parsed settings of an exam in memory until it is updated, deleted or cooled.
+     */
+    public Optional<ExamArrangement> warm(long id) {
+        Optional<ExamArrangement> exam = repository.findById(id);
+        if (exam.isEmpty()) {
+            warmExams.remove(id);
+            return Optional.empty();
+        }
+        ExamSettings settings = repository.findSettingsById(id).orElseGet(ExamSettings::defaultSettings);
+        warmExams.put(id, new WarmExam(exam.get(), settings));
+        return exam;
+    }
+
+    public void cool(long id) {
+        warmExams.remove(id);
+    }
+
+    /**
+     * The pinned exam. While other nodes are alive an edit made on one of them only drops that node's pin, so each
+     * use first compares the pin with exams.updated_at (a primary-key read) and re-pins on a mismatch.
+     */
+    private WarmExam pinned(long id) {
+        WarmExam warm = warmExams.get(id);
+        if (warm == null || !clusterService.isClustered()) {
+            return warm;
+        }
+        Optional<Instant> updatedAt = repository.findUpdatedAt(id);
+        if (updatedAt.isPresent() && updatedAt.get().equals(warm.exam.getUpdatedAt())) {
+            return warm;
+        }
+        warm(id);
+        return warmExams.get(id);
+    }
+
+    /**
+     * Pins not used while other nodes were alive were never checked against their edits; the warmup pins the
+     * exams again.
+     */
+    @EventListener
+    public void onClusterViewChanged(ClusterViewChangedEvent event) {
+        warmExams.clear();
+    }
+
+    public List<ExamArrangement> listOpenBetween(Instant startsBefore, Instant endsAfter) {
+        return repository.listOpenBetween(startsBefore, endsAfter);
+    }
+
     public List<ExamArrangement> listAll() {
         return repository.listAll();
     }
@@ -54,7 +125,22 @@ public class ExamService {
         return repository.listByClassIds(classIds);
     }
 
+    /**
+     * Attempt, result and roster counts of the given exams, read in one query.
+     */
+    public Map<Long, ExamSummary> summaries(Collection<Long> examIds) {
+        return summaryRepository.listByExamIds(examIds);
+    }
+
+    public ExamSummary summary(long examId) {
+        return summaries(List.of(examId)).getOrDefault(examId, ExamSummary.empty(examId));
+    }
+
     public ExamSettings getSettingsOrDefault(long examId) {
+        WarmExam warm = pinned(examId);
+        if (warm != null) {
+            return warm.settings;
+        }
         return repository.findSettingsById(examId).orElseGet(ExamSettings::defaultSettings);
     }
 
@@ -95,4 +181,14 @@ public class ExamService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "endAt must be after startAt");
         }
     }
+
+    private static class WarmExam {
+        private final ExamArrangement exam;
+        private final ExamSettings settings;
+
+        private WarmExam(ExamArrangement exam, ExamSettings settings) {
+            this.exam = exam;
+            this.settings = settings;
+        }
+    }
 }
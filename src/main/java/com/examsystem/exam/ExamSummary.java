@@ -0,0 +1,57 @@
+package com.examsystem.exam;
+
+/**
+ * Attempt, result and roster counts of one exam, kept in exam_summaries by the writes that change them.
+ */
+public class ExamSummary {
+    private final long examId;
+    private final int started;
+    private final int inProgress;
+    private final int submitted;
+    private final int graded;
+    private final int rosterSize;
+
+    public ExamSummary(long examId, int started, int inProgress, int submitted, int graded, int rosterSize) {
+        this.examId = examId;
+        this.started = started;
+        this.inProgress = inProgress;
+        this.submitted = submitted;
+        this.graded = graded;
+        this.rosterSize = rosterSize;
+    }
+
+    public static ExamSummary empty(long examId) {
+        return new ExamSummary(examId, 0, 0, 0, 0, 0);
+    }
+
+    public long getExamId() {
+        return examId;
+    }
+
+    public int getStarted() {
+        return started;
+    }
+
+    public int getInProgress() {
+        return inProgress;
+    }
+
+    public int getSubmitted() {
+        return submitted;
+    }
+
+    public int getGraded() {
+        return graded;
+    }
+
+    public int getRosterSize() {
+        return rosterSize;
+    }
+
+    /**
+     * Roster members without a graded result, never negative (students who left the class keep their results).
+     */
+    public int getUngraded() {
+        return Math.max(0, rosterSize - graded);
+    }
+}
@@ -0,0 +1,208 @@
+package com.examsystem.exam;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * The exam_summaries counters. The attempt, result, class and exam repositories apply their deltas here in the
+ * transaction of the write that caused them, so a summary never disagrees with the committed rows it counts. Exams
+ * without a row (created before summaries were kept) are counted from the source tables the first time they are read.
+ */
+@Repository
+public class ExamSummaryRepository {
+    private static final String COUNT_COLUMNS = "e.id, "
+            + "(SELECT COUNT(1) FROM exam_attempts a WHERE a.exam_id = e.id), "
+            + "(SELECT COUNT(1) FROM exam_attempts a WHERE a.exam_id = e.id AND a.status = 'IN_PROGRESS'), "
+            + "(SELECT COUNT(1) FROM exam_attempts a WHERE a.exam_id = e.id AND a.status IN ('SUBMITTED', 'AUTO_SUBMITTED')), "
+            + "(SELECT COUNT(1) FROM exam_results r WHERE r.exam_id = e.id), "
+            + "(SELECT COUNT(1) FROM class_members m WHERE m.class_id = e.class_id)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ExamSummaryRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Summaries of the given exams keyed by exam id; deleted exams are left out.
+     */
+    public Map<Long, ExamSummary> listByExamIds(Collection<Long> examIds) {
+        Map<Long, ExamSummary> summaries = new HashMap<>();
+        if (examIds.isEmpty()) {
+            return summaries;
+        }
+        query(examIds, summaries);
+        List<Long> missing = examIds.stream()
+                .filter(id -> !summaries.containsKey(id))
+                .distinct()
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            rebuild(missing);
+            query(missing, summaries);
+        }
+        return summaries;
+    }
+
+    /**
+     * Counts the exam from the source tables. Used when the exam is created, in the creating transaction.
+     */
+    public void create(long examId) {
+        rebuild(List.of(examId));
+    }
+
+    /**
+     * Recounts the roster after the exam may have moved to another class.
+     */
+    public void recountRoster(long examId) {
+        jdbcTemplate.update(
+                "UPDATE exam_summaries SET roster_size = "
+                        + "(SELECT COUNT(1) FROM class_members m JOIN exams e ON e.class_id = m.class_id WHERE e.id = ?) "
+                        + "WHERE exam_id = ?",
+                examId,
+                examId
+        );
+    }
+
+    public void delete(long examId) {
+        jdbcTemplate.update("DELETE FROM exam_summaries WHERE exam_id = ?", examId);
+    }
+
+    public void attemptStarted(long examId) {
+        jdbcTemplate.update(
+                "UPDATE exam_summaries SET started = started + 1, in_progress = in_progress + 1 WHERE exam_id = ?",
+                examId
+        );
+    }
+
+    public void attemptSubmitted(long attemptId) {
+        jdbcTemplate.update(
+                "UPDATE exam_summaries SET in_progress = in_progress - 1, submitted = submitted + 1 "
+                        + "WHERE exam_id = (SELECT exam_id FROM exam_attempts WHERE id = ?)",
+                attemptId
+        );
+    }
+
+    public void attemptReopened(long attemptId) {
+        jdbcTemplate.update(
+                "UPDATE exam_summaries SET in_progress = in_progress + 1, submitted = submitted - 1 "
+                        + "WHERE exam_id = (SELECT exam_id FROM exam_attempts WHERE id = ?)",
+                attemptId
+        );
+    }
+
+    public void attemptsSubmitted(long examId, int count) {
+        jdbcTemplate.update(
+                "UPDATE exam_summaries SET in_progress = in_progress - ?, submitted = submitted + ? WHERE exam_id = ?",
+                count,
+                count,
+                examId
+        );
+    }
+
+    /**
+     * Moves the given attempts, which may belong to several exams, from in progress to submitted.
+     */
+    public void attemptsSubmitted(List<Long> attemptIds) {
+        if (attemptIds.isEmpty()) {
+            return;
+        }
+        String placeholders = attemptIds.stream().map(x -> "?").collect(Collectors.joining(","));
+        List<Object[]> counts = new ArrayList<>();
+        jdbcTemplate.query(
+                "SELECT exam_id, COUNT(1) AS n FROM exam_attempts WHERE id IN (" + placeholders + ") GROUP BY exam_id",
+                rs -> {
+                    counts.add(new Object[] { rs.getInt("n"), rs.getInt("n"), rs.getLong("exam_id") });
+                },
+                attemptIds.toArray()
+        );
+        jdbcTemplate.batchUpdate(
+                "UPDATE exam_summaries SET in_progress = in_progress - ?, submitted = submitted + ? WHERE exam_id = ?",
+                counts
+        );
+    }
+
+    public void resultsGraded(Map<Long, Integer> countByExam) {
+        List<Object[]> args = countByExam.entrySet().stream()
+                .map(e -> new Object[] { e.getValue(), e.getKey() })
+                .collect(Collectors.toList());
+        if (!args.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE exam_summaries SET graded = graded + ? WHERE exam_id = ?", args);
+        }
+    }
+
+    /**
+     * Adds {@code delta} to the roster of every exam of the class.
+     */
+    public void rosterChanged(long classId, int delta) {
+        jdbcTemplate.update(
+                "UPDATE exam_summaries SET roster_size = roster_size + ? "
+                        + "WHERE exam_id IN (SELECT id FROM exams WHERE class_id = ?)",
+                delta,
+                classId
+        );
+    }
+
+    /**
+     * Takes the user off the roster of every exam of the classes they are in. Has to run before their memberships
+     * are deleted.
+     */
+    public void memberRemovedEverywhere(String username) {
+        jdbcTemplate.update(
+                "UPDATE exam_summaries SET roster_size = roster_size - 1 WHERE exam_id IN "
+                        + "(SELECT e.id FROM exams e JOIN class_members m ON m.class_id = e.class_id WHERE m.username = ?)",
+                username
+        );
+    }
+
+    public void classDeleted(long classId) {
+        jdbcTemplate.update(
+                "UPDATE exam_summaries SET roster_size = 0 WHERE exam_id IN (SELECT id FROM exams WHERE class_id = ?)",
+                classId
+        );
+    }
+
+    private void query(Collection<Long> examIds, Map<Long, ExamSummary> into) {
+        String placeholders = examIds.stream().map(x -> "?").collect(Collectors.joining(","));
+        jdbcTemplate.query(
+                "SELECT exam_id, started, in_progress, submitted, graded, roster_size FROM exam_summaries "
+                        + "WHERE exam_id IN (" + placeholders + ")",
+                rs -> {
+                    ExamSummary summary = mapSummary(rs);
+                    into.put(summary.getExamId(), summary);
+                },
+                examIds.toArray()
+        );
+    }
+
+    private void rebuild(List<Long> examIds) {
+        String placeholders = examIds.stream().map(x -> "?").collect(Collectors.joining(","));
+        try {
+            jdbcTemplate.update(
+                    "INSERT INTO exam_summaries(exam_id, started, in_progress, submitted, graded, roster_size) "
+                            + "SELECT " + COUNT_COLUMNS + " FROM exams e WHERE e.id IN (" + placeholders + ") "
+                            + "AND NOT EXISTS (SELECT 1 FROM exam_summaries s WHERE s.exam_id = e.id)",
+                    examIds.toArray()
+            );
+        } catch (DuplicateKeyException e) {
+            // another request counted them first
+        }
+    }
+
+    private static ExamSummary mapSummary(java.sql.ResultSet rs) throws java.sql.SQLException {
+        return new ExamSummary(
+                rs.getLong("exam_id"),
+                rs.getInt("started"),
+                rs.getInt("in_progress"),
+                rs.getInt("submitted"),
+                rs.getInt("graded"),
+                rs.getInt("roster_size")
+        );
+    }
+}
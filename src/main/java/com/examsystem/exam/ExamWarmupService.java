@@ -0,0 +1,198 @@
+package com.examsystem.exam;
+
+import com.examsystem.attempt.PaperSnapshotService;
+import com.examsystem.attempt.PaperVersion;
+import com.examsystem.course.ClassRepository;
+import com.examsystem.paper.Paper;
+import com.examsystem.paper.PaperService;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Loads everything an exam start needs (arrangement, settings, paper, question snapshots, class roster) into the
+ * in-process caches shortly before the exam opens, and drops it again once the exam has ended.
+ */
+@Service
+public class ExamWarmupService {
+    private final ExamService examService;
+    private final PaperService paperService;
+    private final PaperSnapshotService paperSnapshotService;
+    private final ClassRepository classRepository;
+    private final Duration leadTime;
+    private final ConcurrentHashMap<Long, WarmExamStatus> warm = new ConcurrentHashMap<>();
+
+    public ExamWarmupService(
+            ExamService examService,
+            PaperService paperService,
+            PaperSnapshotService paperSnapshotService,
+            ClassRepository classRepository,
+            @Value("${exam.warmup.lead-time:10m}") Duration leadTime
+    ) {
+        this.examService = examService;
+        this.paperService = paperService;
+        this.paperSnapshotService = paperSnapshotService;
+        this.classRepository = classRepository;
+        this.leadTime = leadTime;
+    }
+
+    @Scheduled(fixedDelay = 30000)
+    public void scheduledTick() {
+        runOnce(Instant.now());
+    }
+
+    public synchronized void runOnce(Instant now) {
+        List<ExamArrangement> upcoming = examService.listOpenBetween(now.plus(leadTime), now);
+        Set<Long> upcomingIds = upcoming.stream().map(ExamArrangement::getId).collect(Collectors.toSet());
+
+        for (WarmExamStatus status : new ArrayList<>(warm.values())) {
+            if (!upcomingIds.contains(status.getExamId())) {
+                cool(status, upcoming);
+            }
+        }
+        for (ExamArrangement exam : upcoming) {
+            try {
+                warm.put(exam.getId(), warmExam(exam.getId(), now));
+            } catch (RuntimeException e) {
+                warm.remove(exam.getId());
+                examService.cool(exam.getId());
+            }
+        }
+    }
+
+    public List<WarmExamStatus> listWarm() {
+        return warm.values().stream()
+                .sorted(Comparator.comparing(WarmExamStatus::getStartAt))
+                .collect(Collectors.toList());
+    }
+
+    public Duration getLeadTime() {
+        return leadTime;
+    }
+
+    private WarmExamStatus warmExam(long examId, Instant now) {
+        ExamArrangement exam = examService.warm(examId)
+                .orElseThrow(() -> new IllegalStateException("exam disappeared: " + examId));
+        Paper paper = paperService.warm(exam.getPaperId())
+                .orElseThrow(() -> new IllegalStateException("paper not found: " + exam.getPaperId()));
+        PaperVersion version = paperSnapshotService.snapshotOf(paper);
+        int rosterSize = exam.getClassId() == null ? 0 : classRepository.warmRoster(exam.getClassId());
+        return new WarmExamStatus(
+                exam.getId(),
+                exam.getName(),
+                exam.getPaperId(),
+                exam.getClassId(),
+                exam.getStartAt(),
+                exam.getEndAt(),
+                version.getId(),
+                version.getQuestions().size(),
+                rosterSize,
+                now
+        );
+    }
+
+    private void cool(WarmExamStatus status, List<ExamArrangement> stillWarm) {
+        warm.remove(status.getExamId());
+        examService.cool(status.getExamId());
+        Set<Long> warmPaperIds = new HashSet<>();
+        Set<Long> warmClassIds = new HashSet<>();
+        for (ExamArrangement e : stillWarm) {
+            warmPaperIds.add(e.getPaperId());
+            if (e.getClassId() != null) {
+                warmClassIds.add(e.getClassId());
+            }
+        }
+        if (!warmPaperIds.contains(status.getPaperId())) {
+            paperService.cool(status.getPaperId());
+        }
+        if (status.getClassId() != null && !warmClassIds.contains(status.getClassId())) {
+            classRepository.evictRoster(status.getClassId());
+        }
+    }
+
+    public static class WarmExamStatus {
+        private final long examId;
+        private final String name;
+        private final long paperId;
+        private final Long classId;
+        private final Instant startAt;
+        private final Instant endAt;
+        private final long paperVersionId;
+        private final int questionCount;
+        private final int rosterSize;
+        private final Instant warmedAt;
+
+        public WarmExamStatus(
+                long examId,
+                String name,
+                long paperId,
+                Long classId,
+                Instant startAt,
+                Instant endAt,
+                long paperVersionId,
+                int questionCount,
+                int rosterSize,
+                Instant warmedAt
+        ) {
+            this.examId = examId;
+            this.name = name;
+            this.paperId = paperId;
+            this.classId = classId;
+            this.startAt = startAt;
+            this.endAt = endAt;
+            this.paperVersionId = paperVersionId;
+            this.questionCount = questionCount;
+            this.rosterSize = rosterSize;
+            this.warmedAt = warmedAt;
+        }
+
+        public long getExamId() {
+            return examId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getPaperId() {
+            return paperId;
+        }
+
+        public Long getClassId() {
+            return classId;
+        }
+
+        public Instant getStartAt() {
+            return startAt;
+        }
+
+        public Instant getEndAt() {
+            return endAt;
+        }
+
+        public long getPaperVersionId() {
+            return paperVersionId;
+        }
+
+        public int getQuestionCount() {
+            return questionCount;
+        }
+
+        public int getRosterSize() {
+            return rosterSize;
+        }
+
+        public Instant getWarmedAt() {
+            return warmedAt;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.examsystem.exam;
 
+import com.examsystem.result.ExamAnalyticsRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -16,12 +18,22 @@ import org.springframework.transaction.annotation.Transactional;
 public class InMemoryExamRepository {
     private final JdbcTemplate jdbcTemplate;
     private final ObjectMapper objectMapper;
+    private final ExamSummaryRepository summaries;
+    private final ExamAnalyticsRepository analytics;
 
-    public InMemoryExamRepository(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+    public InMemoryExamRepository(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            ExamSummaryRepository summaries,
+            ExamAnalyticsRepository analytics
+    ) {
         this.jdbcTemplate = jdbcTemplate;
         this.objectMapper = objectMapper;
+        this.summaries = summaries;
+        this.analytics = analytics;
     }
 
+    @Transactional
     public ExamArrangement create(ExamDraft draft) {
         Instant now = Instant.now();
         KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -46,6 +58,8 @@ public class InMemoryExamRepository {
             return ps;
         }, keyHolder);
         long id = keyHolder.getKey().longValue();
+        summaries.create(id);
+        analytics.create(id, now);
         ExamArrangement exam = new ExamArrangement(
                 id,
                 draft.getName(),
@@ -59,8 +73,21 @@ public class InMemoryExamRepository {
         return exam;
     }
 
+    /**
+     * Moves updated_at forward by at least a whole second, so nodes validating their pins against it see every
+     * edit even where the column only keeps seconds.
+     */
+    @Transactional
     public void update(long id, ExamDraft draft) {
-        Instant now = Instant.now();
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        List<Instant> previous = jdbcTemplate.query(
+                "SELECT updated_at FROM exams WHERE id = ? FOR UPDATE",
+                (rs, rowNum) -> rs.getTimestamp("updated_at").toInstant(),
+                id
+        );
+        if (!previous.isEmpty() && !now.isAfter(previous.get(0))) {
+            now = previous.get(0).truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        }
         jdbcTemplate.update(
                 "UPDATE exams SET name = ?, paper_id = ?, class_id = ?, start_at = ?, end_at = ?, settings_json = ?, updated_at = ? WHERE id = ?",
                 draft.getName(),
@@ -72,11 +99,18 @@ public class InMemoryExamRepository {
                 java.sql.Timestamp.from(now),
                 id
         );
+        summaries.recountRoster(id);
     }
 
     @Transactional
     public void delete(long id) {
         jdbcTemplate.update("DELETE FROM attempt_heartbeats WHERE attempt_id IN (SELECT id FROM exam_attempts WHERE exam_id = ?)", id);
+        jdbcTemplate.update("DELETE FROM attempt_presence WHERE exam_id = ?", id);
+        jdbcTemplate.update("DELETE FROM attempt_tab_stats WHERE exam_id = ?", id);
+        jdbcTemplate.update("DELETE FROM attempt_presence_intervals WHERE exam_id = ?", id);
+        jdbcTemplate.update("DELETE FROM proctor_compactions WHERE exam_id = ?", id);
+        summaries.delete(id);
+        analytics.delete(id);
         jdbcTemplate.update("DELETE FROM proctor_events WHERE exam_id = ?", id);
         jdbcTemplate.update("DELETE FROM exam_result_items WHERE result_id IN (SELECT id FROM exam_results WHERE exam_id = ?)", id);
         jdbcTemplate.update("DELETE FROM exam_results WHERE exam_id = ?", id);
@@ -124,6 +158,24 @@ public class InMemoryExamRepository {
         );
     }
 
+    public List<ExamArrangement> listOpenBetween(Instant startsBefore, Instant endsAfter) {
+        return jdbcTemplate.query(
+                "SELECT id, name, paper_id, class_id, start_at, end_at, created_at, updated_at FROM exams WHERE start_at <= ? AND end_at > ? ORDER BY start_at ASC",
+                (rs, rowNum) -> new ExamArrangement(
+                        rs.getLong("id"),
+                        rs.getString("name"),
+                        rs.getLong("paper_id"),
+                        (Long) rs.getObject("class_id"),
+                        rs.getTimestamp("start_at").toInstant(),
+                        rs.getTimestamp("end_at").toInstant(),
+                        rs.getTimestamp("created_at").toInstant(),
+                        rs.getTimestamp("updated_at").toInstant()
+                ),
+                java.sql.Timestamp.from(startsBefore),
+                java.sql.Timestamp.from(endsAfter)
+        );
+    }
+
     public List<ExamArrangement> listByClassIds(List<Long> classIds) {
         List<Long> safeIds = classIds == null ? List.of() : classIds.stream()
                 .filter(id -> id != null && id > 0)
@@ -165,6 +217,15 @@ public class InMemoryExamRepository {
         }
     }
 
+    public Optional<Instant> findUpdatedAt(long id) {
+        List<Instant> rows = jdbcTemplate.query(
+                "SELECT updated_at FROM exams WHERE id = ?",
+                (rs, rowNum) -> rs.getTimestamp("updated_at").toInstant(),
+                id
+        );
+        return rows.stream().findFirst();
+    }
+
     private String writeSettingsJson(ExamSettings settings) {
         try {
             ExamSettings value = settings == null ? ExamSettings.defaultSettings() : settings;
@@ -0,0 +1,147 @@
+package com.examsystem.exam;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Hierarchical timing wheel of long ids. Four levels of 64 slots each; an id sits in the lowest level whose span
+ * covers its remaining ticks and moves down a level as the wheel turns. Insert and cancel are O(1), advancing one
+ * tick touches one slot plus an occasional cascade. Not thread-safe.
+ */
+final class TimingWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    private final Node[][] slots = new Node[LEVELS][SLOTS];
+    private final Map<Long, Node> nodes = new HashMap<>();
+    private long currentTick;
+
+    TimingWheel(long currentTick) {
+        this.currentTick = currentTick;
+    }
+
+    int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Schedules an id, replacing any earlier deadline. Ticks already passed fire on the next advance.
+     */
+    void schedule(long id, long deadlineTick) {
+        cancel(id);
+        Node node = new Node(id, deadlineTick);
+        nodes.put(id, node);
+        place(node, currentTick + 1);
+    }
+
+    boolean cancel(long id) {
+        Node node = nodes.remove(id);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    /**
+     * Turns the wheel up to {@code targetTick} and reports every id whose deadline was reached.
+     */
+    void advanceTo(long targetTick, LongConsumer expired) {
+        if (nodes.isEmpty()) {
+            currentTick = Math.max(currentTick, targetTick);
+            return;
+        }
+        while (currentTick < targetTick) {
+            currentTick++;
+            int index = (int) (currentTick & MASK);
+            for (int level = 1; index == 0 && level < LEVELS; level++) {
+                index = (int) ((currentTick >>> (SLOT_BITS * level)) & MASK);
+                cascade(level, index);
+            }
+            Node node = slots[0][(int) (currentTick & MASK)];
+            slots[0][(int) (currentTick & MASK)] = null;
+            while (node != null) {
+                Node next = node.next;
+                node.prev = null;
+                node.next = null;
+                if (node.deadlineTick <= currentTick) {
+                    nodes.remove(node.id);
+                    expired.accept(node.id);
+                } else {
+                    place(node, currentTick + 1);
+                }
+                node = next;
+            }
+            if (nodes.isEmpty()) {
+                currentTick = targetTick;
+            }
+        }
+    }
+
+    private void cascade(int level, int index) {
+        Node node = slots[level][index];
+        slots[level][index] = null;
+        while (node != null) {
+            Node next = node.next;
+            node.prev = null;
+            node.next = null;
+            // the level 0 slot of the current tick is drained right after the cascade
+            place(node, currentTick);
+            node = next;
+        }
+    }
+
+    private void place(Node node, long earliestTick) {
+        long due = Math.max(node.deadlineTick, earliestTick);
+        long delta = due - currentTick;
+        if (delta >= MAX_SPAN) {
+            // parked in the top level and placed again when that slot cascades
+            due = currentTick + MAX_SPAN - 1;
+            delta = MAX_SPAN - 1;
+        }
+        int level = 0;
+        while (delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int index = (int) ((due >>> (SLOT_BITS * level)) & MASK);
+        node.level = level;
+        node.index = index;
+        Node head = slots[level][index];
+        node.next = head;
+        if (head != null) {
+            head.prev = node;
+        }
+        slots[level][index] = node;
+    }
+
+    private void unlink(Node node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else if (slots[node.level][node.index] == node) {
+            slots[node.level][node.index] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+
+    private static final class Node {
+        private final long id;
+        private final long deadlineTick;
+        private int level;
+        private int index;
+        private Node prev;
+        private Node next;
+
+        private Node(long id, long deadlineTick) {
+            this.id = id;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
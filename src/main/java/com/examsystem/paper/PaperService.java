@@ -7,6 +7,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
@@ -15,6 +16,7 @@ import org.springframework.web.server.ResponseStatusException;
 public class PaperService {
     private final InMemoryPaperRepository repository;
     private final QuestionService questionService;
+    private final ConcurrentHashMap<Long, WarmPaper> warmPapers = new ConcurrentHashMap<>();
 
     public PaperService(InMemoryPaperRepository repository, QuestionService questionService) {
         this.repository = repository;
@@ -27,18 +29,44 @@ public class PaperService {
     }
 
     public Optional<Paper> findById(long id) {
+        WarmPaper warm = warmPapers.get(id);
+        if (warm != null && warm.questionVersion == questionService.contentVersion()) {
+            return Optional.of(warm.paper);
+        }
         return repository.findById(id);
     }
 
+    /**
+     * Pins a paper with its items in memory. Deleting a question removes paper items without touching the
+     * paper, so the pinned copy is only served while the question content version is unchanged.
+     */
+    public Optional<Paper> warm(long id) {
+        long questionVersion = questionService.contentVersion();
+        Optional<Paper> paper = repository.findById(id);
+        if (paper.isEmpty()) {
+            warmPapers.remove(id);
+            return Optional.empty();
+        }
+        warmPapers.put(id, new WarmPaper(paper.get(), questionVersion));
+        return paper;
+    }
+
+    public void cool(long id) {
+        warmPapers.remove(id);
+    }
+
     public Optional<Paper> update(long id, PaperDraft draft) {
         List<PaperItem> items = validateAndBuildItems(draft);
-        return repository.update(id, draft, items);
+        Optional<Paper> updated = repository.update(id, draft, items);
+        warmPapers.remove(id);
+        return updated;
     }
 
     public boolean delete(long id) {
         if (repository.isUsedByAnyExamOrAttempt(id)) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "paper is used by exam/attempt, cannot delete");
         }
+        warmPapers.remove(id);
         return repository.delete(id);
     }
 
@@ -120,4 +148,14 @@ public class PaperService {
             return size;
         }
     }
+
+    private static class WarmPaper {
+        private final Paper paper;
+        private final long questionVersion;
+
+        private WarmPaper(Paper paper, long questionVersion) {
+            this.paper = paper;
+            this.questionVersion = questionVersion;
+        }
+    }
 }
@@ -0,0 +1,33 @@
+package com.examsystem.proctor;
+
+import java.time.Instant;
+
+public class AttemptPresence {
+    private final long attemptId;
+    private final long examId;
+    private final String username;
+    private final Instant lastTs;
+
+    public AttemptPresence(long attemptId, long examId, String username, Instant lastTs) {
+        this.attemptId = attemptId;
+        this.examId = examId;
+        this.username = username;
+        this.lastTs = lastTs;
+    }
+
+    public long getAttemptId() {
+        return attemptId;
+    }
+
+    public long getExamId() {
+        return examId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Instant getLastTs() {
+        return lastTs;
+    }
+}
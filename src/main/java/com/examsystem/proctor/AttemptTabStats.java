@@ -0,0 +1,67 @@
+package com.examsystem.proctor;
+
+import java.time.Instant;
+
+/**
+ * Tab switches of one attempt, folded from its blur/focus events: a switch is counted and its away time added when
+ * the student comes back. {@code awaySince} is set while the student is away.
+ */
+public class AttemptTabStats {
+    private final long attemptId;
+    private final long examId;
+    private final String username;
+    private final int switchCount;
+    private final long awayMillis;
+    private final Instant awaySince;
+
+    public AttemptTabStats(long attemptId, long examId, String username, int switchCount, long awayMillis, Instant awaySince) {
+        this.attemptId = attemptId;
+        this.examId = examId;
+        this.username = username;
+        this.switchCount = switchCount;
+        this.awayMillis = awayMillis;
+        this.awaySince = awaySince;
+    }
+
+    public static AttemptTabStats empty(long attemptId, long examId, String username) {
+        return new AttemptTabStats(attemptId, examId, username, 0, 0L, null);
+    }
+
+    /**
+     * The stats after one more event; events that are not blur/focus leave them unchanged.
+     */
+    public AttemptTabStats apply(String type, Instant at) {
+        if (TabStatsService.isAway(type)) {
+            return awaySince != null ? this : new AttemptTabStats(attemptId, examId, username, switchCount, awayMillis, at);
+        }
+        if (TabStatsService.isBack(type) && awaySince != null) {
+            long away = Math.max(0L, at.toEpochMilli() - awaySince.toEpochMilli());
+            return new AttemptTabStats(attemptId, examId, username, switchCount + 1, awayMillis + away, null);
+        }
+        return this;
+    }
+
+    public long getAttemptId() {
+        return attemptId;
+    }
+
+    public long getExamId() {
+        return examId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public int getSwitchCount() {
+        return switchCount;
+    }
+
+    public long getAwayMillis() {
+        return awayMillis;
+    }
+
+    public Instant getAwaySince() {
+        return awaySince;
+    }
+}
@@ -0,0 +1,52 @@
+package com.examsystem.proctor;
+
+import java.util.List;
+
+/**
+ * What happened during one attempt: its online spans and the gaps between them, and its proctor events in time
+ * order.
+ */
+public class AttemptTimeline {
+    private final long attemptId;
+    private final boolean compacted;
+    private final boolean eventsAvailable;
+    private final List<PresenceInterval> presence;
+    private final List<ProctorEvent> events;
+
+    public AttemptTimeline(
+            long attemptId,
+            boolean compacted,
+            boolean eventsAvailable,
+            List<PresenceInterval> presence,
+            List<ProctorEvent> events
+    ) {
+        this.attemptId = attemptId;
+        this.compacted = compacted;
+        this.eventsAvailable = eventsAvailable;
+        this.presence = presence;
+        this.events = events;
+    }
+
+    public long getAttemptId() {
+        return attemptId;
+    }
+
+    public boolean isCompacted() {
+        return compacted;
+    }
+
+    /**
+     * False when the raw events were purged and their archive is not readable from this node.
+     */
+    public boolean isEventsAvailable() {
+        return eventsAvailable;
+    }
+
+    public List<PresenceInterval> getPresence() {
+        return presence;
+    }
+
+    public List<ProctorEvent> getEvents() {
+        return events;
+    }
+}
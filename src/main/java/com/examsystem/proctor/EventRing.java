@@ -0,0 +1,68 @@
+package com.examsystem.proctor;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer, single-consumer ring. Producers claim a sequence with a CAS on the tail and then mark
+ * their slot as published; the consumer only takes slots in sequence order once they are published, so a producer
+ * that claimed but has not yet written its slot holds back the ones behind it rather than letting them overtake.
+ */
+final class EventRing<T> {
+    private final Object[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    EventRing(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity - 1)) << 1;
+        this.slots = new Object[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+    }
+
+    boolean tryPublish(T item) {
+        long seq;
+        do {
+            seq = tail.get();
+            if (seq - head >= slots.length) {
+                return false;
+            }
+        } while (!tail.compareAndSet(seq, seq + 1));
+        int slot = (int) (seq & mask);
+        slots[slot] = item;
+        published.set(slot, seq + 1);
+        return true;
+    }
+
+    /**
+     * Moves up to {@code max} published items into {@code into}. Only the consumer thread may call this.
+     */
+    @SuppressWarnings("unchecked")
+    int drainTo(List<T> into, int max) {
+        long h = head;
+        int n = 0;
+        while (n < max) {
+            int slot = (int) (h & mask);
+            if (published.get(slot) != h + 1) {
+                break;
+            }
+            into.add((T) slots[slot]);
+            slots[slot] = null;
+            h++;
+            n++;
+        }
+        head = h;
+        return n;
+    }
+
+    int size() {
+        return (int) (tail.get() - head);
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,641 @@
+package com.examsystem.proctor;
+
+import com.examsystem.attempt.AttemptHeaderIndex;
+import com.examsystem.attempt.AttemptStatusChangedEvent;
+import com.examsystem.attempt.InMemoryExamAttemptRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes the teacher monitor over server-sent events. A subscriber gets one {@code snapshot} event and then
+ * {@code delta} events: attempt status changes, new proctor events, presence and tab stats updates, collected per exam and sent
+ * as at most one frame every {@code exam.monitor.frame-millis}. Each frame is serialized once and written to every
+ * subscriber of the exam, so the number of teachers watching adds no database work. Results and changes made on
+ * other nodes are picked up by one shared snapshot per exam every {@code exam.monitor.resync-millis}.
+ * <p>
+ * Frames are built on a thread of their own and written by a small writer pool, one queue per subscriber, so
+ * neither the scheduler shared with flushes and the cluster heartbeat nor other teachers wait on a slow socket.
+ * Resync snapshots query the database on a separate pool, so a slow exam only holds back its own deltas. A
+ * subscriber whose queue reaches {@link #MAX_QUEUED_FRAMES} or whose current write has been blocked for
+ * {@link #WRITE_TIMEOUT} is dropped; its client reconnects and gets a fresh snapshot.
+ */
+@Service
+public class ExamMonitorHub {
+    static final int MAX_EVENTS_PER_FRAME = 200;
+    static final int MAX_QUEUED_FRAMES = 30;
+    static final Duration WRITE_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration KEEPALIVE = Duration.ofSeconds(15);
+    private static final int WRITER_THREADS = 4;
+    private static final int SNAPSHOT_THREADS = 2;
+
+    private final InMemoryExamAttemptRepository attemptRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration streamTimeout;
+    private final Duration resyncInterval;
+    private final long frameMillis;
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor framer = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "monitor-frames");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService snapshots = Executors.newFixedThreadPool(SNAPSHOT_THREADS, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "monitor-snapshot-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final ExecutorService writers = Executors.newFixedThreadPool(WRITER_THREADS, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "monitor-writer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public ExamMonitorHub(
+            InMemoryExamAttemptRepository attemptRepository,
+            ObjectMapper objectMapper,
+            @Value("${exam.monitor.stream-timeout:30m}") Duration streamTimeout,
+            @Value("${exam.monitor.resync-millis:30000}") long resyncMillis,
+            @Value("${exam.monitor.frame-millis:1000}") long frameMillis
+    ) {
+        this.attemptRepository = attemptRepository;
+        this.objectMapper = objectMapper;
+        this.streamTimeout = streamTimeout;
+        this.resyncInterval = Duration.ofMillis(resyncMillis);
+        this.frameMillis = Math.max(1, frameMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        framer.scheduleWithFixedDelay(() -> {
+            try {
+                sendFrames();
+            } catch (RuntimeException e) {
+                // a failed tick must not cancel the schedule
+            }
+        }, frameMillis, frameMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        framer.shutdownNow();
+        snapshots.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    /**
+     * Opens a stream for the exam. The subscriber is registered before the snapshot is taken, so changes made while
+     * it is being built are queued and sent right after it.
+     */
+    public SseEmitter subscribe(long examId, Supplier<Object> snapshot) {
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter);
+        Channel channel;
+        while (true) {
+            channel = channels.computeIfAbsent(examId, id -> new Channel(snapshot));
+            synchronized (channel) {
+                if (!channel.closed) {
+                    channel.subscribers.add(subscriber);
+                    break;
+                }
+            }
+        }
+        Channel subscribed = channel;
+        emitter.onCompletion(() -> unsubscribe(examId, subscribed, subscriber));
+        emitter.onTimeout(() -> unsubscribe(examId, subscribed, subscriber));
+        emitter.onError(e -> unsubscribe(examId, subscribed, subscriber));
+        boolean started = false;
+        try {
+            Delivery delivery = subscriber.start(toJson(snapshot.get()));
+            if (delivery == Delivery.WRITE) {
+                writers.execute(() -> write(examId, subscribed, subscriber));
+            }
+            started = delivery != Delivery.DROP;
+        } finally {
+            if (!started) {
+                unsubscribe(examId, channel, subscriber);
+            }
+        }
+        return emitter;
+    }
+
+    public int subscriberCount(long examId) {
+        Channel channel = channels.get(examId);
+        return channel == null ? 0 : channel.subscribers.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAttemptStatusChanged(AttemptStatusChangedEvent event) {
+        if (channels.isEmpty()) {
+            return;
+        }
+        Optional<AttemptHeaderIndex.AttemptHeader> header = attemptRepository.findHeader(event.getAttemptId());
+        if (header.isEmpty()) {
+            return;
+        }
+        Channel channel = channels.get(header.get().getExamId());
+        if (channel != null) {
+            channel.attemptChanged(new AttemptChange(
+                    event.getAttemptId(),
+                    header.get().getStudentUsername(),
+                    event.getStatus().name()
+            ));
+        }
+    }
+
+    void eventRecorded(ProctorEvent event) {
+        Channel channel = channels.get(event.getExamId());
+        if (channel != null) {
+            channel.eventRecorded(new EventBrief(
+                    event.getId() > 0 ? event.getId() : null,
+                    event.getAttemptId(),
+                    event.getUsername(),
+                    event.getType(),
+                    event.getCreatedAt().toString()
+            ));
+        }
+    }
+
+    void presenceUpdated(long examId, long attemptId, String username, Instant ts) {
+        Channel channel = channels.get(examId);
+        if (channel != null) {
+            channel.presenceUpdated(new PresenceBrief(attemptId, username, ts.toString()));
+        }
+    }
+
+    void tabStatsUpdated(AttemptTabStats stats) {
+        Channel channel = channels.get(stats.getExamId());
+        if (channel != null) {
+            channel.tabStatsUpdated(TabStatsBrief.of(stats));
+        }
+    }
+
+    public void sendFrames() {
+        long now = System.nanoTime();
+        for (Map.Entry<Long, Channel> entry : channels.entrySet()) {
+            Channel channel = entry.getValue();
+            if (channel.resyncing) {
+                // deltas wait for the snapshot so they are not overwritten by an older state
+                keepAlive(entry.getKey(), channel, now);
+                continue;
+            }
+            if (now - channel.lastResyncNanos >= resyncInterval.toNanos()) {
+                channel.lastResyncNanos = now;
+                channel.resyncing = true;
+                snapshots.execute(() -> resync(entry.getKey(), channel));
+                continue;
+            }
+            MonitorFrame frame = channel.drain();
+            if (frame != null) {
+                broadcast(entry.getKey(), channel, "delta", toJson(frame));
+            } else {
+                keepAlive(entry.getKey(), channel, now);
+            }
+        }
+    }
+
+    /**
+     * Builds and sends the exam's snapshot on a snapshot thread. What is pending when it starts is covered by the
+     * snapshot and dropped once it has been built; if building fails it goes back to be sent as a delta.
+     */
+    private void resync(long examId, Channel channel) {
+        try {
+            MonitorFrame covered = channel.drain();
+            String snapshot;
+            try {
+                snapshot = toJson(channel.snapshot.get());
+            } catch (RuntimeException e) {
+                channel.restore(covered);
+                return;
+            }
+            broadcast(examId, channel, "snapshot", snapshot);
+        } finally {
+            channel.resyncing = false;
+        }
+    }
+
+    private void keepAlive(long examId, Channel channel, long now) {
+        if (now - channel.lastSentNanos >= KEEPALIVE.toNanos()) {
+            broadcast(examId, channel, null, null);
+        }
+    }
+
+    private void broadcast(long examId, Channel channel, String name, String json) {
+        long now = System.nanoTime();
+        channel.lastSentNanos = now;
+        for (Subscriber subscriber : channel.subscribers) {
+            switch (subscriber.offer(name, json, now)) {
+                case WRITE:
+                    writers.execute(() -> write(examId, channel, subscriber));
+                    break;
+                case DROP:
+                    unsubscribe(examId, channel, subscriber);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Writes the subscriber's queued frames until its queue is empty; runs on a writer thread, one at a time per
+     * subscriber.
+     */
+    private void write(long examId, Channel channel, Subscriber subscriber) {
+        while (true) {
+            String[] frame = subscriber.next(System.nanoTime());
+            if (frame == null) {
+                return;
+            }
+            if (!subscriber.send(frame[0], frame[1])) {
+                unsubscribe(examId, channel, subscriber);
+                return;
+            }
+        }
+    }
+
+    private void unsubscribe(long examId, Channel channel, Subscriber subscriber) {
+        boolean removed;
+        synchronized (channel) {
+            removed = channel.subscribers.remove(subscriber);
+            if (removed && channel.subscribers.isEmpty()) {
+                channel.closed = true;
+                channels.remove(examId, channel);
+            }
+        }
+        if (removed) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Channel {
+        private final Supplier<Object> snapshot;
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private final Map<Long, AttemptChange> attempts = new LinkedHashMap<>();
+        private final List<EventBrief> events = new ArrayList<>();
+        private final Map<Long, PresenceBrief> presence = new LinkedHashMap<>();
+        private final Map<Long, TabStatsBrief> tabStats = new LinkedHashMap<>();
+        private volatile long lastSentNanos = System.nanoTime();
+        private volatile long lastResyncNanos = System.nanoTime();
+        private volatile boolean resyncing;
+        private boolean closed;
+
+        private Channel(Supplier<Object> snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        private synchronized void attemptChanged(AttemptChange change) {
+            attempts.put(change.getAttemptId(), change);
+        }
+
+        private synchronized void eventRecorded(EventBrief event) {
+            if (events.size() == MAX_EVENTS_PER_FRAME) {
+                events.remove(0);
+            }
+            events.add(event);
+        }
+
+        private synchronized void presenceUpdated(PresenceBrief update) {
+            presence.put(update.getAttemptId(), update);
+        }
+
+        private synchronized void tabStatsUpdated(TabStatsBrief update) {
+            tabStats.put(update.getAttemptId(), update);
+        }
+
+        private synchronized MonitorFrame drain() {
+            if (attempts.isEmpty() && events.isEmpty() && presence.isEmpty() && tabStats.isEmpty()) {
+                return null;
+            }
+            MonitorFrame frame = new MonitorFrame(
+                    new ArrayList<>(attempts.values()),
+                    new ArrayList<>(events),
+                    new ArrayList<>(presence.values()),
+                    new ArrayList<>(tabStats.values())
+            );
+            attempts.clear();
+            events.clear();
+            presence.clear();
+            tabStats.clear();
+            return frame;
+        }
+
+        /**
+         * Puts a drained frame back in front of whatever arrived since; newer updates of the same attempt win.
+         */
+        private synchronized void restore(MonitorFrame frame) {
+            if (frame == null) {
+                return;
+            }
+            restore(attempts, frame.getAttempts(), AttemptChange::getAttemptId);
+            restore(presence, frame.getPresence(), PresenceBrief::getAttemptId);
+            restore(tabStats, frame.getTabStats(), TabStatsBrief::getAttemptId);
+            List<EventBrief> merged = new ArrayList<>(frame.getEvents());
+            merged.addAll(events);
+            events.clear();
+            events.addAll(merged.subList(Math.max(0, merged.size() - MAX_EVENTS_PER_FRAME), merged.size()));
+        }
+
+        private static <T> void restore(Map<Long, T> pending, List<T> drained, Function<T, Long> attemptId) {
+            Map<Long, T> merged = new LinkedHashMap<>();
+            for (T update : drained) {
+                merged.put(attemptId.apply(update), update);
+            }
+            merged.putAll(pending);
+            pending.clear();
+            pending.putAll(merged);
+        }
+    }
+
+    private enum Delivery {
+        QUEUED,
+        WRITE,
+        DROP
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final Deque<String[]> queue = new ArrayDeque<>();
+        private boolean ready;
+        private boolean writing;
+        private long writeStartedNanos;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * Sends the snapshot on the subscribing request's thread. Frames offered meanwhile are queued behind it;
+         * {@link Delivery#WRITE} means some were and a writer has to send them.
+         */
+        private Delivery start(String snapshot) {
+            synchronized (this) {
+                writing = true;
+                writeStartedNanos = System.nanoTime();
+            }
+            if (!send("snapshot", snapshot)) {
+                return Delivery.DROP;
+            }
+            synchronized (this) {
+                ready = true;
+                if (queue.isEmpty()) {
+                    writing = false;
+                    return Delivery.QUEUED;
+                }
+                writeStartedNanos = System.nanoTime();
+                return Delivery.WRITE;
+            }
+        }
+
+        /**
+         * Queues a named JSON event, or a keep-alive comment when {@code name} is null.
+         */
+        private synchronized Delivery offer(String name, String json, long nowNanos) {
+            if (!ready) {
+                if (name != null) {
+                    queue.add(new String[] {name, json});
+                }
+                return Delivery.QUEUED;
+            }
+            if (writing && nowNanos - writeStartedNanos > WRITE_TIMEOUT.toNanos() || queue.size() >= MAX_QUEUED_FRAMES) {
+                return Delivery.DROP;
+            }
+            queue.add(new String[] {name, json});
+            if (writing) {
+                return Delivery.QUEUED;
+            }
+            writing = true;
+            writeStartedNanos = nowNanos;
+            return Delivery.WRITE;
+        }
+
+        private synchronized String[] next(long nowNanos) {
+            String[] frame = queue.poll();
+            if (frame == null) {
+                writing = false;
+            } else {
+                writeStartedNanos = nowNanos;
+            }
+            return frame;
+        }
+
+        private boolean send(String name, String json) {
+            try {
+                if (name == null) {
+                    emitter.send(SseEmitter.event().comment("keep-alive"));
+                } else {
+                    emitter.send(SseEmitter.event().name(name).data(json, MediaType.APPLICATION_JSON));
+                }
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                return false;
+            }
+        }
+    }
+
+    public static class MonitorFrame {
+        private final List<AttemptChange> attempts;
+        private final List<EventBrief> events;
+        private final List<PresenceBrief> presence;
+        private final List<TabStatsBrief> tabStats;
+
+        public MonitorFrame(
+                List<AttemptChange> attempts,
+                List<EventBrief> events,
+                List<PresenceBrief> presence,
+                List<TabStatsBrief> tabStats
+        ) {
+            this.attempts = attempts;
+            this.events = events;
+            this.presence = presence;
+            this.tabStats = tabStats;
+        }
+
+        public List<AttemptChange> getAttempts() {
+            return attempts;
+        }
+
+        public List<EventBrief> getEvents() {
+            return events;
+        }
+
+        public List<PresenceBrief> getPresence() {
+            return presence;
+        }
+
+        public List<TabStatsBrief> getTabStats() {
+            return tabStats;
+        }
+    }
+
+    public static class AttemptChange {
+        private final long attemptId;
+        private final String username;
+        private final String status;
+
+        public AttemptChange(long attemptId, String username, String status) {
+            this.attemptId = attemptId;
+            this.username = username;
+            this.status = status;
+        }
+
+        public long getAttemptId() {
+            return attemptId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+    }
+
+    public static class EventBrief {
+        private final Long id;
+        private final long attemptId;
+        private final String username;
+        private final String type;
+        private final String createdAt;
+
+        public EventBrief(Long id, long attemptId, String username, String type, String createdAt) {
+            this.id = id;
+            this.attemptId = attemptId;
+            this.username = username;
+            this.type = type;
+            this.createdAt = createdAt;
+        }
+
+        /**
+         * Null for student events that are still queued for their batched insert.
+         */
+        public Long getId() {
+            return id;
+        }
+
+        public long getAttemptId() {
+            return attemptId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getCreatedAt() {
+            return createdAt;
+        }
+    }
+
+    public static class PresenceBrief {
+        private final long attemptId;
+        private final String username;
+        private final String ts;
+
+        public PresenceBrief(long attemptId, String username, String ts) {
+            this.attemptId = attemptId;
+            this.username = username;
+            this.ts = ts;
+        }
+
+        public long getAttemptId() {
+            return attemptId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getTs() {
+            return ts;
+        }
+    }
+
+    public static class TabStatsBrief {
+        private final long attemptId;
+        private final String username;
+        private final int tabSwitchCount;
+        private final long tabAwaySeconds;
+
+        public TabStatsBrief(long attemptId, String username, int tabSwitchCount, long tabAwaySeconds) {
+            this.attemptId = attemptId;
+            this.username = username;
+            this.tabSwitchCount = tabSwitchCount;
+            this.tabAwaySeconds = tabAwaySeconds;
+        }
+
+        public static TabStatsBrief of(AttemptTabStats stats) {
+            return new TabStatsBrief(
+                    stats.getAttemptId(),
+                    stats.getUsername(),
+                    stats.getSwitchCount(),
+                    Math.round(stats.getAwayMillis() / 1000.0d)
+            );
+        }
+
+        public long getAttemptId() {
+            return attemptId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public int getTabSwitchCount() {
+            return tabSwitchCount;
+        }
+
+        public long getTabAwaySeconds() {
+            return tabAwaySeconds;
+        }
+    }
+}
@@ -1,43 +1,188 @@
 package com.examsystem.proctor;
 
+import com.examsystem.attempt.AttemptStatus;
+import com.examsystem.attempt.AttemptStatusChangedEvent;
+import com.examsystem.cluster.ClusterService;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+/**
+ * Heartbeats only move the attempt's entry in an in-memory {@link PresenceTable}; a flusher writes the entries that
+ * changed to attempt_presence every few seconds, so the database sees one write per attempt per flush window rather
+ * than one per heartbeat. The monitor reads presence from memory, after loading an exam's persisted rows once (after a
+ * restart, or once idle entries were evicted) and, when several nodes are alive, merging the rows other nodes flushed.
+ * Raw history in attempt_heartbeats is only kept for every Nth heartbeat of an attempt when
+ * {@code exam.proctor.heartbeat-history-every} is positive.
+ *
+ * <p>Teacher messages to a student also land in the attempt's {@link ProctorMailbox}, which answers the student's
+ * polls without SQL. While several nodes are alive a message may have been sent through another node, so polls read
+ * the attempt's messages from the database instead.
+ */
 @Service
 public class ExamProctorService {
+    public static final String TEACHER_REMIND = "TEACHER_REMIND";
+    public static final String TEACHER_FORCE_SUBMIT = "TEACHER_FORCE_SUBMIT";
+    private static final List<String> TEACHER_MESSAGE_TYPES = List.of(TEACHER_REMIND, TEACHER_FORCE_SUBMIT);
+    private static final int MAX_MESSAGES_PER_POLL = 1000;
+    private static final Duration IDLE_EVICTION = Duration.ofMinutes(30);
+
     private final ProctorRepository repository;
+    private final ProctorEventIngestor ingestor;
+    private final TabStatsService tabStats;
+    private final ExamMonitorHub monitorHub;
+    private final ClusterService clusterService;
+    private final int historyEvery;
+    private final PresenceTable presence = new PresenceTable();
+    private final ProctorMailbox mailbox = new ProctorMailbox();
+    private final Set<Long> loadedExams = ConcurrentHashMap.newKeySet();
 
-    public ExamProctorService(ProctorRepository repository) {
+    public ExamProctorService(
+            ProctorRepository repository,
+            ProctorEventIngestor ingestor,
+            TabStatsService tabStats,
+            ExamMonitorHub monitorHub,
+            ClusterService clusterService,
+            @Value("${exam.proctor.heartbeat-history-every:0}") int historyEvery
+    ) {
         this.repository = repository;
+        this.ingestor = ingestor;
+        this.tabStats = tabStats;
+        this.monitorHub = monitorHub;
+        this.clusterService = clusterService;
+        this.historyEvery = historyEvery;
+    }
+
+    public ProctorEvent recordEvent(long examId, long attemptId, String username, String type, String payloadJson, Instant now) {
+        long id = repository.insertEvent(examId, attemptId, username, type, payloadJson, now);
+        ProctorEvent event = new ProctorEvent(id, examId, attemptId, username, type, payloadJson, now);
+        if (TEACHER_MESSAGE_TYPES.contains(type)) {
+            mailbox.append(event);
+        }
+        monitorHub.eventRecorded(event);
+        return event;
+    }
+
+    /**
+     * Teacher messages to the attempt with an id above {@code afterEventId}, oldest first.
+     */
+    public List<ProctorEvent> listTeacherMessages(long examId, long attemptId, String username, Long afterEventId) {
+        long afterId = afterEventId == null ? 0L : afterEventId;
+        if (!clusterService.isClustered()) {
+            Optional<List<ProctorEvent>> cached = mailbox.after(
+                    attemptId,
+                    examId,
+                    username,
+                    afterId,
+                    id -> repository.listAttemptEvents(id, TEACHER_MESSAGE_TYPES, 0L, ProctorMailbox.CAPACITY + 1)
+            );
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+        }
+        return repository.listAttemptEvents(attemptId, TEACHER_MESSAGE_TYPES, afterId, MAX_MESSAGES_PER_POLL);
     }
 
-    public void recordEvent(long examId, long attemptId, String username, String type, String payloadJson, Instant now) {
-        repository.insertEvent(examId, attemptId, username, type, payloadJson, now);
+    /**
+     * Queues a student-reported event for a batched insert; it shows up in {@link #listRecentEvents} once the
+     * ingestor's linger has passed.
+     */
+    public void publishEvent(long examId, long attemptId, String username, String type, String payloadJson, Instant now) {
+        ProctorEvent event = new ProctorEvent(0L, examId, attemptId, username, type, payloadJson, now);
+        ingestor.publish(event);
+        monitorHub.eventRecorded(event);
     }
 
-    public void recordHeartbeat(long attemptId, String username, Instant ts, Instant now) {
-        repository.insertHeartbeat(attemptId, username, ts, now);
+    public void recordHeartbeat(long examId, long attemptId, String username, Instant ts, Instant now) {
+        long count = presence.record(attemptId, examId, username, ts.toEpochMilli());
+        monitorHub.presenceUpdated(examId, attemptId, username, ts);
+        if (historyEvery > 0 && (count - 1) % historyEvery == 0) {
+            repository.insertHeartbeat(attemptId, username, ts, now);
+        }
+    }
+
+    public List<AttemptTabStats> listTabStats(long examId) {
+        return tabStats.listByExam(examId);
     }
 
     public List<ProctorEvent> listRecentEvents(long examId, int limit) {
         return repository.listRecentEvents(examId, limit);
     }
 
-    public List<HeartbeatRecord> listLatestHeartbeats(long examId) {
-        List<HeartbeatRecord> all = repository.listHeartbeatsByExam(examId);
-        Map<Long, HeartbeatRecord> latestByAttempt = all.stream()
-                .collect(Collectors.toMap(
-                        HeartbeatRecord::getAttemptId,
-                        h -> h,
-                        (a, b) -> a.getTs().isAfter(b.getTs()) ? a : b
-                ));
+    public List<AttemptPresence> listLatestHeartbeats(long examId) {
+        boolean clustered = clusterService.isClustered();
+        if (!clustered && loadedExams.add(examId)) {
+            repository.listPresenceByExam(examId).forEach(presence::merge);
+        }
+        List<AttemptPresence> local = new ArrayList<>();
+        presence.collectByExam(examId, local);
+        Map<Long, AttemptPresence> latestByAttempt = new HashMap<>();
+        if (clustered) {
+            for (AttemptPresence p : repository.listPresenceByExam(examId)) {
+                latestByAttempt.put(p.getAttemptId(), p);
+            }
+        }
+        for (AttemptPresence p : local) {
+            latestByAttempt.merge(p.getAttemptId(), p, (a, b) -> a.getLastTs().isAfter(b.getLastTs()) ? a : b);
+        }
         return latestByAttempt.values().stream()
-                .sorted(Comparator.comparingLong(HeartbeatRecord::getAttemptId))
+                .sorted(Comparator.comparingLong(AttemptPresence::getAttemptId))
                 .collect(Collectors.toList());
     }
-}
 
+    @Scheduled(fixedDelayString = "${exam.proctor.presence-flush-millis:5000}")
+    public void scheduledFlush() {
+        flush();
+        long idleCutoff = Instant.now().minus(IDLE_EVICTION).toEpochMilli();
+        if (presence.evictFlushedBefore(idleCutoff) > 0) {
+            loadedExams.clear();
+        }
+        mailbox.evictIdleBefore(idleCutoff);
+    }
+
+    /**
+     * A submitted attempt gets no more teacher messages worth keeping in memory.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAttemptStatusChanged(AttemptStatusChangedEvent event) {
+        if (event.getStatus() != AttemptStatus.IN_PROGRESS) {
+            mailbox.evict(event.getAttemptId());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void flush() {
+        List<AttemptPresence> dirty = new ArrayList<>();
+        presence.collectDirty(dirty);
+        if (dirty.isEmpty()) {
+            return;
+        }
+        repository.upsertPresence(dirty, Instant.now());
+        dirty.forEach(presence::markFlushed);
+    }
+
+    public void evictExam(long examId) {
+        presence.evictExam(examId);
+        mailbox.evictExam(examId);
+        loadedExams.remove(examId);
+    }
+
+    public void evictStudent(String username) {
+        presence.evictStudent(username);
+        mailbox.evictStudent(username);
+        loadedExams.clear();
+    }
+}
@@ -0,0 +1,64 @@
+package com.examsystem.proctor;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Folds heartbeats, grouped by attempt and in time order, into online spans. A heartbeat more than {@code maxGap}
+ * after the previous one of the same attempt starts a new span.
+ */
+final class PresenceFolder {
+    private final long maxGapMillis;
+    private final List<PresenceInterval> spans = new ArrayList<>();
+    private long attemptId;
+    private Instant startedAt;
+    private Instant lastAt;
+    private int heartbeats;
+
+    PresenceFolder(Duration maxGap) {
+        this.maxGapMillis = maxGap.toMillis();
+    }
+
+    void add(long attemptId, Instant ts) {
+        if (startedAt != null && (attemptId != this.attemptId || ts.toEpochMilli() - lastAt.toEpochMilli() > maxGapMillis)) {
+            close();
+        }
+        if (startedAt == null) {
+            this.attemptId = attemptId;
+            startedAt = ts;
+        }
+        lastAt = ts;
+        heartbeats++;
+    }
+
+    List<PresenceInterval> finish() {
+        if (startedAt != null) {
+            close();
+        }
+        return spans;
+    }
+
+    /**
+     * The online spans of one attempt, in order, with the offline gaps between them filled in.
+     */
+    static List<PresenceInterval> withGaps(List<PresenceInterval> online) {
+        List<PresenceInterval> timeline = new ArrayList<>();
+        for (PresenceInterval span : online) {
+            if (!timeline.isEmpty()) {
+                PresenceInterval previous = timeline.get(timeline.size() - 1);
+                timeline.add(new PresenceInterval(span.getAttemptId(), false, previous.getEndedAt(), span.getStartedAt(), 0));
+            }
+            timeline.add(span);
+        }
+        return timeline;
+    }
+
+    private void close() {
+        spans.add(new PresenceInterval(attemptId, true, startedAt, lastAt, heartbeats));
+        startedAt = null;
+        lastAt = null;
+        heartbeats = 0;
+    }
+}
@@ -0,0 +1,43 @@
+package com.examsystem.proctor;
+
+import java.time.Instant;
+
+/**
+ * A span of an attempt's timeline: online while heartbeats arrived no further apart than the configured gap,
+ * offline between two online spans.
+ */
+public class PresenceInterval {
+    private final long attemptId;
+    private final boolean online;
+    private final Instant startedAt;
+    private final Instant endedAt;
+    private final int heartbeats;
+
+    public PresenceInterval(long attemptId, boolean online, Instant startedAt, Instant endedAt, int heartbeats) {
+        this.attemptId = attemptId;
+        this.online = online;
+        this.startedAt = startedAt;
+        this.endedAt = endedAt;
+        this.heartbeats = heartbeats;
+    }
+
+    public long getAttemptId() {
+        return attemptId;
+    }
+
+    public boolean isOnline() {
+        return online;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getEndedAt() {
+        return endedAt;
+    }
+
+    public int getHeartbeats() {
+        return heartbeats;
+    }
+}
@@ -0,0 +1,251 @@
+package com.examsystem.proctor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Latest heartbeat per attempt, in striped open-addressing tables keyed by primitive attempt id. A heartbeat for a
+ * known attempt overwrites its slot in place without allocating. Each entry also keeps the last timestamp that was
+ * written to the database, so a flush only picks up attempts that moved since.
+ */
+final class PresenceTable {
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    PresenceTable() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Records a heartbeat unless a newer one is already known. Returns how many heartbeats the attempt has sent.
+     */
+    long record(long attemptId, long examId, String username, long tsMillis) {
+        Stripe stripe = stripeOf(attemptId);
+        synchronized (stripe) {
+            int slot = stripe.slotOf(attemptId, true);
+            if (!stripe.used[slot]) {
+                stripe.insert(slot, attemptId, examId, username, tsMillis, Long.MIN_VALUE);
+            } else if (tsMillis > stripe.ts[slot]) {
+                stripe.ts[slot] = tsMillis;
+            }
+            return ++stripe.counts[slot];
+        }
+    }
+
+    /**
+     * Adds a presence read back from the database, keeping whichever timestamp is newer. The entry counts as flushed.
+     */
+    void merge(AttemptPresence presence) {
+        long tsMillis = presence.getLastTs().toEpochMilli();
+        Stripe stripe = stripeOf(presence.getAttemptId());
+        synchronized (stripe) {
+            int slot = stripe.slotOf(presence.getAttemptId(), true);
+            if (!stripe.used[slot]) {
+                stripe.insert(slot, presence.getAttemptId(), presence.getExamId(), presence.getUsername(), tsMillis, tsMillis);
+            } else if (tsMillis > stripe.ts[slot]) {
+                stripe.ts[slot] = tsMillis;
+                stripe.flushed[slot] = tsMillis;
+            }
+        }
+    }
+
+    void collectByExam(long examId, List<AttemptPresence> into) {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (int i = 0; i < stripe.keys.length; i++) {
+                    if (stripe.used[i] && stripe.exams[i] == examId) {
+                        into.add(stripe.snapshot(i));
+                    }
+                }
+            }
+        }
+    }
+
+    void collectDirty(List<AttemptPresence> into) {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (int i = 0; i < stripe.keys.length; i++) {
+                    if (stripe.used[i] && stripe.ts[i] != stripe.flushed[i]) {
+                        into.add(stripe.snapshot(i));
+                    }
+                }
+            }
+        }
+    }
+
+    void markFlushed(AttemptPresence presence) {
+        Stripe stripe = stripeOf(presence.getAttemptId());
+        synchronized (stripe) {
+            int slot = stripe.slotOf(presence.getAttemptId(), false);
+            if (slot >= 0) {
+                stripe.flushed[slot] = Math.max(stripe.flushed[slot], presence.getLastTs().toEpochMilli());
+            }
+        }
+    }
+
+    /**
+     * Drops flushed entries whose last heartbeat is older than the cutoff.
+     */
+    int evictFlushedBefore(long cutoffMillis) {
+        return removeWhere((stripe, i) -> stripe.ts[i] < cutoffMillis && stripe.ts[i] == stripe.flushed[i]);
+    }
+
+    void evictExam(long examId) {
+        removeWhere((stripe, i) -> stripe.exams[i] == examId);
+    }
+
+    void evictStudent(String username) {
+        removeWhere((stripe, i) -> stripe.usernames[i].equals(username));
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    private int removeWhere(SlotFilter filter) {
+        int removed = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                int i = 0;
+                while (i < stripe.keys.length) {
+                    // backward-shift deletion may move another entry into slot i, so it is checked again
+                    if (stripe.used[i] && filter.test(stripe, i)) {
+                        stripe.removeAt(i);
+                        removed++;
+                    } else {
+                        i++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    private Stripe stripeOf(long attemptId) {
+        return stripes[(int) (mix(attemptId) >>> 60)];
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    private interface SlotFilter {
+        boolean test(Stripe stripe, int slot);
+    }
+
+    private static final class Stripe {
+        private long[] keys = new long[16];
+        private long[] exams = new long[16];
+        private long[] ts = new long[16];
+        private long[] flushed = new long[16];
+        private long[] counts = new long[16];
+        private String[] usernames = new String[16];
+        private boolean[] used = new boolean[16];
+        private int size;
+
+        /**
+         * The slot holding the key, or with {@code forInsert} the free slot it would go to; -1 if absent otherwise.
+         */
+        private int slotOf(long key, boolean forInsert) {
+            if (forInsert && (size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = (int) mix(key) & mask;
+            while (used[i]) {
+                if (keys[i] == key) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return forInsert ? i : -1;
+        }
+
+        private void insert(int slot, long key, long examId, String username, long tsMillis, long flushedMillis) {
+            keys[slot] = key;
+            exams[slot] = examId;
+            usernames[slot] = username;
+            ts[slot] = tsMillis;
+            flushed[slot] = flushedMillis;
+            counts[slot] = 0;
+            used[slot] = true;
+            size++;
+        }
+
+        private AttemptPresence snapshot(int slot) {
+            return new AttemptPresence(keys[slot], exams[slot], usernames[slot], Instant.ofEpochMilli(ts[slot]));
+        }
+
+        private void removeAt(int slot) {
+            int mask = keys.length - 1;
+            int gap = slot;
+            int i = (slot + 1) & mask;
+            while (used[i]) {
+                int home = (int) mix(keys[i]) & mask;
+                // move the entry into the gap unless its home slot lies cyclically between the gap and i
+                if (((i - home) & mask) >= ((i - gap) & mask)) {
+                    move(i, gap);
+                    gap = i;
+                }
+                i = (i + 1) & mask;
+            }
+            used[gap] = false;
+            usernames[gap] = null;
+            size--;
+        }
+
+        private void move(int from, int to) {
+            keys[to] = keys[from];
+            exams[to] = exams[from];
+            ts[to] = ts[from];
+            flushed[to] = flushed[from];
+            counts[to] = counts[from];
+            usernames[to] = usernames[from];
+            used[to] = true;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            long[] oldExams = exams;
+            long[] oldTs = ts;
+            long[] oldFlushed = flushed;
+            long[] oldCounts = counts;
+            String[] oldUsernames = usernames;
+            boolean[] oldUsed = used;
+            keys = new long[capacity];
+            exams = new long[capacity];
+            ts = new long[capacity];
+            flushed = new long[capacity];
+            counts = new long[capacity];
+            usernames = new String[capacity];
+            used = new boolean[capacity];
+            size = 0;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldUsed[j]) {
+                    int slot = freeSlot(oldKeys[j]);
+                    insert(slot, oldKeys[j], oldExams[j], oldUsernames[j], oldTs[j], oldFlushed[j]);
+                    counts[slot] = oldCounts[j];
+                }
+            }
+        }
+
+        private int freeSlot(long key) {
+            int mask = keys.length - 1;
+            int i = (int) mix(key) & mask;
+            while (used[i]) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+    }
+}
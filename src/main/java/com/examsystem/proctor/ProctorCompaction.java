@@ -0,0 +1,74 @@
+package com.examsystem.proctor;
+
+import java.time.Instant;
+
+/**
+ * Records that an exam's raw proctoring data was compacted: heartbeats up to {@code lastHeartbeatId} were folded into
+ * presence intervals and events up to {@code lastEventId} were written to {@code archivePath}. Those raw rows are
+ * deleted once {@code purgedAt} is set.
+ */
+public class ProctorCompaction {
+    private final long examId;
+    private final Instant compactedAt;
+    private final String archivePath;
+    private final long lastEventId;
+    private final long lastHeartbeatId;
+    private final int eventCount;
+    private final int heartbeatCount;
+    private final Instant purgedAt;
+
+    public ProctorCompaction(
+            long examId,
+            Instant compactedAt,
+            String archivePath,
+            long lastEventId,
+            long lastHeartbeatId,
+            int eventCount,
+            int heartbeatCount,
+            Instant purgedAt
+    ) {
+        this.examId = examId;
+        this.compactedAt = compactedAt;
+        this.archivePath = archivePath;
+        this.lastEventId = lastEventId;
+        this.lastHeartbeatId = lastHeartbeatId;
+        this.eventCount = eventCount;
+        this.heartbeatCount = heartbeatCount;
+        this.purgedAt = purgedAt;
+    }
+
+    public long getExamId() {
+        return examId;
+    }
+
+    public Instant getCompactedAt() {
+        return compactedAt;
+    }
+
+    /**
+     * Null when the exam had no events to archive.
+     */
+    public String getArchivePath() {
+        return archivePath;
+    }
+
+    public long getLastEventId() {
+        return lastEventId;
+    }
+
+    public long getLastHeartbeatId() {
+        return lastHeartbeatId;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public int getHeartbeatCount() {
+        return heartbeatCount;
+    }
+
+    public Instant getPurgedAt() {
+        return purgedAt;
+    }
+}
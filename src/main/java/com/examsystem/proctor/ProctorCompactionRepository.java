@@ -0,0 +1,216 @@
+package com.examsystem.proctor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class ProctorCompactionRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProctorCompactionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Exams that ended before {@code endedBefore}, have no attempt in progress and were not compacted yet.
+     */
+    public List<Long> listExamsToCompact(Instant endedBefore) {
+        return jdbcTemplate.queryForList(
+                "SELECT e.id FROM exams e WHERE e.end_at < ? " +
+                        "AND NOT EXISTS (SELECT 1 FROM proctor_compactions c WHERE c.exam_id = e.id) " +
+                        "AND NOT EXISTS (SELECT 1 FROM exam_attempts a WHERE a.exam_id = e.id AND a.status = 'IN_PROGRESS') " +
+                        "ORDER BY e.end_at",
+                Long.class,
+                java.sql.Timestamp.from(endedBefore)
+        );
+    }
+
+    /**
+     * Visits the exam's raw heartbeats grouped by attempt and in time order.
+     */
+    public void forEachHeartbeat(long examId, HeartbeatVisitor visitor) {
+        jdbcTemplate.query(
+                "SELECT h.id, h.attempt_id, h.ts FROM attempt_heartbeats h JOIN exam_attempts a ON a.id = h.attempt_id " +
+                        "WHERE a.exam_id = ? ORDER BY h.attempt_id, h.ts, h.id",
+                rs -> {
+                    visitor.visit(rs.getLong("id"), rs.getLong("attempt_id"), rs.getTimestamp("ts").toInstant());
+                },
+                examId
+        );
+    }
+
+    public void forEachAttemptHeartbeat(long attemptId, HeartbeatVisitor visitor) {
+        jdbcTemplate.query(
+                "SELECT id, attempt_id, ts FROM attempt_heartbeats WHERE attempt_id = ? ORDER BY ts, id",
+                rs -> {
+                    visitor.visit(rs.getLong("id"), rs.getLong("attempt_id"), rs.getTimestamp("ts").toInstant());
+                },
+                attemptId
+        );
+    }
+
+    /**
+     * Visits the exam's events in id order.
+     */
+    public void forEachEvent(long examId, Consumer<ProctorEvent> consumer) {
+        jdbcTemplate.query(
+                "SELECT id, exam_id, attempt_id, username, type, payload_json, created_at FROM proctor_events WHERE exam_id = ? ORDER BY id",
+                rs -> {
+                    consumer.accept(mapEvent(rs));
+                },
+                examId
+        );
+    }
+
+    public List<ProctorEvent> listAttemptEvents(long attemptId) {
+        return jdbcTemplate.query(
+                "SELECT id, exam_id, attempt_id, username, type, payload_json, created_at FROM proctor_events " +
+                        "WHERE attempt_id = ? ORDER BY created_at, id",
+                (rs, rowNum) -> mapEvent(rs),
+                attemptId
+        );
+    }
+
+    /**
+     * Replaces the exam's presence intervals and records the compaction, in the caller's transaction.
+     */
+    public void saveCompaction(ProctorCompaction compaction, List<PresenceInterval> onlineSpans) {
+        jdbcTemplate.update("DELETE FROM attempt_presence_intervals WHERE exam_id = ?", compaction.getExamId());
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO attempt_presence_intervals(exam_id, attempt_id, started_at, ended_at, heartbeats) " +
+                        "SELECT a.exam_id, a.id, ?, ?, ? FROM exam_attempts a WHERE a.id = ?",
+                onlineSpans,
+                500,
+                (ps, span) -> {
+                    ps.setTimestamp(1, java.sql.Timestamp.from(span.getStartedAt()));
+                    ps.setTimestamp(2, java.sql.Timestamp.from(span.getEndedAt()));
+                    ps.setInt(3, span.getHeartbeats());
+                    ps.setLong(4, span.getAttemptId());
+                }
+        );
+        jdbcTemplate.update(
+                "INSERT INTO proctor_compactions(exam_id, compacted_at, archive_path, last_event_id, last_heartbeat_id, event_count, heartbeat_count) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                compaction.getExamId(),
+                java.sql.Timestamp.from(compaction.getCompactedAt()),
+                compaction.getArchivePath(),
+                compaction.getLastEventId(),
+                compaction.getLastHeartbeatId(),
+                compaction.getEventCount(),
+                compaction.getHeartbeatCount()
+        );
+    }
+
+    public Optional<ProctorCompaction> findCompaction(long examId) {
+        return jdbcTemplate.query(
+                "SELECT exam_id, compacted_at, archive_path, last_event_id, last_heartbeat_id, event_count, heartbeat_count, purged_at " +
+                        "FROM proctor_compactions WHERE exam_id = ?",
+                (rs, rowNum) -> mapCompaction(rs),
+                examId
+        ).stream().findFirst();
+    }
+
+    public List<ProctorCompaction> listUnpurgedBefore(Instant compactedBefore) {
+        return jdbcTemplate.query(
+                "SELECT exam_id, compacted_at, archive_path, last_event_id, last_heartbeat_id, event_count, heartbeat_count, purged_at " +
+                        "FROM proctor_compactions WHERE purged_at IS NULL AND compacted_at < ? ORDER BY compacted_at",
+                (rs, rowNum) -> mapCompaction(rs),
+                java.sql.Timestamp.from(compactedBefore)
+        );
+    }
+
+    public List<Long> listCompactedExamIds() {
+        return jdbcTemplate.queryForList("SELECT exam_id FROM proctor_compactions", Long.class);
+    }
+
+    public List<PresenceInterval> listOnlineSpans(long attemptId) {
+        return jdbcTemplate.query(
+                "SELECT attempt_id, started_at, ended_at, heartbeats FROM attempt_presence_intervals WHERE attempt_id = ? ORDER BY started_at",
+                (rs, rowNum) -> new PresenceInterval(
+                        rs.getLong("attempt_id"),
+                        true,
+                        rs.getTimestamp("started_at").toInstant(),
+                        rs.getTimestamp("ended_at").toInstant(),
+                        rs.getInt("heartbeats")
+                ),
+                attemptId
+        );
+    }
+
+    /**
+     * Deletes up to {@code limit} of the exam's events with an id up to {@code maxId}; returns how many were deleted.
+     */
+    public int purgeEvents(long examId, long maxId, int limit) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM proctor_events WHERE exam_id = ? AND id <= ? ORDER BY id LIMIT ?",
+                Long.class,
+                examId,
+                maxId,
+                limit
+        );
+        return deleteByIds("proctor_events", ids);
+    }
+
+    /**
+     * Deletes up to {@code limit} of the exam's raw heartbeats with an id up to {@code maxId}; returns how many were
+     * deleted.
+     */
+    public int purgeHeartbeats(long examId, long maxId, int limit) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT h.id FROM attempt_heartbeats h JOIN exam_attempts a ON a.id = h.attempt_id " +
+                        "WHERE a.exam_id = ? AND h.id <= ? ORDER BY h.id LIMIT ?",
+                Long.class,
+                examId,
+                maxId,
+                limit
+        );
+        return deleteByIds("attempt_heartbeats", ids);
+    }
+
+    public void markPurged(long examId, Instant now) {
+        jdbcTemplate.update("UPDATE proctor_compactions SET purged_at = ? WHERE exam_id = ?", java.sql.Timestamp.from(now), examId);
+    }
+
+    private int deleteByIds(String table, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String placeholders = ids.stream().map(id -> "?").collect(Collectors.joining(","));
+        return jdbcTemplate.update("DELETE FROM " + table + " WHERE id IN (" + placeholders + ")", ids.toArray());
+    }
+
+    private static ProctorEvent mapEvent(java.sql.ResultSet rs) throws java.sql.SQLException {
+        return new ProctorEvent(
+                rs.getLong("id"),
+                rs.getLong("exam_id"),
+                rs.getLong("attempt_id"),
+                rs.getString("username"),
+                rs.getString("type"),
+                rs.getString("payload_json"),
+                rs.getTimestamp("created_at").toInstant()
+        );
+    }
+
+    private static ProctorCompaction mapCompaction(java.sql.ResultSet rs) throws java.sql.SQLException {
+        java.sql.Timestamp purgedAt = rs.getTimestamp("purged_at");
+        return new ProctorCompaction(
+                rs.getLong("exam_id"),
+                rs.getTimestamp("compacted_at").toInstant(),
+                rs.getString("archive_path"),
+                rs.getLong("last_event_id"),
+                rs.getLong("last_heartbeat_id"),
+                rs.getInt("event_count"),
+                rs.getInt("heartbeat_count"),
+                purgedAt == null ? null : purgedAt.toInstant()
+        );
+    }
+
+    public interface HeartbeatVisitor {
+        void visit(long id, long attemptId, Instant ts);
+    }
+}
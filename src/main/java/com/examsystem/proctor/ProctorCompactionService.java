@@ -0,0 +1,310 @@
+package com.examsystem.proctor;
+
+import com.examsystem.cluster.ClusterService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Bounds the raw proctoring tables. Once an exam has been over for {@code exam.retention.compact-after} and has no
+ * attempt in progress, the leader folds its raw heartbeats into online spans in attempt_presence_intervals and writes
+ * its events to a gzipped JSON-lines file under {@code exam.retention.archive-dir}. The raw rows that were compacted
+ * are deleted in chunks of {@code exam.retention.purge-chunk-size} after another {@code exam.retention.raw-retention};
+ * from then on {@link #timeline} reads the intervals and the archive instead.
+ *
+ * <p>When several nodes run, the archive directory has to be shared storage: a node that cannot read an archive
+ * leaves the exam's events in place and serves timelines without them.
+ *
+ * <p>Runs go on a thread of their own every {@code exam.retention.interval-millis}, since reading and archiving a
+ * large exam would otherwise hold up the shared scheduler, and stop between exams once this node is no longer the
+ * leader.
+ */
+@Service
+public class ProctorCompactionService {
+    private static final String ARCHIVE_PREFIX = "exam-";
+    private static final String ARCHIVE_SUFFIX = "-events.jsonl.gz";
+
+    private final ProctorCompactionRepository repository;
+    private final ClusterService clusterService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration compactAfter;
+    private final Duration rawRetention;
+    private final Duration presenceGap;
+    private final Path archiveDir;
+    private final int purgeChunkSize;
+    private final long intervalMillis;
+    private final ScheduledThreadPoolExecutor runner = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "proctor-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ProctorCompactionService(
+            ProctorCompactionRepository repository,
+            ClusterService clusterService,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            @Value("${exam.retention.compact-after:10m}") Duration compactAfter,
+            @Value("${exam.retention.raw-retention:7d}") Duration rawRetention,
+            @Value("${exam.retention.presence-gap:30s}") Duration presenceGap,
+            @Value("${exam.retention.archive-dir:data/proctor-archive}") String archiveDir,
+            @Value("${exam.retention.purge-chunk-size:1000}") int purgeChunkSize,
+            @Value("${exam.retention.interval-millis:600000}") long intervalMillis
+    ) {
+        this.repository = repository;
+        this.clusterService = clusterService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.compactAfter = compactAfter;
+        this.rawRetention = rawRetention;
+        this.presenceGap = presenceGap;
+        this.archiveDir = Paths.get(archiveDir);
+        this.purgeChunkSize = Math.max(1, purgeChunkSize);
+        this.intervalMillis = Math.max(1, intervalMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        runner.scheduleWithFixedDelay(this::scheduledRun, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        runner.shutdownNow();
+    }
+
+    public void scheduledRun() {
+        try {
+            runOnce(Instant.now());
+        } catch (RuntimeException e) {
+            // the next run tries again
+        }
+    }
+
+    /**
+     * Compacts the exams that are due, purges raw rows past retention and removes archives of deleted exams, as long
+     * as this node leads. An exam that fails is retried on the next run.
+     */
+    public void runOnce(Instant now) {
+        if (!clusterService.isLeader()) {
+            return;
+        }
+        for (long examId : repository.listExamsToCompact(now.minus(compactAfter))) {
+            if (!clusterService.isLeader()) {
+                return;
+            }
+            try {
+                compact(examId, now);
+            } catch (RuntimeException e) {
+                // left uncompacted; the next run tries again
+            }
+        }
+        for (ProctorCompaction compaction : repository.listUnpurgedBefore(now.minus(rawRetention))) {
+            if (!clusterService.isLeader()) {
+                return;
+            }
+            try {
+                purge(compaction, now);
+            } catch (RuntimeException e) {
+                // left unpurged; the next run tries again
+            }
+        }
+        removeOrphanArchives();
+    }
+
+    public ProctorCompaction compact(long examId, Instant now) {
+        PresenceFolder folder = new PresenceFolder(presenceGap);
+        long[] heartbeats = new long[2];
+        repository.forEachHeartbeat(examId, (id, attemptId, ts) -> {
+            folder.add(attemptId, ts);
+            heartbeats[0]++;
+            heartbeats[1] = Math.max(heartbeats[1], id);
+        });
+        List<PresenceInterval> spans = folder.finish();
+
+        long[] events = new long[2];
+        Path archive = archivePath(examId);
+        Path tmp = archive.resolveSibling(archive.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(archiveDir);
+            try (Writer out = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(tmp)), StandardCharsets.UTF_8)) {
+                repository.forEachEvent(examId, e -> {
+                    writeEvent(out, e);
+                    events[0]++;
+                    events[1] = Math.max(events[1], e.getId());
+                });
+            }
+            if (events[0] == 0) {
+                Files.delete(tmp);
+            } else {
+                Files.move(tmp, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        ProctorCompaction compaction = new ProctorCompaction(
+                examId,
+                now,
+                events[0] == 0 ? null : archive.toAbsolutePath().toString(),
+                events[1],
+                heartbeats[1],
+                (int) events[0],
+                (int) heartbeats[0],
+                null
+        );
+        transactionTemplate.executeWithoutResult(status -> repository.saveCompaction(compaction, spans));
+        return compaction;
+    }
+
+    /**
+     * Online spans and gaps of the attempt and its events, from the raw rows or, once the exam was compacted, from
+     * the intervals and the archive.
+     */
+    public AttemptTimeline timeline(long examId, long attemptId) {
+        Optional<ProctorCompaction> compaction = repository.findCompaction(examId);
+        List<PresenceInterval> online;
+        if (compaction.isPresent()) {
+            online = repository.listOnlineSpans(attemptId);
+        } else {
+            PresenceFolder folder = new PresenceFolder(presenceGap);
+            repository.forEachAttemptHeartbeat(attemptId, (id, a, ts) -> folder.add(a, ts));
+            online = folder.finish();
+        }
+
+        boolean purged = compaction.isPresent() && compaction.get().getPurgedAt() != null;
+        List<ProctorEvent> events;
+        boolean eventsAvailable = true;
+        if (!purged) {
+            events = repository.listAttemptEvents(attemptId);
+        } else if (compaction.get().getArchivePath() == null) {
+            events = List.of();
+        } else {
+            Path archive = Paths.get(compaction.get().getArchivePath());
+            eventsAvailable = Files.isReadable(archive);
+            events = eventsAvailable ? readArchive(archive, attemptId) : List.of();
+        }
+        return new AttemptTimeline(
+                attemptId,
+                compaction.isPresent(),
+                eventsAvailable,
+                PresenceFolder.withGaps(online),
+                events
+        );
+    }
+
+    private void purge(ProctorCompaction compaction, Instant now) {
+        if (compaction.getArchivePath() != null && !Files.isReadable(Paths.get(compaction.getArchivePath()))) {
+            return;
+        }
+        int deleted;
+        do {
+            deleted = repository.purgeEvents(compaction.getExamId(), compaction.getLastEventId(), purgeChunkSize);
+        } while (deleted == purgeChunkSize);
+        do {
+            deleted = repository.purgeHeartbeats(compaction.getExamId(), compaction.getLastHeartbeatId(), purgeChunkSize);
+        } while (deleted == purgeChunkSize);
+        repository.markPurged(compaction.getExamId(), now);
+    }
+
+    private void removeOrphanArchives() {
+        if (!Files.isDirectory(archiveDir)) {
+            return;
+        }
+        Set<Long> compacted = new HashSet<>(repository.listCompactedExamIds());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(archiveDir, ARCHIVE_PREFIX + "*" + ARCHIVE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String id = name.substring(ARCHIVE_PREFIX.length(), name.length() - ARCHIVE_SUFFIX.length());
+                try {
+                    if (!compacted.contains(Long.parseLong(id))) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        } catch (IOException e) {
+            // retried on the next run
+        }
+    }
+
+    private Path archivePath(long examId) {
+        return archiveDir.resolve(ARCHIVE_PREFIX + examId + ARCHIVE_SUFFIX);
+    }
+
+    private void writeEvent(Writer out, ProctorEvent e) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("id", e.getId());
+        node.put("examId", e.getExamId());
+        node.put("attemptId", e.getAttemptId());
+        node.put("username", e.getUsername());
+        node.put("type", e.getType());
+        node.put("payloadJson", e.getPayloadJson());
+        node.put("createdAt", e.getCreatedAt().toString());
+        try {
+            out.write(objectMapper.writeValueAsString(node));
+            out.write('\n');
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private List<ProctorEvent> readArchive(Path archive, long attemptId) {
+        List<ProctorEvent> events = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(archive)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                JsonNode node = objectMapper.readTree(line);
+                if (node.path("attemptId").asLong() != attemptId) {
+                    continue;
+                }
+                events.add(new ProctorEvent(
+                        node.path("id").asLong(),
+                        node.path("examId").asLong(),
+                        attemptId,
+                        node.path("username").asText(),
+                        node.path("type").asText(),
+                        node.path("payloadJson").isNull() ? null : node.path("payloadJson").asText(),
+                        Instant.parse(node.path("createdAt").asText())
+                ));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        events.sort(Comparator.comparing(ProctorEvent::getCreatedAt).thenComparingLong(ProctorEvent::getId));
+        return events;
+    }
+}
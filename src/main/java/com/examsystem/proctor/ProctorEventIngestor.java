@@ -0,0 +1,221 @@
+package com.examsystem.proctor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Takes student proctor events off the request threads. Requests publish into an {@link EventRing} without locking;
+ * one consumer thread drains it into batched inserts of up to {@code exam.proctor.event-batch-size} rows, waiting up
+ * to {@code exam.proctor.event-linger-millis} for a partial batch to fill. When the ring is full a request waits up to
+ * {@code exam.proctor.event-offer-timeout-millis} for room and is then rejected with 503. Shutdown drains the ring
+ * before the consumer exits. Each batch is inserted in one transaction together with the tab stats it changes.
+ * Database and transaction failures are retried every second; any other failure drops only the events that cause it.
+ */
+@Service
+public class ProctorEventIngestor {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+    private static final int SHUTDOWN_ATTEMPTS = 3;
+
+    private final ProctorRepository repository;
+    private final TabStatsService tabStats;
+    private final TransactionTemplate transactionTemplate;
+    private final EventRing<ProctorEvent> ring;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long offerTimeoutNanos;
+    private final Thread consumer = new Thread(this::consume, "proctor-events");
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile boolean running = true;
+    private volatile boolean idle;
+
+    public ProctorEventIngestor(
+            ProctorRepository repository,
+            TabStatsService tabStats,
+            PlatformTransactionManager transactionManager,
+            @Value("${exam.proctor.event-buffer-size:16384}") int bufferSize,
+            @Value("${exam.proctor.event-batch-size:500}") int batchSize,
+            @Value("${exam.proctor.event-linger-millis:20}") long lingerMillis,
+            @Value("${exam.proctor.event-offer-timeout-millis:200}") long offerTimeoutMillis
+    ) {
+        this.repository = repository;
+        this.tabStats = tabStats;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ring = new EventRing<>(bufferSize);
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+        this.offerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, offerTimeoutMillis));
+    }
+
+    @PostConstruct
+    public void start() {
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(consumer);
+        consumer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public void publish(ProctorEvent event) {
+        if (!offer(event)) {
+            rejected.incrementAndGet();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "proctor_events_busy");
+        }
+        if (idle) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    public IngestStats stats() {
+        return new IngestStats(ring.size(), ring.capacity(), written.get(), dropped.get(), rejected.get());
+    }
+
+    private boolean offer(ProctorEvent event) {
+        if (!running) {
+            return false;
+        }
+        if (ring.tryPublish(event)) {
+            return true;
+        }
+        long deadline = System.nanoTime() + offerTimeoutNanos;
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+            if (ring.tryPublish(event)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void consume() {
+        List<ProctorEvent> batch = new ArrayList<>(batchSize);
+        while (true) {
+            ring.drainTo(batch, batchSize);
+            if (!batch.isEmpty() && batch.size() < batchSize && running && lingerNanos > 0) {
+                LockSupport.parkNanos(lingerNanos);
+                ring.drainTo(batch, batchSize - batch.size());
+            }
+            if (batch.isEmpty()) {
+                if (!running) {
+                    return;
+                }
+                idle = true;
+                if (ring.size() == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                idle = false;
+                continue;
+            }
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                // never let a batch end the only consumer: the ring would fill and every event would be rejected
+                dropped.addAndGet(batch.size());
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(List<ProctorEvent> batch) {
+        int attempts = 0;
+        while (true) {
+            try {
+                insert(batch);
+                written.addAndGet(batch.size());
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // an attempt or user was deleted while its events were queued, or another node created a stats row first;
+                // keep the rest of the batch
+                writeEach(batch);
+                return;
+            } catch (DataAccessException | TransactionException e) {
+                // the database is unreachable or the pool is exhausted: back off and retry the whole batch
+                if (!running && ++attempts >= SHUTDOWN_ATTEMPTS) {
+                    dropped.addAndGet(batch.size());
+                    return;
+                }
+                LockSupport.parkNanos(RETRY_DELAY.toNanos());
+            } catch (RuntimeException e) {
+                // not a database failure, so retrying will not help; find the events that cause it
+                writeEach(batch);
+                return;
+            }
+        }
+    }
+
+    private void writeEach(List<ProctorEvent> batch) {
+        for (ProctorEvent event : batch) {
+            try {
+                insert(List.of(event));
+                written.incrementAndGet();
+            } catch (RuntimeException e) {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    private void insert(List<ProctorEvent> events) {
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.insertEvents(events);
+            tabStats.apply(events);
+        });
+    }
+
+    public static class IngestStats {
+        private final int pending;
+        private final int capacity;
+        private final long written;
+        private final long dropped;
+        private final long rejected;
+
+        public IngestStats(int pending, int capacity, long written, long dropped, long rejected) {
+            this.pending = pending;
+            this.capacity = capacity;
+            this.written = written;
+            this.dropped = dropped;
+            this.rejected = rejected;
+        }
+
+        public int getPending() {
+            return pending;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public long getWritten() {
+            return written;
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+    }
+}
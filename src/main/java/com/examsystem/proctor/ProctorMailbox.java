@@ -0,0 +1,129 @@
+package com.examsystem.proctor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+
+/**
+ * Teacher messages per attempt, newest last, ordered by event id. A mailbox is filled from the database the first
+ * time its attempt polls and is then kept current by {@link #append}, so later polls read the messages after a given
+ * id without SQL. Each mailbox keeps the last {@value #CAPACITY} messages; a poll that asks for something older than
+ * the retained window gets an empty Optional and has to go to the database. Mailboxes are dropped when their attempt
+ * is no longer in progress, or once nobody polled them for a while, and reload on the next poll.
+ */
+final class ProctorMailbox {
+    static final int CAPACITY = 64;
+
+    private final Map<Long, Box> boxes = new ConcurrentHashMap<>();
+
+    /**
+     * Messages with an id greater than {@code afterId}, oldest first; empty if messages after {@code afterId} may have
+     * been dropped from the window.
+     */
+    Optional<List<ProctorEvent>> after(
+            long attemptId,
+            long examId,
+            String username,
+            long afterId,
+            LongFunction<List<ProctorEvent>> loader
+    ) {
+        Box box = boxes.computeIfAbsent(attemptId, id -> {
+            Box loaded = new Box(examId, username);
+            loader.apply(id).forEach(loaded::add);
+            return loaded;
+        });
+        box.lastPolledMillis = System.currentTimeMillis();
+        return box.after(afterId);
+    }
+
+    /**
+     * Adds a message to a mailbox that is already loaded. An unloaded one picks the message up from the database
+     * when it is first polled.
+     */
+    void append(ProctorEvent message) {
+        boxes.computeIfPresent(message.getAttemptId(), (id, box) -> {
+            box.add(message);
+            return box;
+        });
+    }
+
+    void evict(long attemptId) {
+        boxes.remove(attemptId);
+    }
+
+    /**
+     * Drops mailboxes last polled before the cutoff.
+     */
+    int evictIdleBefore(long cutoffMillis) {
+        int before = boxes.size();
+        boxes.values().removeIf(box -> box.lastPolledMillis < cutoffMillis);
+        return before - boxes.size();
+    }
+
+    void evictExam(long examId) {
+        boxes.values().removeIf(box -> box.examId == examId);
+    }
+
+    void evictStudent(String username) {
+        boxes.values().removeIf(box -> username.equals(box.username));
+    }
+
+    int size() {
+        return boxes.size();
+    }
+
+    private static final class Box {
+        private final ArrayDeque<ProctorEvent> messages = new ArrayDeque<>();
+        private final long examId;
+        private final String username;
+        private long droppedUpTo = Long.MIN_VALUE;
+        private volatile long lastPolledMillis = System.currentTimeMillis();
+
+        private Box(long examId, String username) {
+            this.examId = examId;
+            this.username = username;
+        }
+
+        private synchronized void add(ProctorEvent message) {
+            ProctorEvent last = messages.peekLast();
+            if (last == null || last.getId() < message.getId()) {
+                messages.addLast(message);
+            } else {
+                List<ProctorEvent> ordered = new ArrayList<>(messages);
+                if (ordered.stream().anyMatch(m -> m.getId() == message.getId())) {
+                    return;
+                }
+                ordered.add(message);
+                ordered.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+                messages.clear();
+                messages.addAll(ordered);
+            }
+            while (messages.size() > CAPACITY) {
+                droppedUpTo = messages.pollFirst().getId();
+            }
+        }
+
+        private synchronized Optional<List<ProctorEvent>> after(long afterId) {
+            if (afterId < droppedUpTo) {
+                return Optional.empty();
+            }
+            List<ProctorEvent> newer = new ArrayList<>();
+            Iterator<ProctorEvent> it = messages.descendingIterator();
+            while (it.hasNext()) {
+                ProctorEvent message = it.next();
+                if (message.getId() <= afterId) {
+                    break;
+                }
+                newer.add(message);
+            }
+            Collections.reverse(newer);
+            return Optional.of(newer);
+        }
+    }
+}
@@ -1,8 +1,16 @@
 package com.examsystem.proctor;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -13,15 +21,37 @@ public class ProctorRepository {
         this.jdbcTemplate = jdbcTemplate;
     }
 
-    public void insertEvent(long examId, long attemptId, String username, String type, String payloadJson, Instant now) {
-        jdbcTemplate.update(
+    public long insertEvent(long examId, long attemptId, String username, String type, String payloadJson, Instant now) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            java.sql.PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO proctor_events(exam_id, attempt_id, username, type, payload_json, created_at) VALUES (?, ?, ?, ?, ?, ?)",
+                    java.sql.Statement.RETURN_GENERATED_KEYS
+            );
+            ps.setLong(1, examId);
+            ps.setLong(2, attemptId);
+            ps.setString(3, username);
+            ps.setString(4, type);
+            ps.setString(5, payloadJson);
+            ps.setTimestamp(6, java.sql.Timestamp.from(now));
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    public void insertEvents(List<ProctorEvent> events) {
+        jdbcTemplate.batchUpdate(
                 "INSERT INTO proctor_events(exam_id, attempt_id, username, type, payload_json, created_at) VALUES (?, ?, ?, ?, ?, ?)",
-                examId,
-                attemptId,
-                username,
-                type,
-                payloadJson,
-                java.sql.Timestamp.from(now)
+                events,
+                events.size(),
+                (ps, e) -> {
+                    ps.setLong(1, e.getExamId());
+                    ps.setLong(2, e.getAttemptId());
+                    ps.setString(3, e.getUsername());
+                    ps.setString(4, e.getType());
+                    ps.setString(5, e.getPayloadJson());
+                    ps.setTimestamp(6, java.sql.Timestamp.from(e.getCreatedAt()));
+                }
         );
     }
 
@@ -35,6 +65,35 @@ public class ProctorRepository {
         );
     }
 
+    /**
+     * The newest {@code limit} events of the given types for one attempt with an id above {@code afterId}, oldest
+     * first.
+     */
+    public List<ProctorEvent> listAttemptEvents(long attemptId, List<String> types, long afterId, int limit) {
+        String placeholders = types.stream().map(t -> "?").collect(Collectors.joining(","));
+        List<Object> args = new ArrayList<>();
+        args.add(attemptId);
+        args.addAll(types);
+        args.add(afterId);
+        args.add(limit);
+        List<ProctorEvent> newestFirst = jdbcTemplate.query(
+                "SELECT id, exam_id, attempt_id, username, type, payload_json, created_at FROM proctor_events " +
+                        "WHERE attempt_id = ? AND type IN (" + placeholders + ") AND id > ? ORDER BY id DESC LIMIT ?",
+                (rs, rowNum) -> new ProctorEvent(
+                        rs.getLong("id"),
+                        rs.getLong("exam_id"),
+                        rs.getLong("attempt_id"),
+                        rs.getString("username"),
+                        rs.getString("type"),
+                        rs.getString("payload_json"),
+                        rs.getTimestamp("created_at").toInstant()
+                ),
+                args.toArray()
+        );
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+
     public List<ProctorEvent> listRecentEvents(long examId, int limit) {
         int safeLimit = limit <= 0 ? 50 : Math.min(limit, 200);
         return jdbcTemplate.query(
@@ -53,22 +112,153 @@ public class ProctorRepository {
         );
     }
 
-    public List<HeartbeatRecord> listHeartbeatsByExam(long examId) {
+    /**
+     * Writes the given presences, keeping the newer timestamp when the row already exists. Attempts deleted in the
+     * meantime, or whose
+     * student was removed, are skipped.
+     */
+    public void upsertPresence(List<AttemptPresence> presences, Instant now) {
+        int[] updated = jdbcTemplate.batchUpdate(
+                "UPDATE attempt_presence SET last_ts = CASE WHEN last_ts < ? THEN ? ELSE last_ts END, updated_at = ? WHERE attempt_id = ?",
+                presences,
+                presences.size(),
+                (ps, p) -> {
+                    ps.setTimestamp(1, java.sql.Timestamp.from(p.getLastTs()));
+                    ps.setTimestamp(2, java.sql.Timestamp.from(p.getLastTs()));
+                    ps.setTimestamp(3, java.sql.Timestamp.from(now));
+                    ps.setLong(4, p.getAttemptId());
+                }
+        )[0];
+        List<AttemptPresence> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(presences.get(i));
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO attempt_presence(attempt_id, exam_id, username, last_ts, updated_at) " +
+                        "SELECT a.id, a.exam_id, a.student_username, ?, ? FROM exam_attempts a " +
+                        "JOIN users u ON u.username = a.student_username WHERE a.id = ?",
+                missing,
+                missing.size(),
+                (ps, p) -> {
+                    ps.setTimestamp(1, java.sql.Timestamp.from(p.getLastTs()));
+                    ps.setTimestamp(2, java.sql.Timestamp.from(now));
+                    ps.setLong(3, p.getAttemptId());
+                }
+        );
+    }
+
+    public List<AttemptPresence> listPresenceByExam(long examId) {
         return jdbcTemplate.query(
-                "SELECT h.id, h.attempt_id, h.username, h.ts, h.created_at " +
-                        "FROM attempt_heartbeats h " +
-                        "JOIN exam_attempts a ON h.attempt_id = a.id " +
-                        "WHERE a.exam_id = ? " +
-                        "ORDER BY h.attempt_id ASC, h.ts ASC, h.id ASC",
-                (rs, rowNum) -> new HeartbeatRecord(
-                        rs.getLong("id"),
+                "SELECT attempt_id, exam_id, username, last_ts FROM attempt_presence WHERE exam_id = ?",
+                (rs, rowNum) -> new AttemptPresence(
                         rs.getLong("attempt_id"),
+                        rs.getLong("exam_id"),
                         rs.getString("username"),
-                        rs.getTimestamp("ts").toInstant(),
-                        rs.getTimestamp("created_at").toInstant()
+                        rs.getTimestamp("last_ts").toInstant()
                 ),
                 examId
         );
     }
-}
 
+    /**
+     * The stored stats of the given attempts, locked until the surrounding transaction ends.
+     */
+    public Map<Long, AttemptTabStats> lockTabStats(List<Long> attemptIds) {
+        String placeholders = attemptIds.stream().map(id -> "?").collect(Collectors.joining(","));
+        Map<Long, AttemptTabStats> byAttempt = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT attempt_id, exam_id, username, switch_count, away_millis, away_since FROM attempt_tab_stats " +
+                        "WHERE attempt_id IN (" + placeholders + ") FOR UPDATE",
+                (rs, rowNum) -> mapTabStats(rs),
+                attemptIds.toArray()
+        ).forEach(s -> byAttempt.put(s.getAttemptId(), s));
+        return byAttempt;
+    }
+
+    public void updateTabStats(List<AttemptTabStats> stats, Instant now) {
+        jdbcTemplate.batchUpdate(
+                "UPDATE attempt_tab_stats SET switch_count = ?, away_millis = ?, away_since = ?, updated_at = ? WHERE attempt_id = ?",
+                stats,
+                stats.size(),
+                (ps, s) -> {
+                    ps.setInt(1, s.getSwitchCount());
+                    ps.setLong(2, s.getAwayMillis());
+                    ps.setTimestamp(3, s.getAwaySince() == null ? null : java.sql.Timestamp.from(s.getAwaySince()));
+                    ps.setTimestamp(4, java.sql.Timestamp.from(now));
+                    ps.setLong(5, s.getAttemptId());
+                }
+        );
+    }
+
+    /**
+     * Inserts stats for attempts that have none yet; attempts deleted in the meantime, or whose student was removed,
+     * are skipped.
+     */
+    public void insertTabStats(List<AttemptTabStats> stats, Instant now) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO attempt_tab_stats(attempt_id, exam_id, username, switch_count, away_millis, away_since, updated_at) " +
+                        "SELECT a.id, a.exam_id, a.student_username, ?, ?, ?, ? FROM exam_attempts a " +
+                        "JOIN users u ON u.username = a.student_username WHERE a.id = ?",
+                stats,
+                stats.size(),
+                (ps, s) -> {
+                    ps.setInt(1, s.getSwitchCount());
+                    ps.setLong(2, s.getAwayMillis());
+                    ps.setTimestamp(3, s.getAwaySince() == null ? null : java.sql.Timestamp.from(s.getAwaySince()));
+                    ps.setTimestamp(4, java.sql.Timestamp.from(now));
+                    ps.setLong(5, s.getAttemptId());
+                }
+        );
+    }
+
+    public List<AttemptTabStats> listTabStatsByExam(long examId) {
+        return jdbcTemplate.query(
+                "SELECT attempt_id, exam_id, username, switch_count, away_millis, away_since FROM attempt_tab_stats WHERE exam_id = ?",
+                (rs, rowNum) -> mapTabStats(rs),
+                examId
+        );
+    }
+
+    /**
+     * Streams the events of the given types that belong to attempts without stored tab stats, grouped by attempt and
+     * in the order they happened.
+     */
+    public void forEachEventWithoutTabStats(List<String> types, Consumer<ProctorEvent> consumer) {
+        String placeholders = types.stream().map(t -> "?").collect(Collectors.joining(","));
+        jdbcTemplate.query(
+                "SELECT e.id, e.exam_id, e.attempt_id, e.username, e.type, e.payload_json, e.created_at FROM proctor_events e " +
+                        "WHERE e.type IN (" + placeholders + ") " +
+                        "AND NOT EXISTS (SELECT 1 FROM attempt_tab_stats s WHERE s.attempt_id = e.attempt_id) " +
+                        "ORDER BY e.attempt_id, e.created_at, e.id",
+                rs -> {
+                    consumer.accept(new ProctorEvent(
+                            rs.getLong("id"),
+                            rs.getLong("exam_id"),
+                            rs.getLong("attempt_id"),
+                            rs.getString("username"),
+                            rs.getString("type"),
+                            rs.getString("payload_json"),
+                            rs.getTimestamp("created_at").toInstant()
+                    ));
+                },
+                types.toArray()
+        );
+    }
+
+    private static AttemptTabStats mapTabStats(java.sql.ResultSet rs) throws java.sql.SQLException {
+        java.sql.Timestamp awaySince = rs.getTimestamp("away_since");
+        return new AttemptTabStats(
+                rs.getLong("attempt_id"),
+                rs.getLong("exam_id"),
+                rs.getString("username"),
+                rs.getInt("switch_count"),
+                rs.getLong("away_millis"),
+                awaySince == null ? null : awaySince.toInstant()
+        );
+    }
+}
@@ -0,0 +1,144 @@
+package com.examsystem.proctor;
+
+import com.examsystem.cluster.ClusterService;
+import com.examsystem.cluster.ClusterViewChangedEvent;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Keeps attempt_tab_stats current as blur/focus events are written, so the monitor and its export read one row per
+ * attempt instead of replaying the event history. Events recorded before the table existed are folded in once by the
+ * leader at startup.
+ */
+@Service
+public class TabStatsService {
+    private static final Set<String> AWAY_TYPES = Set.of("WINDOW_BLUR", "VISIBILITY_HIDDEN");
+    private static final Set<String> BACK_TYPES = Set.of("WINDOW_FOCUS", "VISIBILITY_VISIBLE");
+    private static final List<String> TAB_TYPES = List.of("WINDOW_BLUR", "VISIBILITY_HIDDEN", "WINDOW_FOCUS", "VISIBILITY_VISIBLE");
+
+    private final ProctorRepository repository;
+    private final ExamMonitorHub monitorHub;
+    private final ClusterService clusterService;
+
+    public TabStatsService(ProctorRepository repository, ExamMonitorHub monitorHub, ClusterService clusterService) {
+        this.repository = repository;
+        this.monitorHub = monitorHub;
+        this.clusterService = clusterService;
+    }
+
+    static boolean isAway(String type) {
+        return AWAY_TYPES.contains(type);
+    }
+
+    static boolean isBack(String type) {
+        return BACK_TYPES.contains(type);
+    }
+
+    /**
+     * Folds the tab events among {@code events} into their attempts' stats. Has to run in the transaction that
+     * inserted the events, so the two cannot drift apart.
+     */
+    public void apply(List<ProctorEvent> events) {
+        Map<Long, List<ProctorEvent>> byAttempt = new LinkedHashMap<>();
+        for (ProctorEvent e : events) {
+            if (isAway(e.getType()) || isBack(e.getType())) {
+                byAttempt.computeIfAbsent(e.getAttemptId(), id -> new ArrayList<>()).add(e);
+            }
+        }
+        if (byAttempt.isEmpty()) {
+            return;
+        }
+
+        Map<Long, AttemptTabStats> stored = repository.lockTabStats(new ArrayList<>(byAttempt.keySet()));
+        List<AttemptTabStats> updated = new ArrayList<>();
+        List<AttemptTabStats> created = new ArrayList<>();
+        for (Map.Entry<Long, List<ProctorEvent>> entry : byAttempt.entrySet()) {
+            List<ProctorEvent> attemptEvents = entry.getValue();
+            attemptEvents.sort(Comparator.comparing(ProctorEvent::getCreatedAt));
+            ProctorEvent first = attemptEvents.get(0);
+            AttemptTabStats current = stored.get(entry.getKey());
+            AttemptTabStats stats = current != null
+                    ? current
+                    : AttemptTabStats.empty(first.getAttemptId(), first.getExamId(), first.getUsername());
+            for (ProctorEvent e : attemptEvents) {
+                stats = stats.apply(e.getType(), e.getCreatedAt());
+            }
+            (current != null ? updated : created).add(stats);
+        }
+
+        Instant now = Instant.now();
+        if (!updated.isEmpty()) {
+            repository.updateTabStats(updated, now);
+        }
+        if (!created.isEmpty()) {
+            repository.insertTabStats(created, now);
+        }
+
+        List<AttemptTabStats> changed = new ArrayList<>(updated);
+        changed.addAll(created);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    changed.forEach(monitorHub::tabStatsUpdated);
+                }
+            });
+        } else {
+            changed.forEach(monitorHub::tabStatsUpdated);
+        }
+    }
+
+    public List<AttemptTabStats> listByExam(long examId) {
+        return repository.listTabStatsByExam(examId);
+    }
+
+    /**
+     * Builds stats for attempts whose tab events were recorded before stats were kept.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!clusterService.isLeader()) {
+            return;
+        }
+        AttemptTabStats[] current = new AttemptTabStats[1];
+        repository.forEachEventWithoutTabStats(TAB_TYPES, e -> {
+            if (current[0] != null && current[0].getAttemptId() != e.getAttemptId()) {
+                insertBackfilled(current[0]);
+                current[0] = null;
+            }
+            if (current[0] == null) {
+                current[0] = AttemptTabStats.empty(e.getAttemptId(), e.getExamId(), e.getUsername());
+            }
+            current[0] = current[0].apply(e.getType(), e.getCreatedAt());
+        });
+        if (current[0] != null) {
+            insertBackfilled(current[0]);
+        }
+    }
+
+    @EventListener
+    public void onClusterViewChanged(ClusterViewChangedEvent event) {
+        if (event.isLeaderGained()) {
+            backfill();
+        }
+    }
+
+    private void insertBackfilled(AttemptTabStats stats) {
+        try {
+            repository.insertTabStats(List.of(stats), Instant.now());
+        } catch (DuplicateKeyException e) {
+            // a new event created the row while the history was being read; it already counts from there on
+        }
+    }
+}
@@ -6,6 +6,7 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
@@ -17,6 +18,7 @@ import org.springframework.transaction.annotation.Transactional;
 public class InMemoryQuestionRepository {
     private static final TypeReference<List<String>> STRING_LIST = new TypeReference<List<String>>() {};
     private static final String PAPER_ONLY_TAG = "__paper_only__";
+    private static final String CONTENT_VERSION = "questions";
 
     private final JdbcTemplate jdbcTemplate;
     private final ObjectMapper objectMapper;
@@ -92,6 +94,18 @@ public class InMemoryQuestionRepository {
         }
     }
 
+    public List<Question> listByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        String placeholders = ids.stream().map(x -> "?").collect(java.util.stream.Collectors.joining(","));
+        return jdbcTemplate.query(
+                "SELECT * FROM questions WHERE id IN (" + placeholders + ")",
+                (rs, rowNum) -> mapQuestion(rs),
+                ids.toArray()
+        );
+    }
+
     public Optional<Question> update(long id, QuestionDraft draft) {
         Optional<Question> existing = findById(id);
         if (existing.isEmpty()) {
@@ -145,6 +159,30 @@ public class InMemoryQuestionRepository {
         return jdbcTemplate.update("DELETE FROM questions WHERE id = ?", id) > 0;
     }
 
+    /**
+     * Version of question content shared by all nodes; 0 until the first change.
+     */
+    public long contentVersion() {
+        List<Long> version = jdbcTemplate.queryForList(
+                "SELECT version FROM content_versions WHERE name = ?",
+                Long.class,
+                CONTENT_VERSION
+        );
+        return version.isEmpty() ? 0L : version.get(0);
+    }
+
+    public long bumpContentVersion() {
+        if (jdbcTemplate.update("UPDATE content_versions SET version = version + 1 WHERE name = ?", CONTENT_VERSION) == 0) {
+            try {
+                jdbcTemplate.update("INSERT INTO content_versions(name, version) VALUES (?, 1)", CONTENT_VERSION);
+            } catch (DuplicateKeyException e) {
+                // another node inserted it first
+                jdbcTemplate.update("UPDATE content_versions SET version = version + 1 WHERE name = ?", CONTENT_VERSION);
+            }
+        }
+        return contentVersion();
+    }
+
     public List<Question> list(QuestionQuery query) {
         StringBuilder sql = new StringBuilder("SELECT * FROM questions WHERE 1=1");
         List<Object> params = new java.util.ArrayList<>();
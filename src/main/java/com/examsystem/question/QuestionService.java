@@ -1,8 +1,12 @@
 package com.examsystem.question;
 
+import com.examsystem.cluster.ClusterService;
+import com.examsystem.cluster.ClusterViewChangedEvent;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
@@ -10,9 +14,13 @@ import org.springframework.web.server.ResponseStatusException;
 @Service
 public class QuestionService {
     private final InMemoryQuestionRepository repository;
+    private final ClusterService clusterService;
+    private final AtomicLong contentVersion = new AtomicLong();
+    private volatile boolean versionLoaded;
 
-    public QuestionService(InMemoryQuestionRepository repository) {
+    public QuestionService(InMemoryQuestionRepository repository, ClusterService clusterService) {
         this.repository = repository;
+        this.clusterService = clusterService;
     }
 
     public Question create(QuestionDraft draft) {
@@ -24,13 +32,42 @@ public class QuestionService {
         return repository.findById(id);
     }
 
+    public List<Question> listByIds(List<Long> ids) {
+        return repository.listByIds(ids);
+    }
+
     public Optional<Question> update(long id, QuestionDraft draft) {
         validateDraft(draft);
-        return repository.update(id, normalizeDraft(draft));
+        Optional<Question> updated = repository.update(id, normalizeDraft(draft));
+        contentVersion.set(repository.bumpContentVersion());
+        return updated;
     }
 
     public boolean delete(long id) {
-        return repository.delete(id);
+        boolean deleted = repository.delete(id);
+        contentVersion.set(repository.bumpContentVersion());
+        return deleted;
+    }
+
+    /**
+     * Bumped in the database on every question update/delete so caches built from question content can tell they
+     * are stale, on every node. Alone, a node sees every change itself and answers from memory; while other nodes
+     * are alive it reads the shared version.
+     */
+    public long contentVersion() {
+        if (!versionLoaded || clusterService.isClustered()) {
+            contentVersion.set(repository.contentVersion());
+            versionLoaded = true;
+        }
+        return contentVersion.get();
+    }
+
+    /**
+     * Changes made by nodes that have since left are picked up by rereading the version.
+     */
+    @EventListener
+    public void onClusterViewChanged(ClusterViewChangedEvent event) {
+        versionLoaded = false;
     }
 
     public PagedResult<Question> list(QuestionQuery query, int page, int size) {
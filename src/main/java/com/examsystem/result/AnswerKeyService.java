@@ -0,0 +1,77 @@
+package com.examsystem.result;
+
+import com.examsystem.attempt.QuestionSnapshot;
+import com.examsystem.question.Question;
+import com.examsystem.question.QuestionService;
+import com.examsystem.question.QuestionType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Correct answers for a question list, loaded with one query, compiled once and reused for every attempt of the
+ * same paper until question content changes.
+ */
+@Service
+public class AnswerKeyService {
+    private static final int MAX_CACHED_KEYS = 256;
+
+    private final QuestionService questionService;
+    private final ConcurrentHashMap<List<Long>, AnswerKey> cache = new ConcurrentHashMap<>();
+
+    public AnswerKeyService(QuestionService questionService) {
+        this.questionService = questionService;
+    }
+
+    /**
+     * Returns the key indexed like {@code questions}.
+     */
+    public CompiledAnswerKey keyFor(List<QuestionSnapshot> questions) {
+        return keyForQuestionIds(questions.stream().map(QuestionSnapshot::getId).collect(Collectors.toList()));
+    }
+
+    /**
+     * Returns the key indexed like {@code questionIds}.
+     */
+    public CompiledAnswerKey keyForQuestionIds(List<Long> questionIds) {
+        long version = questionService.contentVersion();
+        AnswerKey cached = cache.get(questionIds);
+        if (cached != null && cached.questionVersion == version) {
+            return cached.compiled;
+        }
+        Map<Long, Question> questionById = questionService.listByIds(questionIds).stream()
+                .collect(Collectors.toMap(Question::getId, Function.identity()));
+        List<QuestionType> types = new ArrayList<>(questionIds.size());
+        List<String> correctAnswers = new ArrayList<>(questionIds.size());
+        for (Long id : questionIds) {
+            Question question = questionById.get(id);
+            if (question == null) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "question not found: " + id);
+            }
+            types.add(question.getType());
+            correctAnswers.add(question.getCorrectAnswer());
+        }
+        CompiledAnswerKey compiled = CompiledAnswerKey.compile(types, correctAnswers);
+        if (cache.size() >= MAX_CACHED_KEYS) {
+            cache.clear();
+        }
+        cache.put(List.copyOf(questionIds), new AnswerKey(version, compiled));
+        return compiled;
+    }
+
+    private static class AnswerKey {
+        private final long questionVersion;
+        private final CompiledAnswerKey compiled;
+
+        private AnswerKey(long questionVersion, CompiledAnswerKey compiled) {
+            this.questionVersion = questionVersion;
+            this.compiled = compiled;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.examsystem.result;
+
+/**
+ * Allocation-free parsing of answers into primitive form: choices A–Z as bits 0–25 of an int, true/false as a
+ * tri-state. Follows the same trimming and case rules as the string normalization it replaces.
+ */
+final class ChoiceMask {
+    static final int FALSE = 0;
+    static final int TRUE = 1;
+    static final int INVALID = -1;
+
+    private ChoiceMask() {
+    }
+
+    /**
+     * Bit of a single letter answer after trimming, or 0 when the answer is anything else.
+     */
+    static int single(String raw) {
+        if (raw == null) {
+            return 0;
+        }
+        int from = start(raw, 0, raw.length());
+        int to = end(raw, from, raw.length());
+        return to - from == 1 ? bit(raw.charAt(from)) : 0;
+    }
+
+    /**
+     * Union of all comma separated tokens that are a single letter; other tokens are ignored.
+     */
+    static int multiple(String raw) {
+        if (raw == null) {
+            return 0;
+        }
+        int mask = 0;
+        int length = raw.length();
+        int tokenStart = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || raw.charAt(i) == ',') {
+                int from = start(raw, tokenStart, i);
+                int to = end(raw, from, i);
+                if (to - from == 1) {
+                    mask |= bit(raw.charAt(from));
+                }
+                tokenStart = i + 1;
+            }
+        }
+        return mask;
+    }
+
+    static int trueFalse(String raw) {
+        if (raw == null) {
+            return INVALID;
+        }
+        int from = start(raw, 0, raw.length());
+        int to = end(raw, from, raw.length());
+        if (to - from == 4 && raw.regionMatches(true, from, "true", 0, 4)) {
+            return TRUE;
+        }
+        if (to - from == 5 && raw.regionMatches(true, from, "false", 0, 5)) {
+            return FALSE;
+        }
+        return INVALID;
+    }
+
+    /**
+     * Score for a multiple choice answer that picks only correct options: proportional to how many it picked.
+     */
+    static int partialScore(int answerMask, int keyMask, int maxScore) {
+        if (answerMask == 0 || keyMask == 0 || (answerMask & ~keyMask) != 0) {
+            return 0;
+        }
+        return maxScore * Integer.bitCount(answerMask) / Integer.bitCount(keyMask);
+    }
+
+    private static int bit(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return 1 << (c - 'A');
+        }
+        if (c >= 'a' && c <= 'z') {
+            return 1 << (c - 'a');
+        }
+        // the only non-ASCII characters String.toUpperCase maps onto A-Z
+        if (c == 'ı') {
+            return 1 << ('I' - 'A');
+        }
+        if (c == 'ſ') {
+            return 1 << ('S' - 'A');
+        }
+        return 0;
+    }
+
+    private static int start(String s, int from, int to) {
+        while (from < to && s.charAt(from) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int end(String s, int from, int to) {
+        while (to > from && s.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+}
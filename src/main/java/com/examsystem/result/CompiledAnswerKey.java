@@ -0,0 +1,104 @@
+package com.examsystem.result;
+
+import com.examsystem.question.QuestionType;
+import java.util.List;
+
+/**
+ * An answer key in primitive form, indexed like the question list it was compiled from. Choice answers are
+ * bitmasks and true/false answers are booleans, so grading an answer is a parse plus an int comparison.
+ */
+public final class CompiledAnswerKey {
+    private static final byte NEVER = 0;
+    private static final byte SINGLE_CHOICE = 1;
+    private static final byte MULTIPLE_CHOICE = 2;
+    private static final byte TRUE_FALSE = 3;
+    // keys that do not parse into primitive form keep the old string comparison
+    private static final byte LITERAL_UPPER = 4;
+    private static final byte LITERAL_LOWER = 5;
+
+    private final byte[] kinds;
+    private final int[] masks;
+    private final String[] literals;
+    private final String[] correctAnswers;
+
+    private CompiledAnswerKey(byte[] kinds, int[] masks, String[] literals, String[] correctAnswers) {
+        this.kinds = kinds;
+        this.masks = masks;
+        this.literals = literals;
+        this.correctAnswers = correctAnswers;
+    }
+
+    static CompiledAnswerKey compile(List<QuestionType> types, List<String> correctAnswers) {
+        int n = types.size();
+        byte[] kinds = new byte[n];
+        int[] masks = new int[n];
+        String[] literals = new String[n];
+        String[] answers = new String[n];
+        for (int i = 0; i < n; i++) {
+            QuestionType type = types.get(i);
+            String correct = correctAnswers.get(i);
+            answers[i] = correct;
+            if (type == QuestionType.SINGLE_CHOICE) {
+                masks[i] = ChoiceMask.single(correct);
+                if (masks[i] != 0) {
+                    kinds[i] = SINGLE_CHOICE;
+                } else {
+                    kinds[i] = LITERAL_UPPER;
+                    literals[i] = correct == null ? "" : correct.trim().toUpperCase();
+                }
+            } else if (type == QuestionType.MULTIPLE_CHOICE) {
+                kinds[i] = MULTIPLE_CHOICE;
+                masks[i] = ChoiceMask.multiple(correct);
+            } else if (type == QuestionType.TRUE_FALSE) {
+                masks[i] = ChoiceMask.trueFalse(correct);
+                if (masks[i] != ChoiceMask.INVALID) {
+                    kinds[i] = TRUE_FALSE;
+                } else {
+                    kinds[i] = LITERAL_LOWER;
+                    literals[i] = correct == null ? "" : correct.trim().toLowerCase();
+                }
+            } else {
+                kinds[i] = NEVER;
+            }
+        }
+        return new CompiledAnswerKey(kinds, masks, literals, answers);
+    }
+
+    public int size() {
+        return kinds.length;
+    }
+
+    public String correctAnswer(int index) {
+        return correctAnswers[index];
+    }
+
+    public boolean isCorrect(int index, String answer) {
+        switch (kinds[index]) {
+            case SINGLE_CHOICE:
+                return ChoiceMask.single(answer) == masks[index];
+            case MULTIPLE_CHOICE: {
+                int mask = ChoiceMask.multiple(answer);
+                return mask != 0 && mask == masks[index];
+            }
+            case TRUE_FALSE:
+                return ChoiceMask.trueFalse(answer) == masks[index];
+            case LITERAL_UPPER:
+                return (answer == null ? "" : answer.trim().toUpperCase()).equals(literals[index]);
+            case LITERAL_LOWER:
+                return (answer == null ? "" : answer.trim().toLowerCase()).equals(literals[index]);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Earned score when partial credit is allowed: a multiple choice answer with no wrong option earns its share
+     * of the correct options, everything else is all or nothing.
+     */
+    public int partialScore(int index, String answer, int maxScore) {
+        if (kinds[index] == MULTIPLE_CHOICE) {
+            return ChoiceMask.partialScore(ChoiceMask.multiple(answer), masks[index], maxScore);
+        }
+        return isCorrect(index, answer) ? maxScore : 0;
+    }
+}
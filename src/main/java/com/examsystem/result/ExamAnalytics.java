@@ -0,0 +1,247 @@
+package com.examsystem.result;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Score histograms and per-question correct/total counters of an exam's results: one histogram of total scores and
+ * one per question type of what each result scored on that type. Everything the analytics page shows is derived from
+ * these in time proportional to the number of distinct scores and questions, not of results.
+ */
+public class ExamAnalytics {
+    private final List<ScoreBucket> buckets;
+    private final List<QuestionTally> questions;
+    private final List<GroupBucket> groups;
+
+    public ExamAnalytics(List<ScoreBucket> buckets, List<QuestionTally> questions, List<GroupBucket> groups) {
+        this.buckets = List.copyOf(buckets);
+        List<QuestionTally> sorted = new ArrayList<>(questions);
+        sorted.sort(Comparator.comparingLong(QuestionTally::getQuestionId));
+        this.questions = List.copyOf(sorted);
+        this.groups = List.copyOf(groups);
+    }
+
+    /**
+     * The counters of the given results, which is also the delta they add to their exam's counters.
+     */
+    public static ExamAnalytics of(List<ExamResultDraft> drafts) {
+        Map<List<Integer>, ScoreBucket> buckets = new LinkedHashMap<>();
+        Map<Long, QuestionTally> questions = new TreeMap<>();
+        Map<List<Object>, GroupBucket> groups = new LinkedHashMap<>();
+        for (ExamResultDraft draft : drafts) {
+            buckets.merge(
+                    List.of(draft.getTotalScore(), draft.getMaxScore()),
+                    new ScoreBucket(draft.getTotalScore(), draft.getMaxScore(), 1),
+                    (a, b) -> new ScoreBucket(a.totalScore, a.maxScore, a.results + b.results)
+            );
+            List<ExamResultItem> items = draft.getItems() == null ? List.of() : draft.getItems();
+            for (ExamResultItem item : items) {
+                questions.merge(
+                        item.getQuestionId(),
+                        new QuestionTally(item.getQuestionId(), item.getQuestionType(), item.getMaxScore(), item.isCorrect() ? 1 : 0, 1),
+                        (a, b) -> new QuestionTally(a.questionId, a.questionType, a.maxScore, a.correctCount + b.correctCount, a.totalCount + b.totalCount)
+                );
+            }
+            Map<String, int[]> byType = new TreeMap<>();
+            for (ExamResultItem item : items) {
+                int[] sums = byType.computeIfAbsent(item.getQuestionType(), t -> new int[2]);
+                sums[0] += item.getEarnedScore();
+                sums[1] += item.getMaxScore();
+            }
+            for (Map.Entry<String, int[]> e : byType.entrySet()) {
+                int[] sums = e.getValue();
+                groups.merge(
+                        List.of(e.getKey(), sums[0], sums[1]),
+                        new GroupBucket(e.getKey(), sums[0], sums[1], 1),
+                        (a, b) -> new GroupBucket(a.questionType, a.score, a.maxScore, a.results + b.results)
+                );
+            }
+        }
+        return new ExamAnalytics(new ArrayList<>(buckets.values()), new ArrayList<>(questions.values()), new ArrayList<>(groups.values()));
+    }
+
+    public List<ScoreBucket> getBuckets() {
+        return buckets;
+    }
+
+    public List<QuestionTally> getQuestions() {
+        return questions;
+    }
+
+    public List<GroupBucket> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Total scores in points.
+     */
+    public ScoreSketch totalScores() {
+        ScoreSketch sketch = new ScoreSketch();
+        for (ScoreBucket b : buckets) {
+            sketch.record(Math.max(0, b.totalScore), b.results);
+        }
+        return sketch;
+    }
+
+    /**
+     * Total scores as per-mille of their paper's maximum, comparable across exams.
+     */
+    public ScoreSketch scoreRatios() {
+        ScoreSketch sketch = new ScoreSketch();
+        for (ScoreBucket b : buckets) {
+            if (b.maxScore > 0) {
+                sketch.record(ScoreSketch.permille(b.totalScore, b.maxScore), b.results);
+            }
+        }
+        return sketch;
+    }
+
+    /**
+     * Per question type, what each result scored on the questions of that type as per-mille of their maximum.
+     */
+    public Map<String, ScoreSketch> groupRatios() {
+        Map<String, ScoreSketch> sketches = new TreeMap<>();
+        for (GroupBucket g : groups) {
+            if (g.maxScore > 0) {
+                sketches.computeIfAbsent(g.questionType, t -> new ScoreSketch())
+                        .record(ScoreSketch.permille(g.score, g.maxScore), g.results);
+            }
+        }
+        return sketches;
+    }
+
+    public int participants() {
+        return buckets.stream().mapToInt(ScoreBucket::getResults).sum();
+    }
+
+    public int maxScore() {
+        return buckets.stream().mapToInt(ScoreBucket::getMaxScore).max().orElse(0);
+    }
+
+    public int maxTotal() {
+        return buckets.stream().mapToInt(ScoreBucket::getTotalScore).max().orElse(0);
+    }
+
+    public int minTotal() {
+        return buckets.stream().mapToInt(ScoreBucket::getTotalScore).min().orElse(0);
+    }
+
+    public double avgTotal() {
+        int participants = participants();
+        if (participants == 0) {
+            return 0.0d;
+        }
+        long sum = buckets.stream().mapToLong(b -> (long) b.totalScore * b.results).sum();
+        return ((double) sum) / participants;
+    }
+
+    /**
+     * Share of results scoring at least {@code passLineRatio} of their paper's maximum.
+     */
+    public double passRate(double passLineRatio) {
+        int participants = participants();
+        if (participants == 0) {
+            return 0.0d;
+        }
+        int passed = buckets.stream()
+                .filter(b -> b.maxScore > 0)
+                .filter(b -> ((double) b.totalScore) / b.maxScore >= passLineRatio)
+                .mapToInt(ScoreBucket::getResults)
+                .sum();
+        return ((double) passed) / participants;
+    }
+
+    public static class ScoreBucket {
+        private final int totalScore;
+        private final int maxScore;
+        private final int results;
+
+        public ScoreBucket(int totalScore, int maxScore, int results) {
+            this.totalScore = totalScore;
+            this.maxScore = maxScore;
+            this.results = results;
+        }
+
+        public int getTotalScore() {
+            return totalScore;
+        }
+
+        public int getMaxScore() {
+            return maxScore;
+        }
+
+        public int getResults() {
+            return results;
+        }
+    }
+
+    public static class GroupBucket {
+        private final String questionType;
+        private final int score;
+        private final int maxScore;
+        private final int results;
+
+        public GroupBucket(String questionType, int score, int maxScore, int results) {
+            this.questionType = questionType;
+            this.score = score;
+            this.maxScore = maxScore;
+            this.results = results;
+        }
+
+        public String getQuestionType() {
+            return questionType;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        public int getMaxScore() {
+            return maxScore;
+        }
+
+        public int getResults() {
+            return results;
+        }
+    }
+
+    public static class QuestionTally {
+        private final long questionId;
+        private final String questionType;
+        private final int maxScore;
+        private final int correctCount;
+        private final int totalCount;
+
+        public QuestionTally(long questionId, String questionType, int maxScore, int correctCount, int totalCount) {
+            this.questionId = questionId;
+            this.questionType = questionType;
+            this.maxScore = maxScore;
+            this.correctCount = correctCount;
+            this.totalCount = totalCount;
+        }
+
+        public long getQuestionId() {
+            return questionId;
+        }
+
+        public String getQuestionType() {
+            return questionType;
+        }
+
+        public int getMaxScore() {
+            return maxScore;
+        }
+
+        public int getCorrectCount() {
+            return correctCount;
+        }
+
+        public int getTotalCount() {
+            return totalCount;
+        }
+    }
+}
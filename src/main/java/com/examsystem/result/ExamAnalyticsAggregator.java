@@ -0,0 +1,48 @@
+package com.examsystem.result;
+
+import java.time.Instant;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Serves exam analytics from counters that are updated as results are saved, instead of rereading every result. The
+ * counters live in the database, so they survive restarts and are shared by all nodes. Counters that are missing or
+ * were dropped by a regrade are rebuilt from exam_results on the next read.
+ */
+@Service
+public class ExamAnalyticsAggregator {
+    private final ExamAnalyticsRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readTemplate;
+
+    public ExamAnalyticsAggregator(ExamAnalyticsRepository repository, PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setReadOnly(true);
+    }
+
+    public ExamAnalytics snapshot(long examId) {
+        ExamAnalytics current = readTemplate.execute(status -> repository.find(examId).orElse(null));
+        if (current != null && current.getGroups().isEmpty() && !current.getQuestions().isEmpty()) {
+            // built before per-type histograms were kept: every result with items has one
+            transactionTemplate.executeWithoutResult(status -> repository.invalidate(examId));
+            current = null;
+        }
+        if (current != null) {
+            return current;
+        }
+        try {
+            return rebuild(examId);
+        } catch (DuplicateKeyException e) {
+            // another request started the counters first; ours waits for it and reads them
+            return rebuild(examId);
+        }
+    }
+
+    private ExamAnalytics rebuild(long examId) {
+        return transactionTemplate.execute(status -> repository.rebuild(examId, Instant.now()));
+    }
+}
@@ -0,0 +1,355 @@
+package com.examsystem.result;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Stored {@link ExamAnalytics} counters and histograms. Every exam with counters has an exam_analytics row that writers lock before
+ * touching its buckets, so grading, regrading and rebuilds of the same exam apply one after another. A row with
+ * {@code built = FALSE} (or no row, for exams older than the table) means the counters have to be rebuilt from
+ * exam_results before they can be read; writers leave such exams alone.
+ */
+@Repository
+public class ExamAnalyticsRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public ExamAnalyticsRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Starts empty counters for a new exam, in the creating transaction.
+     */
+    public void create(long examId, Instant now) {
+        jdbcTemplate.update(
+                "INSERT INTO exam_analytics(exam_id, built, updated_at) VALUES (?, TRUE, ?)",
+                examId,
+                java.sql.Timestamp.from(now)
+        );
+    }
+
+    public void delete(long examId) {
+        clear(examId);
+        jdbcTemplate.update("DELETE FROM exam_analytics WHERE exam_id = ?", examId);
+    }
+
+    /**
+     * Adds newly inserted results to their exams' counters. Runs in the transaction that inserted them, after the
+     * inserts, so a rebuild that locked the exam first cannot have counted them yet.
+     */
+    public void record(Map<Long, List<ExamResultDraft>> draftsByExam, Instant now) {
+        for (Map.Entry<Long, List<ExamResultDraft>> e : new TreeMap<>(draftsByExam).entrySet()) {
+            if (lockBuilt(e.getKey()).orElse(false)) {
+                add(e.getKey(), ExamAnalytics.of(e.getValue()), now);
+            }
+        }
+    }
+
+    /**
+     * Drops the counters of the exams of the given results; the next read rebuilds them. Used when results change in
+     * place, where the previous values would be needed to apply a delta.
+     */
+    public void invalidateByResultIds(Collection<Long> resultIds) {
+        if (resultIds.isEmpty()) {
+            return;
+        }
+        String placeholders = resultIds.stream().map(x -> "?").collect(Collectors.joining(","));
+        List<Long> examIds = jdbcTemplate.queryForList(
+                "SELECT DISTINCT exam_id FROM exam_results WHERE id IN (" + placeholders + ") ORDER BY exam_id",
+                Long.class,
+                resultIds.toArray()
+        );
+        for (long examId : examIds) {
+            invalidate(examId);
+        }
+    }
+
+    public void invalidate(long examId) {
+        if (lockBuilt(examId).isPresent()) {
+            jdbcTemplate.update("UPDATE exam_analytics SET built = FALSE WHERE exam_id = ?", examId);
+            clear(examId);
+        }
+    }
+
+    /**
+     * The exam's counters, or empty when they have to be rebuilt. Call in a transaction so the reads agree.
+     */
+    public Optional<ExamAnalytics> find(long examId) {
+        List<Boolean> built = jdbcTemplate.queryForList(
+                "SELECT built FROM exam_analytics WHERE exam_id = ?",
+                Boolean.class,
+                examId
+        );
+        if (built.isEmpty() || !built.get(0)) {
+            return Optional.empty();
+        }
+        return Optional.of(load(examId));
+    }
+
+    /**
+     * Counts the exam's results into fresh counters and returns them, or returns the current ones when another
+     * transaction built them first. A missing row is inserted, which fails with a duplicate key if another rebuild
+     * inserted it concurrently.
+     */
+    public ExamAnalytics rebuild(long examId, Instant now) {
+        Optional<Boolean> built = lockBuilt(examId);
+        if (built.isPresent() && built.get()) {
+            return load(examId);
+        }
+        if (built.isPresent()) {
+            jdbcTemplate.update(
+                    "UPDATE exam_analytics SET built = TRUE, updated_at = ? WHERE exam_id = ?",
+                    java.sql.Timestamp.from(now),
+                    examId
+            );
+        } else {
+            create(examId, now);
+        }
+        clear(examId);
+
+        // plain reads rather than INSERT ... SELECT: a locking read would wait on results whose writers wait on our lock
+        List<ExamAnalytics.ScoreBucket> buckets = jdbcTemplate.query(
+                "SELECT total_score, max_score, COUNT(1) AS results FROM exam_results WHERE exam_id = ? "
+                        + "GROUP BY total_score, max_score",
+                (rs, rowNum) -> mapBucket(rs),
+                examId
+        );
+        List<ExamAnalytics.QuestionTally> questions = jdbcTemplate.query(
+                "SELECT i.question_id, MIN(i.question_type) AS question_type, MAX(i.max_score) AS max_score, "
+                        + "SUM(CASE WHEN i.correct THEN 1 ELSE 0 END) AS correct_count, COUNT(1) AS total_count "
+                        + "FROM exam_result_items i JOIN exam_results r ON r.id = i.result_id "
+                        + "WHERE r.exam_id = ? GROUP BY i.question_id",
+                (rs, rowNum) -> mapQuestion(rs),
+                examId
+        );
+        List<ExamAnalytics.GroupBucket> groups = jdbcTemplate.query(
+                "SELECT g.question_type, g.score, g.max_score, COUNT(1) AS results FROM ("
+                        + "SELECT i.question_type, SUM(i.earned_score) AS score, SUM(i.max_score) AS max_score "
+                        + "FROM exam_result_items i JOIN exam_results r ON r.id = i.result_id "
+                        + "WHERE r.exam_id = ? GROUP BY r.id, i.question_type) g "
+                        + "GROUP BY g.question_type, g.score, g.max_score",
+                (rs, rowNum) -> mapGroup(rs),
+                examId
+        );
+        ExamAnalytics analytics = new ExamAnalytics(buckets, questions, groups);
+        insertBuckets(examId, analytics.getBuckets());
+        insertQuestions(examId, analytics.getQuestions());
+        insertGroups(examId, analytics.getGroups());
+        return analytics;
+    }
+
+    private void clear(long examId) {
+        jdbcTemplate.update("DELETE FROM exam_score_buckets WHERE exam_id = ?", examId);
+        jdbcTemplate.update("DELETE FROM exam_question_stats WHERE exam_id = ?", examId);
+        jdbcTemplate.update("DELETE FROM exam_group_buckets WHERE exam_id = ?", examId);
+    }
+
+    private Optional<Boolean> lockBuilt(long examId) {
+        List<Boolean> built = jdbcTemplate.queryForList(
+                "SELECT built FROM exam_analytics WHERE exam_id = ? FOR UPDATE",
+                Boolean.class,
+                examId
+        );
+        return built.stream().findFirst();
+    }
+
+    private void add(long examId, ExamAnalytics delta, Instant now) {
+        // locking reads see rows a rebuild committed after this transaction's snapshot was taken
+        Set<List<Integer>> bucketKeys = new HashSet<>();
+        jdbcTemplate.query(
+                "SELECT total_score, max_score FROM exam_score_buckets WHERE exam_id = ? FOR UPDATE",
+                rs -> {
+                    bucketKeys.add(List.of(rs.getInt("total_score"), rs.getInt("max_score")));
+                },
+                examId
+        );
+        List<ExamAnalytics.ScoreBucket> existingBuckets = new ArrayList<>();
+        List<ExamAnalytics.ScoreBucket> newBuckets = new ArrayList<>();
+        for (ExamAnalytics.ScoreBucket b : delta.getBuckets()) {
+            (bucketKeys.contains(List.of(b.getTotalScore(), b.getMaxScore())) ? existingBuckets : newBuckets).add(b);
+        }
+        if (!existingBuckets.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "UPDATE exam_score_buckets SET results = results + ? WHERE exam_id = ? AND total_score = ? AND max_score = ?",
+                    existingBuckets,
+                    existingBuckets.size(),
+                    (ps, b) -> {
+                        ps.setInt(1, b.getResults());
+                        ps.setLong(2, examId);
+                        ps.setInt(3, b.getTotalScore());
+                        ps.setInt(4, b.getMaxScore());
+                    }
+            );
+        }
+        insertBuckets(examId, newBuckets);
+
+        Set<Long> questionIds = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT question_id FROM exam_question_stats WHERE exam_id = ? FOR UPDATE",
+                Long.class,
+                examId
+        ));
+        List<ExamAnalytics.QuestionTally> existingQuestions = new ArrayList<>();
+        List<ExamAnalytics.QuestionTally> newQuestions = new ArrayList<>();
+        for (ExamAnalytics.QuestionTally q : delta.getQuestions()) {
+            (questionIds.contains(q.getQuestionId()) ? existingQuestions : newQuestions).add(q);
+        }
+        if (!existingQuestions.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "UPDATE exam_question_stats SET correct_count = correct_count + ?, total_count = total_count + ? "
+                            + "WHERE exam_id = ? AND question_id = ?",
+                    existingQuestions,
+                    existingQuestions.size(),
+                    (ps, q) -> {
+                        ps.setInt(1, q.getCorrectCount());
+                        ps.setInt(2, q.getTotalCount());
+                        ps.setLong(3, examId);
+                        ps.setLong(4, q.getQuestionId());
+                    }
+            );
+        }
+        insertQuestions(examId, newQuestions);
+
+        Set<List<Object>> groupKeys = new HashSet<>();
+        jdbcTemplate.query(
+                "SELECT question_type, score, max_score FROM exam_group_buckets WHERE exam_id = ? FOR UPDATE",
+                rs -> {
+                    groupKeys.add(List.of(rs.getString("question_type"), rs.getInt("score"), rs.getInt("max_score")));
+                },
+                examId
+        );
+        List<ExamAnalytics.GroupBucket> existingGroups = new ArrayList<>();
+        List<ExamAnalytics.GroupBucket> newGroups = new ArrayList<>();
+        for (ExamAnalytics.GroupBucket g : delta.getGroups()) {
+            (groupKeys.contains(List.of(g.getQuestionType(), g.getScore(), g.getMaxScore())) ? existingGroups : newGroups).add(g);
+        }
+        if (!existingGroups.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "UPDATE exam_group_buckets SET results = results + ? "
+                            + "WHERE exam_id = ? AND question_type = ? AND score = ? AND max_score = ?",
+                    existingGroups,
+                    existingGroups.size(),
+                    (ps, g) -> {
+                        ps.setInt(1, g.getResults());
+                        ps.setLong(2, examId);
+                        ps.setString(3, g.getQuestionType());
+                        ps.setInt(4, g.getScore());
+                        ps.setInt(5, g.getMaxScore());
+                    }
+            );
+        }
+        insertGroups(examId, newGroups);
+        jdbcTemplate.update("UPDATE exam_analytics SET updated_at = ? WHERE exam_id = ?", java.sql.Timestamp.from(now), examId);
+    }
+
+    private ExamAnalytics load(long examId) {
+        List<ExamAnalytics.ScoreBucket> buckets = jdbcTemplate.query(
+                "SELECT total_score, max_score, results FROM exam_score_buckets WHERE exam_id = ? AND results > 0",
+                (rs, rowNum) -> mapBucket(rs),
+                examId
+        );
+        List<ExamAnalytics.QuestionTally> questions = jdbcTemplate.query(
+                "SELECT question_id, question_type, max_score, correct_count, total_count FROM exam_question_stats "
+                        + "WHERE exam_id = ? AND total_count > 0",
+                (rs, rowNum) -> mapQuestion(rs),
+                examId
+        );
+        List<ExamAnalytics.GroupBucket> groups = jdbcTemplate.query(
+                "SELECT question_type, score, max_score, results FROM exam_group_buckets WHERE exam_id = ? AND results > 0",
+                (rs, rowNum) -> mapGroup(rs),
+                examId
+        );
+        return new ExamAnalytics(buckets, questions, groups);
+    }
+
+    private void insertBuckets(long examId, List<ExamAnalytics.ScoreBucket> buckets) {
+        if (buckets.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO exam_score_buckets(exam_id, total_score, max_score, results) VALUES (?, ?, ?, ?)",
+                buckets,
+                buckets.size(),
+                (ps, b) -> {
+                    ps.setLong(1, examId);
+                    ps.setInt(2, b.getTotalScore());
+                    ps.setInt(3, b.getMaxScore());
+                    ps.setInt(4, b.getResults());
+                }
+        );
+    }
+
+    private void insertQuestions(long examId, List<ExamAnalytics.QuestionTally> questions) {
+        if (questions.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO exam_question_stats(exam_id, question_id, question_type, max_score, correct_count, total_count) "
+                        + "VALUES (?, ?, ?, ?, ?, ?)",
+                questions,
+                questions.size(),
+                (ps, q) -> {
+                    ps.setLong(1, examId);
+                    ps.setLong(2, q.getQuestionId());
+                    ps.setString(3, q.getQuestionType());
+                    ps.setInt(4, q.getMaxScore());
+                    ps.setInt(5, q.getCorrectCount());
+                    ps.setInt(6, q.getTotalCount());
+                }
+        );
+    }
+
+    private void insertGroups(long examId, List<ExamAnalytics.GroupBucket> groups) {
+        if (groups.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO exam_group_buckets(exam_id, question_type, score, max_score, results) VALUES (?, ?, ?, ?, ?)",
+                groups,
+                groups.size(),
+                (ps, g) -> {
+                    ps.setLong(1, examId);
+                    ps.setString(2, g.getQuestionType());
+                    ps.setInt(3, g.getScore());
+                    ps.setInt(4, g.getMaxScore());
+                    ps.setInt(5, g.getResults());
+                }
+        );
+    }
+
+    private static ExamAnalytics.ScoreBucket mapBucket(java.sql.ResultSet rs) throws java.sql.SQLException {
+        return new ExamAnalytics.ScoreBucket(
+                rs.getInt("total_score"),
+                rs.getInt("max_score"),
+                rs.getInt("results")
+        );
+    }
+
+    private static ExamAnalytics.GroupBucket mapGroup(java.sql.ResultSet rs) throws java.sql.SQLException {
+        return new ExamAnalytics.GroupBucket(
+                rs.getString("question_type"),
+                rs.getInt("score"),
+                rs.getInt("max_score"),
+                rs.getInt("results")
+        );
+    }
+
+    private static ExamAnalytics.QuestionTally mapQuestion(java.sql.ResultSet rs) throws java.sql.SQLException {
+        return new ExamAnalytics.QuestionTally(
+                rs.getLong("question_id"),
+                rs.getString("question_type"),
+                rs.getInt("max_score"),
+                rs.getInt("correct_count"),
+                rs.getInt("total_count")
+        );
+    }
+}
@@ -0,0 +1,63 @@
+package com.examsystem.result;
+
+import java.time.Instant;
+
+/**
+ * A result without its items. The regrade generation goes up each time a regrade changes the result, so it
+ * versions anything rendered from the items.
+ */
+public class ExamResultHeader {
+    private final long id;
+    private final long examId;
+    private final long attemptId;
+    private final int totalScore;
+    private final int maxScore;
+    private final int regradeGeneration;
+    private final Instant createdAt;
+
+    public ExamResultHeader(
+            long id,
+            long examId,
+            long attemptId,
+            int totalScore,
+            int maxScore,
+            int regradeGeneration,
+            Instant createdAt
+    ) {
+        this.id = id;
+        this.examId = examId;
+        this.attemptId = attemptId;
+        this.totalScore = totalScore;
+        this.maxScore = maxScore;
+        this.regradeGeneration = regradeGeneration;
+        this.createdAt = createdAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getExamId() {
+        return examId;
+    }
+
+    public long getAttemptId() {
+        return attemptId;
+    }
+
+    public int getTotalScore() {
+        return totalScore;
+    }
+
+    public int getMaxScore() {
+        return maxScore;
+    }
+
+    public int getRegradeGeneration() {
+        return regradeGeneration;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,289 @@
+package com.examsystem.result;
+
+import com.examsystem.attempt.ExamAttempt;
+import com.examsystem.attempt.InMemoryExamAttemptRepository;
+import com.examsystem.cluster.ClusterService;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Grades submitted attempts off the request path. Submit only records the attempt and enqueues its id; a small
+ * pool of workers drains the queue in batches and writes all results of a batch with one JDBC batch per table.
+ * The queue is rebuilt from submitted attempts without a result, so a restart or a full queue loses nothing.
+ */
+@Service
+public class GradingQueueService {
+    static final int WORKER_COUNT = 2;
+    static final int BATCH_SIZE = 100;
+    static final int MAX_QUEUED = 10000;
+
+    private final InMemoryExamAttemptRepository attemptRepository;
+    private final InMemoryExamResultRepository resultRepository;
+    private final ExamResultService resultService;
+    private final ClusterService clusterService;
+    private final LinkedBlockingQueue<Long> queue = new LinkedBlockingQueue<>(MAX_QUEUED);
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong gradedTotal = new AtomicLong();
+    private final AtomicLong batchesTotal = new AtomicLong();
+    private final AtomicLong failuresTotal = new AtomicLong();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    public GradingQueueService(
+            InMemoryExamAttemptRepository attemptRepository,
+            InMemoryExamResultRepository resultRepository,
+            ExamResultService resultService,
+            ClusterService clusterService
+    ) {
+        this.attemptRepository = attemptRepository;
+        this.resultRepository = resultRepository;
+        this.resultService = resultService;
+        this.clusterService = clusterService;
+    }
+
+    @PostConstruct
+    public void startWorkers() {
+        running = true;
+        for (int i = 0; i < WORKER_COUNT; i++) {
+            Thread worker = new Thread(this::workLoop, "grading-worker-" + (i + 1));
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    @PreDestroy
+    public void stopWorkers() {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Queues an attempt for grading once the surrounding transaction, if any, has committed.
+     */
+    public void enqueue(long attemptId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    offer(attemptId);
+                }
+            });
+            return;
+        }
+        offer(attemptId);
+    }
+
+    /**
+     * Re-queues submitted attempts that have no result, e.g. after a restart or when the queue was full. Only the
+     * maintenance leader sweeps, so nodes do not grade the same backlog twice.
+     */
+    @Scheduled(initialDelay = 1000, fixedDelay = 30000)
+    public void recoverUngraded() {
+        if (!clusterService.isLeader()) {
+            return;
+        }
+        int room = queue.remainingCapacity();
+        if (room <= 0) {
+            return;
+        }
+        for (Long attemptId : attemptRepository.listUngradedIds(Math.min(room, MAX_QUEUED))) {
+            offer(attemptId);
+        }
+    }
+
+    /**
+     * Waits until the queue is empty and no batch is being written. Returns false on timeout.
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!queued.isEmpty() || inFlight.get() > 0) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    public GradingStats stats() {
+        return new GradingStats(
+                queue.size(),
+                inFlight.get(),
+                gradedTotal.get(),
+                batchesTotal.get(),
+                failuresTotal.get(),
+                lastLagMillis.get(),
+                maxLagMillis.get(),
+                WORKER_COUNT,
+                BATCH_SIZE
+        );
+    }
+
+    private void offer(long attemptId) {
+        if (queued.add(attemptId) && !queue.offer(attemptId)) {
+            // full: the recovery sweep picks it up from the database later
+            queued.remove(attemptId);
+        }
+    }
+
+    private void workLoop() {
+        while (running) {
+            List<Long> batch = new ArrayList<>(BATCH_SIZE);
+            try {
+                Long first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                inFlight.incrementAndGet();
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                gradeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                failuresTotal.incrementAndGet();
+            } finally {
+                if (!batch.isEmpty()) {
+                    queued.removeAll(batch);
+                    inFlight.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void gradeBatch(List<Long> attemptIds) {
+        List<ExamAttempt> attempts = attemptRepository.listForGrading(attemptIds);
+        List<InMemoryExamResultRepository.GradedResult> graded = new ArrayList<>(attempts.size());
+        for (ExamAttempt attempt : attempts) {
+            try {
+                graded.add(new InMemoryExamResultRepository.GradedResult(
+                        attempt.getExamId(),
+                        attempt.getId(),
+                        resultService.grade(attempt.getStudentUsername(), attempt.getQuestions(), attempt.getAnswers())
+                ));
+            } catch (RuntimeException e) {
+                // left without a result; the recovery sweep retries it
+                failuresTotal.incrementAndGet();
+            }
+        }
+        try {
+            resultRepository.saveAllIfAbsent(graded);
+        } catch (DuplicateKeyException e) {
+            // another node graded part of the batch concurrently
+            for (InMemoryExamResultRepository.GradedResult g : graded) {
+                resultRepository.saveIfAbsent(g.getExamId(), g.getAttemptId(), g.getDraft());
+            }
+        }
+        batchesTotal.incrementAndGet();
+        gradedTotal.addAndGet(graded.size());
+
+        Instant now = Instant.now();
+        for (ExamAttempt attempt : attempts) {
+            if (attempt.getSubmittedAt() != null) {
+                long lag = Math.max(0L, Duration.between(attempt.getSubmittedAt(), now).toMillis());
+                lastLagMillis.set(lag);
+                maxLagMillis.accumulateAndGet(lag, Math::max);
+            }
+        }
+    }
+
+    public static class GradingStats {
+        private final int queueDepth;
+        private final int inFlightBatches;
+        private final long gradedTotal;
+        private final long batchesTotal;
+        private final long failuresTotal;
+        private final long lastLagMillis;
+        private final long maxLagMillis;
+        private final int workers;
+        private final int batchSize;
+
+        public GradingStats(
+                int queueDepth,
+                int inFlightBatches,
+                long gradedTotal,
+                long batchesTotal,
+                long failuresTotal,
+                long lastLagMillis,
+                long maxLagMillis,
+                int workers,
+                int batchSize
+        ) {
+            this.queueDepth = queueDepth;
+            this.inFlightBatches = inFlightBatches;
+            this.gradedTotal = gradedTotal;
+            this.batchesTotal = batchesTotal;
+            this.failuresTotal = failuresTotal;
+            this.lastLagMillis = lastLagMillis;
+            this.maxLagMillis = maxLagMillis;
+            this.workers = workers;
+            this.batchSize = batchSize;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getInFlightBatches() {
+            return inFlightBatches;
+        }
+
+        public long getGradedTotal() {
+            return gradedTotal;
+        }
+
+        public long getBatchesTotal() {
+            return batchesTotal;
+        }
+
+        public long getFailuresTotal() {
+            return failuresTotal;
+        }
+
+        public long getLastLagMillis() {
+            return lastLagMillis;
+        }
+
+        public long getMaxLagMillis() {
+            return maxLagMillis;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package com.examsystem.result;
 
+import com.examsystem.exam.ExamSummaryRepository;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
@@ -16,9 +21,13 @@ import org.springframework.transaction.annotation.Transactional;
 @Repository
 public class InMemoryExamResultRepository {
     private final JdbcTemplate jdbcTemplate;
+    private final ExamSummaryRepository summaries;
+    private final ExamAnalyticsRepository analytics;
 
-    public InMemoryExamResultRepository(JdbcTemplate jdbcTemplate) {
+    public InMemoryExamResultRepository(JdbcTemplate jdbcTemplate, ExamSummaryRepository summaries, ExamAnalyticsRepository analytics) {
         this.jdbcTemplate = jdbcTemplate;
+        this.summaries = summaries;
+        this.analytics = analytics;
     }
 
     @Transactional
@@ -30,6 +39,97 @@ public class InMemoryExamResultRepository {
         }
     }
 
+    /**
+     * Inserts many graded results with one batch for exam_results and one for all of their exam_result_items.
+     * Attempts that already have a result are skipped. Returns the attempt ids that were written.
+     */
+    @Transactional
+    public List<Long> saveAllIfAbsent(List<GradedResult> graded) {
+        if (graded.isEmpty()) {
+            return List.of();
+        }
+        String placeholders = graded.stream().map(x -> "?").collect(Collectors.joining(","));
+        Object[] attemptIds = graded.stream().map(g -> (Object) g.attemptId).toArray();
+        Set<Long> existing = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT attempt_id FROM exam_results WHERE attempt_id IN (" + placeholders + ")",
+                Long.class,
+                attemptIds
+        ));
+        List<GradedResult> fresh = graded.stream()
+                .filter(g -> !existing.contains(g.attemptId))
+                .collect(Collectors.toList());
+        if (fresh.isEmpty()) {
+            return List.of();
+        }
+
+        Instant now = Instant.now();
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO exam_results(exam_id, attempt_id, student_username, total_score, max_score, created_at) "
+                        + "VALUES (?, ?, ?, ?, ?, ?)",
+                fresh,
+                fresh.size(),
+                (ps, g) -> {
+                    ps.setLong(1, g.examId);
+                    ps.setLong(2, g.attemptId);
+                    ps.setString(3, g.draft.getStudentUsername());
+                    ps.setInt(4, g.draft.getTotalScore());
+                    ps.setInt(5, g.draft.getMaxScore());
+                    ps.setTimestamp(6, java.sql.Timestamp.from(now));
+                }
+        );
+        summaries.resultsGraded(fresh.stream().collect(Collectors.groupingBy(g -> g.examId, Collectors.summingInt(g -> 1))));
+
+        String freshPlaceholders = fresh.stream().map(x -> "?").collect(Collectors.joining(","));
+        Map<Long, Long> resultIdByAttempt = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT id, attempt_id FROM exam_results WHERE attempt_id IN (" + freshPlaceholders + ")",
+                rs -> {
+                    resultIdByAttempt.put(rs.getLong("attempt_id"), rs.getLong("id"));
+                },
+                fresh.stream().map(g -> (Object) g.attemptId).toArray()
+        );
+        List<ItemRow> items = new ArrayList<>();
+        for (GradedResult g : fresh) {
+            long resultId = resultIdByAttempt.get(g.attemptId);
+            List<ExamResultItem> safeItems = g.draft.getItems() == null ? List.of() : g.draft.getItems();
+            for (ExamResultItem item : safeItems) {
+                items.add(new ItemRow(
+                        resultId,
+                        item.getQuestionId(),
+                        item.getQuestionType(),
+                        item.getAnswer(),
+                        item.getCorrectAnswer(),
+                        item.getMaxScore(),
+                        item.getEarnedScore(),
+                        item.isCorrect()
+                ));
+            }
+        }
+        if (!items.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO exam_result_items(result_id, question_id, question_type, answer, correct_answer, max_score, earned_score, correct) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                    items,
+                    items.size(),
+                    (ps, item) -> {
+                        ps.setLong(1, item.resultId);
+                        ps.setLong(2, item.questionId);
+                        ps.setString(3, item.questionType);
+                        ps.setString(4, item.answer);
+                        ps.setString(5, item.correctAnswer);
+                        ps.setInt(6, item.maxScore);
+                        ps.setInt(7, item.earnedScore);
+                        ps.setBoolean(8, item.correct);
+                    }
+            );
+        }
+        analytics.record(
+                fresh.stream().collect(Collectors.groupingBy(g -> g.examId, Collectors.mapping(g -> g.draft, Collectors.toList()))),
+                now
+        );
+        return fresh.stream().map(g -> g.attemptId).collect(Collectors.toList());
+    }
+
     public Optional<ExamResult> findByExamAndAttempt(long examId, long attemptId) {
         try {
             ResultRow result = jdbcTemplate.queryForObject(
@@ -66,6 +166,63 @@ public class InMemoryExamResultRepository {
         }
     }
 
+    /**
+     * The student's latest result for the exam, with its items.
+     */
+    public Optional<ExamResult> findLatestByExamAndStudent(long examId, String username) {
+        List<ResultRow> rows = jdbcTemplate.query(
+                "SELECT id, exam_id, attempt_id, student_username, total_score, max_score, created_at "
+                        + "FROM exam_results WHERE exam_id = ? AND student_username = ? ORDER BY id DESC LIMIT 1",
+                (rs, rowNum) -> new ResultRow(
+                        rs.getLong("id"),
+                        rs.getLong("exam_id"),
+                        rs.getLong("attempt_id"),
+                        rs.getString("student_username"),
+                        rs.getInt("total_score"),
+                        rs.getInt("max_score"),
+                        rs.getTimestamp("created_at").toInstant()
+                ),
+                examId,
+                username
+        );
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        ResultRow result = rows.get(0);
+        return Optional.of(new ExamResult(
+                result.id,
+                result.examId,
+                result.attemptId,
+                result.studentUsername,
+                result.totalScore,
+                result.maxScore,
+                listItemsByResultId(result.id),
+                result.createdAt
+        ));
+    }
+
+    /**
+     * The student's latest result for the exam, without its items.
+     */
+    public Optional<ExamResultHeader> findLatestHeaderByExamAndStudent(long examId, String username) {
+        List<ExamResultHeader> rows = jdbcTemplate.query(
+                "SELECT id, exam_id, attempt_id, total_score, max_score, regrade_generation, created_at "
+                        + "FROM exam_results WHERE exam_id = ? AND student_username = ? ORDER BY id DESC LIMIT 1",
+                (rs, rowNum) -> new ExamResultHeader(
+                        rs.getLong("id"),
+                        rs.getLong("exam_id"),
+                        rs.getLong("attempt_id"),
+                        rs.getInt("total_score"),
+                        rs.getInt("max_score"),
+                        rs.getInt("regrade_generation"),
+                        rs.getTimestamp("created_at").toInstant()
+                ),
+                examId,
+                username
+        );
+        return rows.stream().findFirst();
+    }
+
     public List<ExamResult> listByStudent(String username) {
         List<ResultRow> results = jdbcTemplate.query(
                 "SELECT id, exam_id, attempt_id, student_username, total_score, max_score, created_at "
@@ -161,6 +318,132 @@ public class InMemoryExamResultRepository {
                 .collect(Collectors.toList());
     }
 
+    public List<Long> listQuestionIdsByExamId(long examId) {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT i.question_id FROM exam_result_items i JOIN exam_results r ON r.id = i.result_id "
+                        + "WHERE r.exam_id = ? ORDER BY i.question_id ASC",
+                Long.class,
+                examId
+        );
+    }
+
+    /**
+     * Number of results a regrade of the exam, or of one question in it, has to visit.
+     */
+    public int countForRegrade(long examId, Long questionId) {
+        Integer count = questionId == null
+                ? jdbcTemplate.queryForObject("SELECT COUNT(*) FROM exam_results WHERE exam_id = ?", Integer.class, examId)
+                : jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM exam_results r JOIN exam_result_items i ON i.result_id = r.id "
+                                + "WHERE r.exam_id = ? AND i.question_id = ?",
+                        Integer.class,
+                        examId,
+                        questionId
+                );
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Next page of result ids for a regrade, in id order after {@code afterResultId} so a job can resume from its
+     * last written id.
+     */
+    public List<Long> listIdsForRegrade(long examId, Long questionId, long afterResultId, int limit) {
+        if (questionId == null) {
+            return jdbcTemplate.queryForList(
+                    "SELECT id FROM exam_results WHERE exam_id = ? AND id > ? ORDER BY id ASC LIMIT ?",
+                    Long.class,
+                    examId,
+                    afterResultId,
+                    limit
+            );
+        }
+        return jdbcTemplate.queryForList(
+                "SELECT r.id FROM exam_results r JOIN exam_result_items i ON i.result_id = r.id "
+                        + "WHERE r.exam_id = ? AND i.question_id = ? AND r.id > ? ORDER BY r.id ASC LIMIT ?",
+                Long.class,
+                examId,
+                questionId,
+                afterResultId,
+                limit
+        );
+    }
+
+    public Map<Long, List<ExamResultItem>> listItemsByResultIds(List<Long> resultIds) {
+        if (resultIds.isEmpty()) {
+            return Map.of();
+        }
+        String placeholders = resultIds.stream().map(x -> "?").collect(Collectors.joining(","));
+        Map<Long, List<ExamResultItem>> itemsByResultId = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT result_id, question_id, question_type, answer, correct_answer, max_score, earned_score, correct "
+                        + "FROM exam_result_items WHERE result_id IN (" + placeholders + ") ORDER BY result_id ASC, question_id ASC",
+                rs -> {
+                    itemsByResultId.computeIfAbsent(rs.getLong("result_id"), k -> new ArrayList<>()).add(new ExamResultItem(
+                            rs.getLong("question_id"),
+                            rs.getString("question_type"),
+                            rs.getString("answer"),
+                            rs.getString("correct_answer"),
+                            rs.getInt("max_score"),
+                            rs.getInt("earned_score"),
+                            rs.getBoolean("correct")
+                    ));
+                },
+                resultIds.toArray()
+        );
+        return itemsByResultId;
+    }
+
+    /**
+     * Writes regraded items and the new totals of their results with one batch each; every result given a new total
+     * also moves to its next regrade generation.
+     */
+    @Transactional
+    public void applyRegrade(Map<Long, List<ExamResultItem>> changedItemsByResultId, Map<Long, Integer> totalByResultId) {
+        List<ItemRow> rows = new ArrayList<>();
+        for (Map.Entry<Long, List<ExamResultItem>> e : changedItemsByResultId.entrySet()) {
+            for (ExamResultItem item : e.getValue()) {
+                rows.add(new ItemRow(
+                        e.getKey(),
+                        item.getQuestionId(),
+                        item.getQuestionType(),
+                        item.getAnswer(),
+                        item.getCorrectAnswer(),
+                        item.getMaxScore(),
+                        item.getEarnedScore(),
+                        item.isCorrect()
+                ));
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "UPDATE exam_result_items SET correct_answer = ?, earned_score = ?, correct = ? "
+                            + "WHERE result_id = ? AND question_id = ?",
+                    rows,
+                    rows.size(),
+                    (ps, row) -> {
+                        ps.setString(1, row.correctAnswer);
+                        ps.setInt(2, row.earnedScore);
+                        ps.setBoolean(3, row.correct);
+                        ps.setLong(4, row.resultId);
+                        ps.setLong(5, row.questionId);
+                    }
+            );
+        }
+        List<Map.Entry<Long, Integer>> totals = new ArrayList<>(totalByResultId.entrySet());
+        if (!totals.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "UPDATE exam_results SET total_score = ?, regrade_generation = regrade_generation + 1 WHERE id = ?",
+                    totals,
+                    totals.size(),
+                    (ps, total) -> {
+                        ps.setInt(1, total.getValue());
+                        ps.setLong(2, total.getKey());
+                    }
+            );
+        }
+        analytics.invalidateByResultIds(changedItemsByResultId.keySet());
+    }
+
     private ExamResult insertResult(long examId, long attemptId, ExamResultDraft draft) {
         Instant now = Instant.now();
         KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -179,6 +462,7 @@ public class InMemoryExamResultRepository {
             return ps;
         }, keyHolder);
         long resultId = keyHolder.getKey().longValue();
+        summaries.resultsGraded(Map.of(examId, 1));
 
         List<ExamResultItem> safeItems = draft.getItems() == null ? List.of() : draft.getItems();
         if (!safeItems.isEmpty()) {
@@ -199,6 +483,7 @@ public class InMemoryExamResultRepository {
                     }
             );
         }
+        analytics.record(Map.of(examId, List.of(draft)), now);
 
         return new ExamResult(
                 resultId,
@@ -229,6 +514,30 @@ public class InMemoryExamResultRepository {
         );
     }
 
+    public static class GradedResult {
+        private final long examId;
+        private final long attemptId;
+        private final ExamResultDraft draft;
+
+        public GradedResult(long examId, long attemptId, ExamResultDraft draft) {
+            this.examId = examId;
+            this.attemptId = attemptId;
+            this.draft = draft;
+        }
+
+        public long getExamId() {
+            return examId;
+        }
+
+        public long getAttemptId() {
+            return attemptId;
+        }
+
+        public ExamResultDraft getDraft() {
+            return draft;
+        }
+    }
+
     private static class ResultRow {
         private final long id;
         private final long examId;
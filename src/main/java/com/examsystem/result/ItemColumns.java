@@ -0,0 +1,447 @@
+package com.examsystem.result;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Result items as parallel primitive columns, one row per answered question: exam and question as dictionary codes,
+ * the question type, scores and a flag byte. Knowledge point and difficulty are per-question and the class is
+ * per-exam, so they live in dimension arrays indexed by those codes; re-tagging a question or moving an exam to
+ * another class updates one slot instead of every row. Rows of a dropped exam are only flagged dead until
+ * {@link #compactIfSparse()} rewrites the columns. Not thread-safe; {@link ResultWarehouse} guards it.
+ */
+final class ItemColumns {
+    static final int CHUNK_ROWS = 1 << 16;
+    private static final int CODE_BITS = 21;
+    private static final byte CORRECT = 1;
+    private static final byte DEAD = 2;
+
+    private final LongCodes exams = new LongCodes();
+    private final LongCodes questions = new LongCodes();
+    private final LongCodes classes = new LongCodes();
+    private final StringCodes types = new StringCodes();
+    private final StringCodes knowledgePoints = new StringCodes();
+    private final StringCodes difficulties = new StringCodes();
+
+    private int size;
+    private int dead;
+    private int[] examCol = new int[1024];
+    private int[] questionCol = new int[1024];
+    private byte[] typeCol = new byte[1024];
+    private int[] earnedCol = new int[1024];
+    private int[] maxCol = new int[1024];
+    private byte[] flagCol = new byte[1024];
+
+    private int[] examClass = new int[64];
+    private int[] examResults = new int[64];
+    private int[] questionKnowledgePoint = new int[64];
+    private int[] questionDifficulty = new int[64];
+
+    void append(long examId, long questionId, String questionType, int maxScore, int earnedScore, boolean correct) {
+        if (size == examCol.length) {
+            int capacity = size * 2;
+            examCol = Arrays.copyOf(examCol, capacity);
+            questionCol = Arrays.copyOf(questionCol, capacity);
+            typeCol = Arrays.copyOf(typeCol, capacity);
+            earnedCol = Arrays.copyOf(earnedCol, capacity);
+            maxCol = Arrays.copyOf(maxCol, capacity);
+            flagCol = Arrays.copyOf(flagCol, capacity);
+        }
+        int type = types.code(questionType);
+        if (type > Byte.MAX_VALUE) {
+            throw new IllegalStateException("too many question types");
+        }
+        examCol[size] = examCode(examId);
+        questionCol[size] = questionCode(questionId);
+        typeCol[size] = (byte) type;
+        earnedCol[size] = earnedScore;
+        maxCol[size] = maxScore;
+        flagCol[size] = correct ? CORRECT : 0;
+        size++;
+    }
+
+    void resultLoaded(long examId) {
+        int code = examCode(examId);
+        examResults[code]++;
+    }
+
+    int liveResults(long examId) {
+        int code = exams.find(examId);
+        return code < 0 ? 0 : examResults[code];
+    }
+
+    /**
+     * Every exam that has had rows, including dropped ones.
+     */
+    List<Long> examIds() {
+        List<Long> ids = new ArrayList<>();
+        for (int code = 0; code < exams.size(); code++) {
+            ids.add(exams.value(code));
+        }
+        return ids;
+    }
+
+    void setExamClass(long examId, Long classId) {
+        int code = examCode(examId);
+        examClass[code] = classId == null ? 0 : classes.code(classId) + 1;
+    }
+
+    void setQuestionMeta(long questionId, String knowledgePoint, String difficulty) {
+        int code = questionCode(questionId);
+        questionKnowledgePoint[code] = knowledgePoints.code(knowledgePoint);
+        questionDifficulty[code] = difficulties.code(difficulty);
+    }
+
+    /**
+     * Marks every row of the exam dead, before it is reloaded or because it was deleted.
+     */
+    void dropExam(long examId) {
+        int code = exams.find(examId);
+        if (code < 0) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            if (examCol[i] == code && (flagCol[i] & DEAD) == 0) {
+                flagCol[i] |= DEAD;
+                dead++;
+            }
+        }
+        examResults[code] = 0;
+    }
+
+    /**
+     * Rewrites the columns without dead rows once they are at least half of them.
+     */
+    void compactIfSparse() {
+        if (dead == 0 || dead * 2 < size) {
+            return;
+        }
+        int live = 0;
+        for (int i = 0; i < size; i++) {
+            if ((flagCol[i] & DEAD) != 0) {
+                continue;
+            }
+            examCol[live] = examCol[i];
+            questionCol[live] = questionCol[i];
+            typeCol[live] = typeCol[i];
+            earnedCol[live] = earnedCol[i];
+            maxCol[live] = maxCol[i];
+            flagCol[live] = flagCol[i];
+            live++;
+        }
+        size = live;
+        dead = 0;
+    }
+
+    /**
+     * Filters and groups the live rows, scanning chunks of {@link #CHUNK_ROWS} in parallel. Filters are turned into
+     * one flag per exam, question and type code first, so the scan itself only indexes arrays; the group key packs
+     * the codes of the {@code groupBy} dimensions into one long.
+     */
+    List<WarehouseGroup> query(WarehouseQuery query) {
+        List<WarehouseQuery.Dimension> groupBy = query.getGroupBy();
+        for (WarehouseQuery.Dimension dimension : groupBy) {
+            if (cardinality(dimension) >= 1 << CODE_BITS) {
+                throw new IllegalStateException("too many distinct values to group by " + dimension);
+            }
+        }
+        boolean[] examAllowed = new boolean[exams.size()];
+        for (int code = 0; code < examAllowed.length; code++) {
+            Long classId = classOfCode(examClass[code]);
+            examAllowed[code] = classId != null
+                    && query.getClassIds().contains(classId)
+                    && (query.getExamIds() == null || query.getExamIds().contains(exams.value(code)));
+        }
+        boolean[] questionAllowed = new boolean[questions.size()];
+        for (int code = 0; code < questionAllowed.length; code++) {
+            questionAllowed[code] = (query.getKnowledgePoints() == null || query.getKnowledgePoints().contains(knowledgePointOf(code)))
+                    && (query.getDifficulties() == null || query.getDifficulties().contains(difficultyOf(code)));
+        }
+        boolean[] typeAllowed = new boolean[types.size()];
+        for (int code = 0; code < typeAllowed.length; code++) {
+            typeAllowed[code] = query.getQuestionTypes() == null || query.getQuestionTypes().contains(types.value(code));
+        }
+
+        WarehouseQuery.Dimension[] dimensions = groupBy.toArray(new WarehouseQuery.Dimension[0]);
+        int chunks = (size + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        GroupSums groups = IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(c -> scanChunk(c * CHUNK_ROWS, Math.min(size, (c + 1) * CHUNK_ROWS), examAllowed, questionAllowed, typeAllowed, dimensions))
+                .reduce(GroupSums::addAll)
+                .orElseGet(GroupSums::new);
+
+        List<Integer> slots = new ArrayList<>();
+        for (int slot = 0; slot < groups.keys.length; slot++) {
+            if (groups.used[slot]) {
+                slots.add(slot);
+            }
+        }
+        slots.sort(Comparator.<Integer>comparingLong(slot -> -groups.items[slot]).thenComparingLong(slot -> groups.keys[slot]));
+        List<WarehouseGroup> out = new ArrayList<>();
+        for (int slot : slots.subList(0, Math.min(query.getLimit(), slots.size()))) {
+            int[] codes = unpack(groups.keys[slot], dimensions.length);
+            Map<String, Object> key = new LinkedHashMap<>();
+            for (int d = 0; d < dimensions.length; d++) {
+                key.put(dimensions[d].getField(), decode(dimensions[d], codes[d]));
+            }
+            out.add(new WarehouseGroup(key, groups.items[slot], groups.correct[slot], groups.earned[slot], groups.max[slot]));
+        }
+        return out;
+    }
+
+    private static int[] unpack(long key, int dimensions) {
+        int[] codes = new int[dimensions];
+        for (int d = dimensions - 1; d >= 0; d--) {
+            codes[d] = (int) (key & ((1 << CODE_BITS) - 1));
+            key >>>= CODE_BITS;
+        }
+        return codes;
+    }
+
+    private Object decode(WarehouseQuery.Dimension dimension, int code) {
+        switch (dimension) {
+            case EXAM:
+                return exams.value(code);
+            case CLASS:
+                return classOfCode(code);
+            case QUESTION:
+                return questions.value(code);
+            case QUESTION_TYPE:
+                return types.value(code);
+            case KNOWLEDGE_POINT:
+                return knowledgePoints.value(code);
+            default:
+                return difficulties.value(code);
+        }
+    }
+
+    private Long classOfCode(int classCode) {
+        return classCode == 0 ? null : classes.value(classCode - 1);
+    }
+
+    private String knowledgePointOf(int questionCode) {
+        return knowledgePoints.value(questionKnowledgePoint[questionCode]);
+    }
+
+    private String difficultyOf(int questionCode) {
+        return difficulties.value(questionDifficulty[questionCode]);
+    }
+
+    private GroupSums scanChunk(
+            int from,
+            int to,
+            boolean[] examAllowed,
+            boolean[] questionAllowed,
+            boolean[] typeAllowed,
+            WarehouseQuery.Dimension[] dimensions
+    ) {
+        GroupSums groups = new GroupSums();
+        for (int i = from; i < to; i++) {
+            byte flags = flagCol[i];
+            int exam = examCol[i];
+            int question = questionCol[i];
+            int type = typeCol[i];
+            if ((flags & DEAD) != 0 || !examAllowed[exam] || !questionAllowed[question] || !typeAllowed[type]) {
+                continue;
+            }
+            long key = 0;
+            for (WarehouseQuery.Dimension dimension : dimensions) {
+                int code;
+                switch (dimension) {
+                    case EXAM:
+                        code = exam;
+                        break;
+                    case CLASS:
+                        code = examClass[exam];
+                        break;
+                    case QUESTION:
+                        code = question;
+                        break;
+                    case QUESTION_TYPE:
+                        code = type;
+                        break;
+                    case KNOWLEDGE_POINT:
+                        code = questionKnowledgePoint[question];
+                        break;
+                    default:
+                        code = questionDifficulty[question];
+                        break;
+                }
+                key = (key << CODE_BITS) | code;
+            }
+            groups.add(key, 1, flags & CORRECT, earnedCol[i], maxCol[i]);
+        }
+        return groups;
+    }
+
+    private int cardinality(WarehouseQuery.Dimension dimension) {
+        switch (dimension) {
+            case EXAM:
+                return exams.size();
+            case CLASS:
+                return classes.size() + 1;
+            case QUESTION:
+                return questions.size();
+            case QUESTION_TYPE:
+                return types.size();
+            case KNOWLEDGE_POINT:
+                return knowledgePoints.size();
+            default:
+                return difficulties.size();
+        }
+    }
+
+    private int examCode(long examId) {
+        int code = exams.code(examId);
+        if (code == examClass.length) {
+            examClass = Arrays.copyOf(examClass, code * 2);
+            examResults = Arrays.copyOf(examResults, code * 2);
+        }
+        return code;
+    }
+
+    private int questionCode(long questionId) {
+        int code = questions.code(questionId);
+        if (code == questionKnowledgePoint.length) {
+            questionKnowledgePoint = Arrays.copyOf(questionKnowledgePoint, code * 2);
+            questionDifficulty = Arrays.copyOf(questionDifficulty, code * 2);
+        }
+        return code;
+    }
+
+    /**
+     * Sums per packed group key in an open-addressing table, so scanning a row allocates nothing.
+     */
+    private static final class GroupSums {
+        private long[] keys = new long[64];
+        private boolean[] used = new boolean[64];
+        private long[] items = new long[64];
+        private long[] correct = new long[64];
+        private long[] earned = new long[64];
+        private long[] max = new long[64];
+        private int size;
+
+        void add(long key, long itemCount, long correctCount, long earnedScore, long maxScore) {
+            int mask = keys.length - 1;
+            int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (!used[slot]) {
+                if ((size + 1) * 2 > keys.length) {
+                    grow();
+                    add(key, itemCount, correctCount, earnedScore, maxScore);
+                    return;
+                }
+                used[slot] = true;
+                keys[slot] = key;
+                size++;
+            }
+            items[slot] += itemCount;
+            correct[slot] += correctCount;
+            earned[slot] += earnedScore;
+            max[slot] += maxScore;
+        }
+
+        GroupSums addAll(GroupSums other) {
+            for (int slot = 0; slot < other.keys.length; slot++) {
+                if (other.used[slot]) {
+                    add(other.keys[slot], other.items[slot], other.correct[slot], other.earned[slot], other.max[slot]);
+                }
+            }
+            return this;
+        }
+
+        private void grow() {
+            GroupSums bigger = new GroupSums();
+            int capacity = keys.length * 2;
+            bigger.keys = new long[capacity];
+            bigger.used = new boolean[capacity];
+            bigger.items = new long[capacity];
+            bigger.correct = new long[capacity];
+            bigger.earned = new long[capacity];
+            bigger.max = new long[capacity];
+            bigger.addAll(this);
+            keys = bigger.keys;
+            used = bigger.used;
+            items = bigger.items;
+            correct = bigger.correct;
+            earned = bigger.earned;
+            max = bigger.max;
+        }
+    }
+
+    /**
+     * Dense codes for ids, in order of first appearance.
+     */
+    private static final class LongCodes {
+        private final Map<Long, Integer> codes = new HashMap<>();
+        private long[] values = new long[64];
+
+        int code(long value) {
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            int next = codes.size();
+            if (next == values.length) {
+                values = Arrays.copyOf(values, next * 2);
+            }
+            values[next] = value;
+            codes.put(value, next);
+            return next;
+        }
+
+        int find(long value) {
+            return codes.getOrDefault(value, -1);
+        }
+
+        long value(int code) {
+            return values[code];
+        }
+
+        int size() {
+            return codes.size();
+        }
+    }
+
+    /**
+     * Dense codes for strings; code 0 is null.
+     */
+    private static final class StringCodes {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        StringCodes() {
+            values.add(null);
+        }
+
+        int code(String value) {
+            if (value == null) {
+                return 0;
+            }
+            return codes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        int find(String value) {
+            return value == null ? 0 : codes.getOrDefault(value, -1);
+        }
+
+        String value(int code) {
+            return values.get(code);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+}
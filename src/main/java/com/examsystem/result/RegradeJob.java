@@ -0,0 +1,94 @@
+package com.examsystem.result;
+
+import java.time.Instant;
+
+public class RegradeJob {
+    private final long id;
+    private final long examId;
+    private final Long questionId;
+    private final RegradeStatus status;
+    private final int totalResults;
+    private final int processedResults;
+    private final int changedResults;
+    private final long lastResultId;
+    private final String error;
+    private final String createdBy;
+    private final Instant createdAt;
+    private final Instant updatedAt;
+
+    public RegradeJob(
+            long id,
+            long examId,
+            Long questionId,
+            RegradeStatus status,
+            int totalResults,
+            int processedResults,
+            int changedResults,
+            long lastResultId,
+            String error,
+            String createdBy,
+            Instant createdAt,
+            Instant updatedAt
+    ) {
+        this.id = id;
+        this.examId = examId;
+        this.questionId = questionId;
+        this.status = status;
+        this.totalResults = totalResults;
+        this.processedResults = processedResults;
+        this.changedResults = changedResults;
+        this.lastResultId = lastResultId;
+        this.error = error;
+        this.createdBy = createdBy;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getExamId() {
+        return examId;
+    }
+
+    public Long getQuestionId() {
+        return questionId;
+    }
+
+    public RegradeStatus getStatus() {
+        return status;
+    }
+
+    public int getTotalResults() {
+        return totalResults;
+    }
+
+    public int getProcessedResults() {
+        return processedResults;
+    }
+
+    public int getChangedResults() {
+        return changedResults;
+    }
+
+    public long getLastResultId() {
+        return lastResultId;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public String getCreatedBy() {
+        return createdBy;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+}
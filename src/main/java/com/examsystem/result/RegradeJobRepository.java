@@ -0,0 +1,183 @@
+package com.examsystem.result;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class RegradeJobRepository {
+    private static final String JOB_COLUMNS = "id, exam_id, question_id, status, total_results, processed_results, "
+            + "changed_results, last_result_id, error, created_by, created_at, updated_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RegradeJobRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public RegradeJob create(long examId, Long questionId, int totalResults, String createdBy) {
+        Instant now = Instant.now();
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            java.sql.PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO regrade_jobs(exam_id, question_id, status, total_results, processed_results, changed_results, "
+                            + "last_result_id, error, created_by, created_at, updated_at) VALUES (?, ?, ?, ?, 0, 0, 0, NULL, ?, ?, ?)",
+                    java.sql.Statement.RETURN_GENERATED_KEYS
+            );
+            ps.setLong(1, examId);
+            if (questionId == null) {
+                ps.setNull(2, java.sql.Types.BIGINT);
+            } else {
+                ps.setLong(2, questionId);
+            }
+            ps.setString(3, RegradeStatus.RUNNING.name());
+            ps.setInt(4, totalResults);
+            ps.setString(5, createdBy);
+            ps.setTimestamp(6, java.sql.Timestamp.from(now));
+            ps.setTimestamp(7, java.sql.Timestamp.from(now));
+            return ps;
+        }, keyHolder);
+        long id = keyHolder.getKey().longValue();
+        return new RegradeJob(id, examId, questionId, RegradeStatus.RUNNING, totalResults, 0, 0, 0L, null, createdBy, now, now);
+    }
+
+    /**
+     * Locks the exam's row until the surrounding transaction ends, so starts of regrades of one exam run one after
+     * another. False when the exam does not exist.
+     */
+    public boolean lockExam(long examId) {
+        return !jdbcTemplate.queryForList("SELECT id FROM exams WHERE id = ? FOR UPDATE", Long.class, examId).isEmpty();
+    }
+
+    public Optional<RegradeJob> findRunningByExamId(long examId) {
+        return jdbcTemplate.query(
+                "SELECT " + JOB_COLUMNS + " FROM regrade_jobs WHERE exam_id = ? AND status = ? ORDER BY id ASC LIMIT 1",
+                (rs, rowNum) -> mapJob(rs),
+                examId,
+                RegradeStatus.RUNNING.name()
+        ).stream().findFirst();
+    }
+
+    public Optional<RegradeJob> findById(long id) {
+        try {
+            return Optional.ofNullable(jdbcTemplate.queryForObject(
+                    "SELECT " + JOB_COLUMNS + " FROM regrade_jobs WHERE id = ?",
+                    (rs, rowNum) -> mapJob(rs),
+                    id
+            ));
+        } catch (EmptyResultDataAccessException e) {
+            return Optional.empty();
+        }
+    }
+
+    public List<RegradeJob> listByExamId(long examId) {
+        return jdbcTemplate.query(
+                "SELECT " + JOB_COLUMNS + " FROM regrade_jobs WHERE exam_id = ? ORDER BY id DESC",
+                (rs, rowNum) -> mapJob(rs),
+                examId
+        );
+    }
+
+    public List<RegradeJob> listByStatus(RegradeStatus status) {
+        return jdbcTemplate.query(
+                "SELECT " + JOB_COLUMNS + " FROM regrade_jobs WHERE status = ? ORDER BY id ASC",
+                (rs, rowNum) -> mapJob(rs),
+                status.name()
+        );
+    }
+
+    /**
+     * Advances the resume cursor after a window of results has been written.
+     */
+    public void recordProgress(long id, long lastResultId, int processed, int changed) {
+        jdbcTemplate.update(
+                "UPDATE regrade_jobs SET last_result_id = ?, processed_results = processed_results + ?, "
+                        + "changed_results = changed_results + ?, updated_at = ? WHERE id = ?",
+                lastResultId,
+                processed,
+                changed,
+                java.sql.Timestamp.from(Instant.now()),
+                id
+        );
+    }
+
+    /**
+     * Marks running jobs as alive, so the leader does not take them over.
+     */
+    public void touch(Collection<Long> ids, Instant now) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Object> args = new ArrayList<>();
+        args.add(java.sql.Timestamp.from(now));
+        args.addAll(ids);
+        args.add(RegradeStatus.RUNNING.name());
+        String placeholders = ids.stream().map(id -> "?").collect(Collectors.joining(","));
+        jdbcTemplate.update(
+                "UPDATE regrade_jobs SET updated_at = ? WHERE id IN (" + placeholders + ") AND status = ?",
+                args.toArray()
+        );
+    }
+
+    /**
+     * Ids of running jobs nobody marked alive since {@code cutoff}.
+     */
+    public List<Long> listStaleRunningIds(Instant cutoff) {
+        return jdbcTemplate.queryForList(
+                "SELECT id FROM regrade_jobs WHERE status = ? AND updated_at < ? ORDER BY id ASC",
+                Long.class,
+                RegradeStatus.RUNNING.name(),
+                java.sql.Timestamp.from(cutoff)
+        );
+    }
+
+    /**
+     * Takes over a stale running job; false when it moved on or another node took it first.
+     */
+    public boolean claimStale(long id, Instant cutoff, Instant now) {
+        return jdbcTemplate.update(
+                "UPDATE regrade_jobs SET updated_at = ? WHERE id = ? AND status = ? AND updated_at < ?",
+                java.sql.Timestamp.from(now),
+                id,
+                RegradeStatus.RUNNING.name(),
+                java.sql.Timestamp.from(cutoff)
+        ) == 1;
+    }
+
+    public void updateStatus(long id, RegradeStatus status, String error) {
+        jdbcTemplate.update(
+                "UPDATE regrade_jobs SET status = ?, error = ?, updated_at = ? WHERE id = ?",
+                status.name(),
+                error,
+                java.sql.Timestamp.from(Instant.now()),
+                id
+        );
+    }
+
+    private static RegradeJob mapJob(java.sql.ResultSet rs) throws java.sql.SQLException {
+        long questionId = rs.getLong("question_id");
+        boolean allQuestions = rs.wasNull();
+        return new RegradeJob(
+                rs.getLong("id"),
+                rs.getLong("exam_id"),
+                allQuestions ? null : questionId,
+                RegradeStatus.valueOf(rs.getString("status")),
+                rs.getInt("total_results"),
+                rs.getInt("processed_results"),
+                rs.getInt("changed_results"),
+                rs.getLong("last_result_id"),
+                rs.getString("error"),
+                rs.getString("created_by"),
+                rs.getTimestamp("created_at").toInstant(),
+                rs.getTimestamp("updated_at").toInstant()
+        );
+    }
+}
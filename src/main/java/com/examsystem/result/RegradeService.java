@@ -0,0 +1,288 @@
+package com.examsystem.result;
+
+import com.examsystem.cluster.ClusterService;
+import com.examsystem.cluster.ClusterViewChangedEvent;
+import com.examsystem.question.Question;
+import com.examsystem.question.QuestionService;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Regrades stored results after an answer key was corrected. A job walks the exam's results in id order, one
+ * window at a time; each window is split into pages that are regraded in parallel on a fork-join pool and written
+ * back in their own short transaction, so the results tables are never locked for the whole run. The job row keeps
+ * the last finished result id, so a failed or interrupted job resumes where it stopped. Starting or resuming a job
+ * locks the exam's row while it checks for a running job, so two requests cannot both start one.
+ * <p>
+ * A job runs on the node that started or resumed it, which marks its queued and running jobs alive every
+ * ten seconds. The leader takes over running jobs that were not marked for {@link #STALE_AFTER}, such as those
+ * of a node that died or of this node before a restart.
+ */
+@Service
+public class RegradeService {
+    static final int WINDOW_SIZE = 2000;
+    static final int PAGE_SIZE = 250;
+    static final Duration STALE_AFTER = Duration.ofMinutes(1);
+
+    private final RegradeJobRepository jobRepository;
+    private final InMemoryExamResultRepository resultRepository;
+    private final AnswerKeyService answerKeyService;
+    private final QuestionService questionService;
+    private final ClusterService clusterService;
+    private final ResultReviewCache reviewCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService driver = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "regrade-driver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ForkJoinPool pool = new ForkJoinPool(Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())));
+    private final Set<Long> active = ConcurrentHashMap.newKeySet();
+
+    public RegradeService(
+            RegradeJobRepository jobRepository,
+            InMemoryExamResultRepository resultRepository,
+            AnswerKeyService answerKeyService,
+            QuestionService questionService,
+            ClusterService clusterService,
+            ResultReviewCache reviewCache,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.jobRepository = jobRepository;
+        this.resultRepository = resultRepository;
+        this.answerKeyService = answerKeyService;
+        this.questionService = questionService;
+        this.clusterService = clusterService;
+        this.reviewCache = reviewCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public RegradeJob start(long examId, Long questionId, String username) {
+        if (questionId != null && questionService.findById(questionId).isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "question not found");
+        }
+        RegradeJob job = transactionTemplate.execute(status -> {
+            lockWithoutRunningJob(examId, null);
+            int total = resultRepository.countForRegrade(examId, questionId);
+            return jobRepository.create(examId, questionId, total, username);
+        });
+        submit(job.getId());
+        return job;
+    }
+
+    public RegradeJob resume(long jobId) {
+        RegradeJob job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "regrade job not found"));
+        if (job.getStatus() == RegradeStatus.COMPLETED) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "regrade job already completed");
+        }
+        if (job.getStatus() == RegradeStatus.FAILED) {
+            transactionTemplate.executeWithoutResult(status -> {
+                lockWithoutRunningJob(job.getExamId(), jobId);
+                jobRepository.updateStatus(jobId, RegradeStatus.RUNNING, null);
+            });
+        }
+        submit(jobId);
+        return jobRepository.findById(jobId).orElse(job);
+    }
+
+    /**
+     * Locks the exam's row and fails when a job other than {@code exceptJobId} is already running for it.
+     */
+    private void lockWithoutRunningJob(long examId, Long exceptJobId) {
+        if (!jobRepository.lockExam(examId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "exam not found");
+        }
+        jobRepository.findRunningByExamId(examId)
+                .filter(running -> exceptJobId == null || running.getId() != exceptJobId)
+                .ifPresent(running -> {
+                    throw new ResponseStatusException(HttpStatus.CONFLICT, "regrade already running: " + running.getId());
+                });
+    }
+
+    public Optional<RegradeJob> findById(long jobId) {
+        return jobRepository.findById(jobId);
+    }
+
+    public List<RegradeJob> listByExamId(long examId) {
+        return jobRepository.listByExamId(examId);
+    }
+
+    /**
+     * Picks up running jobs whose node stopped marking them alive.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        if (!clusterService.isLeader()) {
+            return;
+        }
+        Instant now = Instant.now();
+        Instant cutoff = now.minus(STALE_AFTER);
+        for (long jobId : jobRepository.listStaleRunningIds(cutoff)) {
+            if (!active.contains(jobId) && jobRepository.claimStale(jobId, cutoff, now)) {
+                submit(jobId);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelay = 10000)
+    public void heartbeat() {
+        jobRepository.touch(List.copyOf(active), Instant.now());
+        resumeInterrupted();
+    }
+
+    @EventListener
+    public void onClusterViewChanged(ClusterViewChangedEvent event) {
+        if (event.isLeaderGained()) {
+            resumeInterrupted();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        driver.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    private void submit(long jobId) {
+        if (active.add(jobId)) {
+            driver.execute(() -> run(jobId));
+        }
+    }
+
+    private void run(long jobId) {
+        try {
+            RegradeJob job = jobRepository.findById(jobId).orElse(null);
+            if (job == null || job.getStatus() != RegradeStatus.RUNNING) {
+                return;
+            }
+            List<Long> questionIds = questionsInScope(job);
+            long cursor = job.getLastResultId();
+            while (true) {
+                List<Long> resultIds = resultRepository.listIdsForRegrade(
+                        job.getExamId(), job.getQuestionId(), cursor, WINDOW_SIZE);
+                if (resultIds.isEmpty()) {
+                    break;
+                }
+                CompiledAnswerKey key = answerKeyService.keyForQuestionIds(questionIds);
+                Map<Long, Integer> indexByQuestionId = new HashMap<>();
+                for (int i = 0; i < questionIds.size(); i++) {
+                    indexByQuestionId.put(questionIds.get(i), i);
+                }
+                List<Callable<Integer>> pages = new ArrayList<>();
+                for (int from = 0; from < resultIds.size(); from += PAGE_SIZE) {
+                    List<Long> page = resultIds.subList(from, Math.min(from + PAGE_SIZE, resultIds.size()));
+                    pages.add(() -> regradePage(page, key, indexByQuestionId));
+                }
+                int changed = 0;
+                for (Future<Integer> f : pool.invokeAll(pages)) {
+                    changed += f.get();
+                }
+                cursor = resultIds.get(resultIds.size() - 1);
+                jobRepository.recordProgress(jobId, cursor, resultIds.size(), changed);
+            }
+            jobRepository.updateStatus(jobId, RegradeStatus.COMPLETED, null);
+        } catch (InterruptedException e) {
+            // shutting down: the job stays RUNNING and is resumed on the next start
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            fail(jobId, e.getCause() == null ? e : e.getCause());
+        } catch (RuntimeException e) {
+            fail(jobId, e);
+        } finally {
+            active.remove(jobId);
+        }
+    }
+
+    private List<Long> questionsInScope(RegradeJob job) {
+        List<Long> candidates = job.getQuestionId() != null
+                ? List.of(job.getQuestionId())
+                : resultRepository.listQuestionIdsByExamId(job.getExamId());
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        // results of questions deleted since grading keep their stored scores
+        return questionService.listByIds(candidates).stream()
+                .map(Question::getId)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private int regradePage(List<Long> resultIds, CompiledAnswerKey key, Map<Long, Integer> indexByQuestionId) {
+        Map<Long, List<ExamResultItem>> itemsByResultId = resultRepository.listItemsByResultIds(resultIds);
+        Map<Long, List<ExamResultItem>> changedItems = new HashMap<>();
+        Map<Long, Integer> totals = new HashMap<>();
+        for (Map.Entry<Long, List<ExamResultItem>> e : itemsByResultId.entrySet()) {
+            List<ExamResultItem> changed = new ArrayList<>();
+            int total = 0;
+            for (ExamResultItem item : e.getValue()) {
+                ExamResultItem regraded = regrade(item, key, indexByQuestionId.get(item.getQuestionId()));
+                if (regraded != item) {
+                    changed.add(regraded);
+                }
+                total += regraded.getEarnedScore();
+            }
+            if (!changed.isEmpty()) {
+                changedItems.put(e.getKey(), changed);
+                totals.put(e.getKey(), total);
+            }
+        }
+        if (!changedItems.isEmpty()) {
+            resultRepository.applyRegrade(changedItems, totals);
+            reviewCache.evictResults(changedItems.keySet());
+        }
+        return changedItems.size();
+    }
+
+    private static ExamResultItem regrade(ExamResultItem item, CompiledAnswerKey key, Integer index) {
+        if (index == null) {
+            return item;
+        }
+        boolean correct = key.isCorrect(index, item.getAnswer());
+        int earnedScore = correct ? item.getMaxScore() : 0;
+        String correctAnswer = key.correctAnswer(index);
+        if (correct == item.isCorrect()
+                && earnedScore == item.getEarnedScore()
+                && Objects.equals(correctAnswer, item.getCorrectAnswer())) {
+            return item;
+        }
+        return new ExamResultItem(
+                item.getQuestionId(),
+                item.getQuestionType(),
+                item.getAnswer(),
+                correctAnswer,
+                item.getMaxScore(),
+                earnedScore,
+                correct
+        );
+    }
+
+    private void fail(long jobId, Throwable cause) {
+        String message = cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage();
+        jobRepository.updateStatus(jobId, RegradeStatus.FAILED, message);
+    }
+}
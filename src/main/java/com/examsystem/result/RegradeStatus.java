@@ -0,0 +1,7 @@
+package com.examsystem.result;
+
+public enum RegradeStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,105 @@
+package com.examsystem.result;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rendered result reviews keyed by result id, regrade generation and view (what the exam settings let the student
+ * see), so repeated review clicks skip loading the result items and the attempt and rebuilding the response. A
+ * regrade on any node moves the result to a new generation, so its old entries are never hit again; the ones this
+ * node regraded are also dropped right away, and a render that overlapped with a local regrade is not stored. The
+ * least recently used entries go once {@code exam.results.review-cache-size} is reached.
+ */
+@Component
+public class ResultReviewCache {
+    private final Map<Key, Cached> entries;
+    private long generation;
+
+    public ResultReviewCache(@Value("${exam.results.review-cache-size:5000}") int capacity) {
+        int maxEntries = Math.max(1, capacity);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * The cached view of the result, or the one {@code render} builds; null renders are not cached. Rendered values
+     * are shared between callers and must not be modified.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(ExamResultHeader result, String view, Supplier<T> render) {
+        Key key = new Key(result.getId(), result.getRegradeGeneration(), view);
+        long seen;
+        synchronized (this) {
+            Cached cached = entries.get(key);
+            if (cached != null) {
+                return (T) cached.value;
+            }
+            seen = generation;
+        }
+        T rendered = render.get();
+        synchronized (this) {
+            if (rendered != null && generation == seen) {
+                entries.put(key, new Cached(result.getExamId(), rendered));
+            }
+        }
+        return rendered;
+    }
+
+    public synchronized void evictResults(Collection<Long> resultIds) {
+        generation++;
+        entries.keySet().removeIf(key -> resultIds.contains(key.resultId));
+    }
+
+    public synchronized void evictExam(long examId) {
+        generation++;
+        entries.values().removeIf(entry -> entry.examId == examId);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Key {
+        private final long resultId;
+        private final int regradeGeneration;
+        private final String view;
+
+        private Key(long resultId, int regradeGeneration, String view) {
+            this.resultId = resultId;
+            this.regradeGeneration = regradeGeneration;
+            this.view = view;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return resultId == other.resultId && regradeGeneration == other.regradeGeneration && view.equals(other.view);
+        }
+
+        @Override
+        public int hashCode() {
+            return (Long.hashCode(resultId) * 31 + regradeGeneration) * 31 + view.hashCode();
+        }
+    }
+
+    private static final class Cached {
+        private final long examId;
+        private final Object value;
+
+        private Cached(long examId, Object value) {
+            this.examId = examId;
+            this.value = value;
+        }
+    }
+}
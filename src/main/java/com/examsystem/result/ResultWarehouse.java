@@ -0,0 +1,167 @@
+package com.examsystem.result;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cross-exam queries over result items, answered from {@link ItemColumns} held in memory instead of loading results
+ * with their items. The columns are loaded on the first query and then caught up at most every
+ * {@code exam.warehouse.refresh-interval}, by the query that finds them stale:
+ * <ul>
+ *     <li>results with an id above the highest one loaded are appended;</li>
+ *     <li>an exam is reloaded when one of its regrade jobs made progress, or when its number of results no longer
+ *     matches the database at the {@code exam.warehouse.reconcile-interval} check, which also picks up results
+ *     committed out of id order and results deleted with their student;</li>
+ *     <li>deleted exams are dropped, and class of exams and knowledge point and difficulty of questions are
+ *     reread.</li>
+ * </ul>
+ * Everything is read from the database, so each node keeps its own copy and they agree up to the refresh interval.
+ * A query that arrives while another one refreshes reads the columns as they are.
+ */
+@Service
+public class ResultWarehouse {
+    private static final int LOAD_RANGE = 2000;
+    private static final Duration CLOCK_SLACK = Duration.ofMinutes(1);
+
+    private final ResultWarehouseRepository repository;
+    private final Duration refreshInterval;
+    private final Duration reconcileInterval;
+    private final ItemColumns columns = new ItemColumns();
+    private final ReentrantReadWriteLock columnsLock = new ReentrantReadWriteLock();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final Map<Long, ResultWarehouseRepository.RegradeProgress> regrades = new HashMap<>();
+    private volatile boolean loaded;
+    private long watermark;
+    private Instant refreshedAt;
+    private Instant reconciledAt;
+
+    public ResultWarehouse(
+            ResultWarehouseRepository repository,
+            @Value("${exam.warehouse.refresh-interval:2s}") Duration refreshInterval,
+            @Value("${exam.warehouse.reconcile-interval:1m}") Duration reconcileInterval
+    ) {
+        this.repository = repository;
+        this.refreshInterval = refreshInterval;
+        this.reconcileInterval = reconcileInterval;
+    }
+
+    public List<WarehouseGroup> query(WarehouseQuery query) {
+        refreshIfStale();
+        columnsLock.readLock().lock();
+        try {
+            return columns.query(query);
+        } finally {
+            columnsLock.readLock().unlock();
+        }
+    }
+
+    private void refreshIfStale() {
+        if (loaded) {
+            if (!refreshLock.tryLock()) {
+                return;
+            }
+        } else {
+            refreshLock.lock();
+        }
+        try {
+            Instant now = Instant.now();
+            if (!loaded || !refreshedAt.plus(refreshInterval).isAfter(now)) {
+                refresh(now);
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void refresh(Instant now) {
+        // regrade progress is read first: a job that moves on while the results are read is reloaded next time
+        Instant since = (loaded ? refreshedAt : now).minus(CLOCK_SLACK);
+        Map<Long, ResultWarehouseRepository.RegradeProgress> progress = repository.regradeProgress(since);
+        Set<Long> reload = new TreeSet<>();
+        if (loaded) {
+            progress.forEach((jobId, p) -> {
+                if (!p.sameAs(regrades.get(jobId))) {
+                    reload.add(p.examId);
+                }
+            });
+            if (!reconciledAt.plus(reconcileInterval).isAfter(now)) {
+                Map<Long, Integer> counts = repository.resultCounts(watermark);
+                Set<Long> examIds = new TreeSet<>(counts.keySet());
+                examIds.addAll(columns.examIds());
+                for (long examId : examIds) {
+                    if (counts.getOrDefault(examId, 0) != columns.liveResults(examId)) {
+                        reload.add(examId);
+                    }
+                }
+                reconciledAt = now;
+            }
+        } else {
+            reconciledAt = now;
+        }
+        regrades.clear();
+        regrades.putAll(progress);
+
+        for (long examId : reload) {
+            List<ResultWarehouseRepository.Item> items = repository.loadExam(examId, watermark);
+            write(() -> {
+                columns.dropExam(examId);
+                append(items);
+            });
+        }
+        long maxId = repository.maxResultId();
+        while (watermark < maxId) {
+            long through = Math.min(maxId, watermark + LOAD_RANGE);
+            List<ResultWarehouseRepository.Item> items = repository.loadRange(watermark, through);
+            write(() -> append(items));
+            watermark = through;
+        }
+
+        List<ResultWarehouseRepository.QuestionMeta> questions = repository.questionMeta(loaded ? since : null);
+        Map<Long, Long> examClasses = repository.examClasses();
+        write(() -> {
+            for (ResultWarehouseRepository.QuestionMeta q : questions) {
+                columns.setQuestionMeta(q.questionId, q.knowledgePoint, q.difficulty);
+            }
+            for (long examId : columns.examIds()) {
+                if (!examClasses.containsKey(examId) && columns.liveResults(examId) > 0) {
+                    columns.dropExam(examId);
+                }
+            }
+            examClasses.forEach(columns::setExamClass);
+            columns.compactIfSparse();
+        });
+        refreshedAt = now;
+        loaded = true;
+    }
+
+    private void append(List<ResultWarehouseRepository.Item> items) {
+        long lastResultId = -1;
+        for (ResultWarehouseRepository.Item item : items) {
+            if (item.resultId != lastResultId) {
+                columns.resultLoaded(item.examId);
+                lastResultId = item.resultId;
+            }
+            if (item.questionId != null) {
+                columns.append(item.examId, item.questionId, item.questionType, item.maxScore, item.earnedScore, item.correct);
+            }
+        }
+    }
+
+    private void write(Runnable change) {
+        columnsLock.writeLock().lock();
+        try {
+            change.run();
+        } finally {
+            columnsLock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.examsystem.result;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * The reads {@link ResultWarehouse} loads its columns from. Results are read in ranges of id with their items, one
+ * row per item or a single row without item for a result that has none, so every loaded result can be counted.
+ */
+@Repository
+public class ResultWarehouseRepository {
+    private static final String ITEM_COLUMNS = "r.id AS result_id, r.exam_id, i.question_id, i.question_type, "
+            + "i.max_score, i.earned_score, i.correct";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ResultWarehouseRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public long maxResultId() {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM exam_results", Long.class);
+        return max == null ? 0L : max;
+    }
+
+    /**
+     * Items of results with {@code afterId < id <= throughId}, in result id order.
+     */
+    List<Item> loadRange(long afterId, long throughId) {
+        return jdbcTemplate.query(
+                "SELECT " + ITEM_COLUMNS + " FROM exam_results r LEFT JOIN exam_result_items i ON i.result_id = r.id "
+                        + "WHERE r.id > ? AND r.id <= ? ORDER BY r.id",
+                (rs, rowNum) -> mapItem(rs),
+                afterId,
+                throughId
+        );
+    }
+
+    /**
+     * Items of the exam's results up to {@code throughId}, in result id order.
+     */
+    List<Item> loadExam(long examId, long throughId) {
+        return jdbcTemplate.query(
+                "SELECT " + ITEM_COLUMNS + " FROM exam_results r LEFT JOIN exam_result_items i ON i.result_id = r.id "
+                        + "WHERE r.exam_id = ? AND r.id <= ? ORDER BY r.id",
+                (rs, rowNum) -> mapItem(rs),
+                examId,
+                throughId
+        );
+    }
+
+    public Map<Long, Integer> resultCounts(long throughId) {
+        Map<Long, Integer> counts = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT exam_id, COUNT(*) AS results FROM exam_results WHERE id <= ? GROUP BY exam_id",
+                rs -> {
+                    counts.put(rs.getLong("exam_id"), rs.getInt("results"));
+                },
+                throughId
+        );
+        return counts;
+    }
+
+    /**
+     * Class of every exam; exams without one map to null.
+     */
+    public Map<Long, Long> examClasses() {
+        Map<Long, Long> classes = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT id, class_id FROM exams",
+                rs -> {
+                    long classId = rs.getLong("class_id");
+                    classes.put(rs.getLong("id"), rs.wasNull() ? null : classId);
+                }
+        );
+        return classes;
+    }
+
+    /**
+     * Knowledge point and difficulty of questions changed since {@code since}, or of all questions when it is null.
+     */
+    List<QuestionMeta> questionMeta(Instant since) {
+        if (since == null) {
+            return jdbcTemplate.query(
+                    "SELECT id, knowledge_point, difficulty FROM questions",
+                    (rs, rowNum) -> mapQuestionMeta(rs)
+            );
+        }
+        return jdbcTemplate.query(
+                "SELECT id, knowledge_point, difficulty FROM questions WHERE updated_at >= ?",
+                (rs, rowNum) -> mapQuestionMeta(rs),
+                java.sql.Timestamp.from(since)
+        );
+    }
+
+    /**
+     * Progress of regrade jobs updated since {@code since}, by job id: the exam and how far the job got.
+     */
+    Map<Long, RegradeProgress> regradeProgress(Instant since) {
+        Map<Long, RegradeProgress> progress = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT id, exam_id, status, processed_results FROM regrade_jobs WHERE updated_at >= ?",
+                rs -> {
+                    progress.put(rs.getLong("id"), new RegradeProgress(
+                            rs.getLong("exam_id"),
+                            rs.getString("status"),
+                            rs.getInt("processed_results")
+                    ));
+                },
+                java.sql.Timestamp.from(since)
+        );
+        return progress;
+    }
+
+    private static Item mapItem(java.sql.ResultSet rs) throws java.sql.SQLException {
+        long questionId = rs.getLong("question_id");
+        boolean hasItem = !rs.wasNull();
+        return new Item(
+                rs.getLong("result_id"),
+                rs.getLong("exam_id"),
+                hasItem ? questionId : null,
+                rs.getString("question_type"),
+                rs.getInt("max_score"),
+                rs.getInt("earned_score"),
+                rs.getBoolean("correct")
+        );
+    }
+
+    private static QuestionMeta mapQuestionMeta(java.sql.ResultSet rs) throws java.sql.SQLException {
+        return new QuestionMeta(rs.getLong("id"), rs.getString("knowledge_point"), rs.getString("difficulty"));
+    }
+
+    static class Item {
+        final long resultId;
+        final long examId;
+        final Long questionId;
+        final String questionType;
+        final int maxScore;
+        final int earnedScore;
+        final boolean correct;
+
+        Item(long resultId, long examId, Long questionId, String questionType, int maxScore, int earnedScore, boolean correct) {
+            this.resultId = resultId;
+            this.examId = examId;
+            this.questionId = questionId;
+            this.questionType = questionType;
+            this.maxScore = maxScore;
+            this.earnedScore = earnedScore;
+            this.correct = correct;
+        }
+    }
+
+    static class QuestionMeta {
+        final long questionId;
+        final String knowledgePoint;
+        final String difficulty;
+
+        QuestionMeta(long questionId, String knowledgePoint, String difficulty) {
+            this.questionId = questionId;
+            this.knowledgePoint = knowledgePoint;
+            this.difficulty = difficulty;
+        }
+    }
+
+    static class RegradeProgress {
+        final long examId;
+        final String status;
+        final int processedResults;
+
+        RegradeProgress(long examId, String status, int processedResults) {
+            this.examId = examId;
+            this.status = status;
+            this.processedResults = processedResults;
+        }
+
+        boolean sameAs(RegradeProgress other) {
+            return other != null && other.status.equals(status) && other.processedResults == processedResults;
+        }
+    }
+}
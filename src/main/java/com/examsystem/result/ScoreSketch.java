@@ -0,0 +1,116 @@
+package com.examsystem.result;
+
+import java.util.Arrays;
+
+/**
+ * Exact, mergeable histogram of small non-negative integers: total scores, or score ratios in per-mille. It keeps one
+ * counter per value up to the largest value recorded, so its size depends on the score range and not on how many
+ * results went in; sketches of single exams merge into class or multi-exam sketches without reading any result again.
+ */
+public class ScoreSketch {
+    public static final int PERMILLE = 1000;
+
+    private long[] counts = new long[0];
+    private long count;
+
+    /**
+     * {@code score} out of {@code maxScore} in per-mille, clamped to [0, 1000].
+     */
+    public static int permille(int score, int maxScore) {
+        long value = Math.round(score * (double) PERMILLE / maxScore);
+        return (int) Math.max(0, Math.min(PERMILLE, value));
+    }
+
+    public ScoreSketch record(int value, long times) {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative value: " + value);
+        }
+        if (times <= 0) {
+            return this;
+        }
+        if (value >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(value + 1, counts.length * 2));
+        }
+        counts[value] += times;
+        count += times;
+        return this;
+    }
+
+    public ScoreSketch merge(ScoreSketch other) {
+        for (int value = 0; value < other.counts.length; value++) {
+            record(value, other.counts[value]);
+        }
+        return this;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double mean() {
+        if (count == 0) {
+            return 0.0d;
+        }
+        double sum = 0;
+        for (int value = 0; value < counts.length; value++) {
+            sum += (double) value * counts[value];
+        }
+        return sum / count;
+    }
+
+    /**
+     * Population standard deviation.
+     */
+    public double stdDev() {
+        if (count == 0) {
+            return 0.0d;
+        }
+        double mean = mean();
+        double squares = 0;
+        for (int value = 0; value < counts.length; value++) {
+            double d = value - mean;
+            squares += d * d * counts[value];
+        }
+        return Math.sqrt(squares / count);
+    }
+
+    /**
+     * The {@code q} quantile, interpolating linearly between the two closest ranks (so the 0.5 quantile of an even
+     * number of values is the mean of the middle two), or 0 when nothing was recorded.
+     */
+    public double quantile(double q) {
+        if (count == 0) {
+            return 0.0d;
+        }
+        double rank = (count - 1) * Math.max(0.0d, Math.min(1.0d, q));
+        long lower = (long) Math.floor(rank);
+        int lowerValue = valueAt(lower);
+        if (lower + 1 >= count) {
+            return lowerValue;
+        }
+        int upperValue = valueAt(lower + 1);
+        return lowerValue + (rank - lower) * (upperValue - lowerValue);
+    }
+
+    /**
+     * How many recorded values are in [{@code from}, {@code to}).
+     */
+    public long countBetween(int from, int to) {
+        long n = 0;
+        for (int value = Math.max(0, from); value < Math.min(to, counts.length); value++) {
+            n += counts[value];
+        }
+        return n;
+    }
+
+    private int valueAt(long rank) {
+        long seen = 0;
+        for (int value = 0; value < counts.length; value++) {
+            seen += counts[value];
+            if (seen > rank) {
+                return value;
+            }
+        }
+        return counts.length - 1;
+    }
+}
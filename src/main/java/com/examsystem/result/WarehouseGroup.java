@@ -0,0 +1,50 @@
+package com.examsystem.result;
+
+import java.util.Map;
+
+/**
+ * One group of a {@link WarehouseQuery}: its key by dimension field, and item counts and score sums.
+ */
+public class WarehouseGroup {
+    private final Map<String, Object> key;
+    private final long items;
+    private final long correct;
+    private final long earnedScore;
+    private final long maxScore;
+
+    public WarehouseGroup(Map<String, Object> key, long items, long correct, long earnedScore, long maxScore) {
+        this.key = key;
+        this.items = items;
+        this.correct = correct;
+        this.earnedScore = earnedScore;
+        this.maxScore = maxScore;
+    }
+
+    public Map<String, Object> getKey() {
+        return key;
+    }
+
+    public long getItems() {
+        return items;
+    }
+
+    public long getCorrect() {
+        return correct;
+    }
+
+    public long getEarnedScore() {
+        return earnedScore;
+    }
+
+    public long getMaxScore() {
+        return maxScore;
+    }
+
+    public double getCorrectRate() {
+        return items == 0 ? 0.0d : ((double) correct) / items;
+    }
+
+    public double getScoreRate() {
+        return maxScore == 0 ? 0.0d : ((double) earnedScore) / maxScore;
+    }
+}
@@ -0,0 +1,95 @@
+package com.examsystem.result;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A filter and group-by over result items. Only exams of {@code classIds} are seen; the other filters are optional
+ * and null means any value.
+ */
+public class WarehouseQuery {
+    public static final int MAX_GROUP_BY = 3;
+
+    private final Set<Long> classIds;
+    private final Set<Long> examIds;
+    private final Set<String> questionTypes;
+    private final Set<String> knowledgePoints;
+    private final Set<String> difficulties;
+    private final List<Dimension> groupBy;
+    private final int limit;
+
+    public WarehouseQuery(
+            Set<Long> classIds,
+            Set<Long> examIds,
+            Set<String> questionTypes,
+            Set<String> knowledgePoints,
+            Set<String> difficulties,
+            List<Dimension> groupBy,
+            int limit
+    ) {
+        if (groupBy.size() > MAX_GROUP_BY) {
+            throw new IllegalArgumentException("at most " + MAX_GROUP_BY + " group-by dimensions");
+        }
+        this.classIds = Set.copyOf(classIds);
+        this.examIds = copyOf(examIds);
+        this.questionTypes = copyOf(questionTypes);
+        this.knowledgePoints = copyOf(knowledgePoints);
+        this.difficulties = copyOf(difficulties);
+        this.groupBy = List.copyOf(groupBy);
+        this.limit = limit;
+    }
+
+    // null members stay: a null knowledge point or difficulty matches untagged questions
+    private static <T> Set<T> copyOf(Set<T> values) {
+        return values == null ? null : Collections.unmodifiableSet(new HashSet<>(values));
+    }
+
+    public Set<Long> getClassIds() {
+        return classIds;
+    }
+
+    public Set<Long> getExamIds() {
+        return examIds;
+    }
+
+    public Set<String> getQuestionTypes() {
+        return questionTypes;
+    }
+
+    public Set<String> getKnowledgePoints() {
+        return knowledgePoints;
+    }
+
+    public Set<String> getDifficulties() {
+        return difficulties;
+    }
+
+    public List<Dimension> getGroupBy() {
+        return groupBy;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public enum Dimension {
+        CLASS("classId"),
+        EXAM("examId"),
+        QUESTION("questionId"),
+        QUESTION_TYPE("questionType"),
+        KNOWLEDGE_POINT("knowledgePoint"),
+        DIFFICULTY("difficulty");
+
+        private final String field;
+
+        Dimension(String field) {
+            this.field = field;
+        }
+
+        public String getField() {
+            return field;
+        }
+    }
+}
@@ -112,10 +112,41 @@ CREATE TABLE IF NOT EXISTS exams (
     CONSTRAINT fk_exams_paper FOREIGN KEY (paper_id) REFERENCES papers(id)
 );
 
+CREATE TABLE IF NOT EXISTS question_snapshots (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    content_hash VARCHAR(64) NOT NULL,
+    question_id BIGINT NOT NULL,
+    question_type VARCHAR(50) NOT NULL,
+    stem TEXT NOT NULL,
+    options_json TEXT,
+    score INT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    CONSTRAINT uk_question_snapshots_hash UNIQUE (content_hash)
+);
+
+CREATE TABLE IF NOT EXISTS paper_versions (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    content_hash VARCHAR(64) NOT NULL,
+    question_count INT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    CONSTRAINT uk_paper_versions_hash UNIQUE (content_hash)
+);
+
+CREATE TABLE IF NOT EXISTS paper_version_items (
+    paper_version_id BIGINT NOT NULL,
+    order_index INT NOT NULL,
+    snapshot_id BIGINT NOT NULL,
+    PRIMARY KEY (paper_version_id, order_index),
+    CONSTRAINT fk_paper_version_items_version FOREIGN KEY (paper_version_id) REFERENCES paper_versions(id) ON DELETE CASCADE,
+    CONSTRAINT fk_paper_version_items_snapshot FOREIGN KEY (snapshot_id) REFERENCES question_snapshots(id)
+);
+
 CREATE TABLE IF NOT EXISTS exam_attempts (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     exam_id BIGINT NOT NULL,
     paper_id BIGINT NOT NULL,
+    paper_version_id BIGINT,
+    shuffle_seed BIGINT,
     student_username VARCHAR(100) NOT NULL,
     status VARCHAR(50) NOT NULL,
     started_at TIMESTAMP NOT NULL,
@@ -123,7 +154,8 @@ CREATE TABLE IF NOT EXISTS exam_attempts (
     created_at TIMESTAMP NOT NULL,
     updated_at TIMESTAMP NOT NULL,
     CONSTRAINT fk_attempts_exam FOREIGN KEY (exam_id) REFERENCES exams(id) ON DELETE CASCADE,
-    CONSTRAINT fk_attempts_paper FOREIGN KEY (paper_id) REFERENCES papers(id)
+    CONSTRAINT fk_attempts_paper FOREIGN KEY (paper_id) REFERENCES papers(id),
+    CONSTRAINT fk_attempts_paper_version FOREIGN KEY (paper_version_id) REFERENCES paper_versions(id)
 );
 
 CREATE TABLE IF NOT EXISTS exam_attempt_questions (
@@ -153,8 +185,10 @@ CREATE TABLE IF NOT EXISTS exam_results (
     student_username VARCHAR(100) NOT NULL,
     total_score INT NOT NULL,
     max_score INT NOT NULL,
+    regrade_generation INT NOT NULL DEFAULT 0,
     created_at TIMESTAMP NOT NULL,
     CONSTRAINT uk_exam_attempt UNIQUE (exam_id, attempt_id),
+    CONSTRAINT uk_exam_student_attempt UNIQUE (exam_id, student_username, attempt_id),
     CONSTRAINT fk_results_exam FOREIGN KEY (exam_id) REFERENCES exams(id) ON DELETE CASCADE,
     CONSTRAINT fk_results_attempt FOREIGN KEY (attempt_id) REFERENCES exam_attempts(id) ON DELETE CASCADE
 );
@@ -172,6 +206,22 @@ CREATE TABLE IF NOT EXISTS exam_result_items (
     CONSTRAINT fk_result_items_result FOREIGN KEY (result_id) REFERENCES exam_results(id) ON DELETE CASCADE
 );
 
+CREATE TABLE IF NOT EXISTS regrade_jobs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    exam_id BIGINT NOT NULL,
+    question_id BIGINT,
+    status VARCHAR(20) NOT NULL,
+    total_results INT NOT NULL,
+    processed_results INT NOT NULL,
+    changed_results INT NOT NULL,
+    last_result_id BIGINT NOT NULL,
+    error TEXT,
+    created_by VARCHAR(100) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    CONSTRAINT fk_regrade_jobs_exam FOREIGN KEY (exam_id) REFERENCES exams(id) ON DELETE CASCADE
+);
+
 CREATE TABLE IF NOT EXISTS proctor_events (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     exam_id BIGINT NOT NULL,
@@ -194,3 +244,115 @@ CREATE TABLE IF NOT EXISTS attempt_heartbeats (
     CONSTRAINT fk_attempt_heartbeats_attempt FOREIGN KEY (attempt_id) REFERENCES exam_attempts(id) ON DELETE CASCADE,
     CONSTRAINT fk_attempt_heartbeats_user FOREIGN KEY (username) REFERENCES users(username)
 );
+
+CREATE TABLE IF NOT EXISTS attempt_presence (
+    attempt_id BIGINT PRIMARY KEY,
+    exam_id BIGINT NOT NULL,
+    username VARCHAR(100) NOT NULL,
+    last_ts TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    CONSTRAINT fk_attempt_presence_attempt FOREIGN KEY (attempt_id) REFERENCES exam_attempts(id) ON DELETE CASCADE,
+    CONSTRAINT fk_attempt_presence_exam FOREIGN KEY (exam_id) REFERENCES exams(id) ON DELETE CASCADE,
+    CONSTRAINT fk_attempt_presence_user FOREIGN KEY (username) REFERENCES users(username)
+);
+
+CREATE TABLE IF NOT EXISTS attempt_tab_stats (
+    attempt_id BIGINT PRIMARY KEY,
+    exam_id BIGINT NOT NULL,
+    username VARCHAR(100) NOT NULL,
+    switch_count INT NOT NULL,
+    away_millis BIGINT NOT NULL,
+    away_since TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL,
+    CONSTRAINT fk_attempt_tab_stats_attempt FOREIGN KEY (attempt_id) REFERENCES exam_attempts(id) ON DELETE CASCADE,
+    CONSTRAINT fk_attempt_tab_stats_exam FOREIGN KEY (exam_id) REFERENCES exams(id) ON DELETE CASCADE,
+    CONSTRAINT fk_attempt_tab_stats_user FOREIGN KEY (username) REFERENCES users(username)
+);
+
+CREATE TABLE IF NOT EXISTS attempt_presence_intervals (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    exam_id BIGINT NOT NULL,
+    attempt_id BIGINT NOT NULL,
+    started_at TIMESTAMP NOT NULL,
+    ended_at TIMESTAMP NOT NULL,
+    heartbeats INT NOT NULL,
+    CONSTRAINT fk_presence_intervals_exam FOREIGN KEY (exam_id) REFERENCES exams(id) ON DELETE CASCADE,
+    CONSTRAINT fk_presence_intervals_attempt FOREIGN KEY (attempt_id) REFERENCES exam_attempts(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS proctor_compactions (
+    exam_id BIGINT PRIMARY KEY,
+    compacted_at TIMESTAMP NOT NULL,
+    archive_path VARCHAR(500),
+    last_event_id BIGINT NOT NULL,
+    last_heartbeat_id BIGINT NOT NULL,
+    event_count INT NOT NULL,
+    heartbeat_count INT NOT NULL,
+    purged_at TIMESTAMP,
+    CONSTRAINT fk_proctor_compactions_exam FOREIGN KEY (exam_id) REFERENCES exams(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS exam_summaries (
+    exam_id BIGINT PRIMARY KEY,
+    started INT NOT NULL,
+    in_progress INT NOT NULL,
+    submitted INT NOT NULL,
+    graded INT NOT NULL,
+    roster_size INT NOT NULL,
+    CONSTRAINT fk_exam_summaries_exam FOREIGN KEY (exam_id) REFERENCES exams(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS exam_analytics (
+    exam_id BIGINT PRIMARY KEY,
+    built BOOLEAN NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    CONSTRAINT fk_exam_analytics_exam FOREIGN KEY (exam_id) REFERENCES exams(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS exam_score_buckets (
+    exam_id BIGINT NOT NULL,
+    total_score INT NOT NULL,
+    max_score INT NOT NULL,
+    results INT NOT NULL,
+    PRIMARY KEY (exam_id, total_score, max_score),
+    CONSTRAINT fk_exam_score_buckets_exam FOREIGN KEY (exam_id) REFERENCES exams(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS exam_question_stats (
+    exam_id BIGINT NOT NULL,
+    question_id BIGINT NOT NULL,
+    question_type VARCHAR(50) NOT NULL,
+    max_score INT NOT NULL,
+    correct_count INT NOT NULL,
+    total_count INT NOT NULL,
+    PRIMARY KEY (exam_id, question_id),
+    CONSTRAINT fk_exam_question_stats_exam FOREIGN KEY (exam_id) REFERENCES exams(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS exam_group_buckets (
+    exam_id BIGINT NOT NULL,
+    question_type VARCHAR(50) NOT NULL,
+    score INT NOT NULL,
+    max_score INT NOT NULL,
+    results INT NOT NULL,
+    PRIMARY KEY (exam_id, question_type, score, max_score),
+    CONSTRAINT fk_exam_group_buckets_exam FOREIGN KEY (exam_id) REFERENCES exams(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS content_versions (
+    name VARCHAR(50) PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS cluster_leases (
+    name VARCHAR(50) PRIMARY KEY,
+    holder VARCHAR(100) NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS cluster_nodes (
+    node_id VARCHAR(100) PRIMARY KEY,
+    started_at TIMESTAMP NOT NULL,
+    heartbeat_at TIMESTAMP NOT NULL
+);
@@ -0,0 +1,62 @@
+package com.examsystem.attempt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class AttemptHeaderIndexTest {
+
+    @Test
+    void loadsOnceOnMiss() {
+        AttemptHeaderIndex index = new AttemptHeaderIndex();
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            Optional<AttemptHeaderIndex.AttemptHeader> header = index.get(7L, id -> {
+                loads.incrementAndGet();
+                return Optional.of(header(id, 1L, "student"));
+            });
+            assertEquals("student", header.orElseThrow().getStudentUsername());
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void statusUpdatesReplaceTheCachedHeader() {
+        AttemptHeaderIndex index = new AttemptHeaderIndex();
+        index.put(header(7L, 1L, "student"));
+
+        index.updateStatus(7L, AttemptStatus.SUBMITTED);
+
+        assertEquals(AttemptStatus.SUBMITTED, index.get(7L, id -> Optional.empty()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void evictingAnExamKeepsOtherAttempts() {
+        AttemptHeaderIndex index = new AttemptHeaderIndex();
+        for (long id = 1; id <= 1000; id++) {
+            index.put(header(id, id % 3, "s" + id));
+        }
+
+        index.evictExam(0L);
+
+        for (long id = 1; id <= 1000; id++) {
+            Optional<AttemptHeaderIndex.AttemptHeader> header = index.get(id, x -> Optional.empty());
+            if (id % 3 == 0) {
+                assertFalse(header.isPresent());
+            } else {
+                assertTrue(header.isPresent());
+                assertEquals("s" + id, header.get().getStudentUsername());
+            }
+        }
+    }
+
+    private static AttemptHeaderIndex.AttemptHeader header(long attemptId, long examId, String username) {
+        return new AttemptHeaderIndex.AttemptHeader(attemptId, examId, username, AttemptStatus.IN_PROGRESS, Instant.now());
+    }
+}
@@ -0,0 +1,71 @@
+package com.examsystem.attempt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class AttemptShuffleTest {
+    private static final List<QuestionSnapshot> PAPER = List.of(
+            new QuestionSnapshot(11L, "SINGLE_CHOICE", "q1", List.of("w", "x", "y", "z"), 5),
+            new QuestionSnapshot(12L, "MULTIPLE_CHOICE", "q2", List.of("a", "b", "c", "d", "e"), 5),
+            new QuestionSnapshot(13L, "TRUE_FALSE", "q3", List.of(), 5),
+            new QuestionSnapshot(14L, "SINGLE_CHOICE", "q4", List.of("1", "2"), 5)
+    );
+
+    @Test
+    void noSeedWithoutShuffleSettings() {
+        assertNull(AttemptShuffle.newSeed(false, false));
+    }
+
+    @Test
+    void sameSeedGivesSameOrder() {
+        long seed = AttemptShuffle.newSeed(true, true);
+        List<Long> first = ids(AttemptShuffle.of(seed).present(PAPER));
+        List<Long> second = ids(AttemptShuffle.of(seed).present(PAPER));
+
+        assertEquals(first, second);
+        assertEquals(Set.of(11L, 12L, 13L, 14L), new HashSet<>(first));
+    }
+
+    @Test
+    void shownLettersMapBackToCanonicalOptions() {
+        AttemptShuffle shuffle = AttemptShuffle.of(AttemptShuffle.newSeed(true, true));
+        for (QuestionSnapshot shown : shuffle.present(PAPER)) {
+            QuestionSnapshot canonical = PAPER.stream().filter(q -> q.getId() == shown.getId()).findFirst().orElseThrow();
+            for (int i = 0; i < shown.getOptions().size(); i++) {
+                String letter = String.valueOf((char) ('A' + i));
+                String mapped = shuffle.toCanonical(canonical, letter);
+                assertEquals(shown.getOptions().get(i), canonical.getOptions().get(mapped.charAt(0) - 'A'));
+            }
+        }
+    }
+
+    @Test
+    void presentedAnswersMapBackToTheSameCanonicalAnswer() {
+        AttemptShuffle shuffle = AttemptShuffle.of(AttemptShuffle.newSeed(true, true));
+        for (QuestionSnapshot canonical : PAPER) {
+            String presented = shuffle.toPresented(canonical, "A,C");
+            assertEquals("A,C", shuffle.toCanonical(canonical, presented));
+        }
+    }
+
+    @Test
+    void questionOrderOnlyKeepsOptionsAndAnswers() {
+        AttemptShuffle shuffle = AttemptShuffle.of(AttemptShuffle.newSeed(true, false));
+        for (QuestionSnapshot shown : shuffle.present(PAPER)) {
+            QuestionSnapshot canonical = PAPER.stream().filter(q -> q.getId() == shown.getId()).findFirst().orElseThrow();
+            assertSame(canonical, shown);
+            assertEquals("A,C", shuffle.toCanonical(canonical, "A,C"));
+        }
+    }
+
+    private static List<Long> ids(List<QuestionSnapshot> questions) {
+        return questions.stream().map(QuestionSnapshot::getId).collect(Collectors.toList());
+    }
+}
@@ -1,12 +1,15 @@
 package com.examsystem.controller;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.examsystem.question.QuestionType;
+import com.examsystem.result.GradingQueueService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import org.junit.jupiter.api.Test;
@@ -26,6 +29,9 @@ class AutoGradingFlowTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private GradingQueueService gradingQueue;
+
     @Test
     void submitGeneratesResult_studentAndTeacherCanQuery() throws Exception {
         String teacherToken = loginAndExtractToken("teacher", "teacher123");
@@ -65,6 +71,8 @@ class AutoGradingFlowTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.status").value("SUBMITTED"));
 
+        assertTrue(gradingQueue.awaitIdle(Duration.ofSeconds(10)));
+
         mockMvc.perform(get("/api/student/exams/{id}/result", examId)
                         .header("Authorization", "Bearer " + studentToken))
                 .andExpect(status().isOk())
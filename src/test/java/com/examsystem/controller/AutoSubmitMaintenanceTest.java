@@ -1,5 +1,7 @@
 package com.examsystem.controller;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -7,7 +9,9 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import com.examsystem.exam.ExamMaintenanceService;
 import com.examsystem.question.QuestionType;
+import com.examsystem.result.GradingQueueService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import org.junit.jupiter.api.Test;
@@ -27,6 +31,9 @@ class AutoSubmitMaintenanceTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private GradingQueueService gradingQueue;
+
     @Autowired
     private ExamMaintenanceService maintenanceService;
 
@@ -51,6 +58,8 @@ class AutoSubmitMaintenanceTest {
 
         maintenanceService.runOnce(endAt.plusSeconds(1));
 
+        assertTrue(gradingQueue.awaitIdle(Duration.ofSeconds(10)));
+
         mockMvc.perform(get("/api/student/exams/{id}/result", examId)
                         .header("Authorization", "Bearer " + studentToken))
                 .andExpect(status().isOk())
@@ -59,6 +68,33 @@ class AutoSubmitMaintenanceTest {
                 .andExpect(jsonPath("$.maxScore").value(5));
     }
 
+    @Test
+    void examDeadlineAutoSubmitsWithoutMaintenanceTick() throws Exception {
+        String teacherToken = loginAndExtractToken("teacher", "teacher123");
+        String studentToken = loginAndExtractToken("student", "student123");
+
+        long classId = createClassAndJoin(teacherToken, studentToken);
+        long questionId = createQuestion(teacherToken);
+        long paperId = createPaper(teacherToken, questionId);
+
+        Instant now = Instant.now();
+        long examId = createExam(teacherToken, paperId, classId, now.minusSeconds(60), now.plusSeconds(3));
+
+        mockMvc.perform(post("/api/student/exams/{id}/start", examId)
+                        .header("Authorization", "Bearer " + studentToken))
+                .andExpect(status().isOk());
+
+        Instant deadline = Instant.now().plusSeconds(15);
+        int resultStatus = 0;
+        while (resultStatus != 200 && Instant.now().isBefore(deadline)) {
+            Thread.sleep(200);
+            resultStatus = mockMvc.perform(get("/api/student/exams/{id}/result", examId)
+                            .header("Authorization", "Bearer " + studentToken))
+                    .andReturn().getResponse().getStatus();
+        }
+        assertEquals(200, resultStatus);
+    }
+
     private long createQuestion(String teacherToken) throws Exception {
         TeacherQuestionController.CreateOrUpdateQuestionRequest create = new TeacherQuestionController.CreateOrUpdateQuestionRequest();
         create.setType(QuestionType.SINGLE_CHOICE);
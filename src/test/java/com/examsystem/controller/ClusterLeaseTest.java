@@ -0,0 +1,77 @@
+package com.examsystem.controller;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.examsystem.cluster.ClusterLeaseRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ClusterLeaseTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ClusterLeaseRepository leaseRepository;
+
+    @Test
+    void leaseIsExclusiveUntilItExpires() {
+        Instant now = Instant.now();
+        String lease = "test-lease-" + System.nanoTime();
+
+        assertTrue(leaseRepository.tryAcquire(lease, "node-a", now, now.plusSeconds(15)));
+        assertFalse(leaseRepository.tryAcquire(lease, "node-b", now.plusSeconds(1), now.plusSeconds(16)));
+        assertTrue(leaseRepository.tryAcquire(lease, "node-a", now.plusSeconds(5), now.plusSeconds(20)));
+
+        assertTrue(leaseRepository.tryAcquire(lease, "node-b", now.plusSeconds(21), now.plusSeconds(36)));
+        assertFalse(leaseRepository.tryAcquire(lease, "node-a", now.plusSeconds(22), now.plusSeconds(37)));
+    }
+
+    @Test
+    void singleNodeHoldsMaintenanceLease() throws Exception {
+        String adminToken = loginAndExtractToken("admin", "admin123");
+
+        mockMvc.perform(get("/api/admin/cluster")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.leader").value(true))
+                .andExpect(jsonPath("$.leaseHolder").isString())
+                .andExpect(jsonPath("$.nodes[0].self").value(true));
+
+        mockMvc.perform(get("/api/admin/cluster/owner/{examId}", 42)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ownedHere").value(true));
+    }
+
+    private String loginAndExtractToken(String username, String password) throws Exception {
+        AuthController.LoginRequest request = new AuthController.LoginRequest();
+        request.setUsername(username);
+        request.setPassword(password);
+
+        MvcResult result = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").isString())
+                .andReturn();
+
+        return objectMapper.readTree(result.getResponse().getContentAsByteArray()).get("token").asText();
+    }
+}
@@ -1,20 +1,30 @@
 package com.examsystem.controller;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.examsystem.proctor.ExamMonitorHub;
+import com.examsystem.proctor.ExamProctorService;
 import com.examsystem.question.QuestionType;
+import com.examsystem.result.GradingQueueService;
+import com.examsystem.result.WarehouseQuery;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -27,6 +37,18 @@ class ExamAnalyticsExportMonitorTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private GradingQueueService gradingQueue;
+
+    @Autowired
+    private ExamProctorService proctorService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ExamMonitorHub monitorHub;
+
     @Test
     void teacherCanQueryAnalyticsExportAndMonitor() throws Exception {
         String teacherToken = loginAndExtractToken("teacher", "teacher123");
@@ -49,6 +71,23 @@ class ExamAnalyticsExportMonitorTest {
                 .andReturn();
         long attemptId = objectMapper.readTree(started.getResponse().getContentAsByteArray()).get("attemptId").asLong();
 
+        Instant lastBeat = Instant.now().minusSeconds(1).truncatedTo(ChronoUnit.MILLIS);
+        for (Instant ts : List.of(lastBeat.minusSeconds(20), lastBeat, lastBeat.minusSeconds(10))) {
+            StudentExamController.HeartbeatRequest heartbeat = new StudentExamController.HeartbeatRequest();
+            heartbeat.setAttemptId(attemptId);
+            heartbeat.setTs(ts);
+            mockMvc.perform(post("/api/student/exams/{id}/heartbeat", examId)
+                            .header("Authorization", "Bearer " + studentToken)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsBytes(heartbeat)))
+                    .andExpect(status().isOk());
+        }
+        proctorService.flush();
+        assertEquals(
+                1,
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM attempt_presence WHERE attempt_id = ?", Integer.class, attemptId)
+        );
+
         StudentExamController.SubmitExamRequest submit = new StudentExamController.SubmitExamRequest();
         submit.setAttemptId(attemptId);
         StudentExamController.AnswerRequest answer = new StudentExamController.AnswerRequest();
@@ -62,6 +101,8 @@ class ExamAnalyticsExportMonitorTest {
                         .content(objectMapper.writeValueAsBytes(submit)))
                 .andExpect(status().isOk());
 
+        assertTrue(gradingQueue.awaitIdle(Duration.ofSeconds(10)));
+
         mockMvc.perform(get("/api/teacher/exams/{id}/analytics", examId)
                         .header("Authorization", "Bearer " + teacherToken))
                 .andExpect(status().isOk())
@@ -71,7 +112,33 @@ class ExamAnalyticsExportMonitorTest {
                 .andExpect(jsonPath("$.minTotalScore").value(5))
                 .andExpect(jsonPath("$.passRate").value(1.0))
                 .andExpect(jsonPath("$.questionStats[0].questionId").value((int) questionId))
-                .andExpect(jsonPath("$.questionStats[0].correctRate").value(1.0));
+                .andExpect(jsonPath("$.questionStats[0].correctRate").value(1.0))
+                .andExpect(jsonPath("$.percentiles.p50").value(5.0))
+                .andExpect(jsonPath("$.stdDevTotalScore").value(0.0))
+                .andExpect(jsonPath("$.ratioDistribution.bins[4].count").value(1));
+
+        mockMvc.perform(get("/api/teacher/exams/distribution")
+                        .param("classId", String.valueOf(classId))
+                        .header("Authorization", "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.examIds[0]").value((int) examId))
+                .andExpect(jsonPath("$.distribution.count").value(1))
+                .andExpect(jsonPath("$.distribution.percentiles.p90").value(100.0));
+
+        TeacherAnalyticsController.AnalyticsQueryRequest query = new TeacherAnalyticsController.AnalyticsQueryRequest();
+        query.setClassIds(List.of(classId));
+        query.setGroupBy(List.of(WarehouseQuery.Dimension.KNOWLEDGE_POINT, WarehouseQuery.Dimension.DIFFICULTY));
+        mockMvc.perform(post("/api/teacher/analytics/query")
+                        .header("Authorization", "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(query)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].key.knowledgePoint").value("基础加法"))
+                .andExpect(jsonPath("$[0].key.difficulty").value("EASY"))
+                .andExpect(jsonPath("$[0].items").value(1))
+                .andExpect(jsonPath("$[0].correct").value(1))
+                .andExpect(jsonPath("$[0].scoreRate").value(1.0));
 
         mockMvc.perform(get("/api/teacher/exams/{id}/monitor", examId)
                         .header("Authorization", "Bearer " + teacherToken))
@@ -80,7 +147,10 @@ class ExamAnalyticsExportMonitorTest {
                 .andExpect(jsonPath("$.inProgressCount").value(0))
                 .andExpect(jsonPath("$.submittedCount").value(1))
                 .andExpect(jsonPath("$.resultsCount").value(1))
-                .andExpect(jsonPath("$.submittedUsers[0]").value("student"));
+                .andExpect(jsonPath("$.submittedUsers[0]").value("student"))
+                .andExpect(jsonPath("$.latestHeartbeats.length()").value(1))
+                .andExpect(jsonPath("$.latestHeartbeats[0].attemptId").value((int) attemptId))
+                .andExpect(jsonPath("$.latestHeartbeats[0].ts").value(lastBeat.toString()));
 
         mockMvc.perform(get("/api/teacher/exams/{id}/export.csv", examId)
                         .header("Authorization", "Bearer " + teacherToken))
@@ -90,6 +160,56 @@ class ExamAnalyticsExportMonitorTest {
                 .andExpect(content().string(org.hamcrest.Matchers.containsString("student,5,5,")));
     }
 
+    @Test
+    void monitorStreamSendsSnapshotThenDeltas() throws Exception {
+        String teacherToken = loginAndExtractToken("teacher", "teacher123");
+        String studentToken = loginAndExtractToken("student", "student123");
+
+        long classId = createClassAndJoin(teacherToken, studentToken);
+        long questionId = createQuestion(teacherToken);
+        long paperId = createPaper(teacherToken, questionId);
+        long examId = createExam(
+                teacherToken,
+                paperId,
+                classId,
+                Instant.now().minusSeconds(10),
+                Instant.now().plusSeconds(600)
+        );
+
+        MvcResult stream = mockMvc.perform(get("/api/teacher/exams/{id}/monitor/stream", examId)
+                        .header("Authorization", "Bearer " + teacherToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertTrue(stream.getResponse().getContentAsString().contains("event:snapshot"));
+
+        MvcResult started = mockMvc.perform(post("/api/student/exams/{id}/start", examId)
+                        .header("Authorization", "Bearer " + studentToken))
+                .andExpect(status().isOk())
+                .andReturn();
+        long attemptId = objectMapper.readTree(started.getResponse().getContentAsByteArray()).get("attemptId").asLong();
+
+        StudentExamController.HeartbeatRequest heartbeat = new StudentExamController.HeartbeatRequest();
+        heartbeat.setAttemptId(attemptId);
+        mockMvc.perform(post("/api/student/exams/{id}/heartbeat", examId)
+                        .header("Authorization", "Bearer " + studentToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(heartbeat)))
+                .andExpect(status().isOk());
+
+        monitorHub.sendFrames();
+
+        // frames are written by the hub's writer threads
+        String body = stream.getResponse().getContentAsString();
+        for (int i = 0; i < 100 && !body.contains("event:delta"); i++) {
+            Thread.sleep(50);
+            body = stream.getResponse().getContentAsString();
+        }
+        assertTrue(body.contains("event:delta"));
+        assertTrue(body.contains("\"attemptId\":" + attemptId + ",\"username\":\"student\",\"status\":\"IN_PROGRESS\""));
+        assertTrue(body.contains("\"presence\":[{\"attemptId\":" + attemptId));
+        assertEquals(1, monitorHub.subscriberCount(examId));
+    }
+
     private long createQuestion(String teacherToken) throws Exception {
         TeacherQuestionController.CreateOrUpdateQuestionRequest create = new TeacherQuestionController.CreateOrUpdateQuestionRequest();
         create.setType(QuestionType.SINGLE_CHOICE);
@@ -1,5 +1,6 @@
 package com.examsystem.controller;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -52,6 +53,12 @@ class OnlineExamFlowTest {
 
         long attemptId = objectMapper.readTree(started.getResponse().getContentAsByteArray()).get("attemptId").asLong();
 
+        mockMvc.perform(get("/api/teacher/exams/{id}", examId)
+                        .header("Authorization", "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.startedCount").value(1))
+                .andExpect(jsonPath("$.inProgressCount").value(1));
+
         StudentExamController.SubmitExamRequest submit = new StudentExamController.SubmitExamRequest();
         submit.setAttemptId(attemptId);
         StudentExamController.AnswerRequest answer = new StudentExamController.AnswerRequest();
@@ -68,6 +75,12 @@ class OnlineExamFlowTest {
                 .andExpect(jsonPath("$.status").value("SUBMITTED"))
                 .andExpect(jsonPath("$.submittedAt").isString());
 
+        mockMvc.perform(get("/api/teacher/exams/{id}", examId)
+                        .header("Authorization", "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.startedCount").value(1))
+                .andExpect(jsonPath("$.inProgressCount").value(0));
+
         long nearEndExamId = createExam(
                 teacherToken,
                 paperId,
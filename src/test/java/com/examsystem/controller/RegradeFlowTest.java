@@ -0,0 +1,245 @@
+package com.examsystem.controller;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.examsystem.question.QuestionType;
+import com.examsystem.result.GradingQueueService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class RegradeFlowTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private GradingQueueService gradingQueue;
+
+    @Test
+    void regradeAfterAnswerKeyFix_updatesItemsAndTotals() throws Exception {
+        String teacherToken = loginAndExtractToken("teacher", "teacher123");
+        String studentToken = loginAndExtractToken("student", "student123");
+
+        long classId = createClassAndJoin(teacherToken, studentToken);
+        long questionId = createQuestion(teacherToken);
+        long paperId = createPaper(teacherToken, questionId);
+
+        long examId = createExam(
+                teacherToken,
+                paperId,
+                classId,
+                Instant.now().minusSeconds(10),
+                Instant.now().plusSeconds(600)
+        );
+
+        MvcResult started = mockMvc.perform(post("/api/student/exams/{id}/start", examId)
+                        .header("Authorization", "Bearer " + studentToken))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        long attemptId = objectMapper.readTree(started.getResponse().getContentAsByteArray()).get("attemptId").asLong();
+
+        StudentExamController.SubmitExamRequest submit = new StudentExamController.SubmitExamRequest();
+        submit.setAttemptId(attemptId);
+        StudentExamController.AnswerRequest answer = new StudentExamController.AnswerRequest();
+        answer.setQuestionId(questionId);
+        answer.setAnswer("C");
+        submit.setAnswers(List.of(answer));
+
+        mockMvc.perform(post("/api/student/exams/{id}/submit", examId)
+                        .header("Authorization", "Bearer " + studentToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(submit)))
+                .andExpect(status().isOk());
+
+        assertTrue(gradingQueue.awaitIdle(Duration.ofSeconds(10)));
+
+        mockMvc.perform(get("/api/teacher/exams/{id}/results", examId)
+                        .header("Authorization", "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].totalScore").value(0));
+
+        mockMvc.perform(get("/api/student/exams/{id}/result", examId)
+                        .header("Authorization", "Bearer " + studentToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalScore").value(0));
+
+        mockMvc.perform(get("/api/teacher/exams/{id}/analytics", examId)
+                        .header("Authorization", "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.maxTotalScore").value(0))
+                .andExpect(jsonPath("$.questionStats[0].correctCount").value(0));
+
+        mockMvc.perform(put("/api/teacher/questions/{id}", questionId)
+                        .header("Authorization", "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(questionRequest("C"))))
+                .andExpect(status().isOk());
+
+        MvcResult regrade = mockMvc.perform(post("/api/teacher/exams/{id}/regrade", examId)
+                        .header("Authorization", "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"questionId\":" + questionId + "}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalResults").value(1))
+                .andReturn();
+
+        long jobId = objectMapper.readTree(regrade.getResponse().getContentAsByteArray()).get("id").asLong();
+
+        String jobStatus = "RUNNING";
+        long deadline = System.currentTimeMillis() + 10000;
+        while ("RUNNING".equals(jobStatus) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            MvcResult job = mockMvc.perform(get("/api/teacher/exams/{id}/regrade/{jobId}", examId, jobId)
+                            .header("Authorization", "Bearer " + teacherToken))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            jobStatus = objectMapper.readTree(job.getResponse().getContentAsByteArray()).get("status").asText();
+        }
+
+        mockMvc.perform(get("/api/teacher/exams/{id}/regrade/{jobId}", examId, jobId)
+                        .header("Authorization", "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.processedResults").value(1))
+                .andExpect(jsonPath("$.changedResults").value(1));
+
+        mockMvc.perform(get("/api/teacher/exams/{id}/results", examId)
+                        .header("Authorization", "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].totalScore").value(5));
+
+        mockMvc.perform(get("/api/student/exams/{id}/result", examId)
+                        .header("Authorization", "Bearer " + studentToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalScore").value(5))
+                .andExpect(jsonPath("$.items[0].earnedScore").value(5));
+
+        mockMvc.perform(get("/api/teacher/exams/{id}/analytics", examId)
+                        .header("Authorization", "Bearer " + teacherToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.participants").value(1))
+                .andExpect(jsonPath("$.maxTotalScore").value(5))
+                .andExpect(jsonPath("$.passRate").value(1.0))
+                .andExpect(jsonPath("$.questionStats[0].correctCount").value(1));
+    }
+
+    private TeacherQuestionController.CreateOrUpdateQuestionRequest questionRequest(String correctAnswer) {
+        TeacherQuestionController.CreateOrUpdateQuestionRequest request = new TeacherQuestionController.CreateOrUpdateQuestionRequest();
+        request.setType(QuestionType.SINGLE_CHOICE);
+        request.setStem("1+2 等于几？");
+        request.setOptions(List.of("1", "2", "3", "4"));
+        request.setCorrectAnswer(correctAnswer);
+        request.setAnalysis("1+2=3");
+        request.setScore(5);
+        request.setDifficulty("EASY");
+        request.setKnowledgePoint("基础加法");
+        request.setEnabled(true);
+        return request;
+    }
+
+    private long createQuestion(String teacherToken) throws Exception {
+        MvcResult createdResult = mockMvc.perform(post("/api/teacher/questions")
+                        .header("Authorization", "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(questionRequest("B"))))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        return objectMapper.readTree(createdResult.getResponse().getContentAsByteArray()).get("id").asLong();
+    }
+
+    private long createPaper(String teacherToken, long questionId) throws Exception {
+        TeacherPaperController.CreateOrUpdatePaperRequest createPaper = new TeacherPaperController.CreateOrUpdatePaperRequest();
+        createPaper.setName("重新判分试卷");
+        createPaper.setQuestionIds(List.of(questionId));
+
+        MvcResult createdPaperResult = mockMvc.perform(post("/api/teacher/papers")
+                        .header("Authorization", "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(createPaper)))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        return objectMapper.readTree(createdPaperResult.getResponse().getContentAsByteArray()).get("id").asLong();
+    }
+
+    private long createExam(String teacherToken, long paperId, long classId, Instant startAt, Instant endAt) throws Exception {
+        TeacherExamController.CreateExamRequest createExam = new TeacherExamController.CreateExamRequest();
+        createExam.setName("重新判分考试");
+        createExam.setPaperId(paperId);
+        createExam.setClassId(classId);
+        createExam.setStartAt(startAt);
+        createExam.setEndAt(endAt);
+
+        MvcResult createdExamResult = mockMvc.perform(post("/api/teacher/exams")
+                        .header("Authorization", "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(createExam)))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        return objectMapper.readTree(createdExamResult.getResponse().getContentAsByteArray()).get("id").asLong();
+    }
+
+    private long createClassAndJoin(String teacherToken, String studentToken) throws Exception {
+        TeacherClassController.CreateClassRequest createClass = new TeacherClassController.CreateClassRequest();
+        createClass.setName("重新判分班级");
+
+        MvcResult createdClassResult = mockMvc.perform(post("/api/teacher/classes")
+                        .header("Authorization", "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(createClass)))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        long classId = objectMapper.readTree(createdClassResult.getResponse().getContentAsByteArray()).get("id").asLong();
+        String inviteCode = objectMapper.readTree(createdClassResult.getResponse().getContentAsByteArray()).get("inviteCode").asText();
+
+        StudentClassController.JoinClassRequest joinRequest = new StudentClassController.JoinClassRequest();
+        joinRequest.setInviteCode(inviteCode);
+        joinRequest.setStudentNo("20230001");
+        joinRequest.setFullName("测试学生");
+
+        mockMvc.perform(post("/api/student/classes/join")
+                        .header("Authorization", "Bearer " + studentToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(joinRequest)))
+                .andExpect(status().isOk());
+
+        return classId;
+    }
+
+    private String loginAndExtractToken(String username, String password) throws Exception {
+        AuthController.LoginRequest request = new AuthController.LoginRequest();
+        request.setUsername(username);
+        request.setPassword(password);
+
+        MvcResult result = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").isString())
+                .andReturn();
+
+        return objectMapper.readTree(result.getResponse().getContentAsByteArray()).get("token").asText();
+    }
+}
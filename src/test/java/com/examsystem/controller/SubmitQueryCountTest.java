@@ -0,0 +1,241 @@
+package com.examsystem.controller;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.examsystem.question.QuestionType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+/**
+ * Counts JDBC round trips (statement executions, a batch counts once) issued by one submit request. The count
+ * must stay a small constant and must not grow with the number of questions on the paper.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class SubmitQueryCountTest {
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeBatch", "executeLargeUpdate", "executeLargeBatch"
+    );
+    private static final ThreadLocal<int[]> COUNTER = new ThreadLocal<>();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void submitUsesConstantNumberOfStatements() throws Exception {
+        String teacherToken = loginAndExtractToken("teacher", "teacher123");
+        String studentToken = loginAndExtractToken("student", "student123");
+        long classId = createClassAndJoin(teacherToken, studentToken);
+
+        int small = countSubmitStatements(teacherToken, studentToken, classId, 1);
+        int large = countSubmitStatements(teacherToken, studentToken, classId, 20);
+        System.out.println("submit statements: 1 question = " + small + ", 20 questions = " + large);
+
+        assertTrue(small <= 10, "submit issued " + small + " statements");
+        assertTrue(large <= small, "statement count grew with question count: " + small + " -> " + large);
+    }
+
+    private int countSubmitStatements(String teacherToken, String studentToken, long classId, int questionCount) throws Exception {
+        List<Long> questionIds = new ArrayList<>();
+        for (int i = 0; i < questionCount; i++) {
+            questionIds.add(createQuestion(teacherToken, i));
+        }
+        long paperId = createPaper(teacherToken, questionIds);
+        long examId = createExam(
+                teacherToken,
+                paperId,
+                classId,
+                Instant.now().minusSeconds(10),
+                Instant.now().plusSeconds(600)
+        );
+
+        MvcResult started = mockMvc.perform(post("/api/student/exams/{id}/start", examId)
+                        .header("Authorization", "Bearer " + studentToken))
+                .andExpect(status().isOk())
+                .andReturn();
+        long attemptId = objectMapper.readTree(started.getResponse().getContentAsByteArray()).get("attemptId").asLong();
+
+        StudentExamController.SubmitExamRequest submit = new StudentExamController.SubmitExamRequest();
+        submit.setAttemptId(attemptId);
+        List<StudentExamController.AnswerRequest> answers = new ArrayList<>();
+        for (Long questionId : questionIds) {
+            StudentExamController.AnswerRequest answer = new StudentExamController.AnswerRequest();
+            answer.setQuestionId(questionId);
+            answer.setAnswer("B");
+            answers.add(answer);
+        }
+        submit.setAnswers(answers);
+        byte[] content = objectMapper.writeValueAsBytes(submit);
+
+        COUNTER.set(new int[1]);
+        try {
+            mockMvc.perform(post("/api/student/exams/{id}/submit", examId)
+                            .header("Authorization", "Bearer " + studentToken)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(content))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.status").value("SUBMITTED"));
+            return COUNTER.get()[0];
+        } finally {
+            COUNTER.remove();
+        }
+    }
+
+    @TestConfiguration
+    static class CountingDataSourceConfig {
+        @Bean
+        static BeanPostProcessor countingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource) {
+                        return counting(bean, DataSource.class);
+                    }
+                    return bean;
+                }
+            };
+        }
+
+        private static Object counting(Object target, Class<?> type) {
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+                int[] counter = COUNTER.get();
+                if (counter != null && EXECUTE_METHODS.contains(method.getName())) {
+                    counter[0]++;
+                }
+                Object result;
+                try {
+                    result = method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                Class<?> returnType = method.getReturnType();
+                if (result != null && returnType.isInterface() && returnType.getName().startsWith("java.sql.")
+                        && !returnType.getSimpleName().equals("ResultSet")
+                        && !returnType.getSimpleName().equals("DatabaseMetaData")) {
+                    return counting(result, returnType);
+                }
+                return result;
+            });
+        }
+    }
+
+    private long createQuestion(String teacherToken, int index) throws Exception {
+        TeacherQuestionController.CreateOrUpdateQuestionRequest create = new TeacherQuestionController.CreateOrUpdateQuestionRequest();
+        create.setType(QuestionType.SINGLE_CHOICE);
+        create.setStem("计数题 " + index + "：1+1 等于几？");
+        create.setOptions(List.of("1", "2", "3", "4"));
+        create.setCorrectAnswer("B");
+        create.setAnalysis("1+1=2");
+        create.setScore(5);
+        create.setDifficulty("EASY");
+        create.setKnowledgePoint("基础加法");
+        create.setEnabled(true);
+
+        MvcResult createdResult = mockMvc.perform(post("/api/teacher/questions")
+                        .header("Authorization", "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(create)))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        return objectMapper.readTree(createdResult.getResponse().getContentAsByteArray()).get("id").asLong();
+    }
+
+    private long createPaper(String teacherToken, List<Long> questionIds) throws Exception {
+        TeacherPaperController.CreateOrUpdatePaperRequest createPaper = new TeacherPaperController.CreateOrUpdatePaperRequest();
+        createPaper.setName("提交查询计数试卷");
+        createPaper.setQuestionIds(questionIds);
+
+        MvcResult createdPaperResult = mockMvc.perform(post("/api/teacher/papers")
+                        .header("Authorization", "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(createPaper)))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        return objectMapper.readTree(createdPaperResult.getResponse().getContentAsByteArray()).get("id").asLong();
+    }
+
+    private long createExam(String teacherToken, long paperId, long classId, Instant startAt, Instant endAt) throws Exception {
+        TeacherExamController.CreateExamRequest createExam = new TeacherExamController.CreateExamRequest();
+        createExam.setName("提交查询计数考试");
+        createExam.setPaperId(paperId);
+        createExam.setClassId(classId);
+        createExam.setStartAt(startAt);
+        createExam.setEndAt(endAt);
+
+        MvcResult createdExamResult = mockMvc.perform(post("/api/teacher/exams")
+                        .header("Authorization", "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(createExam)))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        return objectMapper.readTree(createdExamResult.getResponse().getContentAsByteArray()).get("id").asLong();
+    }
+
+    private long createClassAndJoin(String teacherToken, String studentToken) throws Exception {
+        TeacherClassController.CreateClassRequest createClass = new TeacherClassController.CreateClassRequest();
+        createClass.setName("提交查询计数班级");
+
+        MvcResult createdClassResult = mockMvc.perform(post("/api/teacher/classes")
+                        .header("Authorization", "Bearer " + teacherToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(createClass)))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        long classId = objectMapper.readTree(createdClassResult.getResponse().getContentAsByteArray()).get("id").asLong();
+        String inviteCode = objectMapper.readTree(createdClassResult.getResponse().getContentAsByteArray()).get("inviteCode").asText();
+
+        StudentClassController.JoinClassRequest joinRequest = new StudentClassController.JoinClassRequest();
+        joinRequest.setInviteCode(inviteCode);
+        joinRequest.setStudentNo("20230001");
+        joinRequest.setFullName("测试学生");
+
+        mockMvc.perform(post("/api/student/classes/join")
+                        .header("Authorization", "Bearer " + studentToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(joinRequest)))
+                .andExpect(status().isOk());
+
+        return classId;
+    }
+
+    private String loginAndExtractToken(String username, String password) throws Exception {
+        AuthController.LoginRequest request = new AuthController.LoginRequest();
+        request.setUsername(username);
+        request.setPassword(password);
+
+        MvcResult result = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").isString())
+                .andReturn();
+
+        return objectMapper.readTree(result.getResponse().getContentAsByteArray()).get("token").asText();
+    }
+}
@@ -0,0 +1,67 @@
+package com.examsystem.exam;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+
+    @Test
+    void firesEachIdOnItsOwnTick() {
+        TimingWheel wheel = new TimingWheel(1000);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (long id = 0; id < 5000; id++) {
+            // spread across all four levels, including cascades on multiples of 64
+            long deadline = 1001 + (id % 4 == 0 ? random.nextInt(300_000) : random.nextInt(5000));
+            wheel.schedule(id, deadline);
+            expected.put(id, deadline);
+        }
+
+        long tick = 1000;
+        while (!expected.isEmpty()) {
+            tick++;
+            long now = tick;
+            List<Long> fired = new ArrayList<>();
+            wheel.advanceTo(now, fired::add);
+            for (long id : fired) {
+                assertEquals(expected.remove(id), now);
+            }
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cancelledAndRescheduledIdsFireOnce() {
+        TimingWheel wheel = new TimingWheel(0);
+        wheel.schedule(1L, 10);
+        wheel.schedule(2L, 10);
+        wheel.schedule(3L, 10);
+        wheel.cancel(2L);
+        wheel.schedule(3L, 5000);
+
+        List<Long> fired = new ArrayList<>();
+        wheel.advanceTo(100, fired::add);
+        assertEquals(List.of(1L), fired);
+
+        wheel.advanceTo(5000, fired::add);
+        assertEquals(List.of(1L, 3L), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pastDeadlinesFireOnTheNextTick() {
+        TimingWheel wheel = new TimingWheel(500);
+        wheel.schedule(7L, 100);
+
+        List<Long> fired = new ArrayList<>();
+        wheel.advanceTo(501, fired::add);
+        assertTrue(fired.contains(7L));
+    }
+}
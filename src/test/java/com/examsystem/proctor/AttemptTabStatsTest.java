@@ -0,0 +1,46 @@
+package com.examsystem.proctor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+class AttemptTabStatsTest {
+    private static final Instant T0 = Instant.parse("2026-01-01T08:00:00Z");
+
+    @Test
+    void countsASwitchWhenTheStudentComesBack() {
+        AttemptTabStats stats = AttemptTabStats.empty(7L, 1L, "student")
+                .apply("WINDOW_BLUR", T0)
+                .apply("VISIBILITY_HIDDEN", T0.plusSeconds(2))
+                .apply("VISIBILITY_VISIBLE", T0.plusSeconds(10))
+                .apply("WINDOW_FOCUS", T0.plusSeconds(11));
+
+        assertEquals(1, stats.getSwitchCount());
+        assertEquals(10_000L, stats.getAwayMillis());
+        assertNull(stats.getAwaySince());
+    }
+
+    @Test
+    void anOpenAbsenceIsCarriedUntilItEnds() {
+        AttemptTabStats away = AttemptTabStats.empty(7L, 1L, "student")
+                .apply("WINDOW_BLUR", T0)
+                .apply("HEARTBEAT_LOST", T0.plusSeconds(1));
+
+        assertEquals(0, away.getSwitchCount());
+        assertEquals(T0, away.getAwaySince());
+
+        AttemptTabStats back = away.apply("WINDOW_FOCUS", T0.plusSeconds(5));
+        assertEquals(1, back.getSwitchCount());
+        assertEquals(5_000L, back.getAwayMillis());
+    }
+
+    @Test
+    void comingBackWithoutLeavingIsIgnored() {
+        AttemptTabStats stats = AttemptTabStats.empty(7L, 1L, "student").apply("WINDOW_FOCUS", T0);
+
+        assertEquals(0, stats.getSwitchCount());
+        assertEquals(0L, stats.getAwayMillis());
+    }
+}
@@ -0,0 +1,64 @@
+package com.examsystem.proctor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class EventRingTest {
+
+    @Test
+    void rejectsWhenFullUntilDrained() {
+        EventRing<Integer> ring = new EventRing<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.tryPublish(i));
+        }
+        assertFalse(ring.tryPublish(4));
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(2, ring.drainTo(drained, 2));
+        assertTrue(ring.tryPublish(4));
+        ring.drainTo(drained, 10);
+
+        assertEquals(List.of(0, 1, 2, 3, 4), drained);
+    }
+
+    @Test
+    void concurrentProducersLoseNothingAndKeepTheirOwnOrder() throws Exception {
+        EventRing<long[]> ring = new EventRing<>(64);
+        int producers = 4;
+        int perProducer = 20_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            Thread thread = new Thread(() -> {
+                for (long n = 0; n < perProducer; n++) {
+                    long[] item = {producer, n};
+                    while (!ring.tryPublish(item)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        long[] next = new long[producers];
+        List<long[]> batch = new ArrayList<>();
+        int received = 0;
+        while (received < producers * perProducer) {
+            batch.clear();
+            received += ring.drainTo(batch, 100);
+            for (long[] item : batch) {
+                assertEquals(next[(int) item[0]]++, item[1]);
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, ring.size());
+    }
+}
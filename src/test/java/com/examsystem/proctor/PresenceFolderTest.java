@@ -0,0 +1,49 @@
+package com.examsystem.proctor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PresenceFolderTest {
+    private static final Instant T0 = Instant.parse("2026-01-01T08:00:00Z");
+
+    @Test
+    void splitsSpansAtLongGapsAndAtAttemptBoundaries() {
+        PresenceFolder folder = new PresenceFolder(Duration.ofSeconds(30));
+        for (int seconds : new int[] {0, 5, 10, 100, 105}) {
+            folder.add(7L, T0.plusSeconds(seconds));
+        }
+        folder.add(8L, T0);
+
+        List<PresenceInterval> spans = folder.finish();
+
+        assertEquals(3, spans.size());
+        assertEquals(T0, spans.get(0).getStartedAt());
+        assertEquals(T0.plusSeconds(10), spans.get(0).getEndedAt());
+        assertEquals(3, spans.get(0).getHeartbeats());
+        assertEquals(T0.plusSeconds(100), spans.get(1).getStartedAt());
+        assertEquals(8L, spans.get(2).getAttemptId());
+        assertEquals(1, spans.get(2).getHeartbeats());
+    }
+
+    @Test
+    void fillsTheGapsBetweenOnlineSpans() {
+        PresenceFolder folder = new PresenceFolder(Duration.ofSeconds(30));
+        folder.add(7L, T0);
+        folder.add(7L, T0.plusSeconds(60));
+
+        List<PresenceInterval> timeline = PresenceFolder.withGaps(folder.finish());
+
+        assertEquals(3, timeline.size());
+        assertTrue(timeline.get(0).isOnline());
+        assertFalse(timeline.get(1).isOnline());
+        assertEquals(T0, timeline.get(1).getStartedAt());
+        assertEquals(T0.plusSeconds(60), timeline.get(1).getEndedAt());
+        assertTrue(timeline.get(2).isOnline());
+    }
+}
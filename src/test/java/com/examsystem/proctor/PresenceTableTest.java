@@ -0,0 +1,76 @@
+package com.examsystem.proctor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PresenceTableTest {
+
+    @Test
+    void keepsTheNewestHeartbeatPerAttempt() {
+        PresenceTable table = new PresenceTable();
+        table.record(7L, 1L, "student", 2_000L);
+        table.record(7L, 1L, "student", 1_000L);
+        long count = table.record(7L, 1L, "student", 3_000L);
+
+        List<AttemptPresence> latest = new ArrayList<>();
+        table.collectByExam(1L, latest);
+
+        assertEquals(3, count);
+        assertEquals(1, latest.size());
+        assertEquals(Instant.ofEpochMilli(3_000L), latest.get(0).getLastTs());
+    }
+
+    @Test
+    void onlyChangedEntriesAreDirty() {
+        PresenceTable table = new PresenceTable();
+        table.record(7L, 1L, "a", 1_000L);
+        table.record(8L, 1L, "b", 1_000L);
+        List<AttemptPresence> dirty = new ArrayList<>();
+        table.collectDirty(dirty);
+        dirty.forEach(table::markFlushed);
+
+        table.record(8L, 1L, "b", 2_000L);
+        dirty.clear();
+        table.collectDirty(dirty);
+
+        assertEquals(1, dirty.size());
+        assertEquals(8L, dirty.get(0).getAttemptId());
+    }
+
+    @Test
+    void evictsOnlyFlushedIdleEntries() {
+        PresenceTable table = new PresenceTable();
+        table.record(7L, 1L, "a", 1_000L);
+        table.merge(new AttemptPresence(8L, 1L, "b", Instant.ofEpochMilli(1_000L)));
+        table.merge(new AttemptPresence(9L, 1L, "c", Instant.ofEpochMilli(5_000L)));
+
+        assertEquals(1, table.evictFlushedBefore(2_000L));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    void survivesGrowthAndRemoval() {
+        PresenceTable table = new PresenceTable();
+        for (long id = 1; id <= 5_000; id++) {
+            table.record(id, id % 3, "u" + id, id);
+        }
+        table.evictExam(0L);
+        table.evictStudent("u1");
+
+        List<AttemptPresence> remaining = new ArrayList<>();
+        table.collectByExam(1L, remaining);
+        table.collectByExam(2L, remaining);
+
+        assertEquals(5_000 - 5_000 / 3 - 1, table.size());
+        assertEquals(table.size(), remaining.size());
+        assertTrue(remaining.stream().allMatch(p -> p.getAttemptId() % 3 != 0 && p.getAttemptId() != 1));
+        for (AttemptPresence p : remaining) {
+            assertEquals(2, table.record(p.getAttemptId(), p.getExamId(), p.getUsername(), 0L));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.examsystem.proctor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class ProctorMailboxTest {
+
+    @Test
+    void loadsOnceAndThenServesAppendedMessages() {
+        ProctorMailbox mailbox = new ProctorMailbox();
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(List.of(3L), ids(mailbox.after(7L, 1L, "student", 0L, id -> {
+            loads.incrementAndGet();
+            return List.of(message(3L));
+        })));
+        mailbox.append(message(5L));
+        mailbox.append(message(4L));
+        mailbox.append(message(5L));
+
+        assertEquals(List.of(4L, 5L), ids(mailbox.after(7L, 1L, "student", 3L, id -> List.of())));
+        assertEquals(List.of(), ids(mailbox.after(7L, 1L, "student", 5L, id -> List.of())));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void appendingToAnUnloadedMailboxIsLeftToTheLoader() {
+        ProctorMailbox mailbox = new ProctorMailbox();
+        mailbox.append(message(3L));
+
+        assertEquals(0, mailbox.size());
+    }
+
+    @Test
+    void pollsBehindTheRetainedWindowFallBack() {
+        ProctorMailbox mailbox = new ProctorMailbox();
+        List<ProctorEvent> history = new ArrayList<>();
+        for (long id = 1; id <= ProctorMailbox.CAPACITY + 1; id++) {
+            history.add(message(id));
+        }
+        mailbox.after(7L, 1L, "student", 0L, id -> history);
+
+        assertTrue(mailbox.after(7L, 1L, "student", 0L, id -> List.of()).isEmpty());
+        assertEquals(ProctorMailbox.CAPACITY, ids(mailbox.after(7L, 1L, "student", 1L, id -> List.of())).size());
+    }
+
+    @Test
+    void evictsByExamAndStudent() {
+        ProctorMailbox mailbox = new ProctorMailbox();
+        mailbox.after(7L, 1L, "a", 0L, id -> List.of());
+        mailbox.after(8L, 2L, "b", 0L, id -> List.of());
+
+        mailbox.evictExam(1L);
+        mailbox.evictStudent("b");
+
+        assertEquals(0, mailbox.size());
+    }
+
+    @Test
+    void evictsFinishedAndIdleAttempts() {
+        ProctorMailbox mailbox = new ProctorMailbox();
+        mailbox.after(7L, 1L, "a", 0L, id -> List.of());
+        mailbox.after(8L, 1L, "b", 0L, id -> List.of());
+
+        mailbox.evict(7L);
+        assertEquals(1, mailbox.size());
+        assertEquals(0, mailbox.evictIdleBefore(System.currentTimeMillis() - 60_000L));
+        assertEquals(1, mailbox.evictIdleBefore(System.currentTimeMillis() + 1L));
+        assertEquals(0, mailbox.size());
+    }
+
+    private static List<Long> ids(Optional<List<ProctorEvent>> messages) {
+        return messages.orElseThrow().stream().map(ProctorEvent::getId).collect(Collectors.toList());
+    }
+
+    private static ProctorEvent message(long id) {
+        return new ProctorEvent(id, 1L, 7L, "student", "TEACHER_REMIND", "hi", Instant.EPOCH);
+    }
+}
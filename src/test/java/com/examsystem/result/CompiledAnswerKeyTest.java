@@ -0,0 +1,51 @@
+package com.examsystem.result;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.examsystem.question.QuestionType;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CompiledAnswerKeyTest {
+    @Test
+    void gradesChoicesAndTrueFalseLikeStringNormalization() {
+        CompiledAnswerKey key = CompiledAnswerKey.compile(
+                List.of(QuestionType.SINGLE_CHOICE, QuestionType.MULTIPLE_CHOICE, QuestionType.TRUE_FALSE, QuestionType.SINGLE_CHOICE),
+                Arrays.asList("B", "A,C", "true", "42")
+        );
+
+        assertTrue(key.isCorrect(0, " b "));
+        assertFalse(key.isCorrect(0, "B,"));
+        assertFalse(key.isCorrect(0, null));
+
+        assertTrue(key.isCorrect(1, "c, a"));
+        assertTrue(key.isCorrect(1, "A,C,C,1"));
+        assertFalse(key.isCorrect(1, "A"));
+        assertFalse(key.isCorrect(1, ""));
+
+        assertTrue(key.isCorrect(2, " TRUE"));
+        assertFalse(key.isCorrect(2, "false"));
+        assertFalse(key.isCorrect(2, "yes"));
+
+        assertTrue(key.isCorrect(3, " 42 "));
+        assertFalse(key.isCorrect(3, "4"));
+    }
+
+    @Test
+    void partialScoreCountsCorrectOptionsWithoutWrongOnes() {
+        CompiledAnswerKey key = CompiledAnswerKey.compile(
+                List.of(QuestionType.MULTIPLE_CHOICE, QuestionType.SINGLE_CHOICE),
+                List.of("A,B,C,D", "A")
+        );
+
+        assertEquals(10, key.partialScore(0, "D,C,B,A", 10));
+        assertEquals(5, key.partialScore(0, "A,C", 10));
+        assertEquals(0, key.partialScore(0, "A,E", 10));
+        assertEquals(0, key.partialScore(0, "", 10));
+        assertEquals(4, key.partialScore(1, "a", 4));
+        assertEquals(0, key.partialScore(1, "B", 4));
+    }
+}
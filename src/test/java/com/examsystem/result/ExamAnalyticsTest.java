@@ -0,0 +1,48 @@
+package com.examsystem.result;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ExamAnalyticsTest {
+    @Test
+    void derivesTheAnalyticsFromTheHistogramAndTallies() {
+        ExamAnalytics analytics = ExamAnalytics.of(List.of(
+                draft("a", 10, 10, true, true),
+                draft("b", 5, 10, true, false),
+                draft("c", 5, 10, false, true),
+                draft("d", 0, 10, false, false)
+        ));
+
+        assertEquals(3, analytics.getBuckets().size());
+        assertEquals(4, analytics.participants());
+        assertEquals(10, analytics.maxScore());
+        assertEquals(10, analytics.maxTotal());
+        assertEquals(0, analytics.minTotal());
+        assertEquals(5.0d, analytics.avgTotal(), 1e-9);
+        assertEquals(0.25d, analytics.passRate(0.6d), 1e-9);
+        assertEquals(0.75d, analytics.passRate(0.5d), 1e-9);
+
+        ExamAnalytics.QuestionTally first = analytics.getQuestions().get(0);
+        assertEquals(1L, first.getQuestionId());
+        assertEquals(2, first.getCorrectCount());
+        assertEquals(4, first.getTotalCount());
+    }
+
+    @Test
+    void noResultsMeansZeroes() {
+        ExamAnalytics analytics = ExamAnalytics.of(List.of());
+
+        assertEquals(0, analytics.participants());
+        assertEquals(0.0d, analytics.avgTotal());
+        assertEquals(0.0d, analytics.passRate(0.6d));
+    }
+
+    private static ExamResultDraft draft(String username, int total, int max, boolean firstCorrect, boolean secondCorrect) {
+        return new ExamResultDraft(username, total, max, List.of(
+                new ExamResultItem(2L, "SINGLE_CHOICE", "A", "A", 5, secondCorrect ? 5 : 0, secondCorrect),
+                new ExamResultItem(1L, "SINGLE_CHOICE", "B", "B", 5, firstCorrect ? 5 : 0, firstCorrect)
+        ));
+    }
+}
@@ -0,0 +1,80 @@
+package com.examsystem.result;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class ItemColumnsTest {
+    @Test
+    void groupsByKnowledgePointWithinTheGivenClasses() {
+        ItemColumns columns = sample();
+
+        List<WarehouseGroup> groups = columns.query(query(Set.of(100L), null, List.of(WarehouseQuery.Dimension.KNOWLEDGE_POINT)));
+
+        assertEquals(2, groups.size());
+        WarehouseGroup fractions = groups.get(0);
+        assertEquals(Map.of("knowledgePoint", "fractions"), fractions.getKey());
+        assertEquals(3, fractions.getItems());
+        assertEquals(2, fractions.getCorrect());
+        assertEquals(10, fractions.getEarnedScore());
+        assertEquals(15, fractions.getMaxScore());
+        assertNull(groups.get(1).getKey().get("knowledgePoint"));
+        assertEquals(1, groups.get(1).getItems());
+    }
+
+    @Test
+    void filtersAndRetagsThroughTheDimensions() {
+        ItemColumns columns = sample();
+        columns.setQuestionMeta(2L, "algebra", "HARD");
+        columns.setExamClass(20L, 100L);
+
+        List<WarehouseGroup> groups = columns.query(query(Set.of(100L), Set.of("HARD"), List.of(WarehouseQuery.Dimension.EXAM)));
+
+        assertEquals(1, groups.size());
+        assertEquals(Map.of("examId", 20L), groups.get(0).getKey());
+        assertEquals(1, groups.get(0).getItems());
+    }
+
+    @Test
+    void droppedExamsAreNotCountedAndCompactionKeepsTheRest() {
+        ItemColumns columns = sample();
+        columns.dropExam(10L);
+        columns.compactIfSparse();
+
+        assertEquals(0, columns.liveResults(10L));
+        assertEquals(1, columns.liveResults(20L));
+        assertEquals(List.of(), columns.query(query(Set.of(100L), null, List.of())));
+
+        List<WarehouseGroup> all = columns.query(query(Set.of(100L, 200L), null, List.of(WarehouseQuery.Dimension.CLASS)));
+        assertEquals(1, all.size());
+        assertEquals(Map.of("classId", 200L), all.get(0).getKey());
+        assertEquals(2, all.get(0).getItems());
+    }
+
+    private static ItemColumns sample() {
+        ItemColumns columns = new ItemColumns();
+        columns.setQuestionMeta(1L, "fractions", "EASY");
+        columns.setQuestionMeta(3L, null, null);
+        columns.setExamClass(10L, 100L);
+        columns.setExamClass(20L, 200L);
+
+        columns.resultLoaded(10L);
+        columns.append(10L, 1L, "SINGLE_CHOICE", 5, 5, true);
+        columns.append(10L, 3L, "TRUE_FALSE", 2, 0, false);
+        columns.resultLoaded(10L);
+        columns.append(10L, 1L, "SINGLE_CHOICE", 5, 5, true);
+        columns.append(10L, 1L, "SINGLE_CHOICE", 5, 0, false);
+        columns.resultLoaded(20L);
+        columns.append(20L, 1L, "SINGLE_CHOICE", 5, 5, true);
+        columns.append(20L, 2L, "MULTIPLE_CHOICE", 4, 4, true);
+        return columns;
+    }
+
+    private static WarehouseQuery query(Set<Long> classIds, Set<String> difficulties, List<WarehouseQuery.Dimension> groupBy) {
+        return new WarehouseQuery(classIds, null, null, null, difficulties, groupBy, 100);
+    }
+}
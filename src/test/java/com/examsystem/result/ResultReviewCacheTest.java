@@ -0,0 +1,76 @@
+package com.examsystem.result;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class ResultReviewCacheTest {
+
+    @Test
+    void rendersOncePerResultAndView() {
+        ResultReviewCache cache = newCache(10);
+        AtomicInteger renders = new AtomicInteger();
+
+        Object first = cache.get(result(1L, 7L), "review", () -> "r" + renders.incrementAndGet());
+        Object again = cache.get(result(1L, 7L), "review", () -> "r" + renders.incrementAndGet());
+        cache.get(result(1L, 7L), "review+answers", () -> "r" + renders.incrementAndGet());
+
+        assertSame(first, again);
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void regradeDropsTheResultAndARenderOverlappingItIsNotStored() {
+        ResultReviewCache cache = newCache(10);
+        cache.get(result(1L, 7L), "review", () -> "before");
+        cache.evictResults(List.of(1L));
+
+        String overlapping = cache.get(result(1L, 7L), "review", () -> {
+            cache.evictResults(List.of(2L));
+            return "stale";
+        });
+
+        assertEquals("stale", overlapping);
+        assertEquals("after", cache.get(result(1L, 7L), "review", () -> "after"));
+    }
+
+    @Test
+    void aResultRegradedElsewhereMissesUnderItsNewGeneration() {
+        ResultReviewCache cache = newCache(10);
+        cache.get(result(1L, 7L), "review", () -> "before");
+
+        assertEquals("after", cache.get(result(1L, 7L, 1), "review", () -> "after"));
+        assertEquals("after", cache.get(result(1L, 7L, 1), "review", () -> "reloaded"));
+    }
+
+    @Test
+    void keepsTheMostRecentlyUsedWithinCapacityAndEvictsByExam() {
+        ResultReviewCache cache = newCache(2);
+        cache.get(result(1L, 7L), "review", () -> "a");
+        cache.get(result(2L, 7L), "review", () -> "b");
+        cache.get(result(1L, 7L), "review", () -> "unused");
+        cache.get(result(3L, 8L), "review", () -> "c");
+
+        assertEquals("a", cache.get(result(1L, 7L), "review", () -> "reloaded"));
+        assertEquals(2, cache.size());
+
+        cache.evictExam(7L);
+        assertEquals(1, cache.size());
+    }
+
+    private static ResultReviewCache newCache(int capacity) {
+        return new ResultReviewCache(capacity);
+    }
+
+    private static ExamResultHeader result(long id, long examId) {
+        return result(id, examId, 0);
+    }
+
+    private static ExamResultHeader result(long id, long examId, int regradeGeneration) {
+        return new ExamResultHeader(id, examId, id, 0, 5, regradeGeneration, Instant.EPOCH);
+    }
+}
@@ -0,0 +1,50 @@
+package com.examsystem.result;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class ScoreSketchTest {
+    @Test
+    void quantilesInterpolateBetweenRanks() {
+        ScoreSketch sketch = new ScoreSketch().record(1, 1).record(2, 1).record(3, 1).record(4, 1);
+
+        assertEquals(4, sketch.count());
+        assertEquals(2.5d, sketch.quantile(0.5d), 1e-9);
+        assertEquals(1.3d, sketch.quantile(0.1d), 1e-9);
+        assertEquals(3.7d, sketch.quantile(0.9d), 1e-9);
+        assertEquals(2.5d, sketch.mean(), 1e-9);
+        assertEquals(Math.sqrt(1.25d), sketch.stdDev(), 1e-9);
+    }
+
+    @Test
+    void mergedSketchesMatchRecordingEverythingOnce() {
+        ScoreSketch a = new ScoreSketch().record(10, 3).record(70, 1);
+        ScoreSketch b = new ScoreSketch().record(40, 2).record(900, 4);
+        ScoreSketch all = new ScoreSketch().record(10, 3).record(70, 1).record(40, 2).record(900, 4);
+
+        a.merge(b);
+
+        assertEquals(all.count(), a.count());
+        for (double q : new double[]{0.1d, 0.25d, 0.5d, 0.75d, 0.9d}) {
+            assertEquals(all.quantile(q), a.quantile(q), 1e-9);
+        }
+        assertEquals(4, a.countBetween(900, 1001));
+        assertEquals(5, a.countBetween(0, 60));
+    }
+
+    @Test
+    void emptySketchIsZero() {
+        ScoreSketch sketch = new ScoreSketch();
+
+        assertEquals(0.0d, sketch.quantile(0.5d));
+        assertEquals(0.0d, sketch.stdDev());
+    }
+
+    @Test
+    void permilleIsClamped() {
+        assertEquals(667, ScoreSketch.permille(2, 3));
+        assertEquals(1000, ScoreSketch.permille(12, 10));
+        assertEquals(0, ScoreSketch.permille(-1, 10));
+    }
+}